@@ -0,0 +1,188 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationResponse;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows written for 100k simulated email sends against PostgreSQL in a container, migrated
+ * with the application's Flyway scripts. {@code perSendStatements} is the write pattern
+ * before batching: insert a PENDING row for its generated id, update it with the outcome,
+ * insert the response, each in its own round trip. The batched variants write chunks the
+ * size of a bulk chunk with {@link NotificationBatchRepository}: final rows with their
+ * responses, or leased rows whose outcome is written after the send as bulk jobs do.
+ * Scores are sends per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+public class NotificationPersistenceBenchmark {
+
+    private static final int SENDS = 100_000;
+    private static final int CHUNK_SIZE = 200;
+    private static final String AUDITOR = "benchmark";
+    private static final String WORKER_ID = "benchmark-worker";
+
+    private PostgreSQLContainer<?> postgres;
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private NotificationBatchRepository batchRepository;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:15");
+        postgres.start();
+
+        dataSource = new SingleConnectionDataSource(
+                postgres.getJdbcUrl() + "&reWriteBatchedInserts=true",
+                postgres.getUsername(), postgres.getPassword(), true);
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        batchRepository = new NotificationBatchRepository(jdbcTemplate);
+    }
+
+    @TearDown(Level.Iteration)
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE notification_responses, notification_requests");
+    }
+
+    @TearDown
+    public void tearDown() {
+        dataSource.destroy();
+        postgres.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENDS)
+    public void perSendStatements() {
+        for (int i = 0; i < SENDS; i++) {
+            NotificationRequest request = request(i);
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement("INSERT INTO notification_requests " +
+                        "(recipient, subject, content, status, channel, attempt_count, priority_lane, user_id, " +
+                        "created_by, modified_by) VALUES (?, ?, ?, 'PENDING', 'EMAIL', 0, 'BULK', ?, ?, ?)",
+                        new String[] {"id"});
+                ps.setString(1, request.getRecipient());
+                ps.setString(2, request.getSubject());
+                ps.setString(3, request.getContent());
+                ps.setString(4, request.getUserId());
+                ps.setString(5, AUDITOR);
+                ps.setString(6, AUDITOR);
+                return ps;
+            }, keyHolder);
+            long id = keyHolder.getKey().longValue();
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+
+            jdbcTemplate.update("UPDATE notification_requests SET status = 'SENT', sent_at = ?, attempt_count = 1, " +
+                    "modified_at = ? WHERE id = ?", now, now, id);
+            jdbcTemplate.update("INSERT INTO notification_responses (request_id, provider_response_id, status, " +
+                    "created_by, modified_by) VALUES (?, ?, 'SENT', ?, ?)", id, "bench-" + i, AUDITOR, AUDITOR);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENDS)
+    public void batchedFinalRows() {
+        for (int from = 0; from < SENDS; from += CHUNK_SIZE) {
+            List<NotificationRequest> requests = chunk(from);
+            for (NotificationRequest request : requests) {
+                markSent(request);
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                batchRepository.insertRequests(requests, AUDITOR);
+                batchRepository.completeAll(List.of(), responses(requests), AUDITOR);
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SENDS)
+    public void batchedLeasedRows() {
+        for (int from = 0; from < SENDS; from += CHUNK_SIZE) {
+            List<NotificationRequest> requests = chunk(from);
+            LocalDateTime lockedUntil = LocalDateTime.now().plusMinutes(5);
+            for (NotificationRequest request : requests) {
+                request.setStatus(NotificationRequest.NotificationStatus.PROCESSING);
+                request.setLockedBy(WORKER_ID);
+                request.setLockedUntil(lockedUntil);
+            }
+            batchRepository.insertRequests(requests, AUDITOR);
+
+            for (NotificationRequest request : requests) {
+                markSent(request);
+            }
+            transactionTemplate.executeWithoutResult(status ->
+                    batchRepository.completeAll(requests, responses(requests), AUDITOR));
+        }
+    }
+
+    private static List<NotificationRequest> chunk(int from) {
+        List<NotificationRequest> requests = new ArrayList<>(CHUNK_SIZE);
+        for (int i = from; i < Math.min(from + CHUNK_SIZE, SENDS); i++) {
+            requests.add(request(i));
+        }
+        return requests;
+    }
+
+    private static NotificationRequest request(int i) {
+        NotificationRequest request = new NotificationRequest();
+        request.setRecipient("user" + i + "@example.com");
+        request.setSubject("Your weekly summary");
+        request.setContent("<html><body><p>Hello user " + i + ", here is your summary.</p></body></html>");
+        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        request.setChannel(NotificationRequest.NotificationChannel.EMAIL);
+        request.setPriorityLane(NotificationRequest.PriorityLane.BULK);
+        request.setUserId("user-" + (i % 1000));
+        request.setAttemptCount(1);
+        return request;
+    }
+
+    private static void markSent(NotificationRequest request) {
+        request.setStatus(NotificationRequest.NotificationStatus.SENT);
+        request.setSentAt(LocalDateTime.now());
+    }
+
+    private static List<NotificationResponse> responses(List<NotificationRequest> requests) {
+        List<NotificationResponse> responses = new ArrayList<>(requests.size());
+        for (NotificationRequest request : requests) {
+            NotificationResponse response = new NotificationResponse();
+            response.setRequest(request);
+            response.setStatus("SENT");
+            response.setProviderResponseId("bench-" + request.getRecipient());
+            responses.add(response);
+        }
+        return responses;
+    }
+}
@@ -0,0 +1,118 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.icegreen.greenmail.util.GreenMail;
+import com.icegreen.greenmail.util.ServerSetup;
+import com.notificationservice.config.MailTransportProperties;
+import com.notificationservice.entity.EmailSender;
+import com.notificationservice.repository.EmailSenderRepository;
+import jakarta.mail.Message;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Small emails sent to a local GreenMail SMTP server: a new mail sender, and so a new
+ * connection with AUTH, per message as before pooling, against {@link MailTransportRegistry}
+ * reusing pooled connections. Four threads share one sender, as dispatch workers do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class MailTransportBenchmark {
+
+    private static final long SENDER_ID = 1L;
+    private static final String USERNAME = "bench@localhost";
+    private static final String PASSWORD = "secret";
+
+    private GreenMail greenMail;
+    private EmailSender sender;
+    private MailTransportRegistry registry;
+
+    @Setup
+    public void setUp() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        greenMail = new GreenMail(new ServerSetup(port, "127.0.0.1", ServerSetup.PROTOCOL_SMTP));
+        greenMail.start();
+        greenMail.setUser(USERNAME, USERNAME, PASSWORD);
+
+        sender = new EmailSender();
+        sender.setId(SENDER_ID);
+        sender.setName("benchmark");
+        sender.setHost("127.0.0.1");
+        sender.setPort(port);
+        sender.setUsername(USERNAME);
+        sender.setPassword(PASSWORD);
+        sender.setProperties(new ObjectMapper().createObjectNode().put("mail.smtp.auth", "true"));
+
+        EmailSenderRepository repository = (EmailSenderRepository) Proxy.newProxyInstance(
+                EmailSenderRepository.class.getClassLoader(), new Class<?>[] {EmailSenderRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findById")) {
+                        return Optional.of(sender);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        registry = new MailTransportRegistry(repository, new MailTransportProperties());
+    }
+
+    @TearDown(Level.Iteration)
+    public void purgeMailboxes() {
+        greenMail.purgeEmailFromAllMailboxes();
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.closeAll();
+        greenMail.stop();
+    }
+
+    @Benchmark
+    public void connectPerMessage() throws MessagingException {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(sender.getHost());
+        mailSender.setPort(sender.getPort());
+        mailSender.setUsername(sender.getUsername());
+        mailSender.setPassword(sender.getPassword());
+        mailSender.getJavaMailProperties().put("mail.smtp.auth", "true");
+
+        MimeMessage message = mailSender.createMimeMessage();
+        fill(message);
+        mailSender.send(message);
+    }
+
+    @Benchmark
+    public void pooledTransport() throws MessagingException {
+        MimeMessage message = registry.createMimeMessage(SENDER_ID);
+        fill(message);
+        registry.send(SENDER_ID, message);
+    }
+
+    private static void fill(MimeMessage message) throws MessagingException {
+        message.setFrom(new InternetAddress(USERNAME));
+        message.setRecipient(Message.RecipientType.TO, new InternetAddress("recipient@localhost"));
+        message.setSubject("Your code");
+        message.setText("Your verification code is 482913.", "UTF-8");
+    }
+}
@@ -0,0 +1,142 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.notificationservice.config.CacheInvalidationProperties;
+import com.notificationservice.config.RuleProperties;
+import com.notificationservice.entity.NotificationRule;
+import com.notificationservice.repository.NotificationRuleRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rule evaluation of one user with 1, 10 and 100 active rules, served from the compiled rule
+ * set cache as on the send path. The rules mix content, time-based and composite checks and
+ * none of them blocks, so every evaluation walks all of them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RuleEvaluationBenchmark {
+
+    private static final String USER_ID = "benchmark-user";
+
+    @Param({"1", "10", "100"})
+    private int rulesPerUser;
+
+    private RuleEngineService ruleEngine;
+    private String content;
+    private Map<String, Object> variables;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        List<NotificationRule> rules = new ArrayList<>();
+        for (int i = 0; i < rulesPerUser; i++) {
+            rules.add(rule(i, objectMapper));
+        }
+        NotificationRuleRepository repository = (NotificationRuleRepository) Proxy.newProxyInstance(
+                NotificationRuleRepository.class.getClassLoader(), new Class<?>[] {NotificationRuleRepository.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("findByUserIdAndIsActiveTrueOrderByPriorityDesc")) {
+                        return rules;
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+
+        CacheInvalidationProperties invalidationProperties = new CacheInvalidationProperties();
+        invalidationProperties.setEnabled(false);
+        CacheInvalidationService cacheInvalidation = new CacheInvalidationService(null, null, invalidationProperties,
+                objectMapper);
+        RuleSetCache ruleSetCache = new RuleSetCache(repository, new RuleProperties(), new NoTransactions(),
+                cacheInvalidation);
+        ruleSetCache.init();
+        ruleEngine = new RuleEngineService(null, null, null, null, null, objectMapper, ruleSetCache, null);
+
+        StringBuilder body = new StringBuilder("<html><body><p>Your order has shipped.</p>");
+        while (body.length() < 4096) {
+            body.append("<p>Track the parcel in your account or reply to this message for help.</p>");
+        }
+        content = body.append("</body></html>").toString();
+        variables = Map.of("userId", USER_ID, "tier", "gold", "orderId", "A-1042");
+
+        // Compile and cache the set outside the measurement
+        ruleEngine.evaluateRules(USER_ID, content, variables);
+    }
+
+    @Benchmark
+    public RuleEngineService.RuleEvaluationResult evaluateRules() {
+        return ruleEngine.evaluateRules(USER_ID, content, variables);
+    }
+
+    private static NotificationRule rule(int index, ObjectMapper objectMapper) {
+        NotificationRule rule = new NotificationRule();
+        rule.setId((long) index + 1);
+        rule.setName("rule-" + index);
+        rule.setUserId(USER_ID);
+        rule.setNotificationType(NotificationRule.NotificationType.EMAIL);
+        rule.setPriority(index);
+        rule.setTimezone("Europe/Berlin");
+        rule.setDaysOfWeek(EnumSet.allOf(DayOfWeek.class));
+        rule.setStartTime(LocalTime.MIN);
+        rule.setEndTime(LocalTime.MAX);
+
+        ObjectNode conditions = objectMapper.createObjectNode();
+        conditions.putArray("blockedKeywords").add("unsubscribe-" + index).add("lottery-" + index);
+        conditions.putArray("requiredKeywords").add("order").add("parcel");
+        conditions.put("maxContentLength", 100000);
+        conditions.putObject("variableConditions").putObject("tier").put("notEquals", "blocked");
+        switch (index % 3) {
+            case 0:
+                rule.setRuleType(NotificationRule.RuleType.CONTENT_BASED);
+                break;
+            case 1:
+                rule.setRuleType(NotificationRule.RuleType.TIME_BASED);
+                break;
+            default:
+                rule.setRuleType(NotificationRule.RuleType.COMPOSITE);
+                conditions.putObject("timeBased");
+                conditions.putObject("contentBased");
+                break;
+        }
+        rule.setConditions(conditions);
+        return rule;
+    }
+
+    /**
+     * Rules are served from memory here; the cache only opens a transaction on a miss
+     */
+    private static final class NoTransactions implements PlatformTransactionManager {
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.CacheInvalidationProperties;
+import com.notificationservice.util.CompiledTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a large HTML body: the {@code String.replace} loop templates used before,
+ * against compiling on every call, a template compiled once, and
+ * {@link TemplateService#processTemplateContent} serving the compiled form from its cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TemplateRenderingBenchmark {
+
+    private static final int VARIABLES = 20;
+
+    /**
+     * Repeated sections of the body; each holds every placeholder once
+     */
+    @Param({"10", "200"})
+    public int sections;
+
+    private String content;
+    private Map<String, Object> variables;
+    private CompiledTemplate compiled;
+    private TemplateService templateService;
+
+    @Setup
+    public void setUp() {
+        variables = new HashMap<>();
+        StringBuilder body = new StringBuilder("<html><head><style>td { padding: 4px; }</style></head><body>");
+        for (int section = 0; section < sections; section++) {
+            body.append("<table><tr>");
+            for (int i = 0; i < VARIABLES; i++) {
+                body.append("<td class=\"cell\">Field ").append(i).append(": {{var").append(i).append("}}</td>");
+            }
+            body.append("</tr></table><p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>");
+        }
+        body.append("</body></html>");
+        content = body.toString();
+        for (int i = 0; i < VARIABLES; i++) {
+            variables.put("var" + i, "value-" + i);
+        }
+        compiled = CompiledTemplate.compile(content);
+
+        CacheInvalidationProperties invalidationProperties = new CacheInvalidationProperties();
+        invalidationProperties.setEnabled(false);
+        CacheInvalidationService cacheInvalidation = new CacheInvalidationService(null, null, invalidationProperties,
+                new ObjectMapper());
+        templateService = new TemplateService(null, cacheInvalidation);
+    }
+
+    @Benchmark
+    public String replaceLoop() {
+        String processed = content;
+        for (Map.Entry<String, Object> entry : variables.entrySet()) {
+            String placeholder = "{{" + entry.getKey() + "}}";
+            String value = entry.getValue() != null ? entry.getValue().toString() : "";
+            processed = processed.replace(placeholder, value);
+        }
+        return processed;
+    }
+
+    @Benchmark
+    public String compileEachCall() {
+        return CompiledTemplate.compile(content).render(variables);
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return compiled.render(variables);
+    }
+
+    @Benchmark
+    public String processTemplateContent() {
+        return templateService.processTemplateContent(content, variables);
+    }
+}
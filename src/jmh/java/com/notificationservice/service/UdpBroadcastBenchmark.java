@@ -0,0 +1,91 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.UdpBroadcastProperties;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One broadcast fanned out by {@link UdpBroadcastTransport} to many clients on loopback.
+ * Clients are distinct 127.x.y.z addresses sharing one port, received by a single wildcard
+ * channel that a background thread drains, so 10k clients need no 10k sockets. Scores are
+ * broadcasts per second; multiply by clients and chunks for datagrams per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class UdpBroadcastBenchmark {
+
+    @Param({"1000", "10000"})
+    public int clients;
+
+    /**
+     * Payload bytes; 8000 is split into six chunks with the default datagram size
+     */
+    @Param({"200", "8000"})
+    public int payloadSize;
+
+    private UdpBroadcastTransport transport;
+    private DatagramChannel receiver;
+    private Thread drainer;
+    private List<InetSocketAddress> targets;
+    private String content;
+
+    @Setup
+    public void setUp() throws IOException {
+        receiver = DatagramChannel.open();
+        receiver.setOption(StandardSocketOptions.SO_RCVBUF, 8 * 1024 * 1024);
+        receiver.bind(new InetSocketAddress(0));
+        int port = ((InetSocketAddress) receiver.getLocalAddress()).getPort();
+        drainer = new Thread(this::drain, "udp-benchmark-drain");
+        drainer.setDaemon(true);
+        drainer.start();
+
+        targets = new ArrayList<>(clients);
+        for (int i = 0; i < clients; i++) {
+            targets.add(new InetSocketAddress("127.0." + (i / 250) + "." + (i % 250 + 1), port));
+        }
+        content = "x".repeat(payloadSize);
+
+        transport = new UdpBroadcastTransport(new UdpBroadcastProperties());
+        transport.init();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        transport.close();
+        receiver.close();
+    }
+
+    @Benchmark
+    public UdpBroadcastTransport.BroadcastResult broadcast() throws IOException {
+        return transport.send("benchmark", content, targets);
+    }
+
+    private void drain() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+        try {
+            while (receiver.isOpen()) {
+                buffer.clear();
+                receiver.receive(buffer);
+            }
+        } catch (IOException e) {
+            // Closed at tear down
+        }
+    }
+}
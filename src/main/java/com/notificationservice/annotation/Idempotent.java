@@ -0,0 +1,17 @@
+package com.notificationservice.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Honour the {@code Idempotency-Key} header on an endpoint returning a
+ * {@code ResponseEntity<NotificationRequestDto>} or {@code ResponseEntity<BulkEmailJobDto>};
+ * keys are unique per scope
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Idempotent {
+    String value();
+}
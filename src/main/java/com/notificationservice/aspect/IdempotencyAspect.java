@@ -0,0 +1,32 @@
+package com.notificationservice.aspect;
+
+import com.notificationservice.annotation.Idempotent;
+import com.notificationservice.service.IdempotencyService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+@Aspect
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyAspect {
+
+    private final IdempotencyService idempotencyService;
+
+    @Around("@annotation(idempotent)")
+    public Object idempotent(ProceedingJoinPoint joinPoint, Idempotent idempotent) throws Throwable {
+        String key = null;
+        if (RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes) {
+            HttpServletRequest request = attributes.getRequest();
+            key = request.getHeader(IdempotencyService.HEADER);
+        }
+        return idempotencyService.execute(idempotent.value(), key, joinPoint::proceed);
+    }
+}
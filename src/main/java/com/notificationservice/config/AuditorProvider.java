@@ -30,7 +30,11 @@ public class AuditorProvider implements AuditorAware<String> {
                 return Optional.of(userParam.trim());
             }
         }
-        // 2. Fallback: use thread-local context (for async/background jobs)
+        if (requestAttributes == null) {
+            // 2. Background jobs (dispatch workers, schedulers) have no request scope to resolve
+            return Optional.of("system");
+        }
+        // 3. Fallback: use the request-scoped user context
         return Optional.of(userContextService.getCurrentUser());
     }
 }
\ No newline at end of file
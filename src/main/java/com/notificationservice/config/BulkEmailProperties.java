@@ -0,0 +1,37 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.email.bulk")
+public class BulkEmailProperties {
+
+    /**
+     * Recipients rendered, sent over one SMTP connection and persisted together
+     */
+    private int chunkSize = 200;
+
+    /**
+     * Chunks of one job queued or running in the BULK dispatch lane at a time
+     */
+    private int parallelChunks = 2;
+
+    /**
+     * Upper limit of recipients accepted by a single bulk request
+     */
+    private int maxRecipients = 100000;
+
+    /**
+     * Minutes a finished job's progress stays queryable
+     */
+    private int jobRetentionMinutes = 60;
+
+    /**
+     * Minutes without a chunk starting or finishing after which a running job is abandoned
+     * and its encoded attachments deleted
+     */
+    private int stalledJobMinutes = 30;
+}
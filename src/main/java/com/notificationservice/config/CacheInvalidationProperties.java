@@ -0,0 +1,44 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.cache-invalidation")
+public class CacheInvalidationProperties {
+
+    /**
+     * Whether cache changes are published to and received from other nodes
+     */
+    private boolean enabled = true;
+
+    /**
+     * Postgres notification channel; a plain lower-case identifier
+     */
+    private String channel = "notification_cache";
+
+    /**
+     * How long the listener waits for notifications before checking whether it should stop,
+     * in milliseconds
+     */
+    private int pollTimeoutMs = 500;
+
+    /**
+     * Wait before reconnecting after the listening connection failed, in milliseconds
+     */
+    private long reconnectDelayMs = 5000;
+
+    /**
+     * How often the listening connection runs a query to prove it is still alive, in
+     * milliseconds; a connection that silently went away delivers no notifications and no error
+     */
+    private long healthCheckIntervalMs = 30000;
+
+    /**
+     * Socket read timeout of the listening connection, in seconds; a health check that gets no
+     * reply within it fails the connection, which then reconnects and resyncs the caches
+     */
+    private int socketTimeoutSeconds = 10;
+}
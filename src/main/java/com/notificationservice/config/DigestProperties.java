@@ -0,0 +1,37 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.digest")
+public class DigestProperties {
+
+    /**
+     * Whether template and rule digest settings are honoured; when off every message is sent on its own
+     */
+    private boolean enabled = true;
+
+    /**
+     * A digest is sent early once it holds this many messages
+     */
+    private int maxMessages = 50;
+
+    /**
+     * Upper bound for configured windows, since held messages are grouped in memory until sent
+     */
+    private int maxWindowSeconds = 3600;
+
+    /**
+     * Grace period after a window closes before each held message is sent on its own, in case
+     * its digest was never sent (e.g. the node holding it stopped)
+     */
+    private int fallbackDelaySeconds = 300;
+
+    /**
+     * Subject of digest emails without a digest template
+     */
+    private String defaultSubject = "You have {{count}} new notifications";
+}
@@ -0,0 +1,79 @@
+package com.notificationservice.config;
+
+import com.notificationservice.entity.NotificationRequest.PriorityLane;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.dispatch")
+public class DispatchProperties {
+
+    /**
+     * Whether the outbox dispatch workers poll for pending requests
+     */
+    private boolean enabled = true;
+
+    /**
+     * Identifier stamped on claimed rows (defaults to the host name)
+     */
+    private String workerId;
+
+    /**
+     * Maximum number of rows claimed per poll
+     */
+    private int batchSize = 50;
+
+    /**
+     * Delay between polls in milliseconds
+     */
+    private long pollIntervalMs = 1000;
+
+    /**
+     * Seconds a claim stays valid before another worker may reclaim the row
+     */
+    private int leaseSeconds = 300;
+
+    /**
+     * Worker budget and queue bound of each priority lane
+     */
+    private Map<PriorityLane, LaneProperties> lanes = new EnumMap<>(Map.of(
+            PriorityLane.OTP, new LaneProperties(4, 200),
+            PriorityLane.TRANSACTIONAL, new LaneProperties(4, 200),
+            PriorityLane.BULK, new LaneProperties(2, 100)));
+
+    /**
+     * Templates whose sends go to the OTP lane
+     */
+    private List<String> otpTemplates = new ArrayList<>(List.of("whatsapp-otp", "email-otp"));
+
+    /**
+     * Share of a lane per user id relative to the default weight of 1
+     */
+    private Map<String, Integer> userWeights = new HashMap<>();
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LaneProperties {
+
+        /**
+         * Threads serving the lane; lanes never borrow each other's threads
+         */
+        private int workerThreads;
+
+        /**
+         * Tasks queued in the lane before new work is refused
+         */
+        private int queueCapacity;
+    }
+}
@@ -0,0 +1,23 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.history.export")
+public class ExportProperties {
+
+    /**
+     * How long one export may stream before the request is timed out; only exports get this
+     * long, every other async request keeps the default timeout
+     */
+    private long timeoutMinutes = 60;
+
+    /**
+     * Exports streaming at the same time on this node; more are answered with 503, since each
+     * one holds a database connection for as long as it runs
+     */
+    private int maxConcurrent = 4;
+}
@@ -0,0 +1,66 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.frequency-counters")
+public class FrequencyCounterProperties {
+
+    public enum Mode {
+        /**
+         * Limits are checked against the shared counts as last read plus this node's own sends;
+         * nodes may together exceed a limit by what they send between refreshes
+         */
+        LOCAL,
+        /**
+         * Each admitted send reserves a slot of the user's budget in the database under a
+         * per-user lock, so limits hold across nodes at the cost of a round trip per check
+         */
+        RESERVE
+    }
+
+    private Mode mode = Mode.LOCAL;
+
+    /**
+     * Length of the sliding window {@code maxNotificationsPerDay} is counted over
+     */
+    private int windowMinutes = 1440;
+
+    /**
+     * Sends are counted in buckets of this many minutes; the window is exact to one bucket
+     */
+    private int bucketMinutes = 15;
+
+    /**
+     * How often this node's counts are written to the shared table, in milliseconds
+     */
+    private long flushIntervalMs = 1000;
+
+    /**
+     * Rows per statement batch of a flush
+     */
+    private int flushBatchSize = 500;
+
+    /**
+     * Shared counts of a user are read again after this many milliseconds in LOCAL mode
+     */
+    private long refreshIntervalMs = 5000;
+
+    /**
+     * Users whose shared counts are kept in memory
+     */
+    private long maxUsers = 100000;
+
+    /**
+     * Shared counts of a user not checked for this many minutes are dropped from memory
+     */
+    private long idleMinutes = 30;
+
+    /**
+     * A reservation whose send was not recorded stops counting after this many seconds
+     */
+    private long reservationTtlSeconds = 300;
+}
@@ -0,0 +1,36 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Whether the Idempotency-Key header is honoured
+     */
+    private boolean enabled = true;
+
+    /**
+     * Completed keys kept in memory; older ones are looked up in the database
+     */
+    private long cacheSize = 100000;
+
+    /**
+     * How long a key is remembered, in minutes
+     */
+    private long ttlMinutes = 1440;
+
+    /**
+     * How long a duplicate waits for the in-flight call with the same key, in seconds
+     */
+    private long inFlightWaitSeconds = 30;
+
+    /**
+     * After this many seconds an unfinished claim (e.g. of a crashed instance) can be taken over
+     */
+    private long claimTimeoutSeconds = 300;
+}
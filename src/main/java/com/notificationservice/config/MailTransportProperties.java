@@ -0,0 +1,31 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.email.pool")
+public class MailTransportProperties {
+
+    /**
+     * Maximum number of open SMTP connections kept per email sender
+     */
+    private int maxConnectionsPerSender = 4;
+
+    /**
+     * How long a send waits for a free connection before failing, in milliseconds
+     */
+    private long borrowTimeoutMs = 10000;
+
+    /**
+     * Idle connections older than this are closed, in seconds
+     */
+    private int maxIdleSeconds = 60;
+
+    /**
+     * Connections idle for longer than this are checked with NOOP before reuse, in seconds
+     */
+    private int validateAfterIdleSeconds = 10;
+}
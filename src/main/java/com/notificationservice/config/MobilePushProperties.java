@@ -0,0 +1,43 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.mobile.push")
+public class MobilePushProperties {
+
+    /**
+     * Whether clients can hold WebSocket/SSE push connections
+     */
+    private boolean enabled = true;
+
+    /**
+     * WebSocket endpoint; clients connect with ?networkId=...&clientId=...
+     */
+    private String websocketPath = "/ws/mobile";
+
+    /**
+     * Browser origins allowed to open the WebSocket besides the service's own; clients that
+     * send no Origin header (native apps) are not affected
+     */
+    private String[] allowedOriginPatterns = {};
+
+    /**
+     * Messages buffered per connection; when full the oldest queued message is dropped
+     */
+    private int queueCapacity = 64;
+
+    /**
+     * Messages dropped since the client last caught up with its queue after which the
+     * connection is considered too slow and closed
+     */
+    private int maxDroppedMessages = 256;
+
+    /**
+     * SSE connection timeout in milliseconds (0 keeps the stream open until the client leaves)
+     */
+    private long sseTimeoutMs = 0;
+}
@@ -0,0 +1,41 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.partitions")
+public class PartitionProperties {
+
+    /**
+     * Whether this node creates, archives and drops monthly partitions; one node at a time does
+     */
+    private boolean enabled = true;
+
+    /**
+     * When partition maintenance runs, besides once at startup
+     */
+    private String maintenanceCron = "0 15 3 * * *";
+
+    /**
+     * Future months that always have a partition
+     */
+    private int monthsAhead = 3;
+
+    /**
+     * Past months kept online besides the current one; older months are archived and dropped
+     */
+    private int retentionMonths = 6;
+
+    /**
+     * Directory receiving one gzip-compressed NDJSON file per dropped partition
+     */
+    private String archiveDir = "archive/notifications";
+
+    /**
+     * Rows fetched per round trip while archiving a partition
+     */
+    private int archiveFetchSize = 1000;
+}
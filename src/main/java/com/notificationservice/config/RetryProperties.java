@@ -0,0 +1,56 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.retry")
+public class RetryProperties {
+
+    /**
+     * Whether failed requests are retried automatically
+     */
+    private boolean enabled = true;
+
+    /**
+     * Delivery attempts before a request is moved to the dead-letter table
+     */
+    private int maxAttempts = 5;
+
+    /**
+     * Delay before the first retry, in seconds
+     */
+    private long initialBackoffSeconds = 30;
+
+    /**
+     * Factor applied to the delay for every further attempt
+     */
+    private double backoffMultiplier = 2.0;
+
+    /**
+     * Upper bound for the retry delay, in seconds
+     */
+    private long maxBackoffSeconds = 3600;
+
+    /**
+     * Random spread applied to each delay, as a fraction of it (0.2 = +/-20%)
+     */
+    private double jitter = 0.2;
+
+    /**
+     * Delay before a send rejected by an open circuit breaker or a full bulkhead is tried again, in seconds
+     */
+    private long rejectedRetryDelaySeconds = 30;
+
+    /**
+     * Maximum number of rows moved back to the outbox per statement
+     */
+    private int batchSize = 500;
+
+    /**
+     * Delay between retry scheduler runs in milliseconds
+     */
+    private long pollIntervalMs = 15000;
+}
@@ -0,0 +1,49 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.rules")
+public class RuleProperties {
+
+    /**
+     * Users whose compiled rule sets are kept in memory
+     */
+    private long cacheSize = 100000;
+
+    /**
+     * Compiled rule sets are read again after this many seconds; changes made on other
+     * instances normally arrive sooner through cache invalidation events
+     */
+    private long cacheTtlSeconds = 3600;
+
+    /**
+     * Compiled regular expressions of content conditions kept in memory, shared across users
+     */
+    private long patternCacheSize = 10000;
+
+    /**
+     * Time the regular expressions of one content condition may take on a content; a pattern
+     * still running after it counts as not matching
+     */
+    private long patternTimeoutMs = 50;
+
+    /**
+     * Evaluations of a batch request read, preloaded and evaluated together; bounds the memory
+     * a batch holds at a time
+     */
+    private int batchChunkSize = 1000;
+
+    /**
+     * Threads evaluating batch requests; 0 uses one per available processor
+     */
+    private int batchParallelism = 0;
+
+    /**
+     * Evaluations accepted in one batch request
+     */
+    private int batchMaxEvaluations = 100000;
+}
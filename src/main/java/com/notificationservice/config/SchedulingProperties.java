@@ -0,0 +1,36 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.scheduling")
+public class SchedulingProperties {
+
+    /**
+     * Whether delayed sends are released by this node
+     */
+    private boolean enabled = true;
+
+    /**
+     * Resolution of the timing wheel in milliseconds; sends fire at most one tick early or late
+     */
+    private long tickMs = 1000;
+
+    /**
+     * Buckets per wheel level
+     */
+    private int wheelSize = 60;
+
+    /**
+     * Scheduled sends loaded into memory ahead of time, in seconds; the table is read once per slice
+     */
+    private long sliceSeconds = 600;
+
+    /**
+     * Requests released to the outbox per statement when a tick fires
+     */
+    private int releaseBatchSize = 500;
+}
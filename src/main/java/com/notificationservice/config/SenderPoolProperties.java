@@ -0,0 +1,26 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.email.pools")
+public class SenderPoolProperties {
+
+    /**
+     * Consecutive send failures after which a member is taken out of its pool
+     */
+    private int ejectAfterFailures = 3;
+
+    /**
+     * First ejection time in seconds; doubles on every further ejection of the same member
+     */
+    private int baseEjectionSeconds = 30;
+
+    /**
+     * Longest ejection in seconds
+     */
+    private int maxEjectionSeconds = 600;
+}
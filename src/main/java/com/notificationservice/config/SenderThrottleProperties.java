@@ -0,0 +1,70 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.email.throttle")
+public class SenderThrottleProperties {
+
+    /**
+     * Whether sends are paced per email sender
+     */
+    private boolean enabled = true;
+
+    /**
+     * Messages per second a sender starts at
+     */
+    private double initialRate = 5.0;
+
+    /**
+     * The rate never drops below this, so a throttled sender keeps probing
+     */
+    private double minRate = 0.2;
+
+    /**
+     * Default ceiling for the learned rate, in messages per second
+     */
+    private double maxRate = 50.0;
+
+    /**
+     * Sender name -> rate ceiling, for accounts with a known quota
+     */
+    private Map<String, Double> senderMaxRates = new HashMap<>();
+
+    /**
+     * Idle time a sender may bank as burst, in seconds of its current rate
+     */
+    private double burstSeconds = 1.0;
+
+    /**
+     * Rate added for every second's worth of successful sends
+     */
+    private double additiveIncrease = 0.5;
+
+    /**
+     * Factor the rate is multiplied by when the provider throttles
+     */
+    private double decreaseFactor = 0.5;
+
+    /**
+     * Throttling replies within this window after a decrease do not decrease again, in milliseconds
+     */
+    private long decreaseCooldownMs = 2000;
+
+    /**
+     * Longest a send waits for its turn; beyond that it is put back into the outbox, in milliseconds
+     */
+    private long maxWaitMs = 2000;
+
+    /**
+     * SMTP reply codes that mean the account is sending too fast
+     */
+    private List<Integer> throttleReplyCodes = List.of(421, 450, 451, 452);
+}
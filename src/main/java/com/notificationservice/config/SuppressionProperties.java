@@ -0,0 +1,41 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.suppressions")
+public class SuppressionProperties {
+
+    /**
+     * Whether sends to suppressed recipients are blocked
+     */
+    private boolean enabled = true;
+
+    /**
+     * Entries the Bloom filter is sized for; it is rebuilt larger when more are added
+     */
+    private long expectedEntries = 1000000;
+
+    /**
+     * Share of unsuppressed recipients the Bloom filter lets through to the exact set
+     */
+    private double falsePositiveRate = 0.01;
+
+    /**
+     * How often changes made on other nodes are read, in milliseconds
+     */
+    private long syncIntervalMs = 5000;
+
+    /**
+     * The Bloom filter is rebuilt once removed or expired keys make up this share of its size
+     */
+    private double rebuildStaleRatio = 0.2;
+
+    /**
+     * Rows per statement batch of a bulk import
+     */
+    private int importBatchSize = 1000;
+}
@@ -0,0 +1,64 @@
+package com.notificationservice.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "notification.mobile.udp")
+public class UdpBroadcastProperties {
+
+    /**
+     * Whether mobile broadcasts are transmitted over UDP
+     */
+    private boolean enabled = true;
+
+    /**
+     * Local port the sending channel binds to (0 picks an ephemeral port)
+     */
+    private int bindPort = 0;
+
+    /**
+     * Port used for clients that register without one
+     */
+    private int defaultClientPort = 8888;
+
+    /**
+     * Hosts a client may register for datagrams other than its own address. Without an
+     * entry here datagrams only go to the address the registration came from, so the
+     * endpoint cannot be used to aim traffic at third parties.
+     */
+    private List<String> allowedClientHosts = new ArrayList<>();
+
+    /**
+     * Maximum datagram size including the frame header, in bytes; larger messages are chunked
+     */
+    private int maxDatagramSize = 1400;
+
+    /**
+     * Maximum number of chunks a single message may be split into
+     */
+    private int maxChunks = 256;
+
+    /**
+     * How long a send waits for socket buffer space before the datagram is dropped, in milliseconds
+     */
+    private long sendTimeoutMs = 2000;
+
+    /**
+     * Time-to-live of multicast datagrams (1 keeps them on the local network)
+     */
+    private int multicastTtl = 1;
+
+    /**
+     * Multicast group ("address:port") per network id; such networks get one datagram per
+     * chunk instead of one per client
+     */
+    private Map<String, String> multicastGroups = new HashMap<>();
+}
@@ -0,0 +1,28 @@
+package com.notificationservice.config;
+
+import com.notificationservice.controller.MobilePushHandshakeInterceptor;
+import com.notificationservice.controller.MobilePushWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "notification.mobile.push", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class WebSocketConfig implements WebSocketConfigurer {
+
+    private final MobilePushWebSocketHandler mobilePushWebSocketHandler;
+    private final MobilePushHandshakeInterceptor mobilePushHandshakeInterceptor;
+    private final MobilePushProperties pushProperties;
+
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(mobilePushWebSocketHandler, pushProperties.getWebsocketPath())
+                .addInterceptors(mobilePushHandshakeInterceptor)
+                .setAllowedOriginPatterns(pushProperties.getAllowedOriginPatterns());
+    }
+}
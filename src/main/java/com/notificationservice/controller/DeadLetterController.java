@@ -0,0 +1,44 @@
+package com.notificationservice.controller;
+
+import com.notificationservice.dto.NotificationDeadLetterDto;
+import com.notificationservice.service.NotificationRetryService;
+import com.notificationservice.service.ProviderResilienceService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/notifications")
+@RequiredArgsConstructor
+@Slf4j
+public class DeadLetterController {
+
+    private final NotificationRetryService retryService;
+    private final ProviderResilienceService providerResilience;
+
+    @GetMapping("/dead-letters")
+    public ResponseEntity<Page<NotificationDeadLetterDto>> getDeadLetters(Pageable pageable) {
+        return ResponseEntity.ok(retryService.getDeadLetters(pageable));
+    }
+
+    @PostMapping("/dead-letters/{id}/requeue")
+    public ResponseEntity<Void> requeueDeadLetter(@PathVariable Long id) {
+        try {
+            retryService.requeue(id);
+            return ResponseEntity.accepted().build();
+        } catch (IllegalArgumentException e) {
+            log.warn("Dead letter {} not requeued: {}", id, e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @GetMapping("/providers")
+    public ResponseEntity<Map<String, Object>> getProviderStates() {
+        return ResponseEntity.ok(providerResilience.getProviderStates());
+    }
+}
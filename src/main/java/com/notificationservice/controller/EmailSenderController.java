@@ -10,6 +10,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/email-senders")
@@ -25,6 +26,16 @@ public class EmailSenderController {
         return ResponseEntity.ok(senders);
     }
 
+    @GetMapping("/pool-stats")
+    public ResponseEntity<Map<String, Object>> getConnectionPoolStats() {
+        return ResponseEntity.ok(emailSenderService.getConnectionPoolStats());
+    }
+
+    @GetMapping("/throughput")
+    public ResponseEntity<Map<String, Object>> getThroughputStats() {
+        return ResponseEntity.ok(emailSenderService.getThroughputStats());
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<EmailSenderDto> getSenderById(@PathVariable Long id) {
         return emailSenderService.getSenderById(id)
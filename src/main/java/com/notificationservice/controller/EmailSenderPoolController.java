@@ -0,0 +1,70 @@
+package com.notificationservice.controller;
+
+import com.notificationservice.dto.EmailSenderPoolDto;
+import com.notificationservice.service.SenderPoolService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/email-sender-pools")
+@RequiredArgsConstructor
+@Slf4j
+public class EmailSenderPoolController {
+
+    private final SenderPoolService senderPoolService;
+
+    @GetMapping
+    public ResponseEntity<List<EmailSenderPoolDto>> getAllPools() {
+        return ResponseEntity.ok(senderPoolService.getAllPools());
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getPoolStats() {
+        return ResponseEntity.ok(senderPoolService.getPoolStats());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<EmailSenderPoolDto> getPoolById(@PathVariable Long id) {
+        return senderPoolService.getPoolById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public ResponseEntity<EmailSenderPoolDto> createPool(@Valid @RequestBody EmailSenderPoolDto poolDto) {
+        try {
+            EmailSenderPoolDto created = senderPoolService.createPool(poolDto);
+            return ResponseEntity.status(HttpStatus.CREATED).body(created);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PutMapping("/{id}")
+    public ResponseEntity<EmailSenderPoolDto> updatePool(@PathVariable Long id,
+            @Valid @RequestBody EmailSenderPoolDto poolDto) {
+        try {
+            EmailSenderPoolDto updated = senderPoolService.updatePool(id, poolDto);
+            return ResponseEntity.ok(updated);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Void> deletePool(@PathVariable Long id) {
+        try {
+            senderPoolService.deletePool(id);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
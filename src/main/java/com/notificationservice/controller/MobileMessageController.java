@@ -1,11 +1,22 @@
 package com.notificationservice.controller;
 
+import com.notificationservice.annotation.Idempotent;
+import com.notificationservice.dto.BroadcastDeliveryDto;
+import com.notificationservice.dto.BroadcastDeliverySummaryDto;
 import com.notificationservice.dto.NotificationRequestDto;
+import com.notificationservice.entity.BroadcastDelivery;
+import com.notificationservice.service.BroadcastDeliveryService;
 import com.notificationservice.service.MobileMessageService;
+import com.notificationservice.service.MobilePushGateway;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 import java.util.Map;
@@ -17,11 +28,14 @@ import java.util.Map;
 public class MobileMessageController {
 
     private final MobileMessageService mobileMessageService;
+    private final MobilePushGateway pushGateway;
+    private final BroadcastDeliveryService deliveryService;
 
     /**
      * Broadcast message to all clients in a network
      */
     @PostMapping("/broadcast/{networkId}")
+    @Idempotent("mobile-broadcast")
     public ResponseEntity<NotificationRequestDto> broadcastMessage(
             @PathVariable String networkId,
             @RequestBody BroadcastRequest request) {
@@ -40,6 +54,7 @@ public class MobileMessageController {
      * Send message to specific client in a network
      */
     @PostMapping("/client/{networkId}/{clientId}")
+    @Idempotent("mobile-client")
     public ResponseEntity<NotificationRequestDto> sendToClient(
             @PathVariable String networkId,
             @PathVariable String clientId,
@@ -62,14 +77,23 @@ public class MobileMessageController {
     @PostMapping("/register/{networkId}")
     public ResponseEntity<Map<String, Object>> registerClient(
             @PathVariable String networkId,
-            @RequestBody ClientRegistrationRequest request) {
+            @RequestBody ClientRegistrationRequest request,
+            HttpServletRequest httpRequest) {
         try {
-            mobileMessageService.registerClient(networkId, request.getClientId(), request.getClientInfo());
+            // Datagrams go to the registering caller unless its host is on the allow-list
+            String token = mobileMessageService.registerClient(networkId, request.getClientId(),
+                    request.getClientInfo(), request.getHost(), httpRequest.getRemoteAddr(), request.getPort(),
+                    request.getToken());
             return ResponseEntity.ok(Map.of(
                     "status", "SUCCESS",
                     "message", "Client registered successfully",
                     "networkId", networkId,
-                    "clientId", request.getClientId()));
+                    "clientId", request.getClientId(),
+                    "token", token));
+        } catch (MobileMessageService.ClientTokenException e) {
+            return ResponseEntity.status(403).body(Map.of(
+                    "status", "ERROR",
+                    "message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                     "status", "ERROR",
@@ -83,14 +107,19 @@ public class MobileMessageController {
     @DeleteMapping("/unregister/{networkId}/{clientId}")
     public ResponseEntity<Map<String, Object>> unregisterClient(
             @PathVariable String networkId,
-            @PathVariable String clientId) {
+            @PathVariable String clientId,
+            @RequestHeader(value = "X-Client-Token", required = false) String token) {
         try {
-            mobileMessageService.unregisterClient(networkId, clientId);
+            mobileMessageService.unregisterClient(networkId, clientId, token);
             return ResponseEntity.ok(Map.of(
                     "status", "SUCCESS",
                     "message", "Client unregistered successfully",
                     "networkId", networkId,
                     "clientId", clientId));
+        } catch (MobileMessageService.ClientTokenException e) {
+            return ResponseEntity.status(403).body(Map.of(
+                    "status", "ERROR",
+                    "message", e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
                     "status", "ERROR",
@@ -168,6 +197,89 @@ public class MobileMessageController {
         }
     }
 
+    /**
+     * Open a server-sent event stream that receives the client's push messages; the token is
+     * the one returned at registration (a query parameter, as EventSource cannot set headers)
+     */
+    @GetMapping(value = "/stream/{networkId}/{clientId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @PathVariable String networkId,
+            @PathVariable String clientId,
+            @RequestParam(required = false) String token) {
+        if (!mobileMessageService.isClientToken(networkId, clientId, token)) {
+            return ResponseEntity.status(403).build();
+        }
+        return ResponseEntity.ok(pushGateway.connectSse(networkId, clientId));
+    }
+
+    /**
+     * Live push connections and queue health per network
+     */
+    @GetMapping("/push/stats")
+    public ResponseEntity<Map<String, Object>> getPushStats() {
+        return ResponseEntity.ok(pushGateway.getStats());
+    }
+
+    /**
+     * Delivery counts of a broadcast or direct message
+     */
+    @GetMapping("/deliveries/{requestId}")
+    public ResponseEntity<BroadcastDeliverySummaryDto> getDeliverySummary(@PathVariable Long requestId) {
+        try {
+            return ResponseEntity.ok(deliveryService.getSummary(requestId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Clients recorded with the given status (FAILED by default)
+     */
+    @GetMapping("/deliveries/{requestId}/clients")
+    public ResponseEntity<Page<BroadcastDeliveryDto>> getDeliveries(
+            @PathVariable Long requestId,
+            @RequestParam(defaultValue = "FAILED") BroadcastDelivery.DeliveryStatus status,
+            Pageable pageable) {
+        try {
+            return ResponseEntity.ok(deliveryService.getDeliveries(requestId, status, pageable));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Delivery status of a message for one client
+     */
+    @GetMapping("/deliveries/{requestId}/clients/{clientId}")
+    public ResponseEntity<BroadcastDeliveryDto> getClientDelivery(
+            @PathVariable Long requestId,
+            @PathVariable String clientId) {
+        try {
+            return ResponseEntity.ok(deliveryService.getClientStatus(requestId, clientId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    /**
+     * Acknowledge receipt of a message by a client of the network it was sent to
+     */
+    @PostMapping("/deliveries/{requestId}/clients/{clientId}/ack")
+    public ResponseEntity<Void> acknowledge(
+            @PathVariable Long requestId,
+            @PathVariable String clientId,
+            @RequestParam String networkId,
+            @RequestHeader(value = "X-Client-Token", required = false) String token) {
+        try {
+            mobileMessageService.acknowledge(requestId, networkId, clientId, token);
+            return ResponseEntity.noContent().build();
+        } catch (MobileMessageService.ClientTokenException e) {
+            return ResponseEntity.status(403).build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
     // Request classes
     public static class BroadcastRequest {
         private String content;
@@ -216,6 +328,12 @@ public class MobileMessageController {
     public static class ClientRegistrationRequest {
         private String clientId;
         private String clientInfo;
+        private String host;
+        private Integer port;
+        /**
+         * Token from the first registration; required to change an existing registration
+         */
+        private String token;
 
         // Getters and setters
         public String getClientId() {
@@ -233,5 +351,29 @@ public class MobileMessageController {
         public void setClientInfo(String clientInfo) {
             this.clientInfo = clientInfo;
         }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public Integer getPort() {
+            return port;
+        }
+
+        public void setPort(Integer port) {
+            this.port = port;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public void setToken(String token) {
+            this.token = token;
+        }
     }
 }
@@ -0,0 +1,56 @@
+package com.notificationservice.controller;
+
+import com.notificationservice.service.MobileMessageService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Map;
+
+/**
+ * Refuses the WebSocket upgrade unless {@code ?networkId=...&clientId=...&token=...} names a
+ * registered client and the token issued to it at registration. The verified ids are handed
+ * to {@link MobilePushWebSocketHandler} as session attributes.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MobilePushHandshakeInterceptor implements HandshakeInterceptor {
+
+    static final String NETWORK_ID_ATTRIBUTE = "networkId";
+    static final String CLIENT_ID_ATTRIBUTE = "clientId";
+
+    private final MobileMessageService mobileMessageService;
+
+    @Override
+    public boolean beforeHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Map<String, Object> attributes) {
+        Map<String, String> params = UriComponentsBuilder.fromUri(request.getURI()).build()
+                .getQueryParams().toSingleValueMap();
+        String networkId = params.get("networkId");
+        String clientId = params.get("clientId");
+        if (networkId == null || networkId.isBlank() || clientId == null || clientId.isBlank()) {
+            response.setStatusCode(HttpStatus.BAD_REQUEST);
+            return false;
+        }
+        if (!mobileMessageService.isClientToken(networkId, clientId, params.get("token"))) {
+            log.debug("Refused push connection of client {} in network {}: invalid token", clientId, networkId);
+            response.setStatusCode(HttpStatus.FORBIDDEN);
+            return false;
+        }
+        attributes.put(NETWORK_ID_ATTRIBUTE, networkId);
+        attributes.put(CLIENT_ID_ATTRIBUTE, clientId);
+        return true;
+    }
+
+    @Override
+    public void afterHandshake(ServerHttpRequest request, ServerHttpResponse response,
+            WebSocketHandler wsHandler, Exception exception) {
+    }
+}
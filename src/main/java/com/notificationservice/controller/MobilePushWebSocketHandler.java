@@ -0,0 +1,75 @@
+package com.notificationservice.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.service.BroadcastDeliveryService;
+import com.notificationservice.service.MobilePushGateway;
+import com.notificationservice.service.PushConnection;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+/**
+ * WebSocket endpoint for mobile clients:
+ * {@code ws://host/ws/mobile?networkId=...&clientId=...&token=...}, checked by
+ * {@link MobilePushHandshakeInterceptor} before the upgrade. The client stays registered in
+ * the push gateway for as long as the session is open and may acknowledge messages with
+ * {@code {"type":"ack","requestId":...}}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MobilePushWebSocketHandler extends TextWebSocketHandler {
+
+    private static final String CONNECTION_ATTRIBUTE = "pushConnection";
+
+    private final MobilePushGateway pushGateway;
+    private final BroadcastDeliveryService deliveryService;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        Object networkId = session.getAttributes().get(MobilePushHandshakeInterceptor.NETWORK_ID_ATTRIBUTE);
+        Object clientId = session.getAttributes().get(MobilePushHandshakeInterceptor.CLIENT_ID_ATTRIBUTE);
+        if (networkId == null || clientId == null) {
+            session.close(CloseStatus.POLICY_VIOLATION.withReason("Connection was not authorized"));
+            return;
+        }
+
+        session.getAttributes().put(CONNECTION_ATTRIBUTE, pushGateway.connect(networkId.toString(),
+                clientId.toString(), session));
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        Object connection = session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        if (!(connection instanceof PushConnection pushConnection)) {
+            return;
+        }
+        try {
+            JsonNode frame = objectMapper.readTree(message.getPayload());
+            if ("ack".equals(frame.path("type").asText()) && frame.hasNonNull("requestId")) {
+                deliveryService.acknowledge(frame.get("requestId").asLong(), pushConnection.getNetworkId(),
+                        pushConnection.getClientId());
+                return;
+            }
+        } catch (Exception e) {
+            log.debug("Invalid push message from session {}: {}", session.getId(), e.getMessage());
+            return;
+        }
+        // Anything else is treated as a keep-alive
+        log.trace("Ignoring inbound push message from session {}", session.getId());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Object connection = session.getAttributes().get(CONNECTION_ATTRIBUTE);
+        if (connection instanceof PushConnection pushConnection) {
+            pushGateway.disconnect(pushConnection);
+        }
+    }
+}
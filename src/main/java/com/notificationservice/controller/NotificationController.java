@@ -1,14 +1,26 @@
 package com.notificationservice.controller;
 
+import com.fasterxml.jackson.annotation.JsonAlias;
+import com.notificationservice.annotation.Idempotent;
+import com.notificationservice.dto.BulkEmailJobDto;
+import com.notificationservice.dto.BulkEmailRequestDto;
 import com.notificationservice.dto.NotificationRequestDto;
+import com.notificationservice.entity.NotificationRequest.NotificationChannel;
+import com.notificationservice.service.BulkEmailService;
+import com.notificationservice.service.DispatchLaneScheduler;
 import com.notificationservice.service.EmailService;
+import com.notificationservice.service.NotificationDigestService;
 import com.notificationservice.service.RuleEngineService;
+import com.notificationservice.service.ScheduledNotificationService;
 import com.notificationservice.service.WhatsAppService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,14 +30,23 @@ import java.util.Map;
 public class NotificationController {
 
     private final EmailService emailService;
+    private final BulkEmailService bulkEmailService;
     private final WhatsAppService whatsAppService;
     private final RuleEngineService ruleEngineService;
+    private final DispatchLaneScheduler laneScheduler;
+    private final ScheduledNotificationService scheduledNotificationService;
+    private final NotificationDigestService digestService;
 
     // Email endpoints
     @PostMapping("/email")
-    public ResponseEntity<NotificationRequestDto> sendEmail(@RequestBody EmailRequest request) {
+    @Idempotent("email")
+    public ResponseEntity<NotificationRequestDto> sendEmail(@RequestBody EmailRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestHeader(value = "X-User-ID", required = false) String fileUserId) {
         try {
             // Evaluate rules before sending
+            LocalDateTime sendAt = request.getSendAt();
+            RuleEngineService.RuleEvaluationResult ruleResult = null;
             String userId = extractUserId(request.getVariables());
             if (userId != null) {
                 RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
@@ -35,11 +56,30 @@ public class NotificationController {
                     log.warn("Email blocked by rule for user: {}, reason: {}", userId, result.getBlockReason());
                     return ResponseEntity.status(403).build();
                 }
+                sendAt = later(sendAt, result.getDeferUntil());
+                ruleResult = result;
+            }
 
-                // Update user stats if rules were applied
-                if (!result.getAppliedRules().isEmpty()) {
-                    ruleEngineService.updateUserStats(userId);
-                }
+            // Coalesced into a digest; scheduled sends and sends with attachments are never held
+            NotificationDigestService.DigestPolicy digest = sendAt == null && isEmpty(request.getAttachmentFileIds())
+                    ? digestService.resolvePolicy(null, ruleResult) : null;
+            if (digest != null) {
+                return ResponseEntity.accepted().body(digestService.hold(NotificationChannel.EMAIL,
+                        request.getSenderName(), request.getRecipient(), request.getSubject(), request.getContent(),
+                        request.getVariables(), digest));
+            }
+
+            // Delayed sends always go through the outbox
+            if (async || sendAt != null) {
+                return ResponseEntity.accepted().body(emailService.queueEmail(
+                        request.getSenderName(),
+                        request.getRecipient(),
+                        request.getSubject(),
+                        request.getContent(),
+                        request.getVariables(),
+                        sendAt,
+                        request.getAttachmentFileIds(),
+                        fileUserId));
             }
 
             NotificationRequestDto result = emailService.sendEmail(
@@ -47,7 +87,9 @@ public class NotificationController {
                     request.getRecipient(),
                     request.getSubject(),
                     request.getContent(),
-                    request.getVariables());
+                    request.getVariables(),
+                    request.getAttachmentFileIds(),
+                    fileUserId);
             return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
@@ -55,11 +97,16 @@ public class NotificationController {
     }
 
     @PostMapping("/email/template/{templateName}")
+    @Idempotent("email-template")
     public ResponseEntity<NotificationRequestDto> sendEmailWithTemplate(
             @PathVariable String templateName,
-            @RequestBody TemplateEmailRequest request) {
+            @RequestBody TemplateEmailRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @RequestHeader(value = "X-User-ID", required = false) String fileUserId) {
         try {
             // Evaluate rules before sending
+            LocalDateTime sendAt = request.getSendAt();
+            RuleEngineService.RuleEvaluationResult ruleResult = null;
             String userId = extractUserId(request.getVariables());
             if (userId != null) {
                 RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
@@ -70,29 +117,98 @@ public class NotificationController {
                             result.getBlockReason());
                     return ResponseEntity.status(403).build();
                 }
+                sendAt = later(sendAt, result.getDeferUntil());
+                ruleResult = result;
+            }
 
-                // Update user stats if rules were applied
-                if (!result.getAppliedRules().isEmpty()) {
-                    ruleEngineService.updateUserStats(userId);
-                }
+            // Coalesced into a digest; scheduled sends and sends with attachments are never held
+            NotificationDigestService.DigestPolicy digest = sendAt == null && isEmpty(request.getAttachmentFileIds())
+                    ? digestService.resolvePolicy(templateName, ruleResult) : null;
+            if (digest != null) {
+                return ResponseEntity.accepted().body(digestService.holdTemplate(NotificationChannel.EMAIL,
+                        request.getSenderName(), templateName, request.getRecipient(), request.getVariables(), digest));
+            }
+
+            // Delayed sends always go through the outbox
+            if (async || sendAt != null) {
+                return ResponseEntity.accepted().body(emailService.queueEmailWithTemplate(
+                        request.getSenderName(),
+                        templateName,
+                        request.getRecipient(),
+                        request.getVariables(),
+                        sendAt,
+                        request.getAttachmentFileIds(),
+                        fileUserId));
             }
 
             NotificationRequestDto result = emailService.sendEmailWithTemplate(
                     request.getSenderName(),
                     templateName,
                     request.getRecipient(),
-                    request.getVariables());
+                    request.getVariables(),
+                    request.getAttachmentFileIds(),
+                    fileUserId);
             return ResponseEntity.ok(result);
         } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().build();
         }
     }
 
+    @PostMapping("/email/bulk")
+    @Idempotent("email-bulk")
+    public ResponseEntity<BulkEmailJobDto> sendBulkEmail(@Valid @RequestBody BulkEmailRequestDto request,
+            @RequestHeader(value = "X-User-ID", required = false) String fileUserId) {
+        try {
+            return ResponseEntity.accepted().body(bulkEmailService.submit(request, fileUserId));
+        } catch (IllegalArgumentException e) {
+            log.warn("Bulk email rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            log.warn("Bulk email not accepted: {}", e.getMessage());
+            return ResponseEntity.status(503).build();
+        }
+    }
+
+    @GetMapping("/email/bulk/{jobId}")
+    public ResponseEntity<BulkEmailJobDto> getBulkEmailJob(@PathVariable String jobId) {
+        return bulkEmailService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Queue depth and wait times of the dispatch lanes
+     */
+    @GetMapping("/lanes")
+    public ResponseEntity<Map<String, Object>> getLaneStats() {
+        return ResponseEntity.ok(laneScheduler.getLaneStats());
+    }
+
+    /**
+     * Scheduled sends held in memory on this node
+     */
+    @GetMapping("/scheduled")
+    public ResponseEntity<Map<String, Object>> getScheduledStats() {
+        return ResponseEntity.ok(scheduledNotificationService.getStats());
+    }
+
+    /**
+     * Open digests and how many messages were coalesced
+     */
+    @GetMapping("/digests")
+    public ResponseEntity<Map<String, Object>> getDigestStats() {
+        return ResponseEntity.ok(digestService.getStats());
+    }
+
     // WhatsApp endpoints
     @PostMapping("/whatsapp")
-    public ResponseEntity<NotificationRequestDto> sendWhatsApp(@RequestBody WhatsAppRequest request) {
+    @Idempotent("whatsapp")
+    public ResponseEntity<NotificationRequestDto> sendWhatsApp(@RequestBody WhatsAppRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
         try {
             // Evaluate rules before sending
+            LocalDateTime sendAt = request.getSendAt();
+            RuleEngineService.RuleEvaluationResult ruleResult = null;
             String userId = extractUserId(request.getVariables());
             if (userId != null) {
                 RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
@@ -102,11 +218,25 @@ public class NotificationController {
                     log.warn("WhatsApp blocked by rule for user: {}, reason: {}", userId, result.getBlockReason());
                     return ResponseEntity.status(403).build();
                 }
+                sendAt = later(sendAt, result.getDeferUntil());
+                ruleResult = result;
+            }
 
-                // Update user stats if rules were applied
-                if (!result.getAppliedRules().isEmpty()) {
-                    ruleEngineService.updateUserStats(userId);
-                }
+            // Coalesced into a digest; scheduled sends are never held
+            NotificationDigestService.DigestPolicy digest = sendAt == null
+                    ? digestService.resolvePolicy(null, ruleResult) : null;
+            if (digest != null) {
+                return ResponseEntity.accepted().body(digestService.hold(NotificationChannel.WHATSAPP, null,
+                        request.getToNumber(), null, request.getContent(), request.getVariables(), digest));
+            }
+
+            // Delayed sends always go through the outbox
+            if (async || sendAt != null) {
+                return ResponseEntity.accepted().body(whatsAppService.queueWhatsAppMessage(
+                        request.getToNumber(),
+                        request.getContent(),
+                        request.getVariables(),
+                        sendAt));
             }
 
             NotificationRequestDto result = whatsAppService.sendWhatsAppMessage(
@@ -120,11 +250,15 @@ public class NotificationController {
     }
 
     @PostMapping("/whatsapp/template/{templateName}")
+    @Idempotent("whatsapp-template")
     public ResponseEntity<NotificationRequestDto> sendWhatsAppWithTemplate(
             @PathVariable String templateName,
-            @RequestBody TemplateWhatsAppRequest request) {
+            @RequestBody TemplateWhatsAppRequest request,
+            @RequestParam(value = "async", defaultValue = "false") boolean async) {
         try {
             // Evaluate rules before sending
+            LocalDateTime sendAt = request.getSendAt();
+            RuleEngineService.RuleEvaluationResult ruleResult = null;
             String userId = extractUserId(request.getVariables());
             if (userId != null) {
                 RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
@@ -135,11 +269,25 @@ public class NotificationController {
                             result.getBlockReason());
                     return ResponseEntity.status(403).build();
                 }
+                sendAt = later(sendAt, result.getDeferUntil());
+                ruleResult = result;
+            }
 
-                // Update user stats if rules were applied
-                if (!result.getAppliedRules().isEmpty()) {
-                    ruleEngineService.updateUserStats(userId);
-                }
+            // Coalesced into a digest; scheduled sends are never held
+            NotificationDigestService.DigestPolicy digest = sendAt == null
+                    ? digestService.resolvePolicy(templateName, ruleResult) : null;
+            if (digest != null) {
+                return ResponseEntity.accepted().body(digestService.holdTemplate(NotificationChannel.WHATSAPP, null,
+                        templateName, request.getToNumber(), request.getVariables(), digest));
+            }
+
+            // Delayed sends always go through the outbox
+            if (async || sendAt != null) {
+                return ResponseEntity.accepted().body(whatsAppService.queueWhatsAppWithTemplate(
+                        templateName,
+                        request.getToNumber(),
+                        request.getVariables(),
+                        sendAt));
             }
 
             NotificationRequestDto result = whatsAppService.sendWhatsAppWithTemplate(
@@ -152,6 +300,17 @@ public class NotificationController {
         }
     }
 
+    private static LocalDateTime later(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+        return second != null && second.isAfter(first) ? second : first;
+    }
+
+    private static boolean isEmpty(List<Long> ids) {
+        return ids == null || ids.isEmpty();
+    }
+
     /**
      * Extract user ID from variables or use recipient as fallback
      */
@@ -169,6 +328,10 @@ public class NotificationController {
         private String subject;
         private String content;
         private Map<String, Object> variables;
+        @JsonAlias("notBefore")
+        private LocalDateTime sendAt;
+        // Stored files, readable by the X-User-ID caller
+        private List<Long> attachmentFileIds;
 
         // Getters and setters
         public String getSenderName() {
@@ -210,12 +373,32 @@ public class NotificationController {
         public void setVariables(Map<String, Object> variables) {
             this.variables = variables;
         }
+
+        public LocalDateTime getSendAt() {
+            return sendAt;
+        }
+
+        public void setSendAt(LocalDateTime sendAt) {
+            this.sendAt = sendAt;
+        }
+
+        public List<Long> getAttachmentFileIds() {
+            return attachmentFileIds;
+        }
+
+        public void setAttachmentFileIds(List<Long> attachmentFileIds) {
+            this.attachmentFileIds = attachmentFileIds;
+        }
     }
 
     public static class TemplateEmailRequest {
         private String senderName;
         private String recipient;
         private Map<String, Object> variables;
+        @JsonAlias("notBefore")
+        private LocalDateTime sendAt;
+        // Stored files, readable by the X-User-ID caller
+        private List<Long> attachmentFileIds;
 
         // Getters and setters
         public String getSenderName() {
@@ -241,12 +424,30 @@ public class NotificationController {
         public void setVariables(Map<String, Object> variables) {
             this.variables = variables;
         }
+
+        public LocalDateTime getSendAt() {
+            return sendAt;
+        }
+
+        public void setSendAt(LocalDateTime sendAt) {
+            this.sendAt = sendAt;
+        }
+
+        public List<Long> getAttachmentFileIds() {
+            return attachmentFileIds;
+        }
+
+        public void setAttachmentFileIds(List<Long> attachmentFileIds) {
+            this.attachmentFileIds = attachmentFileIds;
+        }
     }
 
     public static class WhatsAppRequest {
         private String toNumber;
         private String content;
         private Map<String, Object> variables;
+        @JsonAlias("notBefore")
+        private LocalDateTime sendAt;
 
         // Getters and setters
         public String getToNumber() {
@@ -272,11 +473,21 @@ public class NotificationController {
         public void setVariables(Map<String, Object> variables) {
             this.variables = variables;
         }
+
+        public LocalDateTime getSendAt() {
+            return sendAt;
+        }
+
+        public void setSendAt(LocalDateTime sendAt) {
+            this.sendAt = sendAt;
+        }
     }
 
     public static class TemplateWhatsAppRequest {
         private String toNumber;
         private Map<String, Object> variables;
+        @JsonAlias("notBefore")
+        private LocalDateTime sendAt;
 
         // Getters and setters
         public String getToNumber() {
@@ -294,5 +505,13 @@ public class NotificationController {
         public void setVariables(Map<String, Object> variables) {
             this.variables = variables;
         }
+
+        public LocalDateTime getSendAt() {
+            return sendAt;
+        }
+
+        public void setSendAt(LocalDateTime sendAt) {
+            this.sendAt = sendAt;
+        }
     }
 }
\ No newline at end of file
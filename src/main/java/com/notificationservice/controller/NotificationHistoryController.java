@@ -0,0 +1,139 @@
+package com.notificationservice.controller;
+
+import com.notificationservice.config.ExportProperties;
+import com.notificationservice.dto.NotificationHistoryPageDto;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.service.NotificationExportService;
+import com.notificationservice.service.NotificationHistoryService;
+import com.notificationservice.service.NotificationPartitionService;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+@RestController
+@RequestMapping("/api/notifications/history")
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationHistoryController {
+
+    private final NotificationHistoryService historyService;
+    private final NotificationPartitionService partitionService;
+    private final NotificationExportService exportService;
+    private final ExportProperties exportProperties;
+
+    /**
+     * Requests sent to one recipient, newest first
+     */
+    @GetMapping("/recipient/{recipient}")
+    public ResponseEntity<NotificationHistoryPageDto> getRecipientHistory(@PathVariable String recipient,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "includeContent", defaultValue = "false") boolean includeContent) {
+        try {
+            return ResponseEntity.ok(historyService.getRecipientHistory(recipient, cursor, limit, includeContent));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Requests in one status, newest first
+     */
+    @GetMapping("/status/{status}")
+    public ResponseEntity<NotificationHistoryPageDto> getStatusHistory(@PathVariable String status,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "includeContent", defaultValue = "false") boolean includeContent) {
+        try {
+            NotificationRequest.NotificationStatus notificationStatus =
+                    NotificationRequest.NotificationStatus.valueOf(status.toUpperCase());
+            return ResponseEntity.ok(historyService.getStatusHistory(notificationStatus, cursor, limit,
+                    includeContent));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Monthly partitions kept online, with their sizes
+     */
+    @GetMapping("/partitions")
+    public ResponseEntity<Map<String, Object>> getPartitions() {
+        return ResponseEntity.ok(partitionService.getStats());
+    }
+
+    /**
+     * Stream every request created in [from, to) as NDJSON or CSV, optionally gzip-compressed.
+     * Runs as an async task with the export timeout, rather than the default one every other
+     * async request keeps.
+     */
+    @GetMapping("/export")
+    public WebAsyncTask<Void> export(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "status", required = false) String status,
+            @RequestParam(value = "recipient", required = false) String recipient,
+            @RequestParam(value = "format", defaultValue = "ndjson") String format,
+            @RequestParam(value = "includeContent", defaultValue = "false") boolean includeContent,
+            @RequestParam(value = "gzip", defaultValue = "false") boolean gzip,
+            HttpServletResponse response) throws IOException {
+        NotificationExportService.ExportQuery query;
+        NotificationExportService.Format exportFormat;
+        try {
+            query = new NotificationExportService.ExportQuery(from, to,
+                    status != null ? NotificationRequest.NotificationStatus.valueOf(status.toUpperCase()) : null,
+                    recipient, includeContent);
+            exportFormat = NotificationExportService.Format.valueOf(format.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return null;
+        }
+        if (!exportService.tryBeginExport()) {
+            response.setHeader(HttpHeaders.RETRY_AFTER, "60");
+            response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "Too many exports running");
+            return null;
+        }
+
+        String filename = "notifications." + exportFormat.name().toLowerCase();
+        response.setContentType(exportFormat == NotificationExportService.Format.CSV
+                ? "text/csv"
+                : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"");
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        WebAsyncTask<Void> task = new WebAsyncTask<>(TimeUnit.MINUTES.toMillis(exportProperties.getTimeoutMinutes()),
+                () -> {
+                    try {
+                        OutputStream out = response.getOutputStream();
+                        OutputStream target = gzip ? new GZIPOutputStream(out, 65536) : out;
+                        exportService.export(query, exportFormat, target);
+                        if (target instanceof GZIPOutputStream gzipStream) {
+                            gzipStream.finish();
+                        }
+                        return null;
+                    } finally {
+                        exportService.endExport();
+                    }
+                });
+        task.onTimeout(() -> {
+            log.warn("Export from {} timed out after {} minutes", from, exportProperties.getTimeoutMinutes());
+            return null;
+        });
+        return task;
+    }
+}
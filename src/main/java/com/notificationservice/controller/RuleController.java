@@ -1,16 +1,24 @@
 package com.notificationservice.controller;
 
+import com.notificationservice.dto.FrequencyUsageDto;
 import com.notificationservice.dto.NotificationRuleDto;
 import com.notificationservice.entity.NotificationRule;
+import com.notificationservice.service.FrequencyCounterService;
+import com.notificationservice.service.RuleBatchEvaluationService;
 import com.notificationservice.service.RuleEngineService;
 import com.notificationservice.service.RuleManagementService;
+import com.notificationservice.service.RuleSetCache;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 
@@ -22,6 +30,9 @@ public class RuleController {
 
     private final RuleManagementService ruleManagementService;
     private final RuleEngineService ruleEngineService;
+    private final RuleSetCache ruleSetCache;
+    private final FrequencyCounterService frequencyCounterService;
+    private final RuleBatchEvaluationService batchEvaluationService;
 
     // Rule Management Endpoints
 
@@ -189,6 +200,50 @@ public class RuleController {
 
     // Rule Engine Endpoints
 
+    /**
+     * Compiled rule set cache statistics
+     */
+    @GetMapping("/engine/stats")
+    public ResponseEntity<Map<String, Object>> getEngineStats() {
+        return ResponseEntity.ok(ruleSetCache.getStats());
+    }
+
+    /**
+     * Frequency counter statistics of this node
+     */
+    @GetMapping("/engine/frequency")
+    public ResponseEntity<Map<String, Object>> getFrequencyStats() {
+        return ResponseEntity.ok(frequencyCounterService.getStats());
+    }
+
+    /**
+     * Sends of a user counted against frequency limits
+     */
+    @GetMapping("/engine/frequency/{userId}")
+    public ResponseEntity<FrequencyUsageDto> getFrequencyUsage(@PathVariable String userId) {
+        return ResponseEntity.ok(frequencyCounterService.getUsage(userId));
+    }
+
+    /**
+     * Evaluate rules for many users: the body is a JSON array or NDJSON of {userId, content,
+     * variables}, the response one NDJSON result per item in input order, streamed as it goes
+     */
+    @PostMapping("/evaluate/batch")
+    public ResponseEntity<StreamingResponseBody> evaluateRulesBatch(HttpServletRequest request) {
+        StreamingResponseBody body = out -> batchEvaluationService.evaluate(request.getInputStream(), out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/x-ndjson"))
+                .body(body);
+    }
+
+    /**
+     * Batch rule evaluation statistics
+     */
+    @GetMapping("/evaluate/batch/stats")
+    public ResponseEntity<Map<String, Object>> getBatchEvaluationStats() {
+        return ResponseEntity.ok(batchEvaluationService.getStats());
+    }
+
     /**
      * Evaluate rules for a user
      */
@@ -197,7 +252,7 @@ public class RuleController {
             @PathVariable String userId,
             @RequestBody RuleEvaluationRequest request) {
         try {
-            RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
+            RuleEngineService.RuleEvaluationResult result = ruleEngineService.previewRules(
                     userId,
                     request.getContent(),
                     request.getVariables());
@@ -206,6 +261,7 @@ public class RuleController {
             response.setBlocked(result.isBlocked());
             response.setBlockReason(result.getBlockReason());
             response.setAppliedRules(result.getAppliedRules());
+            response.setDeferUntil(result.getDeferUntil());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -220,7 +276,7 @@ public class RuleController {
     @PostMapping("/test-evaluation")
     public ResponseEntity<RuleEvaluationResponse> testRuleEvaluation(@RequestBody TestEvaluationRequest request) {
         try {
-            RuleEngineService.RuleEvaluationResult result = ruleEngineService.evaluateRules(
+            RuleEngineService.RuleEvaluationResult result = ruleEngineService.previewRules(
                     request.getUserId(),
                     request.getContent(),
                     request.getVariables());
@@ -229,6 +285,7 @@ public class RuleController {
             response.setBlocked(result.isBlocked());
             response.setBlockReason(result.getBlockReason());
             response.setAppliedRules(result.getAppliedRules());
+            response.setDeferUntil(result.getDeferUntil());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -309,6 +366,7 @@ public class RuleController {
         private boolean blocked;
         private String blockReason;
         private List<NotificationRuleDto> appliedRules;
+        private LocalDateTime deferUntil;
 
         // Getters and setters
         public boolean isBlocked() {
@@ -334,5 +392,13 @@ public class RuleController {
         public void setAppliedRules(List<NotificationRuleDto> appliedRules) {
             this.appliedRules = appliedRules;
         }
+
+        public LocalDateTime getDeferUntil() {
+            return deferUntil;
+        }
+
+        public void setDeferUntil(LocalDateTime deferUntil) {
+            this.deferUntil = deferUntil;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,66 @@
+package com.notificationservice.controller;
+
+import com.notificationservice.dto.SuppressionDto;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.service.SuppressionService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/suppressions")
+@RequiredArgsConstructor
+@Slf4j
+public class SuppressionController {
+
+    private final SuppressionService suppressionService;
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> getStats() {
+        return ResponseEntity.ok(suppressionService.getStats());
+    }
+
+    @GetMapping("/{channel}/{recipient}")
+    public ResponseEntity<SuppressionDto> getSuppression(@PathVariable NotificationRequest.NotificationChannel channel,
+            @PathVariable String recipient) {
+        return suppressionService.getSuppression(channel, recipient)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @PostMapping
+    public ResponseEntity<SuppressionDto> addSuppression(@Valid @RequestBody SuppressionDto suppression) {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(suppressionService.addSuppression(suppression));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> importSuppressions(@RequestBody List<SuppressionDto> suppressions) {
+        try {
+            return ResponseEntity.ok(Map.of("imported", suppressionService.importSuppressions(suppressions)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Suppression import rejected: {}", e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{channel}/{recipient}")
+    public ResponseEntity<Void> removeSuppression(@PathVariable NotificationRequest.NotificationChannel channel,
+            @PathVariable String recipient) {
+        try {
+            suppressionService.removeSuppression(channel, recipient);
+            return ResponseEntity.noContent().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
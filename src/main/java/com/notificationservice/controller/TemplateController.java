@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/templates")
@@ -90,4 +91,14 @@ public class TemplateController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @PostMapping("/{name}/missing-variables")
+    public ResponseEntity<Set<String>> findMissingVariables(@PathVariable String name,
+            @RequestBody Map<String, Object> variables) {
+        try {
+            return ResponseEntity.ok(templateService.findMissingVariables(name, variables));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.notificationservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastDeliveryDto {
+
+    private Long requestId;
+
+    private String clientId;
+
+    /**
+     * FAILED or ACKED from the ledger; otherwise derived from the request (SENT, PENDING, FAILED)
+     */
+    private String status;
+
+    private String error;
+
+    private LocalDateTime recordedAt;
+}
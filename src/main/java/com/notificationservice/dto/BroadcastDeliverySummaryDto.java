@@ -0,0 +1,25 @@
+package com.notificationservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastDeliverySummaryDto {
+
+    private Long requestId;
+
+    private String recipient;
+
+    private String status;
+
+    private long recipients;
+
+    private long delivered;
+
+    private long failed;
+
+    private long acked;
+}
@@ -0,0 +1,39 @@
+package com.notificationservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BulkEmailJobDto {
+
+    private String jobId;
+
+    private String status;
+
+    private String senderName;
+
+    private String templateName;
+
+    private int total;
+
+    private int sent;
+
+    private int failed;
+
+    private int deferred;
+
+    private int pending;
+
+    private String errorMessage;
+
+    private LocalDateTime submittedAt;
+
+    private LocalDateTime completedAt;
+}
@@ -0,0 +1,48 @@
+package com.notificationservice.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkEmailRequestDto {
+
+    @NotBlank(message = "Sender name is required")
+    private String senderName;
+
+    // Either a stored template or raw subject/content
+    private String templateName;
+
+    private String subject;
+
+    private String content;
+
+    // Variables shared by every recipient; per-recipient variables override them
+    private Map<String, Object> variables;
+
+    // Stored files attached to every message, readable by the X-User-ID caller
+    private List<Long> attachmentFileIds;
+
+    @NotEmpty(message = "At least one recipient is required")
+    @Valid
+    private List<Recipient> recipients;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Recipient {
+
+        @NotBlank(message = "Recipient is required")
+        private String recipient;
+
+        private Map<String, Object> variables;
+    }
+}
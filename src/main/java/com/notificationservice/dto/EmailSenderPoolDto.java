@@ -0,0 +1,49 @@
+package com.notificationservice.dto;
+
+import com.notificationservice.entity.EmailSenderPool;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Builder;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+@Builder
+public class EmailSenderPoolDto extends BaseAuditableDto {
+
+    private Long id;
+
+    @NotBlank(message = "Pool name is required")
+    private String name;
+
+    @Builder.Default
+    private EmailSenderPool.BalancingStrategy strategy = EmailSenderPool.BalancingStrategy.WEIGHTED_ROUND_ROBIN;
+
+    @NotEmpty(message = "A pool needs at least one member")
+    @Valid
+    private List<Member> members;
+
+    @Builder.Default
+    private Boolean isActive = true;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Member {
+
+        @NotBlank(message = "Member sender name is required")
+        private String senderName;
+
+        @Min(value = 1, message = "Weight must be greater than 0")
+        private Integer weight = 1;
+    }
+}
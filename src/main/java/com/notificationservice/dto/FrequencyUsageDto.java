@@ -0,0 +1,23 @@
+package com.notificationservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sends of a user within the frequency window, reservations included
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FrequencyUsageDto {
+
+    private String userId;
+
+    private long count;
+
+    // Latest send or reservation; null when there was none in the window
+    private LocalDateTime lastSentAt;
+}
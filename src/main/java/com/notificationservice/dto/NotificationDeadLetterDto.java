@@ -0,0 +1,29 @@
+package com.notificationservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationDeadLetterDto {
+
+    private Long id;
+
+    private Long requestId;
+
+    private String channel;
+
+    private String recipient;
+
+    private Integer attemptCount;
+
+    private String lastError;
+
+    private LocalDateTime requeuedAt;
+
+    private LocalDateTime createdAt;
+}
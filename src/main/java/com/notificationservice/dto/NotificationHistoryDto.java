@@ -0,0 +1,47 @@
+package com.notificationservice.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class NotificationHistoryDto {
+
+    private Long id;
+
+    private String channel;
+
+    private String status;
+
+    private String priorityLane;
+
+    private String recipient;
+
+    private String subject;
+
+    private Long senderId;
+
+    private Long templateId;
+
+    private String userId;
+
+    private Integer attemptCount;
+
+    private LocalDateTime sentAt;
+
+    private LocalDateTime createdAt;
+
+    // Only filled when the caller asks for the message bodies
+    private String content;
+
+    private JsonNode variables;
+}
@@ -0,0 +1,18 @@
+package com.notificationservice.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NotificationHistoryPageDto {
+
+    private List<NotificationHistoryDto> items;
+
+    // Pass back as cursor for the next page; null on the last page
+    private String nextCursor;
+}
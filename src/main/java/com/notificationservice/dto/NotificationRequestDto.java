@@ -36,4 +36,6 @@ public class NotificationRequestDto extends BaseAuditableDto {
     private String status;
 
     private String errorMessage;
+
+    private Long digestRequestId;
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.notificationservice.entity.NotificationTemplate;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
@@ -33,4 +34,14 @@ public class NotificationTemplateDto extends BaseAuditableDto {
     private JsonNode variables;
 
     private Boolean isActive = true;
+
+    /**
+     * Merge sends to the same recipient within this many seconds into one digest
+     */
+    @Positive(message = "Digest window must be positive")
+    private Integer digestWindowSeconds;
+
+    private String digestTemplate;
+
+    private String digestKey;
 }
\ No newline at end of file
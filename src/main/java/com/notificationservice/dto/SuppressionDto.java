@@ -0,0 +1,36 @@
+package com.notificationservice.dto;
+
+import com.notificationservice.entity.NotificationRequest;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuppressionDto {
+
+    public enum Reason {
+        BOUNCED, COMPLAINED, UNSUBSCRIBED, MANUAL
+    }
+
+    @NotNull(message = "Channel is required")
+    private NotificationRequest.NotificationChannel channel;
+
+    @NotBlank(message = "Recipient is required")
+    private String recipient;
+
+    @NotNull(message = "Reason is required")
+    private Reason reason;
+
+    // Never expires when null
+    private LocalDateTime expiresAt;
+
+    private LocalDateTime changedAt;
+
+    private String createdBy;
+}
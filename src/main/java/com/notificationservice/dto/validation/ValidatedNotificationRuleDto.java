@@ -84,7 +84,7 @@ public class ValidatedNotificationRuleDto {
     // Action settings
     @NotBlank(message = "Action type is required")
     @Size(max = 100, message = "Action type cannot exceed 100 characters")
-    @Pattern(regexp = "^(SEND_NOTIFICATION|BLOCK|MODIFY)$", message = "Action type must be one of: SEND_NOTIFICATION, BLOCK, MODIFY")
+    @Pattern(regexp = "^(SEND_NOTIFICATION|BLOCK|DEFER|DIGEST|MODIFY)$", message = "Action type must be one of: SEND_NOTIFICATION, BLOCK, DEFER, DIGEST, MODIFY")
     private String actionType = "SEND_NOTIFICATION";
 
     private JsonNode actionConfig;
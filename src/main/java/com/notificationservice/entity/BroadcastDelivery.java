@@ -0,0 +1,44 @@
+package com.notificationservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ledger row for one client of a mobile message. Written in bulk for failures and
+ * upserted on acknowledgement, so it carries no audit columns.
+ */
+@Entity
+@Table(name = "broadcast_deliveries")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastDelivery {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "request_id", nullable = false)
+    private Long requestId;
+
+    @Column(name = "client_id", nullable = false)
+    private String clientId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private DeliveryStatus status;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "recorded_at", nullable = false)
+    private LocalDateTime recordedAt;
+
+    public enum DeliveryStatus {
+        FAILED, ACKED
+    }
+}
@@ -0,0 +1,55 @@
+package com.notificationservice.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Entity
+@Table(name = "email_sender_pools")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class EmailSenderPool extends BaseAuditableEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "name", nullable = false, unique = true)
+    private String name;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "strategy", nullable = false, length = 30)
+    private BalancingStrategy strategy = BalancingStrategy.WEIGHTED_ROUND_ROBIN;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "email_sender_pool_members", joinColumns = @JoinColumn(name = "pool_id"))
+    private List<Member> members = new ArrayList<>();
+
+    @Column(name = "is_active")
+    private Boolean isActive = true;
+
+    public enum BalancingStrategy {
+        WEIGHTED_ROUND_ROBIN, // Smooth weighted round robin over healthy members
+        LEAST_OUTSTANDING // Member with the fewest in-flight sends per unit of weight
+    }
+
+    @Embeddable
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Member {
+
+        @Column(name = "sender_id", nullable = false)
+        private Long senderId;
+
+        @Column(name = "weight", nullable = false)
+        private Integer weight = 1;
+    }
+}
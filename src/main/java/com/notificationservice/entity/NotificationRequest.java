@@ -19,8 +19,16 @@ import java.time.LocalDateTime;
 @EqualsAndHashCode(callSuper = true)
 public class NotificationRequest extends BaseAuditableEntity {
 
+    /**
+     * Ids handed out per sequence call, for requests and responses alike; must match the
+     * increment of their sequences (V8 migration)
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_requests_seq")
+    @SequenceGenerator(name = "notification_requests_seq", sequenceName = "notification_requests_id_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -31,6 +39,12 @@ public class NotificationRequest extends BaseAuditableEntity {
     @JoinColumn(name = "sender_id")
     private EmailSender sender;
 
+    /**
+     * Pool the sender was picked from; the member is picked again on every attempt
+     */
+    @Column(name = "sender_pool_id")
+    private Long senderPoolId;
+
     @Column(name = "recipient", nullable = false)
     private String recipient;
 
@@ -54,7 +68,55 @@ public class NotificationRequest extends BaseAuditableEntity {
     @Column(name = "sent_at")
     private LocalDateTime sentAt;
 
+    // Outbox dispatch state
+    @Enumerated(EnumType.STRING)
+    @Column(name = "channel", length = 20)
+    private NotificationChannel channel;
+
+    @Column(name = "attempt_count", nullable = false)
+    private Integer attemptCount = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "priority_lane", nullable = false, length = 20)
+    private PriorityLane priorityLane = PriorityLane.TRANSACTIONAL;
+
+    @Column(name = "user_id", length = 100)
+    private String userId;
+
+    /**
+     * Comma-separated ids of stored files attached to the email
+     */
+    @Column(name = "attachment_file_ids", length = 1000)
+    private String attachmentFileIds;
+
+    /**
+     * Digest request that delivered this message, once it is {@link NotificationStatus#DIGESTED}
+     */
+    @Column(name = "digest_request_id")
+    private Long digestRequestId;
+
     public enum NotificationStatus {
-        PENDING, SENT, FAILED
+        SCHEDULED, PENDING, PROCESSING, SENT, FAILED,
+        /**
+         * Held for a digest and delivered as part of it, never sent on its own
+         */
+        DIGESTED
+    }
+
+    public enum PriorityLane {
+        OTP, TRANSACTIONAL, BULK
+    }
+
+    public enum NotificationChannel {
+        EMAIL, WHATSAPP
     }
 }
\ No newline at end of file
@@ -17,7 +17,9 @@ import lombok.EqualsAndHashCode;
 public class NotificationResponse extends BaseAuditableEntity {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "notification_responses_seq")
+    @SequenceGenerator(name = "notification_responses_seq", sequenceName = "notification_responses_id_seq",
+            allocationSize = NotificationRequest.ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
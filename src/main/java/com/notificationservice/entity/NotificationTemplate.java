@@ -42,6 +42,15 @@ public class NotificationTemplate extends BaseAuditableEntity {
     @Column(name = "is_active")
     private Boolean isActive = true;
 
+    @Column(name = "digest_window_seconds")
+    private Integer digestWindowSeconds;
+
+    @Column(name = "digest_template")
+    private String digestTemplate;
+
+    @Column(name = "digest_key", length = 100)
+    private String digestKey;
+
     public enum NotificationType {
         EMAIL, WHATSAPP
     }
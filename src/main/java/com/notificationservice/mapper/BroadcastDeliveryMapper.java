@@ -0,0 +1,18 @@
+package com.notificationservice.mapper;
+
+import com.notificationservice.dto.BroadcastDeliveryDto;
+import com.notificationservice.entity.BroadcastDelivery;
+
+public class BroadcastDeliveryMapper {
+    public static BroadcastDeliveryDto toDto(BroadcastDelivery delivery) {
+        if (delivery == null)
+            return null;
+        BroadcastDeliveryDto dto = new BroadcastDeliveryDto();
+        dto.setRequestId(delivery.getRequestId());
+        dto.setClientId(delivery.getClientId());
+        dto.setStatus(delivery.getStatus() != null ? delivery.getStatus().name() : null);
+        dto.setError(delivery.getError());
+        dto.setRecordedAt(delivery.getRecordedAt());
+        return dto;
+    }
+}
@@ -0,0 +1,32 @@
+package com.notificationservice.mapper;
+
+import com.notificationservice.dto.EmailSenderPoolDto;
+import com.notificationservice.entity.EmailSenderPool;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class EmailSenderPoolMapper {
+
+    /**
+     * Members are shown by sender name; {@code senderNames} maps sender ids to names
+     */
+    public static EmailSenderPoolDto toDto(EmailSenderPool pool, Map<Long, String> senderNames) {
+        if (pool == null)
+            return null;
+        EmailSenderPoolDto dto = EmailSenderPoolDto.builder()
+                .id(pool.getId())
+                .name(pool.getName())
+                .strategy(pool.getStrategy())
+                .members(pool.getMembers().stream()
+                        .map(member -> new EmailSenderPoolDto.Member(senderNames.get(member.getSenderId()),
+                                member.getWeight()))
+                        .collect(Collectors.toList()))
+                .isActive(pool.getIsActive())
+                .build();
+        dto.setCreatedAt(pool.getCreatedAt());
+        dto.setModifiedAt(pool.getModifiedAt());
+        dto.setCreatedBy(pool.getCreatedBy());
+        dto.setModifiedBy(pool.getModifiedBy());
+        return dto;
+    }
+}
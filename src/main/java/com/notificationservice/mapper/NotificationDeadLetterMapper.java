@@ -0,0 +1,21 @@
+package com.notificationservice.mapper;
+
+import com.notificationservice.dto.NotificationDeadLetterDto;
+import com.notificationservice.entity.NotificationDeadLetter;
+
+public class NotificationDeadLetterMapper {
+    public static NotificationDeadLetterDto toDto(NotificationDeadLetter deadLetter) {
+        if (deadLetter == null)
+            return null;
+        NotificationDeadLetterDto dto = new NotificationDeadLetterDto();
+        dto.setId(deadLetter.getId());
+        dto.setRequestId(deadLetter.getRequest() != null ? deadLetter.getRequest().getId() : null);
+        dto.setChannel(deadLetter.getChannel() != null ? deadLetter.getChannel().name() : null);
+        dto.setRecipient(deadLetter.getRecipient());
+        dto.setAttemptCount(deadLetter.getAttemptCount());
+        dto.setLastError(deadLetter.getLastError());
+        dto.setRequeuedAt(deadLetter.getRequeuedAt());
+        dto.setCreatedAt(deadLetter.getCreatedAt());
+        return dto;
+    }
+}
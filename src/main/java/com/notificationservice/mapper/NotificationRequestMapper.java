@@ -0,0 +1,39 @@
+package com.notificationservice.mapper;
+
+import com.notificationservice.dto.NotificationRequestDto;
+import com.notificationservice.entity.NotificationRequest;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class NotificationRequestMapper {
+    public static NotificationRequestDto toDto(NotificationRequest request) {
+        if (request == null)
+            return null;
+        NotificationRequestDto dto = new NotificationRequestDto();
+        dto.setId(request.getId());
+        dto.setTemplateId(request.getTemplate() != null ? request.getTemplate().getId() : null);
+        dto.setTemplateName(request.getTemplate() != null ? request.getTemplate().getName() : null);
+        dto.setSenderId(request.getSender() != null ? request.getSender().getId() : null);
+        dto.setSenderName(request.getSender() != null ? request.getSender().getName() : null);
+        dto.setRecipient(request.getRecipient());
+        dto.setSubject(request.getSubject());
+        dto.setContent(request.getContent());
+        dto.setVariables(request.getVariables());
+        dto.setStatus(request.getStatus().name());
+        dto.setErrorMessage(request.getErrorMessage());
+        dto.setDigestRequestId(request.getDigestRequestId());
+
+        // Set audit fields
+        dto.setCreatedAt(request.getCreatedAt());
+        dto.setModifiedAt(request.getModifiedAt());
+        dto.setCreatedBy(request.getCreatedBy());
+        dto.setModifiedBy(request.getModifiedBy());
+
+        return dto;
+    }
+
+    public static List<NotificationRequestDto> toDtoList(List<NotificationRequest> requests) {
+        return requests == null ? null
+                : requests.stream().map(NotificationRequestMapper::toDto).collect(Collectors.toList());
+    }
+}
@@ -17,6 +17,9 @@ public class NotificationTemplateMapper {
                 .content(template.getContent())
                 .variables(template.getVariables())
                 .isActive(template.getIsActive())
+                .digestWindowSeconds(template.getDigestWindowSeconds())
+                .digestTemplate(template.getDigestTemplate())
+                .digestKey(template.getDigestKey())
                 .build();
     }
 
@@ -31,6 +34,9 @@ public class NotificationTemplateMapper {
         template.setContent(dto.getContent());
         template.setVariables(dto.getVariables());
         template.setIsActive(dto.getIsActive());
+        template.setDigestWindowSeconds(dto.getDigestWindowSeconds());
+        template.setDigestTemplate(dto.getDigestTemplate());
+        template.setDigestKey(dto.getDigestKey());
         return template;
     }
 
@@ -51,5 +57,8 @@ public class NotificationTemplateMapper {
         entity.setContent(dto.getContent());
         entity.setVariables(dto.getVariables());
         entity.setIsActive(dto.getIsActive());
+        entity.setDigestWindowSeconds(dto.getDigestWindowSeconds());
+        entity.setDigestTemplate(dto.getDigestTemplate());
+        entity.setDigestKey(dto.getDigestKey());
     }
 }
\ No newline at end of file
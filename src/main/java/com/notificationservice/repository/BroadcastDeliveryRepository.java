@@ -0,0 +1,42 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.entity.BroadcastDelivery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BroadcastDeliveryRepository extends JpaRepository<BroadcastDelivery, Long> {
+
+    Optional<BroadcastDelivery> findByRequestIdAndClientId(Long requestId, String clientId);
+
+    Page<BroadcastDelivery> findByRequestIdAndStatusOrderByRecordedAtDesc(Long requestId,
+            BroadcastDelivery.DeliveryStatus status, Pageable pageable);
+
+    @Query("SELECT d.status AS status, COUNT(d) AS count FROM BroadcastDelivery d " +
+            "WHERE d.requestId = :requestId GROUP BY d.status")
+    List<StatusCount> countByStatus(@Param("requestId") Long requestId);
+
+    /**
+     * Record an acknowledgement; it replaces an earlier failure of the same client
+     */
+    @Modifying
+    @Query(value = "INSERT INTO broadcast_deliveries (request_id, client_id, status, recorded_at) " +
+            "VALUES (:requestId, :clientId, 'ACKED', CURRENT_TIMESTAMP) " +
+            "ON CONFLICT (request_id, client_id) DO UPDATE " +
+            "SET status = 'ACKED', error = NULL, recorded_at = CURRENT_TIMESTAMP", nativeQuery = true)
+    int upsertAck(@Param("requestId") Long requestId, @Param("clientId") String clientId);
+
+    interface StatusCount {
+        BroadcastDelivery.DeliveryStatus getStatus();
+
+        long getCount();
+    }
+}
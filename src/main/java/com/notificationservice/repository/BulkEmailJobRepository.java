@@ -0,0 +1,100 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.dto.BulkEmailJobDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * JDBC access to bulk email job progress. Chunks of one job finish concurrently, so progress
+ * is only ever added to, never overwritten.
+ */
+@Repository
+@RequiredArgsConstructor
+public class BulkEmailJobRepository {
+
+    private static final String ADD_PROGRESS = "UPDATE bulk_email_jobs SET " +
+            "processed = processed + ?, sent = sent + ?, failed = failed + ?, deferred = deferred + ?, " +
+            "error_message = COALESCE(?, error_message), " +
+            "status = CASE WHEN processed + ? >= total THEN 'COMPLETED' ELSE 'IN_PROGRESS' END, " +
+            "completed_at = CASE WHEN processed + ? >= total THEN ? ELSE completed_at END " +
+            "WHERE id = ? AND status IN ('QUEUED', 'IN_PROGRESS')";
+
+    private static final RowMapper<BulkEmailJobDto> JOB_MAPPER = (rs, rowNum) -> {
+        int total = rs.getInt("total");
+        int sent = rs.getInt("sent");
+        int failed = rs.getInt("failed");
+        int deferred = rs.getInt("deferred");
+        Timestamp completedAt = rs.getTimestamp("completed_at");
+        return BulkEmailJobDto.builder()
+                .jobId(rs.getString("id"))
+                .status(rs.getString("status"))
+                .senderName(rs.getString("sender_name"))
+                .templateName(rs.getString("template_name"))
+                .total(total)
+                .sent(sent)
+                .failed(failed)
+                .deferred(deferred)
+                .pending(Math.max(0, total - sent - failed - deferred))
+                .errorMessage(rs.getString("error_message"))
+                .submittedAt(rs.getTimestamp("submitted_at").toLocalDateTime())
+                .completedAt(completedAt != null ? completedAt.toLocalDateTime() : null)
+                .build();
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insert(BulkEmailJobDto job, String workerId, String createdBy) {
+        jdbcTemplate.update("INSERT INTO bulk_email_jobs " +
+                        "(id, sender_name, template_name, worker_id, status, total, submitted_at, created_by) " +
+                        "VALUES (?, ?, ?, ?, 'QUEUED', ?, ?, ?)",
+                job.getJobId(), job.getSenderName(), job.getTemplateName(), workerId, job.getTotal(),
+                Timestamp.valueOf(job.getSubmittedAt()), createdBy);
+    }
+
+    /**
+     * Add the outcome of one finished chunk; the job completes once every recipient is processed
+     */
+    public void addProgress(String jobId, int processed, int sent, int failed, int deferred, String errorMessage) {
+        jdbcTemplate.update(ADD_PROGRESS, processed, sent, failed, deferred, errorMessage, processed, processed,
+                Timestamp.valueOf(LocalDateTime.now()), jobId);
+    }
+
+    public Optional<BulkEmailJobDto> findById(String jobId) {
+        List<BulkEmailJobDto> jobs = jdbcTemplate.query("SELECT * FROM bulk_email_jobs WHERE id = ?", JOB_MAPPER,
+                jobId);
+        return jobs.stream().findFirst();
+    }
+
+    /**
+     * Mark the unfinished jobs of a worker as interrupted, e.g. when that worker restarts;
+     * returns the number of jobs marked
+     */
+    public int interruptUnfinished(String workerId, String errorMessage) {
+        return jdbcTemplate.update("UPDATE bulk_email_jobs SET status = 'INTERRUPTED', error_message = ?, " +
+                        "completed_at = ? WHERE worker_id = ? AND status IN ('QUEUED', 'IN_PROGRESS')",
+                errorMessage, Timestamp.valueOf(LocalDateTime.now()), workerId);
+    }
+
+    /**
+     * Mark a single job as interrupted, e.g. when it could not be started
+     */
+    public void interrupt(String jobId, String errorMessage) {
+        jdbcTemplate.update("UPDATE bulk_email_jobs SET status = 'INTERRUPTED', error_message = ?, " +
+                        "completed_at = ? WHERE id = ? AND status IN ('QUEUED', 'IN_PROGRESS')",
+                errorMessage, Timestamp.valueOf(LocalDateTime.now()), jobId);
+    }
+
+    /**
+     * Remove jobs finished before {@code before}; returns the number removed
+     */
+    public int deleteFinishedBefore(LocalDateTime before) {
+        return jdbcTemplate.update("DELETE FROM bulk_email_jobs WHERE completed_at < ?", Timestamp.valueOf(before));
+    }
+}
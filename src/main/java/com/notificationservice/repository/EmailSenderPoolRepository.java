@@ -0,0 +1,15 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.entity.EmailSenderPool;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface EmailSenderPoolRepository extends JpaRepository<EmailSenderPool, Long> {
+
+    List<EmailSenderPool> findByIsActiveTrue();
+
+    boolean existsByName(String name);
+}
@@ -0,0 +1,55 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.entity.IdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface IdempotencyKeyRepository extends JpaRepository<IdempotencyKey, Long> {
+
+    Optional<IdempotencyKey> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    /**
+     * Claim a key; an expired key or an unfinished claim older than {@code staleBefore} is taken
+     * over. Returns 0 when someone else holds the key.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (scope, idempotency_key, created_at, expires_at) " +
+            "VALUES (:scope, :key, :now, :expiresAt) " +
+            "ON CONFLICT (scope, idempotency_key) DO UPDATE " +
+            "SET request_id = NULL, job_id = NULL, response_status = NULL, created_at = EXCLUDED.created_at, " +
+            "expires_at = EXCLUDED.expires_at " +
+            "WHERE idempotency_keys.expires_at < EXCLUDED.created_at " +
+            "OR (idempotency_keys.request_id IS NULL AND idempotency_keys.job_id IS NULL " +
+            "AND idempotency_keys.created_at < :staleBefore)",
+            nativeQuery = true)
+    int claim(@Param("scope") String scope, @Param("key") String key, @Param("now") LocalDateTime now,
+            @Param("expiresAt") LocalDateTime expiresAt, @Param("staleBefore") LocalDateTime staleBefore);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.requestId = :requestId, k.responseStatus = :responseStatus " +
+            "WHERE k.scope = :scope AND k.idempotencyKey = :key")
+    int complete(@Param("scope") String scope, @Param("key") String key, @Param("requestId") Long requestId,
+            @Param("responseStatus") int responseStatus);
+
+    @Modifying
+    @Query("UPDATE IdempotencyKey k SET k.jobId = :jobId, k.responseStatus = :responseStatus " +
+            "WHERE k.scope = :scope AND k.idempotencyKey = :key")
+    int completeJob(@Param("scope") String scope, @Param("key") String key, @Param("jobId") String jobId,
+            @Param("responseStatus") int responseStatus);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.scope = :scope AND k.idempotencyKey = :key " +
+            "AND k.requestId IS NULL AND k.jobId IS NULL")
+    int release(@Param("scope") String scope, @Param("key") String key);
+
+    @Modifying
+    @Query("DELETE FROM IdempotencyKey k WHERE k.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
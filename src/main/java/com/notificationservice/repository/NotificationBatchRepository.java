@@ -0,0 +1,231 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.converter.JsonNodeConverter;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC batch writer for high-volume sends: inserts notification requests, records their
+ * outcomes and inserts their response rows in a few round trips instead of one statement
+ * per row. Ids are taken from the same sequences Hibernate uses, in blocks of
+ * {@link NotificationRequest#ID_ALLOCATION_SIZE}, so the statements carry explicit ids and
+ * the driver can rewrite them into multi-row inserts.
+ */
+@Repository
+@RequiredArgsConstructor
+public class NotificationBatchRepository {
+
+    private static final String INSERT_REQUEST = "INSERT INTO notification_requests " +
+            "(id, template_id, sender_id, recipient, subject, content, variables, status, error_message, sent_at, " +
+            "channel, attempt_count, priority_lane, user_id, next_attempt_at, sender_pool_id, " +
+            "attachment_file_ids, locked_by, locked_until, created_at, modified_at, created_by, modified_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Only rows still leased to the writer: a row whose lease ran out belongs to the outbox
+    private static final String UPDATE_OUTCOME = "UPDATE notification_requests " +
+            "SET status = ?, error_message = ?, sent_at = ?, attempt_count = ?, next_attempt_at = ?, " +
+            "locked_by = NULL, locked_until = NULL, modified_at = ?, modified_by = ? " +
+            "WHERE id = ? AND created_at = ? AND status = 'PROCESSING' AND locked_by = ?";
+
+    private static final String INSERT_RESPONSE = "INSERT INTO notification_responses " +
+            "(id, request_id, provider_response_id, status, response_data, created_at, modified_at, created_by, modified_by) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String INSERT_DELIVERY_FAILURE = "INSERT INTO broadcast_deliveries " +
+            "(request_id, client_id, status, error, recorded_at) VALUES (?, ?, 'FAILED', ?, ?) " +
+            "ON CONFLICT (request_id, client_id) DO NOTHING";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonNodeConverter jsonNodeConverter = new JsonNodeConverter();
+
+    /**
+     * Insert requests; allocated ids and the creation time are set on the entities
+     */
+    @Transactional
+    public void insertRequests(List<NotificationRequest> requests, String auditor) {
+        if (requests.isEmpty()) {
+            return;
+        }
+        LocalDateTime createdAt = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(createdAt);
+
+        List<Long> requestIds = allocateIds("notification_requests_id_seq", requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            requests.get(i).setId(requestIds.get(i));
+            requests.get(i).setCreatedAt(createdAt);
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_REQUEST, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                NotificationRequest request = requests.get(i);
+                ps.setLong(1, request.getId());
+                setNullableLong(ps, 2, request.getTemplate() != null ? request.getTemplate().getId() : null);
+                setNullableLong(ps, 3, request.getSender() != null ? request.getSender().getId() : null);
+                ps.setString(4, request.getRecipient());
+                ps.setString(5, request.getSubject());
+                ps.setString(6, request.getContent());
+                ps.setString(7, jsonNodeConverter.convertToDatabaseColumn(request.getVariables()));
+                ps.setString(8, request.getStatus().name());
+                ps.setString(9, request.getErrorMessage());
+                ps.setTimestamp(10, request.getSentAt() != null ? Timestamp.valueOf(request.getSentAt()) : null);
+                ps.setString(11, request.getChannel() != null ? request.getChannel().name() : null);
+                ps.setInt(12, request.getAttemptCount());
+                ps.setString(13, request.getPriorityLane().name());
+                ps.setString(14, request.getUserId());
+                ps.setTimestamp(15, request.getNextAttemptAt() != null
+                        ? Timestamp.valueOf(request.getNextAttemptAt()) : null);
+                setNullableLong(ps, 16, request.getSenderPoolId());
+                ps.setString(17, request.getAttachmentFileIds());
+                ps.setString(18, request.getLockedBy());
+                ps.setTimestamp(19, request.getLockedUntil() != null
+                        ? Timestamp.valueOf(request.getLockedUntil()) : null);
+                ps.setTimestamp(20, now);
+                ps.setTimestamp(21, now);
+                ps.setString(22, auditor);
+                ps.setString(23, auditor);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return requests.size();
+            }
+        });
+    }
+
+    /**
+     * Write the outcome of leased requests inserted by {@link #insertRequests}, releasing their
+     * lease, and insert the responses of any requests
+     */
+    @Transactional
+    public void completeAll(List<NotificationRequest> leased, List<NotificationResponse> responses,
+            String auditor) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        if (!leased.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_OUTCOME, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    NotificationRequest request = leased.get(i);
+                    ps.setString(1, request.getStatus().name());
+                    ps.setString(2, request.getErrorMessage());
+                    ps.setTimestamp(3, request.getSentAt() != null ? Timestamp.valueOf(request.getSentAt()) : null);
+                    ps.setInt(4, request.getAttemptCount());
+                    ps.setTimestamp(5, request.getNextAttemptAt() != null
+                            ? Timestamp.valueOf(request.getNextAttemptAt()) : null);
+                    ps.setTimestamp(6, now);
+                    ps.setString(7, auditor);
+                    ps.setLong(8, request.getId());
+                    ps.setTimestamp(9, Timestamp.valueOf(request.getCreatedAt()));
+                    ps.setString(10, request.getLockedBy());
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return leased.size();
+                }
+            });
+            for (NotificationRequest request : leased) {
+                request.setLockedBy(null);
+                request.setLockedUntil(null);
+            }
+        }
+
+        if (responses.isEmpty()) {
+            return;
+        }
+        List<Long> responseIds = allocateIds("notification_responses_id_seq", responses.size());
+        for (int i = 0; i < responses.size(); i++) {
+            responses.get(i).setId(responseIds.get(i));
+        }
+
+        jdbcTemplate.batchUpdate(INSERT_RESPONSE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                NotificationResponse response = responses.get(i);
+                ps.setLong(1, response.getId());
+                ps.setLong(2, response.getRequest().getId());
+                ps.setString(3, response.getProviderResponseId());
+                ps.setString(4, response.getStatus());
+                ps.setString(5, jsonNodeConverter.convertToDatabaseColumn(response.getResponseData()));
+                ps.setTimestamp(6, now);
+                ps.setTimestamp(7, now);
+                ps.setString(8, auditor);
+                ps.setString(9, auditor);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return responses.size();
+            }
+        });
+    }
+
+    /**
+     * Record the clients a mobile message could not be delivered to, keyed by client id with the error
+     */
+    @Transactional
+    public void insertDeliveryFailures(Long requestId, Map<String, String> errorsByClient) {
+        if (errorsByClient.isEmpty()) {
+            return;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Map.Entry<String, String>> failures = new ArrayList<>(errorsByClient.entrySet());
+
+        jdbcTemplate.batchUpdate(INSERT_DELIVERY_FAILURE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Map.Entry<String, String> failure = failures.get(i);
+                ps.setLong(1, requestId);
+                ps.setString(2, failure.getKey());
+                String error = failure.getValue();
+                ps.setString(3, error != null && error.length() > 500 ? error.substring(0, 500) : error);
+                ps.setTimestamp(4, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return failures.size();
+            }
+        });
+    }
+
+    /**
+     * Reserve {@code count} ids: each nextval hands out a block starting at the returned
+     * value (pooled-lo), so one query covers the whole batch
+     */
+    private List<Long> allocateIds(String sequence, int count) {
+        int blocks = (count + NotificationRequest.ID_ALLOCATION_SIZE - 1) / NotificationRequest.ID_ALLOCATION_SIZE;
+        List<Long> starts = jdbcTemplate.queryForList(
+                "SELECT nextval('" + sequence + "') FROM generate_series(1, ?)", Long.class, blocks);
+
+        List<Long> ids = new ArrayList<>(count);
+        for (Long start : starts) {
+            for (int offset = 0; offset < NotificationRequest.ID_ALLOCATION_SIZE && ids.size() < count; offset++) {
+                ids.add(start + offset);
+            }
+        }
+        return ids;
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+}
@@ -4,24 +4,170 @@ import com.notificationservice.entity.NotificationRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface NotificationRequestRepository extends JpaRepository<NotificationRequest, Long> {
 
+    String HISTORY_COLUMNS = "id AS id, channel AS channel, status AS status, priority_lane AS priorityLane, " +
+            "recipient AS recipient, subject AS subject, sender_id AS senderId, template_id AS templateId, " +
+            "user_id AS userId, attempt_count AS attemptCount, sent_at AS sentAt, created_at AS createdAt";
+
     Page<NotificationRequest> findByStatus(NotificationRequest.NotificationStatus status, Pageable pageable);
 
     List<NotificationRequest> findByStatusAndCreatedAtBefore(NotificationRequest.NotificationStatus status,
             LocalDateTime before);
 
-    @Query("SELECT nr FROM NotificationRequest nr WHERE nr.recipient = :recipient ORDER BY nr.createdAt DESC")
-    List<NotificationRequest> findByRecipientOrderByCreatedAtDesc(@Param("recipient") String recipient);
+    // History of a recipient, newest first, one keyset page at a time; reads
+    // idx_notification_requests_recipient_history and never the TEXT columns
+    @Query(value = "SELECT " + HISTORY_COLUMNS + " FROM notification_requests " +
+            "WHERE recipient = :recipient " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<HistoryRow> findRecipientHistory(@Param("recipient") String recipient, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + HISTORY_COLUMNS + " FROM notification_requests " +
+            "WHERE recipient = :recipient AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<HistoryRow> findRecipientHistoryBefore(@Param("recipient") String recipient,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            @Param("limit") int limit);
+
+    // Requests in one status, newest first; reads idx_notification_requests_status_history
+    @Query(value = "SELECT " + HISTORY_COLUMNS + " FROM notification_requests " +
+            "WHERE status = :status " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<HistoryRow> findStatusHistory(@Param("status") String status, @Param("limit") int limit);
+
+    @Query(value = "SELECT " + HISTORY_COLUMNS + " FROM notification_requests " +
+            "WHERE status = :status AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<HistoryRow> findStatusHistoryBefore(@Param("status") String status,
+            @Param("createdAt") LocalDateTime createdAt,
+            @Param("id") Long id,
+            @Param("limit") int limit);
+
+    // Content and variables of one history page, only when the caller asks for them
+    @Query(value = "SELECT id AS id, content AS content, variables AS variables " +
+            "FROM notification_requests WHERE id IN (:ids)", nativeQuery = true)
+    List<BodyRow> findBodies(@Param("ids") Collection<Long> ids);
+
+    // Claim a batch of due outbox rows of one priority lane for a worker; rows locked by other workers
+    // are skipped and PROCESSING rows whose lease expired (crashed or restarted worker) are reclaimed
+    @Query(value = "WITH claimable AS (" +
+            "SELECT id FROM notification_requests " +
+            "WHERE channel IS NOT NULL AND priority_lane = :lane " +
+            "AND (status = 'PENDING' OR (status = 'PROCESSING' AND locked_until < now())) " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= now()) " +
+            "ORDER BY id " +
+            "LIMIT :batchSize " +
+            "FOR UPDATE SKIP LOCKED) " +
+            "UPDATE notification_requests nr " +
+            "SET status = 'PROCESSING', locked_by = :workerId, " +
+            "locked_until = now() + make_interval(secs => :leaseSeconds) " +
+            "FROM claimable WHERE nr.id = claimable.id " +
+            "RETURNING nr.id AS id, nr.user_id AS userId", nativeQuery = true)
+    List<ClaimedRow> claimOutboxBatch(@Param("workerId") String workerId,
+            @Param("lane") String lane,
+            @Param("batchSize") int batchSize,
+            @Param("leaseSeconds") int leaseSeconds);
+
+    // Hand one claimed row back to the outbox
+    @Modifying
+    @Query(value = "UPDATE notification_requests " +
+            "SET status = 'PENDING', locked_by = NULL, locked_until = NULL " +
+            "WHERE id = :id AND status = 'PROCESSING' AND locked_by = :workerId", nativeQuery = true)
+    int releaseOutboxLease(@Param("id") Long id, @Param("workerId") String workerId);
+
+    // Hand back rows still leased to a worker, e.g. when that worker restarts
+    @Modifying
+    @Query(value = "UPDATE notification_requests " +
+            "SET status = 'PENDING', locked_by = NULL, locked_until = NULL " +
+            "WHERE status = 'PROCESSING' AND locked_by = :workerId", nativeQuery = true)
+    int releaseOutboxLeases(@Param("workerId") String workerId);
+
+    // Email outbox rows not yet sent, per sender
+    @Query(value = "SELECT sender_id AS senderId, COUNT(*) AS count FROM notification_requests " +
+            "WHERE channel = 'EMAIL' AND status IN ('PENDING', 'PROCESSING') AND sender_id IS NOT NULL " +
+            "GROUP BY sender_id", nativeQuery = true)
+    List<SenderBacklog> countPendingEmailsBySender();
+
+    // Release scheduled rows to the outbox once their send time has come
+    @Modifying
+    @Query(value = "UPDATE notification_requests SET status = 'PENDING' " +
+            "WHERE id IN (:ids) AND status = 'SCHEDULED'", nativeQuery = true)
+    int releaseScheduled(@Param("ids") Collection<Long> ids);
+
+    // Settle scheduled rows whose content went out in a digest request
+    @Modifying
+    @Query(value = "UPDATE notification_requests SET status = 'DIGESTED', digest_request_id = :digestRequestId " +
+            "WHERE id IN (:ids) AND status = 'SCHEDULED'", nativeQuery = true)
+    int settleScheduled(@Param("ids") Collection<Long> ids, @Param("digestRequestId") Long digestRequestId);
+
+    // Move FAILED rows whose retry time has come back to PENDING so the outbox workers pick them up
+    @Modifying
+    @Query(value = "WITH due AS (" +
+            "SELECT id FROM notification_requests " +
+            "WHERE status = 'FAILED' AND channel IS NOT NULL " +
+            "AND next_attempt_at IS NOT NULL AND next_attempt_at <= now() " +
+            "AND attempt_count < :maxAttempts " +
+            "ORDER BY next_attempt_at " +
+            "LIMIT :batchSize " +
+            "FOR UPDATE SKIP LOCKED) " +
+            "UPDATE notification_requests nr SET status = 'PENDING' " +
+            "FROM due WHERE nr.id = due.id", nativeQuery = true)
+    int requeueDueRetries(@Param("maxAttempts") int maxAttempts, @Param("batchSize") int batchSize);
+
+    interface ClaimedRow {
+        Long getId();
+
+        String getUserId();
+    }
+
+    interface HistoryRow {
+        Long getId();
+
+        String getChannel();
+
+        String getStatus();
+
+        String getPriorityLane();
+
+        String getRecipient();
+
+        String getSubject();
+
+        Long getSenderId();
+
+        Long getTemplateId();
+
+        String getUserId();
+
+        Integer getAttemptCount();
+
+        LocalDateTime getSentAt();
+
+        LocalDateTime getCreatedAt();
+    }
+
+    interface BodyRow {
+        Long getId();
+
+        String getContent();
+
+        String getVariables();
+    }
+
+    interface SenderBacklog {
+        Long getSenderId();
 
-    @Query("SELECT nr FROM NotificationRequest nr WHERE nr.createdAt >= :since ORDER BY nr.createdAt DESC")
-    List<NotificationRequest> findByCreatedAtAfterOrderByCreatedAtDesc(@Param("since") LocalDateTime since);
-}
\ No newline at end of file
+        Long getCount();
+    }
+}
@@ -8,6 +8,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.DayOfWeek;
 import java.time.LocalTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,13 @@ public interface NotificationRuleRepository extends JpaRepository<NotificationRu
     // Find active rules for a specific user
     List<NotificationRule> findByUserIdAndIsActiveTrueOrderByPriorityDesc(String userId);
 
+    // Find active rules of many users with their templates and days, ordered by user and priority
+    @Query("SELECT DISTINCT r FROM NotificationRule r " +
+            "LEFT JOIN FETCH r.template LEFT JOIN FETCH r.daysOfWeek " +
+            "WHERE r.userId IN :userIds AND r.isActive = true " +
+            "ORDER BY r.userId, r.priority DESC")
+    List<NotificationRule> findActiveByUserIdIn(@Param("userIds") Collection<String> userIds);
+
     // Find active rules for a specific user and notification type
     List<NotificationRule> findByUserIdAndNotificationTypeAndIsActiveTrueOrderByPriorityDesc(
             String userId, NotificationRule.NotificationType notificationType);
@@ -0,0 +1,34 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.entity.ScheduledNotification;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ScheduledNotificationRepository extends JpaRepository<ScheduledNotification, Long> {
+
+    @Query("SELECT s.requestId AS requestId, s.sendAt AS sendAt FROM ScheduledNotification s " +
+            "WHERE s.sendAt < :until ORDER BY s.sendAt")
+    List<Slot> findDueBefore(@Param("until") LocalDateTime until);
+
+    @Query("SELECT s.requestId AS requestId, s.sendAt AS sendAt FROM ScheduledNotification s " +
+            "WHERE s.sendAt >= :from AND s.sendAt < :until ORDER BY s.sendAt")
+    List<Slot> findSlice(@Param("from") LocalDateTime from, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("DELETE FROM ScheduledNotification s WHERE s.requestId IN :requestIds")
+    int deleteByRequestIds(@Param("requestIds") Collection<Long> requestIds);
+
+    interface Slot {
+        Long getRequestId();
+
+        LocalDateTime getSendAt();
+    }
+}
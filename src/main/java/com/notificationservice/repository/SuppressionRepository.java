@@ -0,0 +1,146 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.dto.SuppressionDto;
+import com.notificationservice.entity.NotificationRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * JDBC access to the suppression list. Writes are upserts keyed by {@code (channel, recipient)}
+ * and removals only mark the row deleted. Every change records its transaction in
+ * {@code change_xid}, so the delta sync of other nodes can pick it up by comparing against a
+ * snapshot rather than a clock that long transactions commit behind.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SuppressionRepository {
+
+    private static final String COLUMNS = "channel, recipient, reason, expires_at, changed_at, created_by";
+
+    private static final String UPSERT = "INSERT INTO suppressions " +
+            "(channel, recipient, reason, expires_at, deleted, changed_at, created_at, created_by, modified_by) " +
+            "VALUES (?, ?, ?, ?, FALSE, LOCALTIMESTAMP, LOCALTIMESTAMP, ?, ?) " +
+            "ON CONFLICT (channel, recipient) DO UPDATE " +
+            "SET reason = EXCLUDED.reason, expires_at = EXCLUDED.expires_at, deleted = FALSE, " +
+            "changed_at = EXCLUDED.changed_at, change_xid = pg_current_xact_id(), " +
+            "modified_by = EXCLUDED.modified_by";
+
+    private static final int FETCH_SIZE = 5000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Current time of the database, the clock expiries are compared with
+     */
+    public LocalDateTime now() {
+        return jdbcTemplate.queryForObject("SELECT LOCALTIMESTAMP", LocalDateTime.class);
+    }
+
+    /**
+     * Snapshot of the transactions committed so far, to be passed to {@link #forEachChangedSince}
+     */
+    public String currentSnapshot() {
+        return jdbcTemplate.queryForObject("SELECT pg_current_snapshot()::TEXT", String.class);
+    }
+
+    public void upsert(SuppressionDto suppression, String auditor) {
+        jdbcTemplate.update(UPSERT, suppression.getChannel().name(), suppression.getRecipient(),
+                suppression.getReason().name(), toTimestamp(suppression.getExpiresAt()), auditor, auditor);
+    }
+
+    /**
+     * Upsert many entries in statement batches of {@code batchSize}
+     */
+    @Transactional
+    public void upsertAll(List<SuppressionDto> suppressions, String auditor, int batchSize) {
+        jdbcTemplate.batchUpdate(UPSERT, suppressions, batchSize, (ps, suppression) -> {
+            ps.setString(1, suppression.getChannel().name());
+            ps.setString(2, suppression.getRecipient());
+            ps.setString(3, suppression.getReason().name());
+            ps.setTimestamp(4, toTimestamp(suppression.getExpiresAt()));
+            ps.setString(5, auditor);
+            ps.setString(6, auditor);
+        });
+    }
+
+    /**
+     * Mark an entry removed; returns whether an active entry existed
+     */
+    public boolean remove(NotificationRequest.NotificationChannel channel, String recipient, String auditor) {
+        return jdbcTemplate.update("UPDATE suppressions SET deleted = TRUE, changed_at = LOCALTIMESTAMP, " +
+                "change_xid = pg_current_xact_id(), modified_by = ? " +
+                "WHERE channel = ? AND recipient = ? AND NOT deleted",
+                auditor, channel.name(), recipient) > 0;
+    }
+
+    public Optional<SuppressionDto> findActive(NotificationRequest.NotificationChannel channel, String recipient) {
+        List<SuppressionDto> found = jdbcTemplate.query("SELECT " + COLUMNS + " FROM suppressions " +
+                        "WHERE channel = ? AND recipient = ? AND NOT deleted " +
+                        "AND (expires_at IS NULL OR expires_at > LOCALTIMESTAMP)",
+                (rs, rowNum) -> toDto(rs), channel.name(), recipient);
+        return found.stream().findFirst();
+    }
+
+    /**
+     * Stream every entry in force, {@value #FETCH_SIZE} rows per round trip
+     */
+    @Transactional(readOnly = true)
+    public void forEachActive(Consumer<SuppressionDto> consumer) {
+        stream("SELECT " + COLUMNS + " FROM suppressions " +
+                "WHERE NOT deleted AND (expires_at IS NULL OR expires_at > LOCALTIMESTAMP)",
+                rs -> consumer.accept(toDto(rs)));
+    }
+
+    /**
+     * Stream entries written by transactions that had not committed in {@code snapshot}, removed
+     * ones included. Rows committed while the stream runs may be returned again by the next call.
+     */
+    @Transactional(readOnly = true)
+    public void forEachChangedSince(String snapshot, BiConsumer<SuppressionDto, Boolean> consumer) {
+        // Transactions below the snapshot's xmin had all finished, so the index bounds the scan
+        stream("SELECT " + COLUMNS + ", deleted FROM suppressions " +
+                        "WHERE change_xid >= pg_snapshot_xmin(?::pg_snapshot) " +
+                        "AND NOT pg_visible_in_snapshot(change_xid, ?::pg_snapshot)",
+                rs -> consumer.accept(toDto(rs), rs.getBoolean("deleted")), snapshot, snapshot);
+    }
+
+    private void stream(String sql, RowCallbackHandler handler, Object... parameters) {
+        jdbcTemplate.query(connection -> {
+            // Postgres streams through a cursor only with a fetch size inside a transaction
+            PreparedStatement statement = connection.prepareStatement(sql);
+            statement.setFetchSize(FETCH_SIZE);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setObject(i + 1, parameters[i]);
+            }
+            return statement;
+        }, handler);
+    }
+
+    private static SuppressionDto toDto(ResultSet rs) throws SQLException {
+        Timestamp expiresAt = rs.getTimestamp("expires_at");
+        return new SuppressionDto(
+                NotificationRequest.NotificationChannel.valueOf(rs.getString("channel")),
+                rs.getString("recipient"),
+                SuppressionDto.Reason.valueOf(rs.getString("reason")),
+                expiresAt != null ? expiresAt.toLocalDateTime() : null,
+                rs.getTimestamp("changed_at").toLocalDateTime(),
+                rs.getString("created_by"));
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+}
@@ -0,0 +1,186 @@
+package com.notificationservice.repository;
+
+import com.notificationservice.dto.FrequencyUsageDto;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to the shared frequency counters. Nodes only ever add to a bucket, so concurrent
+ * flushes of different nodes commute; reservations are taken under a per-user advisory lock.
+ */
+@Repository
+@RequiredArgsConstructor
+public class UserFrequencyCounterRepository {
+
+    /**
+     * First key of the advisory locks taken here, keeping them apart from other lock users
+     */
+    private static final int LOCK_NAMESPACE = 0x46524551;
+
+    private static final String UPSERT = "INSERT INTO user_frequency_counters " +
+            "(user_id, bucket_start, sent_count, last_sent_at) VALUES (?, ?, ?, ?) " +
+            "ON CONFLICT (user_id, bucket_start) DO UPDATE " +
+            "SET sent_count = user_frequency_counters.sent_count + EXCLUDED.sent_count, " +
+            "last_sent_at = GREATEST(user_frequency_counters.last_sent_at, EXCLUDED.last_sent_at)";
+
+    private static final String RELEASE = "DELETE FROM user_frequency_reservations WHERE id IN " +
+            "(SELECT id FROM user_frequency_reservations WHERE user_id = ? ORDER BY reserved_at LIMIT ?)";
+
+    private static final String USAGE = "SELECT " +
+            "(SELECT COALESCE(SUM(sent_count), 0) FROM user_frequency_counters " +
+            "WHERE user_id = ? AND bucket_start >= ?) AS sent_count, " +
+            "(SELECT MAX(last_sent_at) FROM user_frequency_counters " +
+            "WHERE user_id = ? AND bucket_start >= ?) AS last_sent_at, " +
+            "(SELECT COUNT(*) FROM user_frequency_reservations " +
+            "WHERE user_id = ? AND expires_at > ? AND id <> ?) AS reserved_count, " +
+            "(SELECT MAX(reserved_at) FROM user_frequency_reservations " +
+            "WHERE user_id = ? AND expires_at > ? AND id <> ?) AS last_reserved_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Add sends to the buckets of users, in statement batches of {@code batchSize}
+     */
+    @Transactional
+    public void addAll(List<BucketDelta> deltas, int batchSize) {
+        jdbcTemplate.batchUpdate(UPSERT, deltas, batchSize, (ps, delta) -> {
+            ps.setString(1, delta.userId);
+            ps.setTimestamp(2, Timestamp.valueOf(delta.bucketStart));
+            ps.setLong(3, delta.count);
+            ps.setTimestamp(4, Timestamp.valueOf(delta.lastSentAt));
+        });
+    }
+
+    /**
+     * Drop the oldest reservations of users, as many per user as sends of theirs were counted
+     */
+    @Transactional
+    public void releaseAll(Map<String, Long> sendsByUser, int batchSize) {
+        jdbcTemplate.batchUpdate(RELEASE, List.copyOf(sendsByUser.entrySet()), batchSize, (ps, sends) -> {
+            ps.setString(1, sends.getKey());
+            ps.setLong(2, sends.getValue());
+        });
+    }
+
+    /**
+     * Sends counted since {@code windowStart} plus reservations in force at {@code now}, leaving
+     * out reservation {@code excludedReservationId}
+     */
+    public FrequencyUsageDto findUsage(String userId, LocalDateTime windowStart, LocalDateTime now,
+            long excludedReservationId) {
+        Timestamp from = Timestamp.valueOf(windowStart);
+        Timestamp at = Timestamp.valueOf(now);
+        return jdbcTemplate.queryForObject(USAGE, (rs, rowNum) -> {
+            LocalDateTime lastSentAt = latest(rs.getTimestamp("last_sent_at"), rs.getTimestamp("last_reserved_at"));
+            return new FrequencyUsageDto(userId, rs.getLong("sent_count") + rs.getLong("reserved_count"),
+                    lastSentAt);
+        }, userId, from, userId, from, userId, at, excludedReservationId, userId, at, excludedReservationId);
+    }
+
+    /**
+     * {@link #findUsage} of many users in one round trip, excluding no reservation; users with
+     * neither sends nor reservations in the window are not returned
+     */
+    public Map<String, FrequencyUsageDto> findUsageAll(Collection<String> userIds, LocalDateTime windowStart,
+            LocalDateTime now) {
+        Map<String, FrequencyUsageDto> usage = new HashMap<>(userIds.size() * 2);
+        if (userIds.isEmpty()) {
+            return usage;
+        }
+        String in = String.join(", ", Collections.nCopies(userIds.size(), "?"));
+        List<Object> parameters = new ArrayList<>(userIds.size() * 2 + 2);
+        parameters.addAll(userIds);
+        parameters.add(Timestamp.valueOf(windowStart));
+        parameters.addAll(userIds);
+        parameters.add(Timestamp.valueOf(now));
+        jdbcTemplate.query("SELECT user_id, SUM(sent_count) AS sent_count, MAX(last_sent_at) AS last_sent_at " +
+                "FROM user_frequency_counters WHERE user_id IN (" + in + ") AND bucket_start >= ? GROUP BY user_id " +
+                "UNION ALL " +
+                "SELECT user_id, COUNT(*), MAX(reserved_at) FROM user_frequency_reservations " +
+                "WHERE user_id IN (" + in + ") AND expires_at > ? GROUP BY user_id", rs -> {
+            String userId = rs.getString("user_id");
+            long count = rs.getLong("sent_count");
+            Timestamp last = rs.getTimestamp("last_sent_at");
+            usage.merge(userId, new FrequencyUsageDto(userId, count, last != null ? last.toLocalDateTime() : null),
+                    (first, second) -> new FrequencyUsageDto(userId, first.getCount() + second.getCount(),
+                            latest(first.getLastSentAt(), second.getLastSentAt())));
+        }, parameters.toArray());
+        return usage;
+    }
+
+    /**
+     * Hold the lock on a user's budget until the current transaction ends
+     */
+    public void lockUser(String userId) {
+        jdbcTemplate.query("SELECT pg_advisory_xact_lock(?, hashtext(?))", rs -> null, LOCK_NAMESPACE, userId);
+    }
+
+    /**
+     * Take a reservation; returns its id
+     */
+    public long reserve(String userId, LocalDateTime reservedAt, LocalDateTime expiresAt) {
+        return jdbcTemplate.queryForObject("INSERT INTO user_frequency_reservations " +
+                        "(user_id, reserved_at, expires_at) VALUES (?, ?, ?) RETURNING id", Long.class,
+                userId, Timestamp.valueOf(reservedAt), Timestamp.valueOf(expiresAt));
+    }
+
+    public void deleteReservation(long id) {
+        jdbcTemplate.update("DELETE FROM user_frequency_reservations WHERE id = ?", id);
+    }
+
+    /**
+     * Remove buckets that started before {@code before} and reservations expired at {@code now};
+     * returns the number of rows removed
+     */
+    @Transactional
+    public int purge(LocalDateTime before, LocalDateTime now) {
+        return jdbcTemplate.update("DELETE FROM user_frequency_counters WHERE bucket_start < ?",
+                Timestamp.valueOf(before))
+                + jdbcTemplate.update("DELETE FROM user_frequency_reservations WHERE expires_at <= ?",
+                Timestamp.valueOf(now));
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        if (first == null || second == null) {
+            return first != null ? first : second;
+        }
+        return first.isAfter(second) ? first : second;
+    }
+
+    private static LocalDateTime latest(Timestamp first, Timestamp second) {
+        if (first == null || second == null) {
+            return first != null ? first.toLocalDateTime() : second != null ? second.toLocalDateTime() : null;
+        }
+        return (first.after(second) ? first : second).toLocalDateTime();
+    }
+
+    /**
+     * Sends of one user to add to one bucket
+     */
+    @Getter
+    public static final class BucketDelta {
+        private final String userId;
+        private final LocalDateTime bucketStart;
+        private final long count;
+        private final LocalDateTime lastSentAt;
+
+        public BucketDelta(String userId, LocalDateTime bucketStart, long count, LocalDateTime lastSentAt) {
+            this.userId = userId;
+            this.bucketStart = bucketStart;
+            this.count = count;
+            this.lastSentAt = lastSentAt;
+        }
+    }
+}
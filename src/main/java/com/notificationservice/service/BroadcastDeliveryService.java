@@ -0,0 +1,125 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.notificationservice.dto.BroadcastDeliveryDto;
+import com.notificationservice.dto.BroadcastDeliverySummaryDto;
+import com.notificationservice.entity.BroadcastDelivery;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationResponse;
+import com.notificationservice.mapper.BroadcastDeliveryMapper;
+import com.notificationservice.repository.BroadcastDeliveryRepository;
+import com.notificationservice.repository.NotificationBatchRepository;
+import com.notificationservice.repository.NotificationRequestRepository;
+import com.notificationservice.repository.NotificationResponseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Map;
+
+/**
+ * Delivery ledger of mobile messages. Only failed and acknowledged clients get a row;
+ * every other recipient of a sent message counts as delivered, so the summary is the
+ * audience size from the response minus the recorded failures.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional
+public class BroadcastDeliveryService {
+
+    private final BroadcastDeliveryRepository deliveryRepository;
+    private final NotificationBatchRepository batchRepository;
+    private final NotificationRequestRepository requestRepository;
+    private final NotificationResponseRepository responseRepository;
+
+    /**
+     * Record the clients a message could not be delivered to, keyed by client id with the error
+     */
+    public void recordFailures(Long requestId, Map<String, String> errorsByClient) {
+        batchRepository.insertDeliveryFailures(requestId, errorsByClient);
+    }
+
+    /**
+     * Record that a client of a network received a mobile message. The message must have been
+     * broadcast to that network or sent to that very client, so no one can ack for others.
+     */
+    public void acknowledge(Long requestId, String networkId, String clientId) {
+        NotificationRequest request = getMobileRequest(requestId);
+        String recipient = request.getRecipient();
+        if (!recipient.equals("NETWORK:" + networkId) && !recipient.equals("CLIENT:" + networkId + ":" + clientId)) {
+            throw new IllegalArgumentException("Mobile message " + requestId + " was not sent to client "
+                    + clientId + " in network " + networkId);
+        }
+        deliveryRepository.upsertAck(requestId, clientId);
+        log.debug("Client {} acknowledged mobile message {}", clientId, requestId);
+    }
+
+    @Transactional(readOnly = true)
+    public BroadcastDeliverySummaryDto getSummary(Long requestId) {
+        NotificationRequest request = getMobileRequest(requestId);
+
+        long failed = 0;
+        long acked = 0;
+        for (BroadcastDeliveryRepository.StatusCount count : deliveryRepository.countByStatus(requestId)) {
+            if (count.getStatus() == BroadcastDelivery.DeliveryStatus.FAILED) {
+                failed = count.getCount();
+            } else if (count.getStatus() == BroadcastDelivery.DeliveryStatus.ACKED) {
+                acked = count.getCount();
+            }
+        }
+
+        long recipients = getRecipientCount(request);
+        long delivered = request.getStatus() == NotificationRequest.NotificationStatus.SENT
+                ? Math.max(0, recipients - failed)
+                : acked;
+        return new BroadcastDeliverySummaryDto(requestId, request.getRecipient(), request.getStatus().name(),
+                recipients, delivered, failed, acked);
+    }
+
+    /**
+     * Outcome for one client; without a ledger row it follows the request status
+     */
+    @Transactional(readOnly = true)
+    public BroadcastDeliveryDto getClientStatus(Long requestId, String clientId) {
+        NotificationRequest request = getMobileRequest(requestId);
+        return deliveryRepository.findByRequestIdAndClientId(requestId, clientId)
+                .map(BroadcastDeliveryMapper::toDto)
+                .orElseGet(() -> new BroadcastDeliveryDto(requestId, clientId, request.getStatus().name(),
+                        request.getErrorMessage(), request.getSentAt()));
+    }
+
+    @Transactional(readOnly = true)
+    public Page<BroadcastDeliveryDto> getDeliveries(Long requestId, BroadcastDelivery.DeliveryStatus status,
+            Pageable pageable) {
+        getMobileRequest(requestId);
+        return deliveryRepository.findByRequestIdAndStatusOrderByRecordedAtDesc(requestId, status, pageable)
+                .map(BroadcastDeliveryMapper::toDto);
+    }
+
+    private NotificationRequest getMobileRequest(Long requestId) {
+        NotificationRequest request = requestRepository.findById(requestId)
+                .orElseThrow(() -> new IllegalArgumentException("Notification request not found with id: " + requestId));
+        String recipient = request.getRecipient();
+        if (recipient == null || !(recipient.startsWith("NETWORK:") || recipient.startsWith("CLIENT:"))) {
+            throw new IllegalArgumentException("Notification request " + requestId + " is not a mobile message");
+        }
+        return request;
+    }
+
+    private long getRecipientCount(NotificationRequest request) {
+        if (request.getRecipient().startsWith("CLIENT:")) {
+            return 1;
+        }
+        for (NotificationResponse response : responseRepository.findByRequestId(request.getId())) {
+            JsonNode data = response.getResponseData();
+            if (data != null && data.hasNonNull("recipients")) {
+                return data.get("recipients").asLong();
+            }
+        }
+        return 0;
+    }
+}
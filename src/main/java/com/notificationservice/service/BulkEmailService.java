@@ -0,0 +1,642 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.BulkEmailProperties;
+import com.notificationservice.config.DispatchProperties;
+import com.notificationservice.config.UserContextService;
+import com.notificationservice.dto.BulkEmailJobDto;
+import com.notificationservice.dto.BulkEmailRequestDto;
+import com.notificationservice.entity.EmailSender;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationRequest.PriorityLane;
+import com.notificationservice.entity.NotificationResponse;
+import com.notificationservice.entity.NotificationTemplate;
+import com.notificationservice.repository.BulkEmailJobRepository;
+import com.notificationservice.repository.NotificationBatchRepository;
+import com.notificationservice.util.CompiledTemplate;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk email sends: the template is resolved and compiled once, recipients are processed in chunks that
+ * are rendered in parallel, sent back to back over one pooled SMTP connection and persisted
+ * with JDBC batch inserts. Chunks run in the BULK dispatch lane, so campaigns share its worker
+ * budget fairly and never take threads from OTP or transactional sends. Progress is tracked
+ * per job instead of holding the HTTP request.
+ *
+ * <p>A chunk's rows are inserted before its first message is sent, leased to this node like
+ * claimed outbox rows. Should the node die mid-chunk, the outbox sends the rows whose outcome
+ * was not recorded once the lease runs out, so every recipient gets the mail at least once.
+ * Job progress is written to {@code bulk_email_jobs} as each chunk finishes; a restarted node
+ * marks the jobs it was running as interrupted, since their unprocessed recipients were only
+ * held in memory.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class BulkEmailService {
+
+    private final MailTransportRegistry mailTransportRegistry;
+    private final TemplateService templateService;
+    private final NotificationBatchRepository batchRepository;
+    private final BulkEmailProperties bulkProperties;
+    private final UserContextService userContextService;
+    private final ObjectMapper objectMapper;
+    private final ProviderResilienceService providerResilience;
+    private final SenderThroughputGovernor senderGovernor;
+    private final NotificationRetryService retryService;
+    private final DispatchLaneScheduler laneScheduler;
+    private final SenderPoolService senderPoolService;
+    private final EmailAttachmentService attachmentService;
+    private final SuppressionService suppressionService;
+    private final FrequencyCounterService frequencyCounters;
+    private final BulkEmailJobRepository jobRepository;
+    private final NotificationDispatchService dispatchService;
+    private final DispatchProperties dispatchProperties;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Jobs running on this node; finished jobs are only read from the database
+     */
+    private final Map<String, BulkEmailJob> jobs = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Delete the encoded attachments of jobs still running; their unprocessed recipients are
+     * marked interrupted by the next start
+     */
+    @PreDestroy
+    void releaseAttachments() {
+        jobs.values().forEach(BulkEmailJob::releaseAttachments);
+    }
+
+    /**
+     * Jobs this node was running before a restart cannot resume: their remaining recipients
+     * were only held in memory
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void interruptUnfinishedJobs() {
+        int interrupted = jobRepository.interruptUnfinished(dispatchService.getWorkerId(),
+                "Interrupted by a restart; recipients not yet processed were not sent");
+        if (interrupted > 0) {
+            log.warn("Marked {} bulk email jobs of this node as interrupted", interrupted);
+        }
+    }
+
+    /**
+     * Validate the request, register a job and start processing it in the background
+     */
+    public BulkEmailJobDto submit(BulkEmailRequestDto request, String fileUserId) {
+        List<BulkEmailRequestDto.Recipient> recipients = request.getRecipients();
+        if (recipients == null || recipients.isEmpty()) {
+            throw new IllegalArgumentException("At least one recipient is required");
+        }
+        if (recipients.size() > bulkProperties.getMaxRecipients()) {
+            throw new IllegalArgumentException("Too many recipients: " + recipients.size()
+                    + " (max " + bulkProperties.getMaxRecipients() + ")");
+        }
+
+        // A pool spreads the job's chunks over its members
+        Long poolId = senderPoolService.findPoolId(request.getSenderName());
+        EmailSender sender = poolId != null
+                ? senderPoolService.preview(poolId)
+                : mailTransportRegistry.getSenderByName(request.getSenderName());
+
+        // Resolve the template once for the whole job
+        Long templateId = null;
+        String subject;
+        CompiledTemplate content;
+        if (request.getTemplateName() != null) {
+            TemplateService.ResolvedTemplate template = templateService.getCompiledTemplate(request.getTemplateName())
+                    .orElseThrow(() -> new IllegalArgumentException("Template not found: " + request.getTemplateName()));
+            if (template.getTemplate().getType() != NotificationTemplate.NotificationType.EMAIL) {
+                throw new IllegalArgumentException("Template is not an email template: " + request.getTemplateName());
+            }
+            templateId = template.getTemplate().getId();
+            subject = template.getTemplate().getSubject();
+            content = template.getCompiled();
+        } else {
+            if (request.getContent() == null || request.getContent().isBlank()) {
+                throw new IllegalArgumentException("Either templateName or content is required");
+            }
+            subject = request.getSubject();
+            content = CompiledTemplate.compile(request.getContent());
+        }
+
+        String attachmentFileIds = attachmentService.authorize(request.getAttachmentFileIds(), fileUserId);
+
+        List<List<BulkEmailRequestDto.Recipient>> chunks = new ArrayList<>();
+        int chunkSize = Math.max(1, bulkProperties.getChunkSize());
+        for (int from = 0; from < recipients.size(); from += chunkSize) {
+            chunks.add(recipients.subList(from, Math.min(from + chunkSize, recipients.size())));
+        }
+
+        String auditor = userContextService.getCurrentUser();
+        Map<String, Object> variables = request.getVariables();
+        String userId = variables != null && variables.get("userId") != null
+                ? variables.get("userId").toString()
+                : auditor;
+        BulkEmailJob job = new BulkEmailJob(UUID.randomUUID().toString(), request.getSenderName(), sender, poolId,
+                request.getTemplateName(),
+                templateId, subject, content, variables, attachmentFileIds, recipients.size(), auditor, userId, chunks);
+
+        // Registered before the first chunk can finish and record progress on it
+        jobRepository.insert(job.toDto(), dispatchService.getWorkerId(), auditor);
+        jobs.put(job.jobId, job);
+
+        // The job takes one lane slot; its chunks then follow each other through the lane
+        if (!laneScheduler.submit(PriorityLane.BULK, userId, () -> runNextChunk(job))) {
+            jobs.remove(job.jobId);
+            job.releaseAttachments();
+            jobRepository.interrupt(job.jobId, "Bulk lane was full");
+            throw new IllegalStateException("Bulk lane is full, retry later");
+        }
+        int chains = Math.min(Math.max(1, bulkProperties.getParallelChunks()), chunks.size());
+        for (int i = 1; i < chains; i++) {
+            laneScheduler.submitFollowUp(PriorityLane.BULK, userId, () -> runNextChunk(job));
+        }
+
+        log.info("Bulk email job {} submitted with {} recipients via sender: {}", job.jobId, recipients.size(),
+                request.getSenderName());
+        return job.toDto();
+    }
+
+    /**
+     * Progress of a job, live when it runs on this node
+     */
+    public Optional<BulkEmailJobDto> getJob(String jobId) {
+        BulkEmailJob running = jobs.get(jobId);
+        if (running != null) {
+            return Optional.of(running.toDto());
+        }
+        return jobRepository.findById(jobId);
+    }
+
+    /**
+     * Forget finished jobs once their retention has elapsed
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeFinishedJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(bulkProperties.getJobRetentionMinutes());
+        try {
+            jobRepository.deleteFinishedBefore(cutoff);
+        } catch (Exception e) {
+            log.warn("Failed to purge finished bulk email jobs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Give up on jobs that made no progress for too long, e.g. because a chunk's lane task was
+     * lost, so that their encoded attachments do not stay on disk until the next restart
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void abandonStalledJobs() {
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(bulkProperties.getStalledJobMinutes());
+        for (BulkEmailJob job : jobs.values()) {
+            if (!job.isStalledSince(cutoff) || !jobs.remove(job.jobId, job)) {
+                continue;
+            }
+            job.releaseAttachments();
+            try {
+                jobRepository.interrupt(job.jobId, "Abandoned after making no progress for "
+                        + bulkProperties.getStalledJobMinutes() + " minutes");
+            } catch (Exception e) {
+                log.warn("Failed to mark stalled bulk email job {} as interrupted: {}", job.jobId, e.getMessage());
+            }
+            log.warn("Abandoned bulk email job {} after {} of {} recipients", job.jobId, job.processed.get(), job.total);
+        }
+    }
+
+    private void runNextChunk(BulkEmailJob job) {
+        int index = job.nextChunk.getAndIncrement();
+        if (index >= job.chunks.size()) {
+            return;
+        }
+        job.chunkStarted();
+        processChunk(job, job.chunks.get(index));
+        if (job.nextChunk.get() < job.chunks.size()) {
+            // Queue the next chunk behind other users' work instead of looping on this thread
+            laneScheduler.submitFollowUp(PriorityLane.BULK, job.userId, () -> runNextChunk(job));
+        }
+    }
+
+    private void processChunk(BulkEmailJob job, List<BulkEmailRequestDto.Recipient> chunk) {
+        ChunkOutcome outcome = null;
+        List<NotificationRequest> persisted = null;
+        Exception error = null;
+        SenderPoolService.Lease lease = job.poolId != null ? senderPoolService.lease(job.poolId) : null;
+        EmailSender sender = lease != null ? lease.getSender() : job.sender;
+        try {
+            // Render every recipient of the chunk in parallel across cores
+            List<String> bodies = chunk.parallelStream()
+                    .map(recipient -> render(job, recipient))
+                    .collect(Collectors.toList());
+
+            List<NotificationRequest> requests = new ArrayList<>(chunk.size());
+            List<MimeMessage> messages = new ArrayList<>(chunk.size());
+            List<NotificationRequest> messageRequests = new ArrayList<>(chunk.size());
+            Set<NotificationRequest> suppressed = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (int i = 0; i < chunk.size(); i++) {
+                BulkEmailRequestDto.Recipient recipient = chunk.get(i);
+                NotificationRequest request = createRequest(job, sender, recipient, bodies.get(i));
+                requests.add(request);
+                if (suppressionService.applyTo(request)) {
+                    // Recorded as failed, but never sent, retried or dead-lettered
+                    suppressed.add(request);
+                    continue;
+                }
+                try {
+                    messages.add(createMessage(job, sender, recipient.getRecipient(), bodies.get(i)));
+                    messageRequests.add(request);
+                } catch (MessagingException e) {
+                    markFailed(request, e);
+                }
+            }
+
+            // Persisted before sending, the rows to send leased to this node as if the outbox had
+            // claimed them: a crash mid-send leaves them to the outbox once the lease runs out
+            LocalDateTime lockedUntil = LocalDateTime.now().plusSeconds(dispatchProperties.getLeaseSeconds());
+            for (NotificationRequest request : messageRequests) {
+                request.setStatus(NotificationRequest.NotificationStatus.PROCESSING);
+                request.setLockedBy(dispatchService.getWorkerId());
+                request.setLockedUntil(lockedUntil);
+            }
+            batchRepository.insertRequests(requests, job.auditor);
+            persisted = messageRequests;
+
+            // Send the whole chunk back to back over one pooled connection
+            List<Exception> failures;
+            try {
+                // Each message waits for its own turn of the sender's rate, so the chunk is spread
+                // out instead of reserving its whole size at once; once a turn is too far away,
+                // the rest of the chunk is deferred
+                boolean[] firstReserved = {lease != null && lease.isReserved()};
+                failures = providerResilience.execute("email-" + sender.getName(),
+                        () -> mailTransportRegistry.sendBatch(sender.getId(), messages, () -> {
+                            if (firstReserved[0]) {
+                                firstReserved[0] = false;
+                            } else {
+                                senderGovernor.acquire(sender);
+                            }
+                        }));
+            } catch (Exception e) {
+                if (!ProviderResilienceService.isRejected(e)) {
+                    throw e;
+                }
+                // Provider is cut off or saturated: the outbox sends the chunk later
+                log.warn("Bulk email job {} deferred {} messages: {}", job.jobId, messages.size(), e.getMessage());
+                messageRequests.forEach(request -> retryService.recordRejected(request, e));
+                failures = null;
+                if (lease != null) {
+                    lease.failed(e);
+                }
+            }
+
+            LocalDateTime sentAt = LocalDateTime.now();
+            int delivered = 0;
+            Exception throttled = null;
+            Exception lastFailure = null;
+            for (int i = 0; failures != null && i < messageRequests.size(); i++) {
+                NotificationRequest request = messageRequests.get(i);
+                Exception failure = failures.get(i);
+                if (failure == null) {
+                    request.setStatus(NotificationRequest.NotificationStatus.SENT);
+                    request.setSentAt(sentAt);
+                    frequencyCounters.recordSent(request);
+                    delivered++;
+                } else if (failure instanceof SenderThroughputGovernor.SenderThrottledException) {
+                    // Not attempted: the sender's rate had no turn for it soon enough
+                    retryService.recordRejected(request, failure);
+                } else if (senderGovernor.isThrottled(failure)) {
+                    // Over the account's quota: the outbox sends it later at the reduced rate
+                    retryService.recordRejected(request, failure);
+                    throttled = failure;
+                } else {
+                    markFailed(request, failure);
+                    lastFailure = failure;
+                }
+            }
+            senderGovernor.onSuccess(sender, delivered);
+            if (throttled != null) {
+                senderGovernor.onThrottled(sender, throttled);
+            }
+            if (lease != null) {
+                // Any delivery shows the account works; recipient errors alone do not eject it
+                if (delivered > 0 || lastFailure == null) {
+                    lease.succeeded();
+                } else {
+                    lease.failed(lastFailure);
+                }
+            }
+
+            List<NotificationResponse> responses = createResponses(job, requests);
+            ChunkOutcome sentOutcome = new ChunkOutcome(chunk.size(),
+                    countByStatus(requests, NotificationRequest.NotificationStatus.SENT),
+                    countByStatus(requests, NotificationRequest.NotificationStatus.FAILED),
+                    countByStatus(requests, NotificationRequest.NotificationStatus.PENDING), null);
+
+            // Outcomes, dead letters and job progress commit together
+            transactionTemplate.executeWithoutResult(status -> {
+                batchRepository.completeAll(messageRequests, responses, job.auditor);
+
+                // Failures that will not be retried go to the dead-letter table
+                requests.stream()
+                        .filter(request -> request.getStatus() == NotificationRequest.NotificationStatus.FAILED
+                                && request.getNextAttemptAt() == null && !suppressed.contains(request))
+                        .forEach(retryService::deadLetter);
+
+                recordProgress(job, sentOutcome);
+            });
+            outcome = sentOutcome;
+        } catch (Exception e) {
+            if (lease != null) {
+                lease.failed(e);
+            }
+            log.error("Bulk email job {} failed to process a chunk of {} recipients", job.jobId, chunk.size(), e);
+            error = e;
+        } finally {
+            if (outcome == null) {
+                // Persisted rows still leased are left to the outbox; everything else failed
+                int deferred = persisted != null ? persisted.size() : 0;
+                outcome = new ChunkOutcome(chunk.size(), 0, chunk.size() - deferred, deferred,
+                        error != null ? error.getMessage() : null);
+                try {
+                    recordProgress(job, outcome);
+                } catch (Exception e) {
+                    log.error("Failed to record progress of bulk email job {}", job.jobId, e);
+                }
+            }
+            job.chunkDone(outcome);
+            if (job.isComplete()) {
+                jobs.remove(job.jobId);
+            }
+        }
+    }
+
+    private void recordProgress(BulkEmailJob job, ChunkOutcome outcome) {
+        jobRepository.addProgress(job.jobId, outcome.processed, outcome.sent, outcome.failed,
+                outcome.deferred, outcome.errorMessage);
+    }
+
+    private String render(BulkEmailJob job, BulkEmailRequestDto.Recipient recipient) {
+        return job.content.render(mergedVariables(job, recipient));
+    }
+
+    private Map<String, Object> mergedVariables(BulkEmailJob job, BulkEmailRequestDto.Recipient recipient) {
+        Map<String, Object> variables = new HashMap<>();
+        if (job.commonVariables != null) {
+            variables.putAll(job.commonVariables);
+        }
+        if (recipient.getVariables() != null) {
+            variables.putAll(recipient.getVariables());
+        }
+        return variables;
+    }
+
+    private MimeMessage createMessage(BulkEmailJob job, EmailSender sender, String recipient, String body)
+            throws MessagingException {
+        MimeMessage message = mailTransportRegistry.createMimeMessage(sender.getId());
+        MimeMessageHelper helper = new MimeMessageHelper(message, true);
+        helper.setFrom(sender.getUsername());
+        helper.setTo(recipient);
+        helper.setSubject(job.subject);
+        helper.setText(body, true); // true for HTML content
+        if (job.attachmentFileIds != null) {
+            attachmentService.attach(helper, job.attachments(attachmentService));
+        }
+        return message;
+    }
+
+    private NotificationRequest createRequest(BulkEmailJob job, EmailSender sender,
+            BulkEmailRequestDto.Recipient recipient, String body) {
+        NotificationRequest request = new NotificationRequest();
+        request.setTemplate(job.templateRef);
+        request.setSender(sender);
+        request.setSenderPoolId(job.poolId);
+        request.setAttachmentFileIds(job.attachmentFileIds);
+        request.setRecipient(recipient.getRecipient());
+        request.setSubject(job.subject);
+        request.setContent(body);
+        Map<String, Object> variables = mergedVariables(job, recipient);
+        request.setVariables(variables.isEmpty() ? null : objectMapper.valueToTree(variables));
+        request.setChannel(NotificationRequest.NotificationChannel.EMAIL);
+        request.setPriorityLane(PriorityLane.BULK);
+        request.setUserId(job.userId);
+        request.setAttemptCount(1);
+        return request;
+    }
+
+    private void markFailed(NotificationRequest request, Exception e) {
+        // Sets FAILED and, while attempts remain, the time the retry scheduler re-drives it
+        retryService.recordFailure(request, e);
+    }
+
+    private static int countByStatus(List<NotificationRequest> requests, NotificationRequest.NotificationStatus status) {
+        return (int) requests.stream().filter(request -> request.getStatus() == status).count();
+    }
+
+    private List<NotificationResponse> createResponses(BulkEmailJob job, List<NotificationRequest> requests) {
+        List<NotificationResponse> responses = new ArrayList<>(requests.size());
+        for (NotificationRequest request : requests) {
+            if (request.getStatus() == NotificationRequest.NotificationStatus.PENDING) {
+                // Deferred to the outbox, not attempted yet
+                continue;
+            }
+            NotificationResponse response = new NotificationResponse();
+            response.setRequest(request);
+            if (request.getStatus() == NotificationRequest.NotificationStatus.SENT) {
+                response.setStatus("SENT");
+                response.setProviderResponseId("bulk-" + job.jobId);
+            } else {
+                response.setStatus("FAILED");
+                JsonNode error = objectMapper.createObjectNode().put("error", String.valueOf(request.getErrorMessage()));
+                response.setResponseData(error);
+            }
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    /**
+     * Counts of one processed chunk, added to the job in memory and in the database
+     */
+    private static class ChunkOutcome {
+        private final int processed;
+        private final int sent;
+        private final int failed;
+        private final int deferred;
+        private final String errorMessage;
+
+        ChunkOutcome(int processed, int sent, int failed, int deferred, String errorMessage) {
+            this.processed = processed;
+            this.sent = sent;
+            this.failed = failed;
+            this.deferred = deferred;
+            this.errorMessage = errorMessage;
+        }
+    }
+
+    private static class BulkEmailJob {
+        private final String jobId;
+        private final String senderName;
+        /**
+         * Sender used when the job is not sent through a pool
+         */
+        private final EmailSender sender;
+        private final Long poolId;
+        private final String templateName;
+        private final NotificationTemplate templateRef;
+        private final String subject;
+        private final CompiledTemplate content;
+        private final Map<String, Object> commonVariables;
+        private final String attachmentFileIds;
+        private final int total;
+        private final String auditor;
+        private final String userId;
+        private final List<List<BulkEmailRequestDto.Recipient>> chunks;
+        private final LocalDateTime submittedAt = LocalDateTime.now();
+
+        private final AtomicInteger nextChunk = new AtomicInteger();
+
+        private final AtomicInteger sent = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger deferred = new AtomicInteger();
+        private final AtomicInteger processed = new AtomicInteger();
+        private volatile String errorMessage;
+        private volatile LocalDateTime completedAt;
+        private final AtomicInteger runningChunks = new AtomicInteger();
+        private volatile LocalDateTime lastActivityAt = submittedAt;
+        /**
+         * Encoded once on first use, shared by every message of the job
+         */
+        private EmailAttachmentService.PreparedAttachments attachments;
+        private boolean attachmentsReleased;
+
+        BulkEmailJob(String jobId, String senderName, EmailSender sender, Long poolId, String templateName,
+                Long templateId, String subject, CompiledTemplate content, Map<String, Object> commonVariables,
+                String attachmentFileIds, int total, String auditor, String userId,
+                List<List<BulkEmailRequestDto.Recipient>> chunks) {
+            this.jobId = jobId;
+            this.senderName = senderName;
+            this.sender = sender;
+            this.poolId = poolId;
+            this.templateName = templateName;
+            this.subject = subject;
+            this.content = content;
+            this.commonVariables = commonVariables;
+            this.attachmentFileIds = attachmentFileIds;
+            this.total = total;
+            this.auditor = auditor;
+            this.userId = userId;
+            this.chunks = chunks;
+            if (templateId != null) {
+                this.templateRef = new NotificationTemplate();
+                this.templateRef.setId(templateId);
+            } else {
+                this.templateRef = null;
+            }
+        }
+
+        synchronized EmailAttachmentService.PreparedAttachments attachments(EmailAttachmentService service) {
+            if (attachmentsReleased) {
+                throw new IllegalStateException("Bulk email job " + jobId + " was abandoned");
+            }
+            if (attachments == null) {
+                attachments = service.prepare(attachmentFileIds);
+            }
+            return attachments;
+        }
+
+        /**
+         * Delete the encoded attachments; later messages of the job fail instead of encoding them again
+         */
+        synchronized void releaseAttachments() {
+            attachmentsReleased = true;
+            if (attachments != null) {
+                attachments.close();
+                attachments = null;
+            }
+        }
+
+        void chunkStarted() {
+            runningChunks.incrementAndGet();
+            lastActivityAt = LocalDateTime.now();
+        }
+
+        /**
+         * No chunk is running and none started or finished since {@code cutoff}
+         */
+        boolean isStalledSince(LocalDateTime cutoff) {
+            return completedAt == null && runningChunks.get() == 0 && lastActivityAt.isBefore(cutoff);
+        }
+
+        void chunkDone(ChunkOutcome outcome) {
+            runningChunks.decrementAndGet();
+            lastActivityAt = LocalDateTime.now();
+            sent.addAndGet(outcome.sent);
+            failed.addAndGet(outcome.failed);
+            deferred.addAndGet(outcome.deferred);
+            if (outcome.errorMessage != null) {
+                errorMessage = outcome.errorMessage;
+            }
+            if (processed.addAndGet(outcome.processed) >= total) {
+                completedAt = LocalDateTime.now();
+                releaseAttachments();
+            }
+        }
+
+        boolean isComplete() {
+            return completedAt != null;
+        }
+
+        BulkEmailJobDto toDto() {
+            int done = sent.get() + failed.get() + deferred.get();
+            return BulkEmailJobDto.builder()
+                    .jobId(jobId)
+                    .status(completedAt != null ? "COMPLETED" : (done == 0 ? "QUEUED" : "IN_PROGRESS"))
+                    .senderName(senderName)
+                    .templateName(templateName)
+                    .total(total)
+                    .sent(sent.get())
+                    .failed(failed.get())
+                    .deferred(deferred.get())
+                    .pending(Math.max(0, total - done))
+                    .errorMessage(errorMessage)
+                    .submittedAt(submittedAt)
+                    .completedAt(completedAt)
+                    .build();
+        }
+    }
+}
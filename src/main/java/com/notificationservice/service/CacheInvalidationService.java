@@ -0,0 +1,243 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.CacheInvalidationProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps in-memory caches of all nodes in step through Postgres LISTEN/NOTIFY. A change is
+ * published with {@code pg_notify} in the transaction that makes it, so Postgres delivers it
+ * exactly when that transaction commits and drops it on rollback. Each node listens on its own
+ * connection, outside the pool, and evicts only the entries named in the events of other nodes.
+ * Events sent while a node was not listening are lost, so every (re)connect clears the caches.
+ * A connection that went away without a reset, e.g. behind a NAT that dropped it, reports no
+ * error while it waits for notifications, so the listener runs a query on it every
+ * {@code health-check-interval-ms} under a socket timeout and reconnects when it gets no reply.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheInvalidationService {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final CacheInvalidationProperties properties;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Identifies this node's own events, whose caches were already evicted locally
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, CacheListener> listeners = new ConcurrentHashMap<>();
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+    private final LongAdder healthCheckFailures = new LongAdder();
+    private volatile boolean listening;
+    private volatile LocalDateTime connectedAt;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    @PostConstruct
+    void start() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!properties.getChannel().matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalStateException("Invalid cache invalidation channel: " + properties.getChannel());
+        }
+        running = true;
+        listenerThread = new Thread(this::listen, "cache-invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        if (listenerThread != null) {
+            try {
+                listenerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Receive the changes other nodes publish for {@code cache}: {@code onChange} gets the key
+     * of a changed entry, {@code onResync} runs when changes may have been missed and the whole
+     * cache must be dropped
+     */
+    public void register(String cache, Consumer<String> onChange, Runnable onResync) {
+        listeners.put(cache, new CacheListener(onChange, onResync));
+    }
+
+    /**
+     * Tell the other nodes that the entry {@code key} of {@code cache} changed. Inside a
+     * transaction the event is delivered when it commits; outside one, right away.
+     */
+    public void publish(String cache, String key) {
+        if (!properties.isEnabled() || key == null) {
+            return;
+        }
+        Map<String, String> event = new LinkedHashMap<>();
+        event.put("cache", cache);
+        event.put("key", key);
+        event.put("node", nodeId);
+        String payload;
+        try {
+            payload = objectMapper.writeValueAsString(event);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to serialize cache event", e);
+        }
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, properties.getChannel(), payload);
+        published.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("listening", listening);
+        stats.put("connectedAt", connectedAt);
+        stats.put("published", published.sum());
+        stats.put("received", received.sum());
+        stats.put("resyncs", resyncs.sum());
+        stats.put("healthCheckFailures", healthCheckFailures.sum());
+        return stats;
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = DriverManager.getConnection(dataSourceProperties.determineUrl(),
+                    connectionProperties())) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + properties.getChannel());
+                }
+                listening = true;
+                connectedAt = LocalDateTime.now();
+                log.info("Listening for cache changes on channel: {}", properties.getChannel());
+                resync();
+
+                long healthCheckNanos = TimeUnit.MILLISECONDS.toNanos(properties.getHealthCheckIntervalMs());
+                long nextHealthCheck = System.nanoTime() + healthCheckNanos;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(properties.getPollTimeoutMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            dispatch(notification.getParameter());
+                        }
+                    }
+                    if (System.nanoTime() - nextHealthCheck >= 0) {
+                        checkAlive(connection);
+                        nextHealthCheck = System.nanoTime() + healthCheckNanos;
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cache change listener disconnected, reconnecting in {} ms: {}",
+                            properties.getReconnectDelayMs(), e.getMessage());
+                }
+            } finally {
+                listening = false;
+            }
+            if (running) {
+                try {
+                    Thread.sleep(properties.getReconnectDelayMs());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Properties connectionProperties() {
+        Properties connectionProperties = new Properties();
+        if (dataSourceProperties.determineUsername() != null) {
+            connectionProperties.setProperty("user", dataSourceProperties.determineUsername());
+        }
+        if (dataSourceProperties.determinePassword() != null) {
+            connectionProperties.setProperty("password", dataSourceProperties.determinePassword());
+        }
+        connectionProperties.setProperty("tcpKeepAlive", "true");
+        connectionProperties.setProperty("socketTimeout", String.valueOf(properties.getSocketTimeoutSeconds()));
+        return connectionProperties;
+    }
+
+    /**
+     * Round trip on the listening connection; throws when the server does not answer within
+     * the socket timeout
+     */
+    private void checkAlive(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+        } catch (SQLException e) {
+            healthCheckFailures.increment();
+            throw e;
+        }
+    }
+
+    private void dispatch(String payload) {
+        try {
+            JsonNode event = objectMapper.readTree(payload);
+            if (nodeId.equals(event.path("node").asText())) {
+                return;
+            }
+            received.increment();
+            CacheListener listener = listeners.get(event.path("cache").asText());
+            if (listener != null) {
+                listener.onChange.accept(event.path("key").asText());
+            }
+        } catch (Exception e) {
+            log.warn("Ignoring cache change event: {} ({})", payload, e.getMessage());
+        }
+    }
+
+    private void resync() {
+        resyncs.increment();
+        listeners.forEach((cache, listener) -> {
+            try {
+                listener.onResync.run();
+            } catch (RuntimeException e) {
+                log.warn("Failed to resync cache: {}", cache, e);
+            }
+        });
+    }
+
+    private static final class CacheListener {
+        private final Consumer<String> onChange;
+        private final Runnable onResync;
+
+        CacheListener(Consumer<String> onChange, Runnable onResync) {
+            this.onChange = onChange;
+            this.onResync = onResync;
+        }
+    }
+}
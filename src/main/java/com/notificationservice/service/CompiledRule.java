@@ -0,0 +1,485 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.notificationservice.dto.NotificationRuleDto;
+import com.notificationservice.entity.NotificationRule;
+import com.notificationservice.util.DeadlineCharSequence;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A notification rule compiled for evaluation. Its {@code conditions} JSON is parsed once into
+ * typed checks, the time zone is resolved and the days are held in an {@link EnumSet}, so
+ * evaluating the rule reads no JSON and touches no database. Keywords are registered with the
+ * rule set, which finds those of all its rules in one scan of the content; regular expressions
+ * come precompiled and are stopped once they run past the pattern timeout. Immutable; a rule is
+ * compiled again when it changes.
+ */
+@Slf4j
+final class CompiledRule {
+
+    enum Action {
+        SEND, BLOCK, DIGEST, DEFER
+    }
+
+    /**
+     * What a rule is evaluated against; keywords are matched once per evaluation
+     */
+    interface Context {
+        String content();
+
+        /**
+         * Whether a keyword registered with {@link CompiledRuleSet.Compiler#keyword} occurs in the content
+         */
+        boolean containsKeyword(int keywordId);
+
+        Map<String, Object> variables();
+
+        /**
+         * Whether one more send to the user stays within both limits; either may be null
+         */
+        boolean withinFrequencyLimits(Integer maxPerDay, Integer minIntervalMinutes);
+    }
+
+    @FunctionalInterface
+    private interface Condition {
+        boolean test(Context context);
+    }
+
+    private static final Condition ALWAYS = context -> true;
+    private static final Condition NEVER = context -> false;
+
+    private final String name;
+    private final Action action;
+    private final NotificationRuleDto dto;
+    private final NotificationDigestService.DigestPolicy digest;
+    private final Condition condition;
+    /**
+     * Window a DEFER rule sends in; {@code null} when the rule is not time-based or its time
+     * zone is invalid
+     */
+    private final TimeWindow deferWindow;
+
+    private CompiledRule(NotificationRule rule, NotificationRuleDto dto, CompiledRuleSet.Compiler compiler) {
+        this.name = rule.getName();
+        this.action = action(rule.getActionType());
+        this.dto = dto;
+        this.digest = action == Action.DIGEST
+                ? NotificationDigestService.DigestPolicy.fromActionConfig(rule.getActionConfig())
+                : null;
+        TimeWindow window = compileWindow(rule);
+        this.condition = compileCondition(rule, window, compiler);
+        boolean timeBased = rule.getRuleType() == NotificationRule.RuleType.TIME_BASED;
+        this.deferWindow = action == Action.DEFER && timeBased ? window : null;
+        if (action == Action.DEFER && !timeBased) {
+            log.warn("DEFER is only supported on time-based rules, ignoring rule: {}", name);
+        }
+    }
+
+    /**
+     * Compile a rule; {@code dto} is what evaluation results report for it
+     */
+    static CompiledRule compile(NotificationRule rule, NotificationRuleDto dto, CompiledRuleSet.Compiler compiler) {
+        return new CompiledRule(rule, dto, compiler);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    Action getAction() {
+        return action;
+    }
+
+    NotificationRuleDto getDto() {
+        return dto;
+    }
+
+    NotificationDigestService.DigestPolicy getDigest() {
+        return digest;
+    }
+
+    boolean matches(Context context) {
+        return condition.test(context);
+    }
+
+    /**
+     * For a DEFER rule, the start of the next allowed window when now is outside it, in server
+     * time; {@code null} to send now
+     */
+    LocalDateTime deferUntil() {
+        if (deferWindow == null) {
+            return null;
+        }
+        ZonedDateTime now = ZonedDateTime.now(deferWindow.zone);
+        return deferWindow.contains(now) ? null : deferWindow.nextStart(now);
+    }
+
+    private static Action action(String actionType) {
+        if (actionType == null) {
+            return Action.SEND;
+        }
+        switch (actionType) {
+            case "BLOCK":
+                return Action.BLOCK;
+            case "DIGEST":
+                return Action.DIGEST;
+            case "DEFER":
+                return Action.DEFER;
+            default:
+                return Action.SEND;
+        }
+    }
+
+    private TimeWindow compileWindow(NotificationRule rule) {
+        if (rule.getRuleType() != NotificationRule.RuleType.TIME_BASED
+                && rule.getRuleType() != NotificationRule.RuleType.COMPOSITE) {
+            return null;
+        }
+        try {
+            return new TimeWindow(ZoneId.of(rule.getTimezone()), rule.getDaysOfWeek(), rule.getStartTime(),
+                    rule.getEndTime());
+        } catch (DateTimeException | NullPointerException e) {
+            log.error("Invalid time zone '{}' in rule: {}", rule.getTimezone(), rule.getName());
+            return null;
+        }
+    }
+
+    private Condition compileCondition(NotificationRule rule, TimeWindow window, CompiledRuleSet.Compiler compiler) {
+        if (rule.getRuleType() == null) {
+            return NEVER;
+        }
+        try {
+            switch (rule.getRuleType()) {
+                case TIME_BASED:
+                    return window != null ? window : NEVER;
+                case FREQUENCY_BASED:
+                    return FrequencyLimit.compile(rule, compiler);
+                case CONTENT_BASED:
+                    return ContentConditions.compile(rule.getConditions(), compiler);
+                case COMPOSITE:
+                    return compileComposite(rule, window, compiler);
+                default:
+                    return NEVER;
+            }
+        } catch (PatternSyntaxException e) {
+            log.error("Invalid pattern in rule: {}, the rule never applies: {}", rule.getName(), e.getMessage());
+            return NEVER;
+        }
+    }
+
+    private Condition compileComposite(NotificationRule rule, TimeWindow window, CompiledRuleSet.Compiler compiler) {
+        JsonNode conditions = rule.getConditions();
+        if (conditions == null) {
+            return ALWAYS;
+        }
+        boolean requireAll = !conditions.has("requireAll") || conditions.get("requireAll").asBoolean();
+
+        // Each part applies the rule's own settings of that kind; absent parts count as met
+        List<Condition> parts = new ArrayList<>(3);
+        if (conditions.has("timeBased")) {
+            parts.add(window != null ? window : NEVER);
+        }
+        if (conditions.has("frequencyBased")) {
+            parts.add(FrequencyLimit.compile(rule, compiler));
+        }
+        if (conditions.has("contentBased")) {
+            parts.add(ContentConditions.compile(conditions, compiler));
+        }
+
+        Condition[] all = parts.toArray(new Condition[0]);
+        if (requireAll) {
+            return context -> {
+                for (Condition part : all) {
+                    if (!part.test(context)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        if (all.length < 3) {
+            return ALWAYS;
+        }
+        return context -> {
+            for (Condition part : all) {
+                if (part.test(context)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Allowed days and time of day in the rule's time zone
+     */
+    private static final class TimeWindow implements Condition {
+        private final ZoneId zone;
+        private final EnumSet<DayOfWeek> days;
+        private final LocalTime start;
+        private final LocalTime end;
+
+        TimeWindow(ZoneId zone, Set<DayOfWeek> days, LocalTime start, LocalTime end) {
+            this.zone = zone;
+            this.days = days == null || days.isEmpty() ? null : EnumSet.copyOf(days);
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean test(Context context) {
+            return contains(ZonedDateTime.now(zone));
+        }
+
+        boolean contains(ZonedDateTime now) {
+            if (days != null && !days.contains(now.getDayOfWeek())) {
+                return false;
+            }
+            LocalTime time = now.toLocalTime();
+            if (start != null && time.isBefore(start)) {
+                return false;
+            }
+            return end == null || !time.isAfter(end);
+        }
+
+        LocalDateTime nextStart(ZonedDateTime now) {
+            LocalTime windowStart = start != null ? start : LocalTime.MIDNIGHT;
+            for (int day = 0; day <= 7; day++) {
+                LocalDate date = now.toLocalDate().plusDays(day);
+                if (days != null && !days.contains(date.getDayOfWeek())) {
+                    continue;
+                }
+                ZonedDateTime candidate = date.atTime(windowStart).atZone(zone);
+                if (candidate.isAfter(now)) {
+                    return candidate.withZoneSameInstant(ZoneId.systemDefault()).toLocalDateTime();
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Daily limit and minimum interval against the user's sliding-window send counts
+     */
+    private static final class FrequencyLimit implements Condition {
+        private final Integer maxPerDay;
+        private final Integer minIntervalMinutes;
+
+        private FrequencyLimit(NotificationRule rule) {
+            this.maxPerDay = rule.getMaxNotificationsPerDay();
+            this.minIntervalMinutes = rule.getMinIntervalMinutes();
+        }
+
+        static Condition compile(NotificationRule rule, CompiledRuleSet.Compiler compiler) {
+            if (rule.getMaxNotificationsPerDay() == null && rule.getMinIntervalMinutes() == null) {
+                return ALWAYS;
+            }
+            compiler.frequencyLimit();
+            return new FrequencyLimit(rule);
+        }
+
+        @Override
+        public boolean test(Context context) {
+            return context.withinFrequencyLimits(maxPerDay, minIntervalMinutes);
+        }
+    }
+
+    /**
+     * Content length, blocked and required keywords and patterns, and conditions on variables.
+     * With {@code wholeWords} set, keywords only match whole words.
+     */
+    private static final class ContentConditions implements Condition {
+        private final Integer maxContentLength;
+        private final int[] blockedKeywords;
+        private final int[] requiredKeywords;
+        private final Pattern[] blockedPatterns;
+        private final Pattern[] requiredPatterns;
+        private final long patternTimeoutNanos;
+        private final VariableCondition[] variableConditions;
+
+        private ContentConditions(JsonNode conditions, CompiledRuleSet.Compiler compiler) {
+            this.maxContentLength = conditions.has("maxContentLength")
+                    ? conditions.get("maxContentLength").asInt()
+                    : null;
+            boolean wholeWords = conditions.path("wholeWords").asBoolean(false);
+            this.blockedKeywords = keywords(conditions.get("blockedKeywords"), wholeWords, compiler);
+            this.requiredKeywords = keywords(conditions.get("requiredKeywords"), wholeWords, compiler);
+            this.blockedPatterns = patterns(conditions.get("blockedPatterns"), compiler);
+            this.requiredPatterns = patterns(conditions.get("requiredPatterns"), compiler);
+            this.patternTimeoutNanos = compiler.patternTimeoutNanos();
+            this.variableConditions = conditions.has("variableConditions")
+                    ? VariableCondition.compileAll(conditions.get("variableConditions"))
+                    : null;
+        }
+
+        static Condition compile(JsonNode conditions, CompiledRuleSet.Compiler compiler) {
+            return conditions == null ? ALWAYS : new ContentConditions(conditions, compiler);
+        }
+
+        @Override
+        public boolean test(Context context) {
+            if (maxContentLength != null || blockedKeywords != null || requiredKeywords != null
+                    || blockedPatterns != null || requiredPatterns != null) {
+                String content = context.content();
+                if (content == null) {
+                    return false;
+                }
+                if (maxContentLength != null && content.length() > maxContentLength) {
+                    return false;
+                }
+                if (blockedKeywords != null) {
+                    for (int keyword : blockedKeywords) {
+                        if (context.containsKeyword(keyword)) {
+                            return false;
+                        }
+                    }
+                }
+                if (requiredKeywords != null && !containsAny(context, requiredKeywords)) {
+                    return false;
+                }
+                if (blockedPatterns != null || requiredPatterns != null) {
+                    // One budget for all the patterns of the condition, however many there are
+                    CharSequence bounded = new DeadlineCharSequence(content, System.nanoTime() + patternTimeoutNanos);
+                    if (blockedPatterns != null) {
+                        for (Pattern pattern : blockedPatterns) {
+                            if (finds(pattern, bounded)) {
+                                return false;
+                            }
+                        }
+                    }
+                    if (requiredPatterns != null && !findsAny(bounded, requiredPatterns)) {
+                        return false;
+                    }
+                }
+            }
+            if (variableConditions != null && context.variables() != null) {
+                for (VariableCondition condition : variableConditions) {
+                    if (!condition.test(context.variables())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        private static boolean containsAny(Context context, int[] keywords) {
+            for (int keyword : keywords) {
+                if (context.containsKeyword(keyword)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean findsAny(CharSequence content, Pattern[] patterns) {
+            for (Pattern pattern : patterns) {
+                if (finds(pattern, content)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Whether the pattern occurs in the content; a pattern that runs out of time counts as
+         * not occurring
+         */
+        private static boolean finds(Pattern pattern, CharSequence content) {
+            try {
+                return pattern.matcher(content).find();
+            } catch (DeadlineCharSequence.DeadlineExceededException e) {
+                log.warn("Pattern {} timed out on content of {} characters", pattern.pattern(), content.length());
+                return false;
+            }
+        }
+
+        private static int[] keywords(JsonNode node, boolean wholeWords, CompiledRuleSet.Compiler compiler) {
+            if (node == null || !node.isArray()) {
+                return null;
+            }
+            int[] keywords = new int[node.size()];
+            for (int i = 0; i < keywords.length; i++) {
+                keywords[i] = compiler.keyword(node.get(i).asText(), wholeWords);
+            }
+            return keywords;
+        }
+
+        private static Pattern[] patterns(JsonNode node, CompiledRuleSet.Compiler compiler) {
+            if (node == null || !node.isArray()) {
+                return null;
+            }
+            Pattern[] patterns = new Pattern[node.size()];
+            for (int i = 0; i < patterns.length; i++) {
+                patterns[i] = compiler.pattern(node.get(i).asText());
+            }
+            return patterns;
+        }
+    }
+
+    /**
+     * Checks on one variable; a missing variable fails them
+     */
+    private static final class VariableCondition {
+        private final String name;
+        private final String equalTo;
+        private final String notEqualTo;
+        private final String contains;
+        private final Integer minLength;
+        private final Integer maxLength;
+
+        private VariableCondition(String name, JsonNode condition) {
+            this.name = name;
+            this.equalTo = condition.has("equals") ? condition.get("equals").asText() : null;
+            this.notEqualTo = condition.has("notEquals") ? condition.get("notEquals").asText() : null;
+            this.contains = condition.has("contains") ? condition.get("contains").asText() : null;
+            this.minLength = condition.has("minLength") ? condition.get("minLength").asInt() : null;
+            this.maxLength = condition.has("maxLength") ? condition.get("maxLength").asInt() : null;
+        }
+
+        static VariableCondition[] compileAll(JsonNode conditions) {
+            List<VariableCondition> compiled = new ArrayList<>();
+            for (Iterator<String> it = conditions.fieldNames(); it.hasNext();) {
+                String name = it.next();
+                compiled.add(new VariableCondition(name, conditions.get(name)));
+            }
+            return compiled.toArray(new VariableCondition[0]);
+        }
+
+        boolean test(Map<String, Object> variables) {
+            Object value = variables.get(name);
+            if (value == null) {
+                return false;
+            }
+            String text = value.toString();
+            if (equalTo != null && !text.equals(equalTo)) {
+                return false;
+            }
+            if (notEqualTo != null && text.equals(notEqualTo)) {
+                return false;
+            }
+            if (contains != null && !text.contains(contains)) {
+                return false;
+            }
+            if (minLength != null && text.length() < minLength) {
+                return false;
+            }
+            return maxLength == null || text.length() <= maxLength;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.notificationservice.service;
+
+import com.notificationservice.util.AhoCorasickMatcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Active rules of one user, compiled and in priority order. Immutable: a change to any of the
+ * user's rules replaces the whole set, so evaluations in flight keep the snapshot they started with.
+ * The keywords of all the rules share one matcher, so content is scanned once per evaluation.
+ */
+final class CompiledRuleSet {
+
+    static final CompiledRuleSet EMPTY = new CompiledRuleSet(List.of(), null, false);
+
+    private static final BitSet NO_KEYWORDS = new BitSet(0);
+
+    private final CompiledRule[] rules;
+    /**
+     * Keywords of all the rules, or {@code null} when none has any
+     */
+    private final AhoCorasickMatcher keywords;
+    private final boolean frequencyLimited;
+
+    private CompiledRuleSet(List<CompiledRule> rules, AhoCorasickMatcher keywords, boolean frequencyLimited) {
+        this.rules = rules.toArray(new CompiledRule[0]);
+        this.keywords = keywords;
+        this.frequencyLimited = frequencyLimited;
+    }
+
+    CompiledRule[] getRules() {
+        return rules;
+    }
+
+    boolean isEmpty() {
+        return rules.length == 0;
+    }
+
+    int size() {
+        return rules.length;
+    }
+
+    /**
+     * Whether evaluating the set may check the user's send counts
+     */
+    boolean hasFrequencyLimits() {
+        return frequencyLimited;
+    }
+
+    int keywordCount() {
+        return keywords != null ? keywords.size() : 0;
+    }
+
+    /**
+     * Ids of the keywords of any rule that occur in {@code content}
+     */
+    BitSet findKeywords(String content) {
+        if (keywords == null || content == null) {
+            return NO_KEYWORDS;
+        }
+        return keywords.findAll(content);
+    }
+
+    /**
+     * Collects the keywords and patterns of the rules being compiled into one set
+     */
+    static final class Compiler {
+        private final AhoCorasickMatcher.Builder keywords = AhoCorasickMatcher.builder();
+        /**
+         * Keyword ids by word mode and lower-cased keyword; rules sharing a keyword share its id
+         */
+        private final Map<String, Integer> keywordIds = new HashMap<>();
+        private final Function<String, Pattern> patterns;
+        private final long patternTimeoutNanos;
+        private final List<CompiledRule> rules = new ArrayList<>();
+        private boolean frequencyLimited;
+
+        /**
+         * @param patterns compiles a regular expression, usually through a shared cache
+         * @param patternTimeoutMillis time the patterns of one condition may take on a content
+         */
+        Compiler(Function<String, Pattern> patterns, long patternTimeoutMillis) {
+            this.patterns = patterns;
+            this.patternTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(patternTimeoutMillis);
+        }
+
+        /**
+         * Register a keyword and return the id the rule checks with
+         * {@link CompiledRule.Context#containsKeyword}
+         */
+        int keyword(String keyword, boolean wholeWord) {
+            String key = (wholeWord ? "w:" : "s:") + keyword.toLowerCase(Locale.ROOT);
+            return keywordIds.computeIfAbsent(key, k -> keywords.add(keyword, wholeWord));
+        }
+
+        /**
+         * Compiled form of a regular expression; throws {@link java.util.regex.PatternSyntaxException}
+         * when it is invalid
+         */
+        Pattern pattern(String regex) {
+            return patterns.apply(regex);
+        }
+
+        long patternTimeoutNanos() {
+            return patternTimeoutNanos;
+        }
+
+        /**
+         * Note that a rule being compiled checks frequency limits
+         */
+        void frequencyLimit() {
+            frequencyLimited = true;
+        }
+
+        Compiler add(CompiledRule rule) {
+            rules.add(rule);
+            return this;
+        }
+
+        CompiledRuleSet build() {
+            return new CompiledRuleSet(rules, keywordIds.isEmpty() ? null : keywords.build(), frequencyLimited);
+        }
+    }
+}
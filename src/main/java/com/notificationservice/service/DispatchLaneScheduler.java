@@ -0,0 +1,231 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.DispatchProperties;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationRequest.PriorityLane;
+import com.notificationservice.util.DeficitRoundRobinQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs dispatch work in priority lanes (OTP, transactional, bulk). Every lane has its own
+ * worker threads, so a bulk campaign can never occupy the threads OTPs are sent on, and a
+ * bounded queue that serves user ids by weighted round robin, so one user's backlog does
+ * not delay other users of the same lane.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DispatchLaneScheduler {
+
+    private static final String ANONYMOUS = "anonymous";
+
+    private final DispatchProperties dispatchProperties;
+
+    private final Map<PriorityLane, Lane> lanes = new EnumMap<>(PriorityLane.class);
+
+    @PostConstruct
+    void init() {
+        for (PriorityLane priorityLane : PriorityLane.values()) {
+            DispatchProperties.LaneProperties config = dispatchProperties.getLanes().get(priorityLane);
+            if (config == null) {
+                throw new IllegalStateException("notification.dispatch.lanes." + priorityLane.name().toLowerCase()
+                        + " is not configured");
+            }
+            Lane lane = new Lane(priorityLane, config);
+            lane.start();
+            lanes.put(priorityLane, lane);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        lanes.values().forEach(Lane::stop);
+    }
+
+    /**
+     * Queue a task for a user in a lane; {@code false} when the lane is full
+     */
+    public boolean submit(PriorityLane lane, String userId, Runnable task) {
+        Lane target = lanes.get(lane);
+        boolean accepted = target.queue.offer(flow(userId), new LaneTask(task));
+        if (!accepted) {
+            target.rejected.increment();
+        }
+        return accepted;
+    }
+
+    /**
+     * Queue follow-up work of a task the lane already accepted, bypassing the queue bound
+     */
+    public void submitFollowUp(PriorityLane lane, String userId, Runnable task) {
+        lanes.get(lane).queue.force(flow(userId), new LaneTask(task));
+    }
+
+    /**
+     * Queue slots a lane has left
+     */
+    public int remainingCapacity(PriorityLane lane) {
+        return lanes.get(lane).queue.remainingCapacity();
+    }
+
+    /**
+     * Lane of a new request: an explicit {@code priority} variable wins, then OTP templates,
+     * everything else is transactional
+     */
+    public PriorityLane resolveLane(String templateName, Map<String, Object> variables) {
+        if (variables != null && variables.get("priority") != null) {
+            String requested = variables.get("priority").toString().trim().toUpperCase();
+            for (PriorityLane lane : PriorityLane.values()) {
+                if (lane.name().equals(requested)) {
+                    return lane;
+                }
+            }
+        }
+        if (templateName != null && dispatchProperties.getOtpTemplates().contains(templateName)) {
+            return PriorityLane.OTP;
+        }
+        return PriorityLane.TRANSACTIONAL;
+    }
+
+    /**
+     * Stamp lane and user id on a new request so outbox workers can schedule it
+     */
+    public void assignLane(NotificationRequest request, String templateName, Map<String, Object> variables) {
+        request.setPriorityLane(resolveLane(templateName, variables));
+        if (variables != null && variables.get("userId") != null) {
+            request.setUserId(variables.get("userId").toString());
+        }
+    }
+
+    /**
+     * Queue depth, active users and wait times per lane
+     */
+    public Map<String, Object> getLaneStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lanes.forEach((priorityLane, lane) -> {
+            long completed = lane.completed.sum();
+            Map<String, Object> laneStats = new LinkedHashMap<>();
+            laneStats.put("workers", lane.config.getWorkerThreads());
+            laneStats.put("busyWorkers", lane.busy.get());
+            laneStats.put("queueDepth", lane.queue.size());
+            laneStats.put("queueCapacity", lane.config.getQueueCapacity());
+            laneStats.put("activeUsers", lane.queue.activeFlows());
+            laneStats.put("completed", completed);
+            laneStats.put("rejected", lane.rejected.sum());
+            laneStats.put("avgWaitMs", completed > 0
+                    ? TimeUnit.NANOSECONDS.toMillis(lane.totalWaitNanos.sum() / completed) : 0);
+            laneStats.put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(lane.maxWaitNanos.get()));
+            laneStats.put("recentWaitMs", TimeUnit.NANOSECONDS.toMillis(lane.recentWaitNanos.get()));
+            stats.put(priorityLane.name(), laneStats);
+        });
+        return stats;
+    }
+
+    private static String flow(String userId) {
+        return userId != null && !userId.isBlank() ? userId : ANONYMOUS;
+    }
+
+    private static final class LaneTask {
+        private final Runnable task;
+        private final long enqueuedAt = System.nanoTime();
+
+        LaneTask(Runnable task) {
+            this.task = task;
+        }
+    }
+
+    private final class Lane {
+        private final PriorityLane priorityLane;
+        private final DispatchProperties.LaneProperties config;
+        private final DeficitRoundRobinQueue<LaneTask> queue;
+        private final List<Thread> workers = new ArrayList<>();
+
+        private final AtomicInteger busy = new AtomicInteger();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        /**
+         * Exponentially weighted wait of recent tasks (alpha 1/8), to watch a lane during a campaign
+         */
+        private final AtomicLong recentWaitNanos = new AtomicLong();
+
+        private volatile boolean running = true;
+
+        Lane(PriorityLane priorityLane, DispatchProperties.LaneProperties config) {
+            this.priorityLane = priorityLane;
+            this.config = config;
+            this.queue = new DeficitRoundRobinQueue<>(config.getQueueCapacity(),
+                    userId -> dispatchProperties.getUserWeights().getOrDefault(userId, 1));
+        }
+
+        void start() {
+            String prefix = "dispatch-" + priorityLane.name().toLowerCase() + "-";
+            for (int i = 0; i < config.getWorkerThreads(); i++) {
+                Thread worker = new Thread(this::work, prefix + (i + 1));
+                worker.setDaemon(true);
+                worker.start();
+                workers.add(worker);
+            }
+        }
+
+        /**
+         * Let running tasks finish; queued outbox rows are released on the next start
+         */
+        void stop() {
+            running = false;
+            for (Thread worker : workers) {
+                try {
+                    worker.join(TimeUnit.SECONDS.toMillis(30));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        private void work() {
+            while (running) {
+                LaneTask next;
+                try {
+                    next = queue.poll(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (next == null) {
+                    continue;
+                }
+
+                long waited = System.nanoTime() - next.enqueuedAt;
+                totalWaitNanos.add(waited);
+                maxWaitNanos.accumulateAndGet(waited, Math::max);
+                recentWaitNanos.accumulateAndGet(waited, (recent, sample) -> recent + (sample - recent) / 8);
+
+                busy.incrementAndGet();
+                try {
+                    next.task.run();
+                } catch (RuntimeException e) {
+                    log.error("Dispatch task failed in lane {}", priorityLane, e);
+                } finally {
+                    busy.decrementAndGet();
+                    completed.increment();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.notificationservice.service;
+
+import com.notificationservice.util.FileChannelDataSource;
+import jakarta.activation.DataHandler;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Part;
+import jakarta.mail.internet.MimeBodyPart;
+import jakarta.mail.internet.MimeUtility;
+import jakarta.mail.internet.PreencodedMimeBodyPart;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Stored files as email attachments. Parts are backed by {@link FileChannelDataSource}, so the
+ * file is streamed and base64-encoded while the message is written to the connection and never
+ * held in memory. Bulk jobs encode each file once up front into a temporary file that every
+ * recipient's message then copies verbatim.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmailAttachmentService {
+
+    private final FileStorageService fileStorageService;
+
+    /**
+     * Check that {@code userId} may read every file; returns the ids in the form stored on a
+     * request, or {@code null} when there are none
+     */
+    public String authorize(List<Long> fileIds, String userId) {
+        if (fileIds == null || fileIds.isEmpty()) {
+            return null;
+        }
+        for (Long fileId : fileIds) {
+            fileStorageService.resolveAttachment(fileId, userId);
+        }
+        return fileIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+    }
+
+    /**
+     * Add the files stored on a request to its message, streamed from disk when it is sent
+     */
+    public void attach(MimeMessageHelper helper, String attachmentFileIds) throws MessagingException {
+        for (Long fileId : parseIds(attachmentFileIds)) {
+            FileStorageService.FileAttachment attachment = fileStorageService.loadAttachment(fileId);
+            MimeBodyPart part = new MimeBodyPart();
+            part.setDataHandler(new DataHandler(new FileChannelDataSource(attachment.getPath(),
+                    attachment.getFileName(), attachment.getContentType())));
+            // A fixed encoding keeps the file from being read once just to choose one
+            part.setHeader("Content-Transfer-Encoding", "base64");
+            addPart(helper, part, attachment.getFileName());
+        }
+    }
+
+    /**
+     * Encode the files once for a bulk job; the result must be closed when the job is done
+     */
+    public PreparedAttachments prepare(String attachmentFileIds) {
+        PreparedAttachments prepared = new PreparedAttachments();
+        try {
+            for (Long fileId : parseIds(attachmentFileIds)) {
+                FileStorageService.FileAttachment attachment = fileStorageService.loadAttachment(fileId);
+                Path encoded = Files.createTempFile("attachment-" + fileId + "-", ".b64");
+                prepared.files.add(new PreparedFile(attachment, encoded));
+                try (InputStream in = Files.newInputStream(attachment.getPath());
+                     OutputStream out = MimeUtility.encode(Files.newOutputStream(encoded), "base64")) {
+                    in.transferTo(out);
+                }
+            }
+            return prepared;
+        } catch (IOException | MessagingException e) {
+            prepared.close();
+            throw new IllegalStateException("Failed to encode attachments", e);
+        }
+    }
+
+    /**
+     * Add pre-encoded files to one message of a bulk job
+     */
+    public void attach(MimeMessageHelper helper, PreparedAttachments prepared) throws MessagingException {
+        for (PreparedFile file : prepared.files) {
+            MimeBodyPart part = new PreencodedMimeBodyPart("base64");
+            part.setDataHandler(new DataHandler(new FileChannelDataSource(file.encoded,
+                    file.attachment.getFileName(), file.attachment.getContentType())));
+            addPart(helper, part, file.attachment.getFileName());
+        }
+    }
+
+    private static void addPart(MimeMessageHelper helper, MimeBodyPart part, String fileName)
+            throws MessagingException {
+        part.setDisposition(Part.ATTACHMENT);
+        try {
+            part.setFileName(MimeUtility.encodeText(fileName));
+        } catch (UnsupportedEncodingException e) {
+            part.setFileName(fileName);
+        }
+        helper.getRootMimeMultipart().addBodyPart(part);
+    }
+
+    private static List<Long> parseIds(String attachmentFileIds) {
+        if (attachmentFileIds == null || attachmentFileIds.isBlank()) {
+            return List.of();
+        }
+        return Arrays.stream(attachmentFileIds.split(","))
+                .map(String::trim)
+                .map(Long::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Base64 files of one bulk job, deleted by {@link #close()}
+     */
+    public static class PreparedAttachments implements AutoCloseable {
+        private final List<PreparedFile> files = new ArrayList<>();
+
+        public boolean isEmpty() {
+            return files.isEmpty();
+        }
+
+        @Override
+        public void close() {
+            for (PreparedFile file : files) {
+                try {
+                    Files.deleteIfExists(file.encoded);
+                } catch (IOException e) {
+                    log.warn("Failed to delete encoded attachment {}", file.encoded, e);
+                }
+            }
+        }
+    }
+
+    private static final class PreparedFile {
+        private final FileStorageService.FileAttachment attachment;
+        private final Path encoded;
+
+        PreparedFile(FileStorageService.FileAttachment attachment, Path encoded) {
+            this.attachment = attachment;
+            this.encoded = encoded;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package com.notificationservice.service;
 
 import com.notificationservice.dto.EmailSenderDto;
 import com.notificationservice.entity.EmailSender;
+import com.notificationservice.repository.EmailSenderPoolRepository;
 import com.notificationservice.repository.EmailSenderRepository;
 import com.notificationservice.mapper.EmailSenderMapper;
 import lombok.RequiredArgsConstructor;
@@ -10,6 +11,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -20,6 +22,10 @@ import java.util.stream.Collectors;
 public class EmailSenderService {
 
     private final EmailSenderRepository emailSenderRepository;
+    private final EmailSenderPoolRepository senderPoolRepository;
+    private final MailTransportRegistry mailTransportRegistry;
+    private final SenderPoolService senderPoolService;
+    private final SenderThroughputGovernor senderGovernor;
 
     public List<EmailSenderDto> getAllSenders() {
         return EmailSenderMapper.toDtoList(emailSenderRepository.findByIsActiveTrue());
@@ -36,7 +42,9 @@ public class EmailSenderService {
     }
 
     public EmailSenderDto createSender(EmailSenderDto senderDto) {
-        if (emailSenderRepository.existsByName(senderDto.getName())) {
+        // Senders and pools share one namespace, since either can be named on a send
+        if (emailSenderRepository.existsByName(senderDto.getName())
+                || senderPoolRepository.existsByName(senderDto.getName())) {
             throw new IllegalArgumentException("Email sender with name '" + senderDto.getName() + "' already exists");
         }
 
@@ -50,16 +58,32 @@ public class EmailSenderService {
                 .orElseThrow(() -> new IllegalArgumentException("Email sender not found with id: " + id));
 
         if (!existingSender.getName().equals(senderDto.getName()) &&
-                emailSenderRepository.existsByName(senderDto.getName())) {
+                (emailSenderRepository.existsByName(senderDto.getName())
+                        || senderPoolRepository.existsByName(senderDto.getName()))) {
             throw new IllegalArgumentException("Email sender with name '" + senderDto.getName() + "' already exists");
         }
 
         EmailSenderMapper.updateEntityFromDto(existingSender, senderDto);
         existingSender = emailSenderRepository.save(existingSender);
+        mailTransportRegistry.invalidate(id);
+        senderPoolService.senderChanged(id);
         return EmailSenderMapper.toDto(existingSender);
     }
 
     public void deleteSender(Long id) {
         emailSenderRepository.deleteById(id);
+        mailTransportRegistry.invalidate(id);
+        senderPoolService.senderChanged(id);
     }
-}
\ No newline at end of file
+
+    public Map<String, Object> getConnectionPoolStats() {
+        return mailTransportRegistry.getPoolStats();
+    }
+
+    /**
+     * Learned send rate and backlog per sender
+     */
+    public Map<String, Object> getThroughputStats() {
+        return senderGovernor.getStats();
+    }
+}
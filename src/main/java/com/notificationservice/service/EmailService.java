@@ -5,22 +5,19 @@ import com.notificationservice.dto.NotificationRequestDto;
 import com.notificationservice.entity.EmailSender;
 import com.notificationservice.entity.NotificationRequest;
 import com.notificationservice.entity.NotificationResponse;
-import com.notificationservice.repository.EmailSenderRepository;
+import com.notificationservice.mapper.NotificationRequestMapper;
 import com.notificationservice.repository.NotificationRequestRepository;
 import com.notificationservice.repository.NotificationResponseRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
-import java.util.Properties;
 
 @Service
 @RequiredArgsConstructor
@@ -28,10 +25,19 @@ import java.util.Properties;
 @Transactional
 public class EmailService {
 
-    private final EmailSenderRepository emailSenderRepository;
+    private final MailTransportRegistry mailTransportRegistry;
     private final NotificationRequestRepository requestRepository;
     private final NotificationResponseRepository responseRepository;
     private final TemplateService templateService;
+    private final ProviderResilienceService providerResilience;
+    private final NotificationRetryService retryService;
+    private final DispatchLaneScheduler laneScheduler;
+    private final ScheduledNotificationService scheduledNotificationService;
+    private final SenderThroughputGovernor senderGovernor;
+    private final SenderPoolService senderPoolService;
+    private final EmailAttachmentService attachmentService;
+    private final SuppressionService suppressionService;
+    private final FrequencyCounterService frequencyCounters;
 
     public NotificationRequestDto sendEmail(String senderName, String recipient, String subject, String content) {
         return sendEmail(senderName, recipient, subject, content, null);
@@ -39,43 +45,129 @@ public class EmailService {
 
     public NotificationRequestDto sendEmail(String senderName, String recipient, String subject, String content,
             Map<String, Object> variables) {
-        EmailSender emailSender = emailSenderRepository.findByNameAndIsActiveTrue(senderName)
-                .orElseThrow(() -> new IllegalArgumentException("Email sender not found: " + senderName));
+        return sendEmail(senderName, recipient, subject, content, variables, null, null);
+    }
 
-        // Process template if variables are provided
-        String processedContent = content;
-        if (variables != null && !variables.isEmpty()) {
-            processedContent = templateService.processTemplateContent(content, variables);
-        }
+    /**
+     * Send with stored files attached; {@code fileUserId} must be allowed to read every file
+     */
+    public NotificationRequestDto sendEmail(String senderName, String recipient, String subject, String content,
+            Map<String, Object> variables, List<Long> attachmentFileIds, String fileUserId) {
+        // Request and response rows are written together once the outcome is known
+        NotificationRequest request = createRequest(senderName, recipient, subject,
+                processContent(content, variables), null, variables,
+                attachmentService.authorize(attachmentFileIds, fileUserId));
 
-        // Create notification request
-        NotificationRequest request = new NotificationRequest();
-        request.setSender(emailSender);
-        request.setRecipient(recipient);
-        request.setSubject(subject);
-        request.setContent(processedContent);
-        request.setVariables(convertToJsonNode(variables));
-        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        deliver(request);
+
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    /**
+     * Persist the email as PENDING in the outbox, or SCHEDULED until {@code sendAt} when given;
+     * a dispatch worker sends it later
+     */
+    public NotificationRequestDto queueEmail(String senderName, String recipient, String subject, String content,
+            Map<String, Object> variables, LocalDateTime sendAt) {
+        return queueEmail(senderName, recipient, subject, content, variables, sendAt, null, null);
+    }
+
+    public NotificationRequestDto queueEmail(String senderName, String recipient, String subject, String content,
+            Map<String, Object> variables, LocalDateTime sendAt, List<Long> attachmentFileIds, String fileUserId) {
+        NotificationRequest request = scheduledNotificationService.hold(createRequest(senderName, recipient,
+                subject, processContent(content, variables), null, variables,
+                attachmentService.authorize(attachmentFileIds, fileUserId)), sendAt);
+
+        log.info("Email to: {} queued with request id: {}", recipient, request.getId());
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    public NotificationRequestDto sendEmailWithTemplate(String senderName, String templateName, String recipient,
+            Map<String, Object> variables) {
+        return sendEmailWithTemplate(senderName, templateName, recipient, variables, null, null);
+    }
+
+    public NotificationRequestDto sendEmailWithTemplate(String senderName, String templateName, String recipient,
+            Map<String, Object> variables, List<Long> attachmentFileIds, String fileUserId) {
+        TemplateService.ResolvedTemplate template = resolveTemplate(templateName);
+
+        // The template is rendered once here; createRequest does not process it again
+        NotificationRequest request = createRequest(senderName, recipient, template.getTemplate().getSubject(),
+                template.render(variables), templateName, variables,
+                attachmentService.authorize(attachmentFileIds, fileUserId));
+
+        deliver(request);
+
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    public NotificationRequestDto queueEmailWithTemplate(String senderName, String templateName, String recipient,
+            Map<String, Object> variables, LocalDateTime sendAt, List<Long> attachmentFileIds, String fileUserId) {
+        TemplateService.ResolvedTemplate template = resolveTemplate(templateName);
 
-        request = requestRepository.save(request);
+        NotificationRequest request = scheduledNotificationService.hold(createRequest(senderName, recipient,
+                template.getTemplate().getSubject(), template.render(variables), templateName, variables,
+                attachmentService.authorize(attachmentFileIds, fileUserId)), sendAt);
+
+        log.info("Email to: {} queued with request id: {}", recipient, request.getId());
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    /**
+     * Send an email request and record the outcome on it; a new request is persisted
+     * together with its response
+     */
+    public void deliver(NotificationRequest request) {
+        // Bounced or unsubscribed recipients fail without a provider call or a retry
+        if (suppressionService.applyTo(request)) {
+            requestRepository.save(request);
+            return;
+        }
+
+        // Pooled requests take whichever member is healthy and has room at this attempt
+        SenderPoolService.Lease lease = request.getSenderPoolId() != null
+                ? senderPoolService.lease(request.getSenderPoolId())
+                : null;
+        if (lease != null) {
+            request.setSender(lease.getSender());
+        }
+        Long senderId = request.getSender().getId();
+        String recipient = request.getRecipient();
+        request.setAttemptCount(request.getAttemptCount() + 1);
 
         try {
-            // Send email
-            JavaMailSender mailSender = createMailSender(emailSender);
-            MimeMessage message = mailSender.createMimeMessage();
+            // Send email over a pooled connection of the sender
+            EmailSender emailSender = mailTransportRegistry.getSender(senderId);
+            MimeMessage message = mailTransportRegistry.createMimeMessage(senderId);
             MimeMessageHelper helper = new MimeMessageHelper(message, true);
 
             helper.setFrom(emailSender.getUsername());
             helper.setTo(recipient);
-            helper.setSubject(subject);
-            helper.setText(processedContent, true); // true for HTML content
+            helper.setSubject(request.getSubject());
+            helper.setText(request.getContent(), true); // true for HTML content
+            attachmentService.attach(helper, request.getAttachmentFileIds());
 
-            mailSender.send(message);
+            // Wait for the sender's turn under its learned rate; far-off turns go back to the outbox
+            if (lease == null || !lease.isReserved()) {
+                senderGovernor.acquire(emailSender);
+            }
+
+            // Each sender is its own provider with a circuit breaker and bulkhead
+            providerResilience.execute("email-" + emailSender.getName(), () -> {
+                mailTransportRegistry.send(senderId, message);
+                return null;
+            });
+            senderGovernor.onSuccess(emailSender, 1);
+            if (lease != null) {
+                lease.succeeded();
+            }
 
             // Update request status
             request.setStatus(NotificationRequest.NotificationStatus.SENT);
             request.setSentAt(LocalDateTime.now());
+            request.setErrorMessage(null);
             request = requestRepository.save(request);
+            frequencyCounters.recordSent(request);
 
             // Create response record
             NotificationResponse response = new NotificationResponse();
@@ -86,55 +178,90 @@ public class EmailService {
 
             log.info("Email sent successfully to: {}", recipient);
 
-        } catch (MessagingException e) {
+        } catch (Exception e) {
+            if (lease != null) {
+                lease.failed(e);
+            }
+            if (lease != null && e instanceof MailTransportRegistry.SenderNotFoundException) {
+                // The member was deleted after it was leased: the next attempt leases another one
+                log.warn("Email to: {} deferred, pool member removed: {}", recipient, e.getMessage());
+                retryService.recordRejected(request, e);
+                requestRepository.save(request);
+                return;
+            }
+            if (senderGovernor.isThrottled(e)) {
+                // The account is over its quota: slow the sender down and send later
+                senderGovernor.onThrottled(request.getSender(), e);
+                log.warn("Email to: {} throttled by the provider, deferred", recipient);
+                retryService.recordRejected(request, e);
+                requestRepository.save(request);
+                return;
+            }
+            if (ProviderResilienceService.isRejected(e)) {
+                // Provider is cut off or saturated: not attempted, back to the outbox for later
+                log.warn("Email to: {} deferred: {}", recipient, e.getMessage());
+                retryService.recordRejected(request, e);
+                requestRepository.save(request);
+                return;
+            }
+
             log.error("Failed to send email to: {}", recipient, e);
 
-            // Update request status
-            request.setStatus(NotificationRequest.NotificationStatus.FAILED);
-            request.setErrorMessage(e.getMessage());
+            // Update request status and schedule the next attempt
+            boolean willRetry = retryService.recordFailure(request, e);
             request = requestRepository.save(request);
+            if (!willRetry) {
+                retryService.deadLetter(request);
+            }
 
             // Create response record
             NotificationResponse response = new NotificationResponse();
             response.setRequest(request);
             response.setStatus("FAILED");
-            response.setResponseData(convertToJsonNode(Map.of("error", e.getMessage())));
+            response.setResponseData(convertToJsonNode(Map.of("error", String.valueOf(e.getMessage()))));
             responseRepository.save(response);
         }
-
-        return convertToDto(request);
     }
 
-    public NotificationRequestDto sendEmailWithTemplate(String senderName, String templateName, String recipient,
-            Map<String, Object> variables) {
-        var template = templateService.getTemplateByName(templateName)
+    private TemplateService.ResolvedTemplate resolveTemplate(String templateName) {
+        TemplateService.ResolvedTemplate template = templateService.getCompiledTemplate(templateName)
                 .orElseThrow(() -> new IllegalArgumentException("Template not found: " + templateName));
 
-        if (template.getType() != com.notificationservice.entity.NotificationTemplate.NotificationType.EMAIL) {
+        if (template.getTemplate().getType() != com.notificationservice.entity.NotificationTemplate.NotificationType.EMAIL) {
             throw new IllegalArgumentException("Template is not an email template: " + templateName);
         }
-
-        String processedContent = templateService.processTemplate(templateName, variables);
-        String subject = template.getSubject();
-
-        return sendEmail(senderName, recipient, subject, processedContent, variables);
+        return template;
     }
 
-    private JavaMailSender createMailSender(EmailSender emailSender) {
-        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
-        mailSender.setHost(emailSender.getHost());
-        mailSender.setPort(emailSender.getPort());
-        mailSender.setUsername(emailSender.getUsername());
-        mailSender.setPassword(emailSender.getPassword());
-
-        Properties props = mailSender.getJavaMailProperties();
-        if (emailSender.getProperties() != null) {
-            emailSender.getProperties().fieldNames().forEachRemaining(key -> {
-                props.put(key, emailSender.getProperties().get(key).asText());
-            });
+    private String processContent(String content, Map<String, Object> variables) {
+        // Process template if variables are provided
+        if (variables != null && !variables.isEmpty()) {
+            return templateService.processTemplateContent(content, variables);
         }
+        return content;
+    }
 
-        return mailSender;
+    private NotificationRequest createRequest(String senderName, String recipient, String subject,
+            String processedContent, String templateName, Map<String, Object> variables, String attachmentFileIds) {
+        // A pool name records its likely member; the member is picked again when sending
+        Long poolId = senderPoolService.findPoolId(senderName);
+        EmailSender emailSender = poolId != null
+                ? senderPoolService.preview(poolId)
+                : mailTransportRegistry.getSenderByName(senderName);
+
+        // Create notification request
+        NotificationRequest request = new NotificationRequest();
+        request.setSender(emailSender);
+        request.setSenderPoolId(poolId);
+        request.setRecipient(recipient);
+        request.setSubject(subject);
+        request.setContent(processedContent);
+        request.setVariables(convertToJsonNode(variables));
+        request.setAttachmentFileIds(attachmentFileIds);
+        request.setChannel(NotificationRequest.NotificationChannel.EMAIL);
+        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        laneScheduler.assignLane(request, templateName, variables);
+        return request;
     }
 
     private JsonNode convertToJsonNode(Map<String, Object> map) {
@@ -147,27 +274,4 @@ public class EmailService {
             return null;
         }
     }
-
-    private NotificationRequestDto convertToDto(NotificationRequest request) {
-        NotificationRequestDto dto = new NotificationRequestDto();
-        dto.setId(request.getId());
-        dto.setTemplateId(request.getTemplate() != null ? request.getTemplate().getId() : null);
-        dto.setTemplateName(request.getTemplate() != null ? request.getTemplate().getName() : null);
-        dto.setSenderId(request.getSender() != null ? request.getSender().getId() : null);
-        dto.setSenderName(request.getSender() != null ? request.getSender().getName() : null);
-        dto.setRecipient(request.getRecipient());
-        dto.setSubject(request.getSubject());
-        dto.setContent(request.getContent());
-        dto.setVariables(request.getVariables());
-        dto.setStatus(request.getStatus().name());
-        dto.setErrorMessage(request.getErrorMessage());
-
-        // Set audit fields
-        dto.setCreatedAt(request.getCreatedAt());
-        dto.setModifiedAt(request.getModifiedAt());
-        dto.setCreatedBy(request.getCreatedBy());
-        dto.setModifiedBy(request.getModifiedBy());
-
-        return dto;
-    }
-}
\ No newline at end of file
+}
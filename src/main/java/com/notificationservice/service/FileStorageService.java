@@ -160,6 +160,40 @@ public class FileStorageService {
         return Optional.empty();
     }
 
+    /**
+     * Stored file to attach to an email, after the same access check as a download
+     */
+    @Transactional(readOnly = true)
+    public FileAttachment resolveAttachment(Long fileId, String userId) {
+        FileStorage file = fileStorageRepository.findById(fileId)
+                .filter(candidate -> !Boolean.TRUE.equals(candidate.getIsDeleted())
+                        && !Boolean.TRUE.equals(candidate.getIsFolder()))
+                .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+        if (userId == null || !hasAccess(file, userId)) {
+            throw new IllegalArgumentException("Access denied to file: " + fileId);
+        }
+        return toAttachment(file);
+    }
+
+    /**
+     * Stored file attached to a request whose access was checked when it was made
+     */
+    @Transactional(readOnly = true)
+    public FileAttachment loadAttachment(Long fileId) {
+        return fileStorageRepository.findById(fileId)
+                .filter(file -> !Boolean.TRUE.equals(file.getIsDeleted()))
+                .map(this::toAttachment)
+                .orElseThrow(() -> new IllegalArgumentException("File not found: " + fileId));
+    }
+
+    private FileAttachment toAttachment(FileStorage file) {
+        Path path = Paths.get(file.getStoragePath());
+        if (!Files.isReadable(path)) {
+            throw new IllegalArgumentException("File content missing: " + file.getId());
+        }
+        return new FileAttachment(file.getId(), path, file.getDisplayName(), file.getMimeType(), file.getFileSize());
+    }
+
     /**
      * Get files by parent folder
      */
@@ -317,6 +351,44 @@ public class FileStorageService {
         return fileShareService.hasAccess(file.getId(), userId);
     }
 
+    // Attachment of a stored file; the content stays on disk
+    public static class FileAttachment {
+        private final Long fileId;
+        private final Path path;
+        private final String fileName;
+        private final String contentType;
+        private final Long size;
+
+        public FileAttachment(Long fileId, Path path, String fileName, String contentType, Long size) {
+            this.fileId = fileId;
+            this.path = path;
+            this.fileName = fileName;
+            this.contentType = contentType;
+            this.size = size;
+        }
+
+        // Getters
+        public Long getFileId() {
+            return fileId;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public Long getSize() {
+            return size;
+        }
+    }
+
     // Statistics class
     public static class FileStatistics {
         private final long totalFiles;
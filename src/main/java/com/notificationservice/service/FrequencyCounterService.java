@@ -0,0 +1,448 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.notificationservice.config.FrequencyCounterProperties;
+import com.notificationservice.dto.FrequencyUsageDto;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.repository.UserFrequencyCounterRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sliding-window send counts per user, behind the limits of FREQUENCY_BASED rules. A send is
+ * counted when it is delivered, into lock-free per-bucket adders of this node, and flushed every
+ * {@code flush-interval-ms} as batched upserts into {@code user_frequency_counters}, which all
+ * nodes share. A check adds this node's unflushed sends to the user's shared counts, read at
+ * most every {@code refresh-interval-ms}, for a batch of users in one query, and dropped when
+ * the user goes idle. In RESERVE mode a send instead reads the shared counts under a per-user
+ * database lock and reserves the send, so concurrent nodes cannot both take the last slot;
+ * checks that take nothing, such as rule previews, still use the cached counts.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FrequencyCounterService {
+
+    private final UserFrequencyCounterRepository counterRepository;
+    private final FrequencyCounterProperties properties;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Sends of this node not yet flushed, by user; a user is dropped once flushed and idle
+     */
+    private final Map<String, PendingSends> pending = new ConcurrentHashMap<>();
+    /**
+     * Dropped by the last flush, drained once more in case a send raced with the drop
+     */
+    private List<PendingSends> retired = new ArrayList<>();
+    /**
+     * Moves on every flush; shared counts read before a flush committed are not cached
+     */
+    private final AtomicLong flushes = new AtomicLong();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder reservations = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    private TransactionTemplate transaction;
+    private Cache<String, SharedCounts> shared;
+
+    @PostConstruct
+    void init() {
+        transaction = new TransactionTemplate(transactionManager);
+        shared = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxUsers())
+                .expireAfterAccess(Duration.ofMinutes(properties.getIdleMinutes()))
+                .build();
+    }
+
+    public boolean isReserving() {
+        return properties.getMode() == FrequencyCounterProperties.Mode.RESERVE;
+    }
+
+    /**
+     * Count a delivered request against the user in its {@code userId} variable, if any
+     */
+    public void recordSent(NotificationRequest request) {
+        JsonNode userId = request.getVariables() != null ? request.getVariables().get("userId") : null;
+        if (userId == null || userId.isNull()) {
+            return;
+        }
+        record(userId.asText(), request.getSentAt() != null ? request.getSentAt() : LocalDateTime.now());
+    }
+
+    void record(String userId, LocalDateTime sentAt) {
+        PendingSends sends = pending.get(userId);
+        if (sends == null) {
+            sends = pending.computeIfAbsent(userId, PendingSends::new);
+        }
+        sends.add(bucketOf(sentAt), sentAt.toEpochSecond(ZoneOffset.UTC), 1);
+        recorded.increment();
+    }
+
+    /**
+     * Sends of a user within the window: shared counts as last read in LOCAL mode, current
+     * counts and reservations in RESERVE mode, plus this node's unflushed sends
+     */
+    public FrequencyUsageDto getUsage(String userId) {
+        LocalDateTime now = LocalDateTime.now();
+        FrequencyUsageDto usage = isReserving()
+                ? counterRepository.findUsage(userId, windowStart(now), now, 0L)
+                : sharedCounts(userId, now).toUsage(userId);
+        return withPending(usage, now);
+    }
+
+    /**
+     * Whether one more send to the user stays within {@code maxInWindow} sends per window and
+     * {@code minIntervalMinutes} since the last one; either limit may be null. Takes nothing,
+     * and reads the shared counts as last read in either mode.
+     */
+    public boolean isWithinLimits(String userId, Integer maxInWindow, Integer minIntervalMinutes) {
+        LocalDateTime now = LocalDateTime.now();
+        FrequencyUsageDto usage = withPending(sharedCounts(userId, now).toUsage(userId), now);
+        return isWithinLimits(usage, maxInWindow, minIntervalMinutes, now);
+    }
+
+    /**
+     * Read the shared counts of the given users that are not cached or are due for a refresh
+     * with a single query, so that checking a batch of users does not query per user
+     */
+    public void preload(Collection<String> userIds) {
+        long refreshNanos = Duration.ofMillis(properties.getRefreshIntervalMs()).toNanos();
+        List<String> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            SharedCounts cached = shared.getIfPresent(userId);
+            if (cached == null || System.nanoTime() - cached.loadedAt >= refreshNanos) {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long readAt = flushes.get();
+        loads.add(missing.size());
+        Map<String, FrequencyUsageDto> usage = counterRepository.findUsageAll(missing, windowStart(now), now);
+        long loadedAt = System.nanoTime();
+        for (String userId : missing) {
+            FrequencyUsageDto found = usage.get(userId);
+            SharedCounts loaded = found != null
+                    ? SharedCounts.of(found, loadedAt)
+                    : new SharedCounts(0, Long.MIN_VALUE, loadedAt);
+            shared.asMap().compute(userId, (key, current) -> flushes.get() == readAt ? loaded : current);
+        }
+    }
+
+    /**
+     * RESERVE mode: check the limits against the shared counts and, when within them, take a
+     * reservation that counts as a send until the send is recorded or the reservation expires.
+     * A check repeated within one evaluation passes {@code heldReservationId} so it neither
+     * counts its own reservation nor takes another. Returns the reservation id, or null when a
+     * limit is reached.
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Long reserve(String userId, Integer maxInWindow, Integer minIntervalMinutes, Long heldReservationId) {
+        counterRepository.lockUser(userId);
+        LocalDateTime now = LocalDateTime.now();
+        FrequencyUsageDto usage = withPending(counterRepository.findUsage(userId, windowStart(now), now,
+                heldReservationId != null ? heldReservationId : 0L), now);
+        if (!isWithinLimits(usage, maxInWindow, minIntervalMinutes, now)) {
+            rejections.increment();
+            return null;
+        }
+        if (heldReservationId != null) {
+            return heldReservationId;
+        }
+        reservations.increment();
+        return counterRepository.reserve(userId, now, now.plusSeconds(properties.getReservationTtlSeconds()));
+    }
+
+    /**
+     * Give back a reservation whose send will not happen
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void release(long reservationId) {
+        counterRepository.deleteReservation(reservationId);
+    }
+
+    /**
+     * Write this node's sends to the shared table. In RESERVE mode each counted send also
+     * releases the oldest reservation of its user, in the same transaction. Counts that fail
+     * to write are kept for the next flush.
+     */
+    @Scheduled(fixedDelayString = "${notification.frequency-counters.flush-interval-ms:1000}")
+    public synchronized void flush() {
+        long current = bucketOf(LocalDateTime.now());
+        List<UserFrequencyCounterRepository.BucketDelta> deltas = new ArrayList<>();
+        List<Drained> drainedSends = new ArrayList<>();
+        Map<String, Long> sendsByUser = new TreeMap<>();
+
+        List<PendingSends> dropped = new ArrayList<>();
+        for (PendingSends sends : retired) {
+            sends.drain(current, drainedSends);
+        }
+        pending.forEach((userId, sends) -> {
+            sends.drain(current, drainedSends);
+            if (sends.isEmpty() && pending.remove(userId, sends)) {
+                dropped.add(sends);
+            }
+        });
+        retired = dropped;
+        if (drainedSends.isEmpty()) {
+            return;
+        }
+
+        // A fixed order keeps concurrent flushes of different nodes from deadlocking
+        drainedSends.sort(Comparator.comparing((Drained drained) -> drained.sends.userId)
+                .thenComparingLong(drained -> drained.bucket));
+        for (Drained drained : drainedSends) {
+            deltas.add(new UserFrequencyCounterRepository.BucketDelta(drained.sends.userId,
+                    toDateTime(drained.bucket * 60), drained.count, toDateTime(drained.sends.lastSentAt())));
+            sendsByUser.merge(drained.sends.userId, drained.count, Long::sum);
+        }
+        try {
+            int batchSize = Math.max(1, properties.getFlushBatchSize());
+            transaction.executeWithoutResult(status -> {
+                counterRepository.addAll(deltas, batchSize);
+                if (isReserving()) {
+                    counterRepository.releaseAll(sendsByUser, batchSize);
+                }
+            });
+        } catch (Exception e) {
+            flushFailures.increment();
+            log.warn("Failed to flush {} frequency counters, retrying with the next flush: {}", deltas.size(),
+                    e.getMessage());
+            for (Drained drained : drainedSends) {
+                pending.computeIfAbsent(drained.sends.userId, PendingSends::new)
+                        .add(drained.bucket, drained.sends.lastSentAt(), drained.count);
+            }
+            return;
+        }
+
+        // Cached counts take the flushed sends before the generation moves, so a read racing
+        // with the flush is never cached without them. In RESERVE mode they already hold the
+        // reservations the flush just turned into sends.
+        if (!isReserving()) {
+            for (Drained drained : drainedSends) {
+                shared.asMap().computeIfPresent(drained.sends.userId,
+                        (userId, counts) -> counts.plus(drained.count, drained.sends.lastSentAt()));
+            }
+        }
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * Remove buckets no window reaches any more and expired reservations
+     */
+    @Scheduled(fixedDelay = 600000)
+    public void purge() {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            int removed = counterRepository.purge(windowStart(now).minusMinutes(properties.getBucketMinutes()), now);
+            if (removed > 0) {
+                log.debug("Purged {} frequency counter rows", removed);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to purge frequency counters: {}", e.getMessage());
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", properties.getMode());
+        stats.put("pendingUsers", pending.size());
+        stats.put("cachedUsers", shared.estimatedSize());
+        stats.put("recorded", recorded.sum());
+        stats.put("flushes", flushes.get());
+        stats.put("flushFailures", flushFailures.sum());
+        stats.put("loads", loads.sum());
+        stats.put("reservations", reservations.sum());
+        stats.put("rejections", rejections.sum());
+        return stats;
+    }
+
+    private SharedCounts sharedCounts(String userId, LocalDateTime now) {
+        SharedCounts cached = shared.getIfPresent(userId);
+        long refreshNanos = Duration.ofMillis(properties.getRefreshIntervalMs()).toNanos();
+        if (cached != null && System.nanoTime() - cached.loadedAt < refreshNanos) {
+            return cached;
+        }
+        long readAt = flushes.get();
+        loads.increment();
+        SharedCounts loaded = SharedCounts.of(counterRepository.findUsage(userId, windowStart(now), now, 0L),
+                System.nanoTime());
+        shared.asMap().compute(userId, (key, current) -> flushes.get() == readAt ? loaded : current);
+        return loaded;
+    }
+
+    private FrequencyUsageDto withPending(FrequencyUsageDto usage, LocalDateTime now) {
+        PendingSends sends = pending.get(usage.getUserId());
+        if (sends == null) {
+            return usage;
+        }
+        long count = usage.getCount() + sends.count(bucketOf(windowStart(now)));
+        LocalDateTime lastSentAt = usage.getLastSentAt();
+        long pendingLast = sends.lastSentAt();
+        if (pendingLast != Long.MIN_VALUE
+                && (lastSentAt == null || pendingLast > lastSentAt.toEpochSecond(ZoneOffset.UTC))) {
+            lastSentAt = toDateTime(pendingLast);
+        }
+        return new FrequencyUsageDto(usage.getUserId(), count, lastSentAt);
+    }
+
+    private boolean isWithinLimits(FrequencyUsageDto usage, Integer maxInWindow, Integer minIntervalMinutes,
+            LocalDateTime now) {
+        if (maxInWindow != null && usage.getCount() >= maxInWindow) {
+            log.info("Notification limit of {} reached for user: {}", maxInWindow, usage.getUserId());
+            return false;
+        }
+        if (minIntervalMinutes != null && usage.getLastSentAt() != null
+                && now.isBefore(usage.getLastSentAt().plusMinutes(minIntervalMinutes))) {
+            log.info("Minimum interval not met for user: {}", usage.getUserId());
+            return false;
+        }
+        return true;
+    }
+
+    private LocalDateTime windowStart(LocalDateTime now) {
+        return toDateTime(bucketOf(now.minusMinutes(properties.getWindowMinutes())) * 60);
+    }
+
+    /**
+     * Start of the bucket holding {@code time}, in minutes of the local clock since the epoch
+     */
+    private long bucketOf(LocalDateTime time) {
+        long minutes = Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+        int bucketMinutes = Math.max(1, properties.getBucketMinutes());
+        return Math.floorDiv(minutes, bucketMinutes) * bucketMinutes;
+    }
+
+    private static LocalDateTime toDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Unflushed sends of one user by bucket
+     */
+    private static final class PendingSends {
+        /**
+         * Buckets older than this many minutes behind the current one are dropped once flushed;
+         * a send still being added to one that old is not expected
+         */
+        private static final long CLOSED_AFTER_MINUTES = 60;
+
+        private final String userId;
+        private final Map<Long, LongAdder> buckets = new ConcurrentHashMap<>();
+        private final AtomicLong lastSentAt = new AtomicLong(Long.MIN_VALUE);
+
+        PendingSends(String userId) {
+            this.userId = userId;
+        }
+
+        void add(long bucket, long sentAt, long count) {
+            LongAdder adder = buckets.get(bucket);
+            if (adder == null) {
+                adder = buckets.computeIfAbsent(bucket, key -> new LongAdder());
+            }
+            adder.add(count);
+            lastSentAt.accumulateAndGet(sentAt, Math::max);
+        }
+
+        long count(long fromBucket) {
+            long count = 0;
+            for (Map.Entry<Long, LongAdder> bucket : buckets.entrySet()) {
+                if (bucket.getKey() >= fromBucket) {
+                    count += bucket.getValue().sum();
+                }
+            }
+            return count;
+        }
+
+        long lastSentAt() {
+            return lastSentAt.get();
+        }
+
+        boolean isEmpty() {
+            return buckets.isEmpty();
+        }
+
+        void drain(long currentBucket, List<Drained> drained) {
+            for (Map.Entry<Long, LongAdder> bucket : buckets.entrySet()) {
+                long count = bucket.getValue().sumThenReset();
+                if (count > 0) {
+                    drained.add(new Drained(this, bucket.getKey(), count));
+                }
+                if (bucket.getKey() < currentBucket - CLOSED_AFTER_MINUTES) {
+                    buckets.remove(bucket.getKey(), bucket.getValue());
+                }
+            }
+        }
+    }
+
+    private static final class Drained {
+        private final PendingSends sends;
+        private final long bucket;
+        private final long count;
+
+        Drained(PendingSends sends, long bucket, long count) {
+            this.sends = sends;
+            this.bucket = bucket;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Shared counts of one user as read from the database, plus this node's later flushes
+     */
+    private static final class SharedCounts {
+        private final long count;
+        private final long lastSentAt;
+        private final long loadedAt;
+
+        SharedCounts(long count, long lastSentAt, long loadedAt) {
+            this.count = count;
+            this.lastSentAt = lastSentAt;
+            this.loadedAt = loadedAt;
+        }
+
+        static SharedCounts of(FrequencyUsageDto usage, long loadedAt) {
+            return new SharedCounts(usage.getCount(),
+                    usage.getLastSentAt() != null ? usage.getLastSentAt().toEpochSecond(ZoneOffset.UTC) : Long.MIN_VALUE,
+                    loadedAt);
+        }
+
+        SharedCounts plus(long sends, long sentAt) {
+            return new SharedCounts(count + sends, Math.max(lastSentAt, sentAt), loadedAt);
+        }
+
+        FrequencyUsageDto toUsage(String userId) {
+            return new FrequencyUsageDto(userId, count,
+                    lastSentAt != Long.MIN_VALUE ? toDateTime(lastSentAt) : null);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.notificationservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.notificationservice.config.IdempotencyProperties;
+import com.notificationservice.dto.BulkEmailJobDto;
+import com.notificationservice.dto.NotificationRequestDto;
+import com.notificationservice.entity.IdempotencyKey;
+import com.notificationservice.mapper.NotificationRequestMapper;
+import com.notificationservice.repository.IdempotencyKeyRepository;
+import com.notificationservice.repository.NotificationRequestRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Makes notification sends and bulk email submissions safe to retry with an
+ * {@code Idempotency-Key} header. Completed keys
+ * are answered from a bounded in-memory cache without touching the database; concurrent
+ * duplicates on this instance wait for the first call and share its response; across instances
+ * the unique {@code idempotency_keys} row decides who sends. A bulk submission's key records the
+ * job it started, and a replay reports that job's current progress.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final IdempotencyKeyRepository keyRepository;
+    private final NotificationRequestRepository requestRepository;
+    private final BulkEmailService bulkEmailService;
+    private final IdempotencyProperties properties;
+    private final PlatformTransactionManager transactionManager;
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private TransactionTemplate transactionTemplate;
+    private Cache<String, StoredResponse> completed;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        completed = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(Duration.ofMinutes(properties.getTtlMinutes()))
+                .build();
+    }
+
+    /**
+     * Run the call once per scope and key; without a key it simply runs
+     */
+    public Object execute(String scope, String key, IdempotentCall call) throws Throwable {
+        if (!properties.isEnabled() || key == null || key.isBlank()) {
+            return call.call();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", HEADER + " must not exceed " + MAX_KEY_LENGTH + " characters"));
+        }
+
+        String cacheKey = scope + ':' + key;
+        StoredResponse stored = completed.getIfPresent(cacheKey);
+        if (stored != null) {
+            return replay(stored);
+        }
+
+        CompletableFuture<Object> claim = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(cacheKey, claim);
+        if (running != null) {
+            return awaitInFlight(running);
+        }
+
+        try {
+            Object result = claimAndCall(scope, key, cacheKey, call);
+            claim.complete(result);
+            return result;
+        } catch (Throwable e) {
+            claim.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, claim);
+        }
+    }
+
+    @Scheduled(fixedDelay = 3600000)
+    public void purgeExpiredKeys() {
+        Integer purged = transactionTemplate.execute(status -> keyRepository.deleteExpired(LocalDateTime.now()));
+        if (purged != null && purged > 0) {
+            log.info("Purged {} expired idempotency keys", purged);
+        }
+    }
+
+    private Object claimAndCall(String scope, String key, String cacheKey, IdempotentCall call)
+            throws Throwable {
+        LocalDateTime now = LocalDateTime.now();
+        Integer claimed = transactionTemplate.execute(status -> keyRepository.claim(scope, key, now,
+                now.plusMinutes(properties.getTtlMinutes()),
+                now.minusSeconds(properties.getClaimTimeoutSeconds())));
+
+        if (claimed == null || claimed == 0) {
+            // Sent before (or being sent by another instance)
+            StoredResponse stored = transactionTemplate.execute(status -> load(scope, key));
+            if (stored == null) {
+                return inProgress();
+            }
+            completed.put(cacheKey, stored);
+            return replay(stored);
+        }
+
+        Object result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            release(scope, key);
+            throw e;
+        }
+
+        if (result instanceof ResponseEntity<?> response && response.getStatusCode().is2xxSuccessful()) {
+            int statusCode = response.getStatusCode().value();
+            if (response.getBody() instanceof NotificationRequestDto dto && dto.getId() != null) {
+                transactionTemplate.executeWithoutResult(
+                        status -> keyRepository.complete(scope, key, dto.getId(), statusCode));
+                completed.put(cacheKey, new StoredResponse(statusCode, dto, null));
+                return response;
+            }
+            if (response.getBody() instanceof BulkEmailJobDto job && job.getJobId() != null) {
+                transactionTemplate.executeWithoutResult(
+                        status -> keyRepository.completeJob(scope, key, job.getJobId(), statusCode));
+                completed.put(cacheKey, new StoredResponse(statusCode, null, job.getJobId()));
+                return response;
+            }
+        }
+
+        // Rejected calls (validation, blocked by a rule) can be retried with the same key
+        release(scope, key);
+        return result;
+    }
+
+    private Object awaitInFlight(CompletableFuture<Object> running) throws Throwable {
+        Object result;
+        try {
+            result = running.get(properties.getInFlightWaitSeconds(), TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            return inProgress();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+        if (!(result instanceof ResponseEntity<?> response)) {
+            return result;
+        }
+        return ResponseEntity.status(response.getStatusCode())
+                .header(REPLAYED_HEADER, "true")
+                .body(response.getBody());
+    }
+
+    private StoredResponse load(String scope, String key) {
+        IdempotencyKey stored = keyRepository.findByScopeAndIdempotencyKey(scope, key).orElse(null);
+        if (stored == null) {
+            return null;
+        }
+        if (stored.getJobId() != null) {
+            return new StoredResponse(stored.getResponseStatus() != null
+                    ? stored.getResponseStatus()
+                    : HttpStatus.ACCEPTED.value(), null, stored.getJobId());
+        }
+        if (stored.getRequestId() == null) {
+            return null;
+        }
+        return requestRepository.findById(stored.getRequestId())
+                .map(request -> new StoredResponse(stored.getResponseStatus() != null
+                        ? stored.getResponseStatus()
+                        : HttpStatus.OK.value(), NotificationRequestMapper.toDto(request), null))
+                .orElse(null);
+    }
+
+    /**
+     * The stored response again; a bulk job is reported as it stands now, or by its id alone
+     * once it has been purged
+     */
+    private ResponseEntity<?> replay(StoredResponse stored) {
+        Object body = stored.body;
+        if (stored.jobId != null) {
+            body = bulkEmailService.getJob(stored.jobId)
+                    .orElseGet(() -> BulkEmailJobDto.builder().jobId(stored.jobId).build());
+        }
+        return ResponseEntity.status(stored.status).header(REPLAYED_HEADER, "true").body(body);
+    }
+
+    private void release(String scope, String key) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> keyRepository.release(scope, key));
+        } catch (RuntimeException e) {
+            // The claim expires on its own after the claim timeout
+            log.warn("Failed to release idempotency key {}:{}", scope, key, e);
+        }
+    }
+
+    private static ResponseEntity<?> inProgress() {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of(
+                "error", "A request with this " + HEADER + " is still in progress"));
+    }
+
+    @FunctionalInterface
+    public interface IdempotentCall {
+        Object call() throws Throwable;
+    }
+
+    private static class StoredResponse {
+        private final int status;
+        private final NotificationRequestDto body;
+        /**
+         * Bulk email job started by the first call; its progress is read on every replay
+         */
+        private final String jobId;
+
+        StoredResponse(int status, NotificationRequestDto body, String jobId) {
+            this.status = status;
+            this.body = body;
+            this.jobId = jobId;
+        }
+    }
+}
@@ -0,0 +1,429 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.MailTransportProperties;
+import com.notificationservice.entity.EmailSender;
+import com.notificationservice.repository.EmailSenderRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches one configured mail {@link Session} per email sender together with a bounded
+ * pool of connected, authenticated SMTP {@link Transport}s, so a send reuses an open
+ * connection instead of paying the connect + STARTTLS + AUTH handshake every time.
+ * A fair semaphore per sender holds one permit per connection in use: a send takes a
+ * permit, then an idle connection or, when none is left, opens one. Open connections
+ * therefore never exceed {@code max-connections-per-sender}, and a waiter gets a permit,
+ * and may connect, as soon as any send finishes, whether its connection was kept or dropped.
+ *
+ * <p>A sender change drops its entry on this node and, through {@link CacheInvalidationService},
+ * on every other one, so no node keeps sending with old settings or a deleted account.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MailTransportRegistry {
+
+    static final String CACHE_NAME = "mail-transports";
+
+    private final EmailSenderRepository emailSenderRepository;
+    private final MailTransportProperties poolProperties;
+    private final CacheInvalidationService cacheInvalidation;
+
+    private final Map<Long, SenderEntry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> senderIdsByName = new ConcurrentHashMap<>();
+    /**
+     * Moves on every eviction; a sender read before a change committed is not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    @PostConstruct
+    void init() {
+        cacheInvalidation.register(CACHE_NAME, this::evictChanged, this::closeAll);
+    }
+
+    /**
+     * Resolve an active sender by name without a database round trip once cached
+     */
+    public EmailSender getSenderByName(String senderName) {
+        Long senderId = senderIdsByName.get(senderName);
+        if (senderId != null) {
+            SenderEntry entry = entries.get(senderId);
+            if (entry != null) {
+                return entry.sender;
+            }
+        }
+
+        return load(() -> emailSenderRepository.findByNameAndIsActiveTrue(senderName)
+                .orElseThrow(() -> new SenderNotFoundException("Email sender not found: " + senderName))).sender;
+    }
+
+    /**
+     * Resolve an active sender by id without a database round trip once cached
+     *
+     * @throws SenderNotFoundException when the sender is missing or inactive
+     */
+    public EmailSender getSender(Long senderId) {
+        return entry(senderId).sender;
+    }
+
+    /**
+     * Create an empty message bound to the sender's cached session
+     */
+    public MimeMessage createMimeMessage(Long senderId) {
+        return new MimeMessage(entry(senderId).session);
+    }
+
+    /**
+     * Send a message over a pooled connection of the given sender
+     */
+    public void send(Long senderId, MimeMessage message) throws MessagingException {
+        SenderEntry entry = entry(senderId);
+        PooledTransport pooled = borrow(entry);
+        boolean broken = true;
+        try {
+            if (message.getSentDate() == null) {
+                message.setSentDate(new Date());
+            }
+            message.saveChanges();
+            pooled.transport.sendMessage(message, message.getAllRecipients());
+            broken = false;
+        } finally {
+            release(entry, pooled, broken);
+        }
+    }
+
+    /**
+     * Send many messages back to back over one pooled connection of the given sender.
+     * Returns one entry per message: {@code null} when sent, otherwise the failure.
+     */
+    public List<Exception> sendBatch(Long senderId, List<MimeMessage> messages) {
+        return sendBatch(senderId, messages, () -> { });
+    }
+
+    /**
+     * Send many messages over one pooled connection, running {@code pace} before each one
+     * (e.g. to wait for the sender's rate). When it throws, the rest of the batch is not
+     * attempted and fails with that exception.
+     */
+    public List<Exception> sendBatch(Long senderId, List<MimeMessage> messages, Runnable pace) {
+        SenderEntry entry = entry(senderId);
+        List<Exception> failures = new ArrayList<>(Collections.<Exception>nCopies(messages.size(), null));
+
+        PooledTransport pooled = null;
+        boolean borrowed = false;
+        int next = 0;
+        try {
+            pooled = borrow(entry);
+            borrowed = true;
+            for (; next < messages.size(); next++) {
+                MimeMessage message = messages.get(next);
+                try {
+                    pace.run();
+                } catch (RuntimeException e) {
+                    for (int i = next; i < messages.size(); i++) {
+                        failures.set(i, e);
+                    }
+                    break;
+                }
+                try {
+                    if (message.getSentDate() == null) {
+                        message.setSentDate(new Date());
+                    }
+                    message.saveChanges();
+                    pooled.transport.sendMessage(message, message.getAllRecipients());
+                } catch (MessagingException e) {
+                    failures.set(next, e);
+                    if (!pooled.transport.isConnected()) {
+                        // Server dropped the connection: continue the batch on a fresh one,
+                        // under the permit already held
+                        PooledTransport dropped = pooled;
+                        pooled = null;
+                        close(entry, dropped);
+                        pooled = takeOrConnect(entry);
+                    }
+                }
+            }
+        } catch (MessagingException e) {
+            // No connection could be obtained; every message not yet attempted fails with it
+            for (int i = next; i < messages.size(); i++) {
+                if (failures.get(i) == null) {
+                    failures.set(i, e);
+                }
+            }
+        } finally {
+            if (pooled != null) {
+                release(entry, pooled, false);
+            } else if (borrowed) {
+                entry.permits.release();
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Drop the cached session and close pooled connections of a sender, e.g. after its
+     * row changed, here and on every other node. Runs again after commit when called inside a
+     * transaction.
+     */
+    public void invalidate(Long senderId) {
+        cacheInvalidation.publish(CACHE_NAME, String.valueOf(senderId));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(senderId);
+                }
+            });
+        }
+        evict(senderId);
+    }
+
+    /**
+     * Close connections that have been idle for longer than the configured limit
+     */
+    @Scheduled(fixedDelay = 30000)
+    public void closeIdleConnections() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(poolProperties.getMaxIdleSeconds());
+        for (SenderEntry entry : entries.values()) {
+            for (PooledTransport pooled : entry.idle) {
+                if (pooled.lastUsedAt < cutoff && entry.idle.remove(pooled)) {
+                    close(entry, pooled);
+                }
+            }
+        }
+    }
+
+    /**
+     * Current pool state per sender name
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new ConcurrentHashMap<>();
+        entries.values().forEach(entry -> stats.put(entry.sender.getName(), Map.of(
+                "open", entry.open.get(),
+                "idle", entry.idle.size(),
+                "inUse", entry.maxConnections - entry.permits.availablePermits(),
+                "waiting", entry.permits.getQueueLength(),
+                "maxConnections", entry.maxConnections)));
+        return stats;
+    }
+
+    /**
+     * Drop every sender, on shutdown and when invalidation events may have been missed
+     */
+    @PreDestroy
+    void closeAll() {
+        synchronized (generation) {
+            generation.incrementAndGet();
+        }
+        entries.keySet().forEach(this::evict);
+    }
+
+    private SenderEntry entry(Long senderId) {
+        SenderEntry entry = entries.get(senderId);
+        if (entry != null) {
+            return entry;
+        }
+        return load(() -> emailSenderRepository.findById(senderId)
+                .filter(s -> !Boolean.FALSE.equals(s.getIsActive()))
+                .orElseThrow(() -> new SenderNotFoundException("Email sender not found with id: " + senderId)));
+    }
+
+    /**
+     * Read a sender and cache it, reading again when a change arrived meanwhile
+     */
+    private SenderEntry load(Supplier<EmailSender> reader) {
+        while (true) {
+            long readAt = generation.get();
+            EmailSender sender = reader.get();
+            synchronized (generation) {
+                if (generation.get() == readAt) {
+                    return register(sender);
+                }
+            }
+        }
+    }
+
+    private SenderEntry register(EmailSender sender) {
+        SenderEntry entry = entries.computeIfAbsent(sender.getId(), id -> new SenderEntry(sender, createSession(sender),
+                Math.max(1, poolProperties.getMaxConnectionsPerSender())));
+        senderIdsByName.put(entry.sender.getName(), entry.sender.getId());
+        return entry;
+    }
+
+    private void evictChanged(String senderId) {
+        try {
+            evict(Long.valueOf(senderId));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring mail transport invalidation for sender: {}", senderId);
+        }
+    }
+
+    private void evict(Long senderId) {
+        SenderEntry entry;
+        synchronized (generation) {
+            generation.incrementAndGet();
+            entry = entries.remove(senderId);
+        }
+        if (entry == null) {
+            return;
+        }
+        senderIdsByName.remove(entry.sender.getName(), senderId);
+        entry.closed = true;
+
+        PooledTransport pooled;
+        while ((pooled = entry.idle.pollFirst()) != null) {
+            close(entry, pooled);
+        }
+        log.info("Evicted mail transport pool for sender: {}", entry.sender.getName());
+    }
+
+    private PooledTransport borrow(SenderEntry entry) throws MessagingException {
+        try {
+            if (!entry.permits.tryAcquire(poolProperties.getBorrowTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available for sender: " + entry.sender.getName());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted while waiting for an SMTP connection", e);
+        }
+        try {
+            return takeOrConnect(entry);
+        } catch (MessagingException | RuntimeException e) {
+            entry.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * An idle connection that is still usable, or a new one; the caller holds a permit
+     */
+    private PooledTransport takeOrConnect(SenderEntry entry) throws MessagingException {
+        PooledTransport pooled;
+        while ((pooled = entry.idle.pollFirst()) != null) {
+            if (validated(entry, pooled)) {
+                return pooled;
+            }
+        }
+        return connect(entry);
+    }
+
+    /**
+     * A connection used recently is trusted as is; an older one is probed with NOOP
+     */
+    private boolean validated(SenderEntry entry, PooledTransport pooled) {
+        long idleMillis = System.currentTimeMillis() - pooled.lastUsedAt;
+        if (idleMillis < TimeUnit.SECONDS.toMillis(poolProperties.getValidateAfterIdleSeconds())
+                || pooled.transport.isConnected()) {
+            return true;
+        }
+        close(entry, pooled);
+        return false;
+    }
+
+    private PooledTransport connect(SenderEntry entry) throws MessagingException {
+        EmailSender sender = entry.sender;
+        String protocol = entry.session.getProperty("mail.transport.protocol");
+        Transport transport = entry.session.getTransport(protocol != null ? protocol : "smtp");
+        transport.connect(sender.getHost(), sender.getPort(), sender.getUsername(), sender.getPassword());
+        int open = entry.open.incrementAndGet();
+        log.debug("Opened SMTP connection for sender: {} ({} open)", sender.getName(), open);
+        return new PooledTransport(transport);
+    }
+
+    private void release(SenderEntry entry, PooledTransport pooled, boolean broken) {
+        try {
+            if (broken || entry.closed) {
+                close(entry, pooled);
+                return;
+            }
+            pooled.lastUsedAt = System.currentTimeMillis();
+            // LIFO keeps the most recently used connections warm and lets the rest age out
+            entry.idle.offerFirst(pooled);
+        } finally {
+            entry.permits.release();
+        }
+    }
+
+    private void close(SenderEntry entry, PooledTransport pooled) {
+        entry.open.decrementAndGet();
+        try {
+            pooled.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection for sender: {}", entry.sender.getName(), e);
+        }
+    }
+
+    private Session createSession(EmailSender sender) {
+        Properties props = new Properties();
+        props.put("mail.smtp.host", sender.getHost());
+        props.put("mail.smtp.port", String.valueOf(sender.getPort()));
+        if (sender.getProperties() != null) {
+            sender.getProperties().fieldNames().forEachRemaining(key -> {
+                props.put(key, sender.getProperties().get(key).asText());
+            });
+        }
+        return Session.getInstance(props);
+    }
+
+    /**
+     * Thrown when a sender is missing or inactive, e.g. deleted after a request picked it
+     */
+    public static class SenderNotFoundException extends IllegalArgumentException {
+        public SenderNotFoundException(String message) {
+            super(message);
+        }
+    }
+
+    private static class SenderEntry {
+        private final EmailSender sender;
+        private final Session session;
+        private final int maxConnections;
+        /**
+         * One permit per connection in use; idle connections hold none
+         */
+        private final Semaphore permits;
+        private final ConcurrentLinkedDeque<PooledTransport> idle = new ConcurrentLinkedDeque<>();
+        private final AtomicInteger open = new AtomicInteger();
+        private volatile boolean closed;
+
+        SenderEntry(EmailSender sender, Session session, int maxConnections) {
+            this.sender = sender;
+            this.session = session;
+            this.maxConnections = maxConnections;
+            this.permits = new Semaphore(maxConnections, true);
+        }
+    }
+
+    private static class PooledTransport {
+        private final Transport transport;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
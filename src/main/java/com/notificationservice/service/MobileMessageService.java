@@ -1,20 +1,40 @@
 package com.notificationservice.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.UdpBroadcastProperties;
 import com.notificationservice.dto.NotificationRequestDto;
 import com.notificationservice.entity.NotificationRequest;
 import com.notificationservice.entity.NotificationResponse;
 import com.notificationservice.repository.NotificationRequestRepository;
 import com.notificationservice.repository.NotificationResponseRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
@@ -27,9 +47,28 @@ public class MobileMessageService {
     private final NotificationRequestRepository requestRepository;
     private final NotificationResponseRepository responseRepository;
     private final TemplateService templateService;
+    private final UdpBroadcastTransport udpTransport;
+    private final UdpBroadcastProperties udpProperties;
+    private final MobilePushGateway pushGateway;
+    private final ObjectMapper objectMapper;
+    private final BroadcastDeliveryService deliveryService;
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Outcomes are recorded after the request committed, so in a transaction of their own
+     */
+    private TransactionTemplate requiresNew;
 
     // Store connected clients by network/room
-    private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> networkClients = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentHashMap<String, RegisteredClient>> networkClients = new ConcurrentHashMap<>();
+
+    private static final SecureRandom TOKEN_RANDOM = new SecureRandom();
+
+    @PostConstruct
+    void init() {
+        requiresNew = new TransactionTemplate(transactionManager);
+        requiresNew.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     /**
      * Broadcast message to all clients in the same network
@@ -48,18 +87,60 @@ public class MobileMessageService {
         request.setVariables(convertToJsonNode(variables));
         request.setStatus(NotificationRequest.NotificationStatus.PENDING);
 
-        request = requestRepository.save(request);
+        NotificationRequest saved = requestRepository.save(request);
+        NotificationRequestDto dto = convertToDto(saved);
+        String message = processedContent;
+        afterCommit(() -> copyOutcome(
+                requiresNew.execute(status -> transmitBroadcast(saved, networkId, message)), dto));
+        return dto;
+    }
 
+    /**
+     * Send a committed broadcast request and record its outcome
+     */
+    private NotificationRequest transmitBroadcast(NotificationRequest request, String networkId,
+            String processedContent) {
         try {
             // Get all clients in the network
             List<String> clients = getClientsInNetwork(networkId);
+            Optional<InetSocketAddress> multicastGroup = udpTransport.getMulticastGroup(networkId);
 
-            if (clients.isEmpty()) {
+            if (clients.isEmpty() && multicastGroup.isEmpty()) {
                 log.warn("No clients found in network: {}", networkId);
                 request.setStatus(NotificationRequest.NotificationStatus.FAILED);
                 request.setErrorMessage("No clients found in network");
-                request = requestRepository.save(request);
-                return convertToDto(request);
+                return requestRepository.save(request);
+            }
+
+            // Live connections only get the message queued, so a slow client never blocks the broadcast
+            long sequence = udpTransport.nextSequence(networkId);
+            MobilePushGateway.PushResult pushed = pushGateway.broadcast(networkId,
+                    pushPayload(request.getId(), networkId, sequence, processedContent));
+
+            // UDP for clients without a live connection: one datagram per chunk to the group,
+            // otherwise one per chunk and client
+            Map<InetSocketAddress, List<String>> udpClients = getUdpClients(networkId);
+            Collection<InetSocketAddress> targets = multicastGroup
+                    .<Collection<InetSocketAddress>>map(List::of)
+                    .orElseGet(udpClients::keySet);
+            UdpBroadcastTransport.BroadcastResult result = targets.isEmpty() ? null
+                    : udpTransport.send(networkId, sequence, processedContent, targets);
+
+            int reached = pushed.getQueued().size() + (result != null ? result.getReached() : 0);
+            if (reached == 0) {
+                throw new IllegalStateException("No client in network " + networkId + " could be reached");
+            }
+
+            // Only the clients that were missed go to the ledger; everyone else counts as delivered
+            Map<String, String> failures = new LinkedHashMap<>();
+            pushed.getRejected().forEach(clientId -> failures.put(clientId, "Push connection closed"));
+            if (result != null) {
+                for (InetSocketAddress unreachable : result.getUnreachable()) {
+                    Collection<String> missed = multicastGroup.isPresent()
+                            ? udpClients.values().stream().flatMap(List::stream).toList()
+                            : udpClients.getOrDefault(unreachable, List.of());
+                    missed.forEach(clientId -> failures.put(clientId, "UDP send to " + unreachable + " failed"));
+                }
             }
 
             // Update request status
@@ -72,15 +153,26 @@ public class MobileMessageService {
             response.setRequest(request);
             response.setStatus("BROADCAST_SENT");
             response.setProviderResponseId("broadcast-" + System.currentTimeMillis());
-            response.setResponseData(convertToJsonNode(Map.of(
-                    "networkId", networkId,
-                    "recipients", clients.size(),
-                    "clients", clients,
-                    "timestamp", LocalDateTime.now().toString())));
+            Map<String, Object> responseData = new LinkedHashMap<>();
+            responseData.put("networkId", networkId);
+            responseData.put("recipients", clients.size());
+            responseData.put("failed", failures.size());
+            responseData.put("sequence", sequence);
+            responseData.put("pushed", pushed.getQueued().size());
+            responseData.put("pushRejected", pushed.getRejected().size());
+            if (result != null) {
+                responseData.put("transport", multicastGroup.isPresent() ? "MULTICAST" : "UNICAST");
+                responseData.put("chunks", result.getChunks());
+                responseData.put("datagramsSent", result.getDatagramsSent());
+                responseData.put("unreachable", result.getUnreachable().size());
+            }
+            responseData.put("timestamp", LocalDateTime.now().toString());
+            response.setResponseData(convertToJsonNode(responseData));
             responseRepository.save(response);
+            deliveryService.recordFailures(request.getId(), failures);
 
-            log.info("Broadcast message sent successfully to network: {} with {} recipients", networkId,
-                    clients.size());
+            log.info("Broadcast message {} sent to network: {} with {} recipients ({} pushed)",
+                    sequence, networkId, clients.size(), pushed.getQueued().size());
 
         } catch (Exception e) {
             log.error("Failed to broadcast message to network: {}", networkId, e);
@@ -94,11 +186,10 @@ public class MobileMessageService {
             NotificationResponse response = new NotificationResponse();
             response.setRequest(request);
             response.setStatus("BROADCAST_FAILED");
-            response.setResponseData(convertToJsonNode(Map.of("error", e.getMessage())));
+            response.setResponseData(convertToJsonNode(Map.of("error", String.valueOf(e.getMessage()))));
             responseRepository.save(response);
         }
-
-        return convertToDto(request);
+        return request;
     }
 
     /**
@@ -119,14 +210,41 @@ public class MobileMessageService {
         request.setVariables(convertToJsonNode(variables));
         request.setStatus(NotificationRequest.NotificationStatus.PENDING);
 
-        request = requestRepository.save(request);
+        NotificationRequest saved = requestRepository.save(request);
+        NotificationRequestDto dto = convertToDto(saved);
+        String message = processedContent;
+        afterCommit(() -> copyOutcome(
+                requiresNew.execute(status -> transmitToClient(saved, networkId, clientId, message)), dto));
+        return dto;
+    }
 
+    /**
+     * Send a committed direct message request and record its outcome
+     */
+    private NotificationRequest transmitToClient(NotificationRequest request, String networkId, String clientId,
+            String processedContent) {
         try {
             // Check if client exists in the network
-            if (!isClientInNetwork(networkId, clientId)) {
+            RegisteredClient client = getClient(networkId, clientId);
+            if (client == null && !pushGateway.isConnected(networkId, clientId)) {
                 throw new IllegalArgumentException("Client " + clientId + " not found in network " + networkId);
             }
 
+            // Prefer the live connection; fall back to UDP
+            long sequence = udpTransport.nextSequence(networkId);
+            String payload = pushPayload(request.getId(), networkId, sequence, processedContent);
+            boolean pushed = pushGateway.send(networkId, clientId, payload);
+            if (!pushed) {
+                if (client == null) {
+                    throw new IllegalStateException("Client " + clientId + " could not be reached");
+                }
+                UdpBroadcastTransport.BroadcastResult result = udpTransport.send(networkId, sequence,
+                        processedContent, List.of(client.getAddress()));
+                if (result.getReached() == 0) {
+                    throw new IllegalStateException("Client " + clientId + " could not be reached");
+                }
+            }
+
             // Update request status
             request.setStatus(NotificationRequest.NotificationStatus.SENT);
             request.setSentAt(LocalDateTime.now());
@@ -140,6 +258,8 @@ public class MobileMessageService {
             response.setResponseData(convertToJsonNode(Map.of(
                     "networkId", networkId,
                     "clientId", clientId,
+                    "sequence", sequence,
+                    "transport", pushed ? "PUSH" : "UDP",
                     "timestamp", LocalDateTime.now().toString())));
             responseRepository.save(response);
 
@@ -157,75 +277,209 @@ public class MobileMessageService {
             NotificationResponse response = new NotificationResponse();
             response.setRequest(request);
             response.setStatus("CLIENT_FAILED");
-            response.setResponseData(convertToJsonNode(Map.of("error", e.getMessage())));
+            response.setResponseData(convertToJsonNode(Map.of("error", String.valueOf(e.getMessage()))));
             responseRepository.save(response);
         }
+        return request;
+    }
 
-        return convertToDto(request);
+    /**
+     * Record that a client received a mobile message; the caller must present the client's token
+     */
+    public void acknowledge(Long requestId, String networkId, String clientId, String token) {
+        if (!isClientToken(networkId, clientId, token)) {
+            throw new ClientTokenException(networkId, clientId);
+        }
+        deliveryService.acknowledge(requestId, networkId, clientId);
     }
 
     /**
-     * Register a client to a network
+     * Run once the current transaction commits, or now without one. Push payloads carry the
+     * request id and clients may acknowledge at once, so nothing is sent before the request
+     * row is visible, nor for a request that rolls back.
      */
-    public void registerClient(String networkId, String clientId, String clientInfo) {
-        networkClients.computeIfAbsent(networkId, k -> new ConcurrentHashMap<>())
-                .put(clientId, clientInfo);
-        log.info("Client {} registered to network {}", clientId, networkId);
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static void copyOutcome(NotificationRequest request, NotificationRequestDto dto) {
+        dto.setStatus(request.getStatus().name());
+        dto.setErrorMessage(request.getErrorMessage());
+        dto.setModifiedAt(request.getModifiedAt());
+        dto.setModifiedBy(request.getModifiedBy());
     }
 
     /**
-     * Unregister a client from a network
+     * Register a client to a network; returns the client's token
      */
-    public void unregisterClient(String networkId, String clientId) {
-        ConcurrentHashMap<String, String> clients = networkClients.get(networkId);
-        if (clients != null) {
-            clients.remove(clientId);
-            if (clients.isEmpty()) {
-                networkClients.remove(networkId);
+    public String registerClient(String networkId, String clientId, String clientInfo) {
+        return registerClient(networkId, clientId, clientInfo, "localhost", null, null);
+    }
+
+    /**
+     * Register a client that called from {@code remoteAddress} and return its token. Datagrams
+     * go back to that address unless the client asks for a host listed in
+     * notification.mobile.udp.allowed-client-hosts; any other host is refused, so the
+     * endpoint cannot point broadcasts at third parties.
+     *
+     * <p>The first registration of a client id issues a token that push connections and later
+     * registration changes must present, so one client cannot take over another's id.
+     */
+    public String registerClient(String networkId, String clientId, String clientInfo, String requestedHost,
+            String remoteAddress, Integer port, String token) {
+        String host = remoteAddress;
+        if (requestedHost != null && !requestedHost.equals(remoteAddress)) {
+            if (!udpProperties.getAllowedClientHosts().contains(requestedHost)) {
+                throw new IllegalArgumentException("Client host not allowed: " + requestedHost);
             }
+            host = requestedHost;
+        }
+        InetSocketAddress address = new InetSocketAddress(host,
+                port != null ? port : udpProperties.getDefaultClientPort());
+        if (address.isUnresolved()) {
+            throw new IllegalArgumentException("Cannot resolve client host: " + host);
+        }
+        if (clientId == null || clientId.isBlank()) {
+            throw new IllegalArgumentException("clientId is required");
         }
+
+        RegisteredClient registered = networkClients.computeIfAbsent(networkId, k -> new ConcurrentHashMap<>())
+                .compute(clientId, (id, existing) -> {
+                    if (existing != null && !existing.hasToken(token)) {
+                        throw new ClientTokenException(networkId, clientId);
+                    }
+                    return new RegisteredClient(clientInfo, address,
+                            existing != null ? existing.getToken() : newToken());
+                });
+        log.info("Client {} registered to network {} at {}", clientId, networkId, address);
+        return registered.getToken();
+    }
+
+    /**
+     * Whether the token is the one issued to the client when it registered
+     */
+    public boolean isClientToken(String networkId, String clientId, String token) {
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        RegisteredClient client = clients != null && clientId != null ? clients.get(clientId) : null;
+        return client != null && client.hasToken(token);
+    }
+
+    /**
+     * Unregister a client from a network; the caller must present the client's token
+     */
+    public void unregisterClient(String networkId, String clientId, String token) {
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        if (clients != null) {
+            clients.computeIfPresent(clientId, (id, existing) -> {
+                if (!existing.hasToken(token)) {
+                    throw new ClientTokenException(networkId, clientId);
+                }
+                return null;
+            });
+            networkClients.computeIfPresent(networkId, (id, map) -> map.isEmpty() ? null : map);
+        }
+        pushGateway.disconnect(networkId, clientId);
         log.info("Client {} unregistered from network {}", clientId, networkId);
     }
 
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        TOKEN_RANDOM.nextBytes(bytes);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+
     /**
      * Get all clients in a network
      */
     public List<String> getClientsInNetwork(String networkId) {
-        ConcurrentHashMap<String, String> clients = networkClients.get(networkId);
-        return clients != null ? new ArrayList<>(clients.keySet()) : List.of();
+        Set<String> clientIds = new LinkedHashSet<>();
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        if (clients != null) {
+            clientIds.addAll(clients.keySet());
+        }
+        clientIds.addAll(pushGateway.getConnectedClients(networkId));
+        return new ArrayList<>(clientIds);
+    }
+
+    /**
+     * Registered clients without a live push connection, grouped by the UDP address they listen on
+     */
+    private Map<InetSocketAddress, List<String>> getUdpClients(String networkId) {
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        if (clients == null) {
+            return Map.of();
+        }
+        return clients.entrySet().stream()
+                .filter(entry -> !pushGateway.isConnected(networkId, entry.getKey()))
+                .collect(Collectors.groupingBy(entry -> entry.getValue().getAddress(), LinkedHashMap::new,
+                        Collectors.mapping(Map.Entry::getKey, Collectors.toList())));
+    }
+
+    /**
+     * Push message; clients acknowledge it with its requestId
+     */
+    private String pushPayload(Long requestId, String networkId, long sequence, String content) {
+        try {
+            return objectMapper.writeValueAsString(Map.of(
+                    "type", "message",
+                    "requestId", requestId,
+                    "networkId", networkId,
+                    "sequence", sequence,
+                    "content", content,
+                    "timestamp", LocalDateTime.now().toString()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize push message", e);
+        }
+    }
+
+    private RegisteredClient getClient(String networkId, String clientId) {
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        return clients != null ? clients.get(clientId) : null;
     }
 
     /**
      * Check if a client is in a network
      */
     public boolean isClientInNetwork(String networkId, String clientId) {
-        ConcurrentHashMap<String, String> clients = networkClients.get(networkId);
-        return clients != null && clients.containsKey(clientId);
+        ConcurrentHashMap<String, RegisteredClient> clients = networkClients.get(networkId);
+        return (clients != null && clients.containsKey(clientId)) || pushGateway.isConnected(networkId, clientId);
     }
 
     /**
      * Get all networks
      */
     public List<String> getAllNetworks() {
-        return new ArrayList<>(networkClients.keySet());
+        Set<String> networks = new LinkedHashSet<>(networkClients.keySet());
+        networks.addAll(pushGateway.getNetworks());
+        return new ArrayList<>(networks);
     }
 
     /**
      * Get network statistics
      */
     public Map<String, Object> getNetworkStats(String networkId) {
-        ConcurrentHashMap<String, String> clients = networkClients.get(networkId);
+        List<String> clients = getClientsInNetwork(networkId);
         return Map.of(
                 "networkId", networkId,
-                "clientCount", clients != null ? clients.size() : 0,
-                "clients", clients != null ? clients.keySet() : List.of());
+                "clientCount", clients.size(),
+                "connectedClients", pushGateway.getConnectedClients(networkId).size(),
+                "clients", clients);
     }
 
     private JsonNode convertToJsonNode(Map<String, Object> map) {
         if (map == null)
             return null;
         try {
-            return new com.fasterxml.jackson.databind.ObjectMapper().valueToTree(map);
+            return objectMapper.valueToTree(map);
         } catch (Exception e) {
             log.warn("Failed to convert map to JsonNode", e);
             return null;
@@ -254,4 +508,26 @@ public class MobileMessageService {
 
         return dto;
     }
-}
\ No newline at end of file
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class RegisteredClient {
+        private final String clientInfo;
+        private final InetSocketAddress address;
+        private final String token;
+
+        boolean hasToken(String candidate) {
+            return candidate != null && MessageDigest.isEqual(token.getBytes(StandardCharsets.US_ASCII),
+                    candidate.getBytes(StandardCharsets.US_ASCII));
+        }
+    }
+
+    /**
+     * The caller did not present the token issued to the client
+     */
+    public static class ClientTokenException extends RuntimeException {
+        public ClientTokenException(String networkId, String clientId) {
+            super("Invalid token for client " + clientId + " in network " + networkId);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.MobilePushProperties;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Registry of live push connections per network, tied to the connection lifecycle:
+ * a client is present while its WebSocket session or SSE stream is open. Sends only
+ * enqueue into each connection's bounded queue.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MobilePushGateway {
+
+    private final MobilePushProperties properties;
+
+    private final Map<String, Map<String, PushConnection>> connections = new ConcurrentHashMap<>();
+
+    // Drain tasks are short-lived and may block on a slow socket, so each gets a virtual thread
+    private final ExecutorService drainExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    void shutdown() {
+        connections.values().forEach(clients -> clients.values().forEach(PushConnection::close));
+        drainExecutor.shutdownNow();
+    }
+
+    /**
+     * Register an open WebSocket session; replaces an older connection of the same client
+     */
+    public PushConnection connect(String networkId, String clientId, WebSocketSession session) {
+        return register(new WebSocketPushConnection(networkId, clientId, session));
+    }
+
+    /**
+     * Open an SSE stream for a client; the registration ends with the stream
+     */
+    public SseEmitter connectSse(String networkId, String clientId) {
+        SseEmitter emitter = new SseEmitter(properties.getSseTimeoutMs());
+        SsePushConnection connection = new SsePushConnection(networkId, clientId, emitter);
+        emitter.onCompletion(() -> disconnect(connection));
+        emitter.onTimeout(() -> disconnect(connection));
+        emitter.onError(e -> disconnect(connection));
+        register(connection);
+        return emitter;
+    }
+
+    /**
+     * Remove a connection if it is still the registered one for its client
+     */
+    public void disconnect(PushConnection connection) {
+        Map<String, PushConnection> clients = connections.get(connection.getNetworkId());
+        if (clients != null && clients.remove(connection.getClientId(), connection)) {
+            connections.computeIfPresent(connection.getNetworkId(), (id, map) -> map.isEmpty() ? null : map);
+            log.debug("Push client {} disconnected from network {}", connection.getClientId(),
+                    connection.getNetworkId());
+        }
+    }
+
+    /**
+     * Close the live connection of a client, if any, e.g. when it unregisters
+     */
+    public void disconnect(String networkId, String clientId) {
+        Map<String, PushConnection> clients = connections.get(networkId);
+        PushConnection connection = clients != null ? clients.get(clientId) : null;
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Queue a message for one client; false when the client has no live connection
+     */
+    public boolean send(String networkId, String clientId, String payload) {
+        Map<String, PushConnection> clients = connections.get(networkId);
+        PushConnection connection = clients != null ? clients.get(clientId) : null;
+        return connection != null && connection.offer(payload);
+    }
+
+    /**
+     * Queue a message for every live connection of a network
+     */
+    public PushResult broadcast(String networkId, String payload) {
+        Map<String, PushConnection> clients = connections.get(networkId);
+        if (clients == null) {
+            return new PushResult(List.of(), List.of());
+        }
+        List<String> queued = new ArrayList<>(clients.size());
+        List<String> rejected = new ArrayList<>();
+        clients.forEach((clientId, connection) -> {
+            if (connection.offer(payload)) {
+                queued.add(clientId);
+            } else {
+                rejected.add(clientId);
+            }
+        });
+        return new PushResult(queued, rejected);
+    }
+
+    public boolean isConnected(String networkId, String clientId) {
+        Map<String, PushConnection> clients = connections.get(networkId);
+        return clients != null && clients.containsKey(clientId);
+    }
+
+    public List<String> getNetworks() {
+        List<String> networks = new ArrayList<>();
+        connections.forEach((networkId, clients) -> {
+            if (!clients.isEmpty()) {
+                networks.add(networkId);
+            }
+        });
+        return networks;
+    }
+
+    public List<String> getConnectedClients(String networkId) {
+        Map<String, PushConnection> clients = connections.get(networkId);
+        return clients != null ? new ArrayList<>(clients.keySet()) : List.of();
+    }
+
+    /**
+     * Connection counts and queue health per network
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new ConcurrentHashMap<>();
+        connections.forEach((networkId, clients) -> {
+            long dropped = 0;
+            long queued = 0;
+            for (PushConnection connection : clients.values()) {
+                dropped += connection.getDroppedCount();
+                queued += connection.getQueuedCount();
+            }
+            stats.put(networkId, Map.of("connections", clients.size(), "queued", queued, "dropped", dropped));
+        });
+        return stats;
+    }
+
+    private PushConnection register(PushConnection connection) {
+        PushConnection previous = connections
+                .computeIfAbsent(connection.getNetworkId(), id -> new ConcurrentHashMap<>())
+                .put(connection.getClientId(), connection);
+        if (previous != null && previous != connection) {
+            previous.close();
+        }
+        log.debug("Push client {} connected to network {} over {}", connection.getClientId(),
+                connection.getNetworkId(), connection.getTransport());
+        return connection;
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class PushResult {
+        private final List<String> queued;
+        private final List<String> rejected;
+    }
+
+    private class WebSocketPushConnection extends PushConnection {
+        private final WebSocketSession session;
+
+        WebSocketPushConnection(String networkId, String clientId, WebSocketSession session) {
+            super(networkId, clientId, properties.getQueueCapacity(), properties.getMaxDroppedMessages(),
+                    drainExecutor);
+            this.session = session;
+        }
+
+        @Override
+        public String getTransport() {
+            return "WEBSOCKET";
+        }
+
+        @Override
+        protected void write(String payload) throws Exception {
+            session.sendMessage(new TextMessage(payload));
+        }
+
+        @Override
+        protected boolean isTransportOpen() {
+            return session.isOpen();
+        }
+
+        @Override
+        protected void doClose() throws Exception {
+            disconnect(this);
+            if (session.isOpen()) {
+                session.close(CloseStatus.POLICY_VIOLATION.withReason("Closed by server"));
+            }
+        }
+    }
+
+    private class SsePushConnection extends PushConnection {
+        private final SseEmitter emitter;
+        private volatile boolean open = true;
+
+        SsePushConnection(String networkId, String clientId, SseEmitter emitter) {
+            super(networkId, clientId, properties.getQueueCapacity(), properties.getMaxDroppedMessages(),
+                    drainExecutor);
+            this.emitter = emitter;
+        }
+
+        @Override
+        public String getTransport() {
+            return "SSE";
+        }
+
+        @Override
+        protected void write(String payload) throws Exception {
+            emitter.send(SseEmitter.event().name("message").data(payload, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        protected boolean isTransportOpen() {
+            return open;
+        }
+
+        @Override
+        protected void doClose() {
+            open = false;
+            disconnect(this);
+            emitter.complete();
+        }
+    }
+}
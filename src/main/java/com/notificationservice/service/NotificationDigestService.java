@@ -0,0 +1,335 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.notificationservice.config.DigestProperties;
+import com.notificationservice.dto.NotificationRequestDto;
+import com.notificationservice.dto.NotificationTemplateDto;
+import com.notificationservice.entity.NotificationRequest.NotificationChannel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces bursts of messages to one recipient. Messages with a digest policy are grouped in
+ * memory per channel, sender, recipient and optional digest key; when the window that the
+ * first message opened closes, they are merged into a single message and queued in the
+ * outbox, so a burst costs one provider call.
+ *
+ * <p>Each held message is also persisted as a SCHEDULED request due a grace period after its
+ * window. Queueing the digest marks those rows DIGESTED, pointing at the digest request, in the
+ * same transaction; if the digest is never queued (the node stopped, or queueing it failed)
+ * they are released one by one at that time, so a held message is never lost. The saving is in
+ * provider calls, not database writes: every held message still costs its own rows.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDigestService {
+
+    private static final String EMAIL_SEPARATOR = "<hr/>";
+    private static final String WHATSAPP_SEPARATOR = "\n\n";
+
+    private final DigestProperties properties;
+    private final TemplateService templateService;
+    private final EmailService emailService;
+    private final WhatsAppService whatsAppService;
+    private final ScheduledNotificationService scheduledNotificationService;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<String, Digest> open = new ConcurrentHashMap<>();
+    private final LongAdder held = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Digest policy for a send: a DIGEST rule wins over the template's own setting
+     */
+    public DigestPolicy resolvePolicy(String templateName, RuleEngineService.RuleEvaluationResult ruleResult) {
+        if (!properties.isEnabled()) {
+            return null;
+        }
+        if (ruleResult != null && ruleResult.getDigest() != null) {
+            return ruleResult.getDigest();
+        }
+        if (templateName == null) {
+            return null;
+        }
+        return templateService.getCompiledTemplate(templateName)
+                .map(TemplateService.ResolvedTemplate::getTemplate)
+                .filter(template -> template.getDigestWindowSeconds() != null && template.getDigestWindowSeconds() > 0)
+                .map(template -> new DigestPolicy(template.getDigestWindowSeconds(), template.getDigestTemplate(),
+                        template.getDigestKey()))
+                .orElse(null);
+    }
+
+    /**
+     * Hold a message with raw content; variables are applied now, as for an immediate send.
+     * Returns the persisted request that stands for the message until the digest is sent.
+     */
+    public NotificationRequestDto hold(NotificationChannel channel, String senderName, String recipient,
+            String subject, String content, Map<String, Object> variables, DigestPolicy policy) {
+        LocalDateTime fallbackAt = fallbackAt(policy);
+        NotificationRequestDto held = switch (channel) {
+            case EMAIL -> emailService.queueEmail(senderName, recipient, subject, content, variables, fallbackAt);
+            case WHATSAPP -> whatsAppService.queueWhatsAppMessage(recipient, content, variables, fallbackAt);
+        };
+        add(channel, senderName, recipient, held, variables, policy);
+        return held;
+    }
+
+    /**
+     * Hold a message rendered from a template; returns its persisted request
+     */
+    public NotificationRequestDto holdTemplate(NotificationChannel channel, String senderName, String templateName,
+            String recipient, Map<String, Object> variables, DigestPolicy policy) {
+        LocalDateTime fallbackAt = fallbackAt(policy);
+        NotificationRequestDto held = switch (channel) {
+            case EMAIL -> emailService.queueEmailWithTemplate(senderName, templateName, recipient, variables,
+                    fallbackAt, null, null);
+            case WHATSAPP -> whatsAppService.queueWhatsAppWithTemplate(templateName, recipient, variables, fallbackAt);
+        };
+        add(channel, senderName, recipient, held, variables, policy);
+        return held;
+    }
+
+    /**
+     * Send every digest whose window has closed
+     */
+    @Scheduled(fixedDelay = 1000)
+    public void flushDue() {
+        long now = System.nanoTime();
+        open.forEach((key, digest) -> {
+            if (now - digest.deadline >= 0 && open.remove(key, digest)) {
+                send(digest);
+            }
+        });
+    }
+
+    /**
+     * Held messages are sent rather than lost on a graceful shutdown
+     */
+    @PreDestroy
+    void flushAll() {
+        open.forEach((key, digest) -> {
+            if (open.remove(key, digest)) {
+                send(digest);
+            }
+        });
+    }
+
+    /**
+     * Open digests and how many messages they saved
+     */
+    public Map<String, Object> getStats() {
+        long messages = held.sum();
+        long digests = sent.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("openDigests", open.size());
+        stats.put("heldMessages", messages);
+        stats.put("sentMessages", digests);
+        stats.put("coalescingRatio", digests > 0 ? (double) messages / digests : 0.0);
+        return stats;
+    }
+
+    /**
+     * When a held message goes out on its own if no digest settled it
+     */
+    private LocalDateTime fallbackAt(DigestPolicy policy) {
+        return LocalDateTime.now().plusSeconds(windowSeconds(policy) + properties.getFallbackDelaySeconds());
+    }
+
+    private int windowSeconds(DigestPolicy policy) {
+        return Math.min(policy.getWindowSeconds(), properties.getMaxWindowSeconds());
+    }
+
+    private void add(NotificationChannel channel, String senderName, String recipient, NotificationRequestDto held,
+            Map<String, Object> variables, DigestPolicy policy) {
+        String digestKeyValue = policy.getKey() != null && variables != null && variables.get(policy.getKey()) != null
+                ? variables.get(policy.getKey()).toString()
+                : "";
+        String key = channel + "|" + senderName + "|" + recipient + "|" + digestKeyValue;
+        long windowNanos = TimeUnit.SECONDS.toNanos(windowSeconds(policy));
+
+        int[] size = new int[1];
+        Digest digest = open.compute(key, (k, current) -> {
+            Digest target = current != null ? current
+                    : new Digest(channel, senderName, recipient, digestKeyValue, policy, System.nanoTime() + windowNanos);
+            target.messages.add(new Message(held.getId(), held.getSubject(), held.getContent()));
+            if (target.userId == null && variables != null && variables.get("userId") != null) {
+                target.userId = variables.get("userId").toString();
+            }
+            size[0] = target.messages.size();
+            return target;
+        });
+        held.increment();
+
+        // A full digest goes out now; only one caller can win the removal
+        if (size[0] >= properties.getMaxMessages() && open.remove(key, digest)) {
+            send(digest);
+        }
+    }
+
+    private void send(Digest digest) {
+        try {
+            Map<String, Object> variables = digest.userId != null ? Map.of("userId", digest.userId) : null;
+            String subject;
+            String content;
+            if (digest.messages.size() == 1) {
+                subject = digest.messages.get(0).subject;
+                content = digest.messages.get(0).content;
+            } else {
+                Map<String, Object> digestVariables = digestVariables(digest);
+                NotificationTemplateDto template = digest.policy.getTemplate() != null
+                        ? templateService.getTemplateByName(digest.policy.getTemplate()).orElse(null)
+                        : null;
+                if (template != null) {
+                    subject = templateService.processTemplateContent(template.getSubject(), digestVariables);
+                    content = templateService.processTemplateContent(template.getContent(), digestVariables);
+                } else {
+                    if (digest.policy.getTemplate() != null) {
+                        log.warn("Digest template not found: {}, sending the default digest", digest.policy.getTemplate());
+                    }
+                    subject = templateService.processTemplateContent(properties.getDefaultSubject(), digestVariables);
+                    content = (String) digestVariables.get("messages");
+                }
+            }
+
+            // The held rows are settled with the digest queued, or not at all
+            List<Long> heldIds = digest.messages.stream().map(message -> message.requestId).toList();
+            transactionTemplate.executeWithoutResult(status -> {
+                NotificationRequestDto queued = switch (digest.channel) {
+                    case EMAIL -> emailService.queueEmail(digest.senderName, digest.recipient, subject, content,
+                            variables, null);
+                    case WHATSAPP -> whatsAppService.queueWhatsAppMessage(digest.recipient, content, variables, null);
+                };
+                if (scheduledNotificationService.settle(heldIds, queued.getId()) != heldIds.size()) {
+                    throw new IllegalStateException("Some held messages were already released on their own");
+                }
+            });
+            sent.increment();
+            log.debug("Digest of {} messages queued for: {}", digest.messages.size(), digest.recipient);
+        } catch (Exception e) {
+            // Nothing was settled, so each held message still goes out on its own at its fallback time
+            log.error("Failed to send digest of {} messages to: {}, held messages will be sent individually",
+                    digest.messages.size(), digest.recipient, e);
+        }
+    }
+
+    private static Map<String, Object> digestVariables(Digest digest) {
+        String separator = digest.channel == NotificationChannel.EMAIL ? EMAIL_SEPARATOR : WHATSAPP_SEPARATOR;
+        List<String> contents = new ArrayList<>(digest.messages.size());
+        List<String> subjects = new ArrayList<>(digest.messages.size());
+        for (Message message : digest.messages) {
+            contents.add(message.content);
+            if (message.subject != null) {
+                subjects.add(message.subject);
+            }
+        }
+
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("count", digest.messages.size());
+        variables.put("recipient", digest.recipient);
+        variables.put("digestKey", digest.digestKey);
+        variables.put("messages", String.join(separator, contents));
+        variables.put("subjects", String.join(", ", subjects));
+        variables.put("firstSubject", subjects.isEmpty() ? "" : subjects.get(0));
+        return variables;
+    }
+
+    /**
+     * How long to hold messages, the template to merge them with and the variable that splits
+     * one recipient's messages into separate digests
+     */
+    public static class DigestPolicy {
+        private final int windowSeconds;
+        private final String template;
+        private final String key;
+
+        public DigestPolicy(int windowSeconds, String template, String key) {
+            this.windowSeconds = windowSeconds;
+            this.template = template;
+            this.key = key;
+        }
+
+        /**
+         * Policy from a rule's action config: {@code {"windowSeconds": 60, "template": "...", "key": "..."}}
+         */
+        public static DigestPolicy fromActionConfig(JsonNode actionConfig) {
+            if (actionConfig == null || actionConfig.path("windowSeconds").asInt() <= 0) {
+                return null;
+            }
+            return new DigestPolicy(actionConfig.get("windowSeconds").asInt(),
+                    actionConfig.hasNonNull("template") ? actionConfig.get("template").asText() : null,
+                    actionConfig.hasNonNull("key") ? actionConfig.get("key").asText() : null);
+        }
+
+        public int getWindowSeconds() {
+            return windowSeconds;
+        }
+
+        public String getTemplate() {
+            return template;
+        }
+
+        public String getKey() {
+            return key;
+        }
+    }
+
+    private static final class Message {
+        private final Long requestId;
+        private final String subject;
+        private final String content;
+
+        Message(Long requestId, String subject, String content) {
+            this.requestId = requestId;
+            this.subject = subject;
+            this.content = content;
+        }
+    }
+
+    private static final class Digest {
+        private final NotificationChannel channel;
+        private final String senderName;
+        private final String recipient;
+        private final String digestKey;
+        private final DigestPolicy policy;
+        private final long deadline;
+        /**
+         * Only appended inside {@code open.compute}; read after the digest left the map
+         */
+        private final List<Message> messages = new ArrayList<>();
+        private String userId;
+
+        Digest(NotificationChannel channel, String senderName, String recipient, String digestKey,
+                DigestPolicy policy, long deadline) {
+            this.channel = channel;
+            this.senderName = senderName;
+            this.recipient = recipient;
+            this.digestKey = digestKey;
+            this.policy = policy;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.DispatchProperties;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.NotificationRequest.PriorityLane;
+import com.notificationservice.repository.NotificationRequestRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/**
+ * Outbox dispatcher: claims PENDING notification requests in batches with
+ * {@code FOR UPDATE SKIP LOCKED}, per priority lane, and delivers them through the
+ * {@link DispatchLaneScheduler}. Several nodes can poll the same table; each row is owned
+ * by one worker at a time.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationDispatchService {
+
+    private final NotificationRequestRepository requestRepository;
+    private final EmailService emailService;
+    private final WhatsAppService whatsAppService;
+    private final DispatchProperties dispatchProperties;
+    private final DispatchLaneScheduler laneScheduler;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private String workerId;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        workerId = resolveWorkerId();
+    }
+
+    /**
+     * Identifier stamped on the rows this node leases
+     */
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    /**
+     * Rows this worker held before a restart are handed back immediately instead of
+     * waiting for their lease to expire
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void releaseStaleLeases() {
+        if (!dispatchProperties.isEnabled()) {
+            return;
+        }
+        Integer released = transactionTemplate.execute(status -> requestRepository.releaseOutboxLeases(workerId));
+        if (released != null && released > 0) {
+            log.info("Released {} outbox rows previously leased by worker: {}", released, workerId);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${notification.dispatch.poll-interval-ms:1000}")
+    public void pollOutbox() {
+        if (!dispatchProperties.isEnabled()) {
+            return;
+        }
+
+        // Lanes are claimed separately so a bulk backlog never fills an OTP batch
+        for (PriorityLane lane : PriorityLane.values()) {
+            pollLane(lane);
+        }
+    }
+
+    private void pollLane(PriorityLane lane) {
+        // Only claim what the lane can queue, so leases are not burnt behind a full queue
+        int batchSize = Math.min(dispatchProperties.getBatchSize(), laneScheduler.remainingCapacity(lane));
+        if (batchSize <= 0) {
+            return;
+        }
+
+        List<NotificationRequestRepository.ClaimedRow> claimed;
+        try {
+            claimed = transactionTemplate.execute(status -> requestRepository.claimOutboxBatch(
+                    workerId, lane.name(), batchSize, dispatchProperties.getLeaseSeconds()));
+        } catch (Exception e) {
+            log.error("Failed to claim {} outbox batch for worker: {}", lane, workerId, e);
+            return;
+        }
+
+        if (claimed == null || claimed.isEmpty()) {
+            return;
+        }
+
+        log.debug("Worker {} claimed {} {} outbox rows", workerId, claimed.size(), lane);
+        for (NotificationRequestRepository.ClaimedRow row : claimed) {
+            Long requestId = row.getId();
+            if (!laneScheduler.submit(lane, row.getUserId(), () -> dispatch(requestId))) {
+                // Lane filled up since the claim (e.g. bulk follow-ups); let another poll take it
+                transactionTemplate.executeWithoutResult(
+                        status -> requestRepository.releaseOutboxLease(requestId, workerId));
+            }
+        }
+    }
+
+    /**
+     * Deliver one claimed row in its own transaction
+     */
+    private void dispatch(Long requestId) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                NotificationRequest request = requestRepository.findById(requestId).orElse(null);
+                if (request == null
+                        || request.getStatus() != NotificationRequest.NotificationStatus.PROCESSING
+                        || !workerId.equals(request.getLockedBy())) {
+                    // Lease expired and another worker took the row over
+                    return;
+                }
+
+                switch (request.getChannel()) {
+                    case EMAIL -> emailService.deliver(request);
+                    case WHATSAPP -> whatsAppService.deliver(request);
+                }
+
+                request.setLockedBy(null);
+                request.setLockedUntil(null);
+            });
+        } catch (Exception e) {
+            // The row stays PROCESSING and is reclaimed once its lease expires
+            log.error("Failed to dispatch notification request: {}", requestId, e);
+        }
+    }
+
+    private String resolveWorkerId() {
+        String configured = dispatchProperties.getWorkerId();
+        if (configured != null && !configured.isBlank()) {
+            return configured;
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "worker-" + ProcessHandle.current().pid();
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.ExportProperties;
+import com.notificationservice.entity.NotificationRequest;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Export of request history for reconciliation. Rows are read through a forward-only cursor in
+ * a read-only transaction, {@code fetchSize} rows per round trip, and written to the output as
+ * each one arrives, so memory stays flat however many rows match. The time range is required;
+ * it also limits the scan to the monthly partitions it covers. Each running export holds a
+ * connection, so only {@code max-concurrent} run at once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationExportService {
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String[] COLUMNS = {"id", "created_at", "sent_at", "channel", "status", "priority_lane",
+            "recipient", "subject", "sender_id", "sender_pool_id", "template_id", "user_id", "attempt_count",
+            "error_message"};
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PlatformTransactionManager transactionManager;
+    private final ObjectMapper objectMapper;
+    private final ExportProperties properties;
+
+    private final LongAdder exportedRows = new LongAdder();
+
+    private TransactionTemplate readOnlyTransaction;
+    private Semaphore running;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        running = new Semaphore(properties.getMaxConcurrent());
+    }
+
+    /**
+     * Take one of the export slots of this node; {@code false} when all are in use. A slot
+     * taken must be given back with {@link #endExport()}.
+     */
+    public boolean tryBeginExport() {
+        return running.tryAcquire();
+    }
+
+    public void endExport() {
+        running.release();
+    }
+
+    /**
+     * Filter of an export; {@code from} is inclusive and {@code to} exclusive
+     */
+    @Getter
+    public static class ExportQuery {
+        private final LocalDateTime from;
+        private final LocalDateTime to;
+        private final NotificationRequest.NotificationStatus status;
+        private final String recipient;
+        private final boolean includeContent;
+
+        public ExportQuery(LocalDateTime from, LocalDateTime to, NotificationRequest.NotificationStatus status,
+                String recipient, boolean includeContent) {
+            if (from == null) {
+                throw new IllegalArgumentException("from is required");
+            }
+            if (to != null && !to.isAfter(from)) {
+                throw new IllegalArgumentException("to must be after from");
+            }
+            this.from = from;
+            this.to = to;
+            this.status = status;
+            this.recipient = recipient;
+            this.includeContent = includeContent;
+        }
+    }
+
+    /**
+     * Write every matching request to {@code out}, oldest first; returns the number of rows.
+     * The stream is flushed but not closed.
+     */
+    public long export(ExportQuery query, Format format, OutputStream out) throws IOException {
+        List<Object> params = new ArrayList<>();
+        String sql = buildSql(query, params);
+
+        RowWriter rowWriter = format == Format.CSV
+                ? new CsvRowWriter(out, columns(query))
+                : new NdjsonRowWriter(out, columns(query));
+        long[] rows = new long[1];
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // Postgres streams through a cursor only with a fetch size inside a transaction
+                statement.setFetchSize(FETCH_SIZE);
+                for (int i = 0; i < params.size(); i++) {
+                    statement.setObject(i + 1, params.get(i));
+                }
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                rowWriter.write(rs);
+                rows[0]++;
+            }));
+            rowWriter.finish();
+        } catch (UncheckedIOException e) {
+            // Usually the client went away; the cursor is closed with the transaction
+            throw e.getCause();
+        } finally {
+            exportedRows.add(rows[0]);
+        }
+        log.info("Exported {} notification requests as {}", rows[0], format);
+        return rows[0];
+    }
+
+    public long getExportedRows() {
+        return exportedRows.sum();
+    }
+
+    private static String[] columns(ExportQuery query) {
+        if (!query.isIncludeContent()) {
+            return COLUMNS;
+        }
+        String[] columns = new String[COLUMNS.length + 2];
+        System.arraycopy(COLUMNS, 0, columns, 0, COLUMNS.length);
+        columns[COLUMNS.length] = "content";
+        columns[COLUMNS.length + 1] = "variables";
+        return columns;
+    }
+
+    private static String buildSql(ExportQuery query, List<Object> params) {
+        StringBuilder sql = new StringBuilder("SELECT ")
+                .append(String.join(", ", columns(query)))
+                .append(" FROM notification_requests WHERE created_at >= ?");
+        params.add(Timestamp.valueOf(query.getFrom()));
+        if (query.getTo() != null) {
+            sql.append(" AND created_at < ?");
+            params.add(Timestamp.valueOf(query.getTo()));
+        }
+        if (query.getStatus() != null) {
+            sql.append(" AND status = ?");
+            params.add(query.getStatus().name());
+        }
+        if (query.getRecipient() != null) {
+            sql.append(" AND recipient = ?");
+            params.add(query.getRecipient());
+        }
+        return sql.append(" ORDER BY created_at, id").toString();
+    }
+
+    private interface RowWriter {
+        void write(ResultSet rs) throws SQLException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * One JSON object per line; values keep their JSON types
+     */
+    private final class NdjsonRowWriter implements RowWriter {
+        private final JsonGenerator generator;
+        private final String[] columns;
+
+        NdjsonRowWriter(OutputStream out, String[] columns) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            this.generator.setRootValueSeparator(null);
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException {
+            try {
+                generator.writeStartObject();
+                for (int i = 0; i < columns.length; i++) {
+                    Object value = rs.getObject(i + 1);
+                    generator.writeFieldName(columns[i]);
+                    if (value == null) {
+                        generator.writeNull();
+                    } else if (value instanceof Number number) {
+                        generator.writeNumber(number.longValue());
+                    } else if (value instanceof Timestamp timestamp) {
+                        generator.writeString(timestamp.toLocalDateTime().toString());
+                    } else if (columns[i].equals("variables")) {
+                        writeJson(value.toString());
+                    } else {
+                        generator.writeString(value.toString());
+                    }
+                }
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * JSON stored as text is written as a nested value, not as a string of JSON
+         */
+        private void writeJson(String json) throws IOException {
+            try {
+                generator.writeTree(objectMapper.readTree(json));
+            } catch (JsonProcessingException e) {
+                generator.writeString(json);
+            }
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.flush();
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with a header row
+     */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final String[] columns;
+
+        CsvRowWriter(OutputStream out, String[] columns) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 65536);
+            this.columns = columns;
+            writer.write(String.join(",", columns));
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(ResultSet rs) throws SQLException {
+            try {
+                for (int i = 0; i < columns.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    Object value = rs.getObject(i + 1);
+                    if (value instanceof Timestamp timestamp) {
+                        writer.write(timestamp.toLocalDateTime().toString());
+                    } else if (value != null) {
+                        writeField(value.toString());
+                    }
+                }
+                writer.write("\r\n");
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void writeField(String value) throws IOException {
+            boolean quote = false;
+            for (int i = 0; i < value.length() && !quote; i++) {
+                char c = value.charAt(i);
+                quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+            }
+            if (!quote) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.dto.NotificationHistoryDto;
+import com.notificationservice.dto.NotificationHistoryPageDto;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.repository.NotificationRequestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Request history, newest first, paged by keyset: a page continues strictly after the
+ * {@code (created_at, id)} of the last row of the previous page, so every page is one index
+ * range read no matter how deep it is. Message bodies are only read when asked for.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+@Transactional(readOnly = true)
+public class NotificationHistoryService {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 500;
+
+    private final NotificationRequestRepository requestRepository;
+    private final ObjectMapper objectMapper;
+
+    public NotificationHistoryPageDto getRecipientHistory(String recipient, String cursor, Integer limit,
+            boolean includeContent) {
+        int pageSize = pageSize(limit);
+        Cursor after = Cursor.decode(cursor);
+        List<NotificationRequestRepository.HistoryRow> rows = after == null
+                ? requestRepository.findRecipientHistory(recipient, pageSize + 1)
+                : requestRepository.findRecipientHistoryBefore(recipient, after.createdAt, after.id, pageSize + 1);
+        return toPage(rows, pageSize, includeContent);
+    }
+
+    public NotificationHistoryPageDto getStatusHistory(NotificationRequest.NotificationStatus status, String cursor,
+            Integer limit, boolean includeContent) {
+        int pageSize = pageSize(limit);
+        Cursor after = Cursor.decode(cursor);
+        List<NotificationRequestRepository.HistoryRow> rows = after == null
+                ? requestRepository.findStatusHistory(status.name(), pageSize + 1)
+                : requestRepository.findStatusHistoryBefore(status.name(), after.createdAt, after.id, pageSize + 1);
+        return toPage(rows, pageSize, includeContent);
+    }
+
+    private static int pageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        }
+        return limit;
+    }
+
+    private NotificationHistoryPageDto toPage(List<NotificationRequestRepository.HistoryRow> rows, int pageSize,
+            boolean includeContent) {
+        // One row past the page tells whether another page follows
+        boolean more = rows.size() > pageSize;
+        List<NotificationRequestRepository.HistoryRow> page = more ? rows.subList(0, pageSize) : rows;
+
+        List<NotificationHistoryDto> items = page.stream()
+                .map(NotificationHistoryService::toDto)
+                .collect(Collectors.toList());
+
+        if (includeContent && !items.isEmpty()) {
+            Map<Long, NotificationRequestRepository.BodyRow> bodies = requestRepository
+                    .findBodies(items.stream().map(NotificationHistoryDto::getId).collect(Collectors.toList()))
+                    .stream()
+                    .collect(Collectors.toMap(NotificationRequestRepository.BodyRow::getId, Function.identity()));
+            for (NotificationHistoryDto item : items) {
+                NotificationRequestRepository.BodyRow body = bodies.get(item.getId());
+                if (body != null) {
+                    item.setContent(body.getContent());
+                    item.setVariables(readVariables(body.getVariables()));
+                }
+            }
+        }
+
+        String nextCursor = null;
+        if (more) {
+            NotificationRequestRepository.HistoryRow last = page.get(page.size() - 1);
+            nextCursor = new Cursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new NotificationHistoryPageDto(items, nextCursor);
+    }
+
+    private static NotificationHistoryDto toDto(NotificationRequestRepository.HistoryRow row) {
+        return NotificationHistoryDto.builder()
+                .id(row.getId())
+                .channel(row.getChannel())
+                .status(row.getStatus())
+                .priorityLane(row.getPriorityLane())
+                .recipient(row.getRecipient())
+                .subject(row.getSubject())
+                .senderId(row.getSenderId())
+                .templateId(row.getTemplateId())
+                .userId(row.getUserId())
+                .attemptCount(row.getAttemptCount())
+                .sentAt(row.getSentAt())
+                .createdAt(row.getCreatedAt())
+                .build();
+    }
+
+    private JsonNode readVariables(String variables) {
+        if (variables == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(variables);
+        } catch (Exception e) {
+            log.warn("Failed to parse stored variables", e);
+            return null;
+        }
+    }
+
+    /**
+     * Position after the last row of a page, handed to clients as an opaque token
+     */
+    private static final class Cursor {
+        private final LocalDateTime createdAt;
+        private final Long id;
+
+        Cursor(LocalDateTime createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        String encode() {
+            String raw = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String token) {
+            if (token == null || token.isBlank()) {
+                return null;
+            }
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = raw.indexOf('|');
+                return new Cursor(LocalDateTime.parse(raw.substring(0, separator)),
+                        Long.parseLong(raw.substring(separator + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + token);
+            }
+        }
+    }
+}
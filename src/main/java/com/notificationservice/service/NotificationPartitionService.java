@@ -0,0 +1,265 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.PartitionProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintenance of the monthly partitions of {@code notification_requests} and
+ * {@code notification_responses} (V17 migration): keeps partitions created a few months ahead,
+ * and moves months past retention out of the database by detaching them concurrently, writing
+ * their rows to a gzip-compressed NDJSON file and dropping them along with the rows of other
+ * tables that point at their requests, which are archived to files of their own as they are
+ * deleted. A requests partition that still holds
+ * work (scheduled, queued or to be retried) is kept until that work is done. Runs on one node
+ * at a time under a Postgres advisory lock; an interrupted run is picked up by the next one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationPartitionService {
+
+    private static final List<String> PARTITIONED_TABLES = List.of("notification_requests", "notification_responses");
+
+    /**
+     * Tables whose {@code request_id} points at notification requests
+     */
+    private static final List<String> REQUEST_REFERENCES = List.of("notification_dead_letters",
+            "broadcast_deliveries", "idempotency_keys", "scheduled_notifications", "notification_responses");
+
+    private static final Pattern PARTITION_NAME =
+            Pattern.compile("^(notification_requests|notification_responses)_p(\\d{4})_(\\d{2})$");
+
+    /**
+     * Advisory lock key held by the node running maintenance
+     */
+    private static final long MAINTENANCE_LOCK_KEY = 0x4e6f7469506172L;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitionProperties properties;
+
+    private final LongAdder archived = new LongAdder();
+    private volatile LocalDateTime lastRunAt;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+
+    @Scheduled(cron = "${notification.partitions.maintenance-cron:0 15 3 * * *}")
+    public void maintain() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            // The lock is held by the session, so every statement runs on this one connection
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                JdbcTemplate session = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                Boolean locked = session.queryForObject("SELECT pg_try_advisory_lock(?)", Boolean.class,
+                        MAINTENANCE_LOCK_KEY);
+                if (!Boolean.TRUE.equals(locked)) {
+                    log.debug("Partition maintenance is running on another node");
+                    return null;
+                }
+                try {
+                    createAhead(session);
+                    dropExpired(connection, session);
+                    lastRunAt = LocalDateTime.now();
+                } finally {
+                    session.queryForObject("SELECT pg_advisory_unlock(?)", Boolean.class, MAINTENANCE_LOCK_KEY);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Partition maintenance failed", e);
+        }
+    }
+
+    /**
+     * Attached partitions with their approximate row counts and sizes
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> partitions = new LinkedHashMap<>();
+        jdbcTemplate.query("SELECT c.relname AS name, c.reltuples::bigint AS row_estimate, " +
+                        "pg_total_relation_size(c.oid) AS bytes " +
+                        "FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "JOIN pg_class p ON p.oid = i.inhparent " +
+                        "WHERE p.relname IN ('notification_requests', 'notification_responses') " +
+                        "ORDER BY c.relname",
+                rs -> {
+                    Map<String, Object> partition = new LinkedHashMap<>();
+                    partition.put("rowEstimate", Math.max(0, rs.getLong("row_estimate")));
+                    partition.put("bytes", rs.getLong("bytes"));
+                    partitions.put(rs.getString("name"), partition);
+                });
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("partitions", partitions);
+        stats.put("retentionMonths", properties.getRetentionMonths());
+        stats.put("archivedPartitions", archived.sum());
+        stats.put("lastRunAt", lastRunAt);
+        return stats;
+    }
+
+    private void createAhead(JdbcTemplate session) {
+        LocalDate month = YearMonth.now().atDay(1);
+        for (int i = 0; i <= properties.getMonthsAhead(); i++) {
+            for (String table : PARTITIONED_TABLES) {
+                Boolean created = session.queryForObject("SELECT ensure_monthly_partition(?, ?)", Boolean.class,
+                        table, month.plusMonths(i));
+                if (Boolean.TRUE.equals(created)) {
+                    log.info("Created partition of {} for {}", table, YearMonth.from(month.plusMonths(i)));
+                }
+            }
+        }
+    }
+
+    private void dropExpired(Connection connection, JdbcTemplate session) throws SQLException {
+        YearMonth oldestKept = YearMonth.now().minusMonths(properties.getRetentionMonths());
+
+        // Detached partitions whose archive did not finish are found by name as well
+        List<String> tables = session.queryForList("SELECT tablename FROM pg_tables " +
+                "WHERE schemaname = current_schema() " +
+                "AND tablename ~ '^notification_(requests|responses)_p[0-9]{4}_[0-9]{2}$' " +
+                "ORDER BY tablename", String.class);
+
+        for (String table : tables) {
+            Matcher matcher = PARTITION_NAME.matcher(table);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(2)), Integer.parseInt(matcher.group(3)));
+            if (!month.isBefore(oldestKept)) {
+                continue;
+            }
+            String parent = matcher.group(1);
+            if (parent.equals("notification_requests") && hasOpenWork(session, table)) {
+                log.warn("Partition {} is past retention but still has unsent requests, kept", table);
+                continue;
+            }
+            retire(connection, session, parent, table);
+        }
+    }
+
+    private boolean hasOpenWork(JdbcTemplate session, String table) {
+        Boolean open = session.queryForObject("SELECT EXISTS (SELECT 1 FROM " + table + " " +
+                "WHERE status IN ('SCHEDULED', 'PENDING', 'PROCESSING') " +
+                "OR (status = 'FAILED' AND next_attempt_at IS NOT NULL))", Boolean.class);
+        return Boolean.TRUE.equals(open);
+    }
+
+    /**
+     * Detach, archive and drop one partition; each step can be resumed by the next run
+     */
+    private void retire(Connection connection, JdbcTemplate session, String parent, String table)
+            throws SQLException {
+        // Concurrently, so sends and history reads are not locked out while waiting for the
+        // detach; it runs outside a transaction, and one that was interrupted is finalized
+        List<Boolean> pending = session.queryForList("SELECT inhdetachpending FROM pg_inherits " +
+                "WHERE inhrelid = to_regclass(?)", Boolean.class, table);
+        if (!pending.isEmpty()) {
+            session.execute("ALTER TABLE " + parent + " DETACH PARTITION " + table
+                    + (Boolean.TRUE.equals(pending.get(0)) ? " FINALIZE" : " CONCURRENTLY"));
+            log.info("Detached partition {}", table);
+        }
+
+        Path archive = archive(connection, session, table);
+
+        inTransaction(connection, () -> {
+            if (parent.equals("notification_requests")) {
+                // Rows pointing at the archived requests go with them; without foreign keys they
+                // would otherwise be left to fail lookups of requests that no longer exist. That
+                // includes responses recorded in a later month than their request. Exactly the
+                // deleted rows are archived, and a rollback leaves a file a rerun rewrites.
+                for (String referencing : REQUEST_REFERENCES) {
+                    export(session, table + "." + referencing, "DELETE FROM " + referencing + " r "
+                            + "WHERE r.request_id IN (SELECT id FROM " + table + ") RETURNING row_to_json(r)::text");
+                }
+            }
+            session.execute("DROP TABLE " + table);
+        });
+        archived.increment();
+        log.info("Archived partition {} to {} and dropped it", table, archive);
+    }
+
+    private Path archive(Connection connection, JdbcTemplate session, String table) throws SQLException {
+        Path[] target = new Path[1];
+        // The driver only streams with a cursor, which needs a transaction
+        inTransaction(connection, () -> target[0] = export(session, table, "SELECT row_to_json(t)::text FROM "
+                + table + " t"));
+        return target[0];
+    }
+
+    /**
+     * Write the JSON rows a statement returns to {@code <name>.ndjson.gz} in the archive
+     * directory; runs inside the caller's transaction so the rows are streamed
+     */
+    private Path export(JdbcTemplate session, String name, String sql) {
+        Path directory = Paths.get(properties.getArchiveDir());
+        Path target = directory.resolve(name + ".ndjson.gz");
+        Path temporary = directory.resolve(name + ".ndjson.gz.tmp");
+        try {
+            Files.createDirectories(directory);
+            try (Writer writer = new OutputStreamWriter(new GZIPOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(temporary)), 65536), StandardCharsets.UTF_8)) {
+                session.setFetchSize(properties.getArchiveFetchSize());
+                session.query(sql, rs -> {
+                    try {
+                        writer.write(rs.getString(1));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            // The file appears complete or not at all
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | UncheckedIOException e) {
+            throw new IllegalStateException("Failed to archive " + name, e);
+        }
+        return target;
+    }
+
+    private static void inTransaction(Connection connection, Runnable work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.RetryProperties;
+import com.notificationservice.dto.NotificationDeadLetterDto;
+import com.notificationservice.entity.NotificationDeadLetter;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.mapper.NotificationDeadLetterMapper;
+import com.notificationservice.repository.NotificationDeadLetterRepository;
+import com.notificationservice.repository.NotificationRequestRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry policy for failed deliveries: failed outbox rows get a next attempt time with
+ * exponential backoff and jitter and are moved back to PENDING in batches once due.
+ * Rows that run out of attempts, or fail permanently, go to the dead-letter table.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class NotificationRetryService {
+
+    private final NotificationRequestRepository requestRepository;
+    private final NotificationDeadLetterRepository deadLetterRepository;
+    private final RetryProperties retryProperties;
+    private final PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Mark a delivery attempt as failed and schedule the next one.
+     * Returns false when the request will not be retried and should be dead-lettered.
+     */
+    public boolean recordFailure(NotificationRequest request, Exception e) {
+        request.setStatus(NotificationRequest.NotificationStatus.FAILED);
+        request.setErrorMessage(e.getMessage());
+
+        if (!retryProperties.isEnabled() || !isRetryable(e)
+                || request.getAttemptCount() >= retryProperties.getMaxAttempts()) {
+            request.setNextAttemptAt(null);
+            return false;
+        }
+        request.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(backoffMillis(request.getAttemptCount()))));
+        return true;
+    }
+
+    /**
+     * Put a request the provider guard turned away back into the outbox without using up an attempt
+     */
+    public void recordRejected(NotificationRequest request, Exception e) {
+        request.setAttemptCount(Math.max(0, request.getAttemptCount() - 1));
+        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        request.setErrorMessage(e.getMessage());
+        if (e instanceof SenderThroughputGovernor.SenderThrottledException throttled) {
+            // Come back when the sender has room again
+            request.setNextAttemptAt(LocalDateTime.now().plus(Duration.ofMillis(Math.max(1000,
+                    throttled.getRetryAfterMs()))));
+            return;
+        }
+        request.setNextAttemptAt(LocalDateTime.now().plusSeconds(retryProperties.getRejectedRetryDelaySeconds()));
+    }
+
+    /**
+     * Record a request that will not be retried automatically; the request must already be saved
+     */
+    public void deadLetter(NotificationRequest request) {
+        NotificationDeadLetter deadLetter = new NotificationDeadLetter();
+        deadLetter.setRequest(request);
+        deadLetter.setChannel(request.getChannel());
+        deadLetter.setRecipient(request.getRecipient());
+        deadLetter.setAttemptCount(request.getAttemptCount());
+        deadLetter.setLastError(request.getErrorMessage());
+        deadLetterRepository.save(deadLetter);
+
+        log.warn("Notification request {} to: {} dead-lettered after {} attempts", request.getId(),
+                request.getRecipient(), request.getAttemptCount());
+    }
+
+    @Transactional(readOnly = true)
+    public Page<NotificationDeadLetterDto> getDeadLetters(Pageable pageable) {
+        return deadLetterRepository.findByRequeuedAtIsNullOrderByCreatedAtDesc(pageable)
+                .map(NotificationDeadLetterMapper::toDto);
+    }
+
+    /**
+     * Put a dead-lettered request back into the outbox with a fresh attempt budget
+     */
+    @Transactional
+    public void requeue(Long deadLetterId) {
+        NotificationDeadLetter deadLetter = deadLetterRepository.findById(deadLetterId)
+                .orElseThrow(() -> new IllegalArgumentException("Dead letter not found with id: " + deadLetterId));
+        if (deadLetter.getRequeuedAt() != null) {
+            throw new IllegalArgumentException("Dead letter already requeued: " + deadLetterId);
+        }
+
+        NotificationRequest request = deadLetter.getRequest();
+        if (request.getChannel() == null) {
+            throw new IllegalArgumentException("Request has no delivery channel: " + request.getId());
+        }
+        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        request.setAttemptCount(0);
+        request.setNextAttemptAt(null);
+        deadLetter.setRequeuedAt(LocalDateTime.now());
+    }
+
+    /**
+     * Move due FAILED rows back to PENDING, one batch per statement
+     */
+    @Scheduled(fixedDelayString = "${notification.retry.poll-interval-ms:15000}")
+    public void requeueDueRetries() {
+        if (!retryProperties.isEnabled()) {
+            return;
+        }
+        try {
+            int total = 0;
+            Integer moved;
+            do {
+                moved = transactionTemplate.execute(status -> requestRepository.requeueDueRetries(
+                        retryProperties.getMaxAttempts(), retryProperties.getBatchSize()));
+                total += moved != null ? moved : 0;
+            } while (moved != null && moved >= retryProperties.getBatchSize());
+
+            if (total > 0) {
+                log.info("Requeued {} failed notification requests for retry", total);
+            }
+        } catch (Exception e) {
+            log.error("Failed to requeue failed notification requests", e);
+        }
+    }
+
+    private long backoffMillis(int attempt) {
+        double delay = retryProperties.getInitialBackoffSeconds() * 1000.0
+                * Math.pow(retryProperties.getBackoffMultiplier(), Math.max(0, attempt - 1));
+        delay = Math.min(delay, retryProperties.getMaxBackoffSeconds() * 1000.0);
+
+        // Spread retries so a provider outage does not end in a synchronized retry storm
+        double jitter = retryProperties.getJitter();
+        if (jitter > 0) {
+            delay *= 1 - jitter + ThreadLocalRandom.current().nextDouble() * 2 * jitter;
+        }
+        return (long) delay;
+    }
+
+    /**
+     * Permanent SMTP replies (5xx), rejected recipients, invalid addresses and bad input fail
+     * the same way on every attempt. A 4xx reply is transient even on an address failure.
+     */
+    private boolean isRetryable(Exception e) {
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < SenderThroughputGovernor.MAX_CAUSE_DEPTH;
+                depth++, cause = SenderThroughputGovernor.next(cause)) {
+            int code = SenderThroughputGovernor.replyCode(cause);
+            if (code >= 500) {
+                return false;
+            }
+            if (code >= 400) {
+                continue;
+            }
+            if (cause instanceof SendFailedException || cause instanceof AddressException
+                    || cause instanceof IllegalArgumentException) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,86 @@
+package com.notificationservice.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Guards calls to a delivery provider (one email sender, one Twilio account) with its own
+ * circuit breaker and semaphore bulkhead, so a slow or failing provider is cut off quickly
+ * and cannot occupy every worker thread. Both use the "notification-provider" resilience4j
+ * configuration.
+ */
+@Service
+@RequiredArgsConstructor
+public class ProviderResilienceService {
+
+    static final String CONFIG_NAME = "notification-provider";
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+
+    /**
+     * Run a provider call. Throws {@link BulkheadFullException} or {@link CallNotPermittedException}
+     * without calling the provider when it is saturated or its circuit is open.
+     */
+    public <T> T execute(String provider, ProviderCall<T> call) throws Exception {
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(provider, CONFIG_NAME);
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(provider, CONFIG_NAME);
+
+        bulkhead.acquirePermission();
+        try {
+            circuitBreaker.acquirePermission();
+            long start = circuitBreaker.getCurrentTimestamp();
+            try {
+                T result = call.call();
+                circuitBreaker.onSuccess(circuitBreaker.getCurrentTimestamp() - start,
+                        circuitBreaker.getTimestampUnit());
+                return result;
+            } catch (Exception e) {
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start,
+                        circuitBreaker.getTimestampUnit(), e);
+                throw e;
+            }
+        } finally {
+            bulkhead.onComplete();
+        }
+    }
+
+    /**
+     * Whether the exception means the provider was not called at all
+     */
+    public static boolean isRejected(Exception e) {
+        return e instanceof CallNotPermittedException || e instanceof BulkheadFullException
+                || e instanceof SenderThroughputGovernor.SenderThrottledException;
+    }
+
+    /**
+     * Circuit state and bulkhead usage per provider
+     */
+    public Map<String, Object> getProviderStates() {
+        Map<String, Object> states = new LinkedHashMap<>();
+        circuitBreakerRegistry.getAllCircuitBreakers().forEach(circuitBreaker -> {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("state", circuitBreaker.getState().name());
+            state.put("failureRate", circuitBreaker.getMetrics().getFailureRate());
+            state.put("notPermittedCalls", circuitBreaker.getMetrics().getNumberOfNotPermittedCalls());
+            bulkheadRegistry.find(circuitBreaker.getName()).ifPresent(bulkhead -> state.put(
+                    "availableConcurrentCalls", bulkhead.getMetrics().getAvailableConcurrentCalls()));
+            states.put(circuitBreaker.getName(), state);
+        });
+        return states;
+    }
+
+    @FunctionalInterface
+    public interface ProviderCall<T> {
+        T call() throws Exception;
+    }
+}
@@ -0,0 +1,134 @@
+package com.notificationservice.service;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One live client connection (WebSocket session or SSE stream) with a bounded outbound queue.
+ * Publishers only enqueue; a drain task writes queued messages on a virtual thread and exits
+ * when the queue is empty, so idle connections hold no thread and a slow consumer loses its
+ * oldest messages instead of blocking the broadcaster.
+ */
+@Slf4j
+public abstract class PushConnection {
+
+    @Getter
+    private final String networkId;
+    @Getter
+    private final String clientId;
+
+    private final BlockingQueue<String> outbound;
+    private final Executor drainExecutor;
+    private final int maxDroppedMessages;
+
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final AtomicLong dropped = new AtomicLong();
+    /**
+     * Drops since the queue was last drained empty; only a client that never catches up is closed
+     */
+    private final AtomicInteger laggingDrops = new AtomicInteger();
+    private final AtomicLong delivered = new AtomicLong();
+    private volatile boolean closed;
+
+    protected PushConnection(String networkId, String clientId, int queueCapacity, int maxDroppedMessages,
+            Executor drainExecutor) {
+        this.networkId = networkId;
+        this.clientId = clientId;
+        this.outbound = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.maxDroppedMessages = maxDroppedMessages;
+        this.drainExecutor = drainExecutor;
+    }
+
+    /**
+     * Queue a message without blocking. Returns false when the connection is closed or was
+     * closed for falling too far behind.
+     */
+    public boolean offer(String payload) {
+        if (closed) {
+            return false;
+        }
+        while (!outbound.offer(payload)) {
+            // Full: the oldest message is the least useful one to a lagging client
+            if (outbound.poll() == null) {
+                continue;
+            }
+            dropped.incrementAndGet();
+            if (laggingDrops.incrementAndGet() >= maxDroppedMessages) {
+                log.warn("Closing slow push connection {} in network {} after {} dropped messages",
+                        clientId, networkId, laggingDrops.get());
+                close();
+                return false;
+            }
+        }
+        scheduleDrain();
+        return true;
+    }
+
+    public void close() {
+        closed = true;
+        outbound.clear();
+        try {
+            doClose();
+        } catch (Exception e) {
+            log.debug("Error closing push connection {} in network {}", clientId, networkId, e);
+        }
+    }
+
+    public boolean isOpen() {
+        return !closed && isTransportOpen();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    public long getDeliveredCount() {
+        return delivered.get();
+    }
+
+    public int getQueuedCount() {
+        return outbound.size();
+    }
+
+    public abstract String getTransport();
+
+    protected abstract void write(String payload) throws Exception;
+
+    protected abstract boolean isTransportOpen();
+
+    protected abstract void doClose() throws Exception;
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            drainExecutor.execute(this::drain);
+        }
+    }
+
+    private void drain() {
+        try {
+            String payload;
+            while (!closed && (payload = outbound.poll()) != null) {
+                write(payload);
+                delivered.incrementAndGet();
+            }
+            // The client caught up: earlier drops no longer count towards closing it
+            laggingDrops.set(0);
+        } catch (Exception e) {
+            log.debug("Push to client {} in network {} failed, closing", clientId, networkId, e);
+            close();
+        } finally {
+            draining.set(false);
+        }
+        // A message queued after the last poll but before the flag was reset still needs a drain
+        if (!closed && !outbound.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+}
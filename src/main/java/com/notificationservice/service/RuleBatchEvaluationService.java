@@ -0,0 +1,259 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.config.RuleProperties;
+import com.notificationservice.dto.NotificationRuleDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rule evaluation for many users in one request, e.g. to pre-filter a campaign audience. The
+ * input is parsed as a stream and handled in chunks of {@code batch-chunk-size}: the rules of
+ * all users of a chunk that are not cached are read with one query, and so are the send counts
+ * of those whose rules have frequency limits. The chunk is then evaluated on a fork-join pool,
+ * and its results are written as NDJSON in input order before the next chunk is read. Memory is
+ * bounded by one chunk however large the batch. Evaluations are previews, so frequency limits
+ * are checked without reserving anything.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RuleBatchEvaluationService {
+
+    /**
+     * Evaluations one fork-join task runs without splitting further
+     */
+    private static final int SPLIT_THRESHOLD = 64;
+
+    private static final TypeReference<Map<String, Object>> VARIABLES = new TypeReference<>() {
+    };
+
+    private final RuleEngineService ruleEngineService;
+    private final RuleSetCache ruleSetCache;
+    private final FrequencyCounterService frequencyCounters;
+    private final RuleProperties properties;
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder evaluations = new LongAdder();
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    void init() {
+        int parallelism = properties.getBatchParallelism() > 0
+                ? properties.getBatchParallelism()
+                : Runtime.getRuntime().availableProcessors();
+        pool = new ForkJoinPool(parallelism);
+    }
+
+    @PreDestroy
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Evaluate every item read from {@code in}, a JSON array or a sequence of objects with
+     * {@code userId}, {@code content} and {@code variables}, and write one result line per item
+     * to {@code out}. Invalid input ends the output with an {@code error} line. Returns the
+     * number of items evaluated; the stream is flushed but not closed.
+     */
+    public long evaluate(InputStream in, OutputStream out) throws IOException {
+        batches.increment();
+        int chunkSize = Math.max(1, properties.getBatchChunkSize());
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+
+        List<Item> chunk = new ArrayList<>(chunkSize);
+        long count = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            JsonToken token = parser.nextToken();
+            boolean array = token == JsonToken.START_ARRAY;
+            if (array) {
+                token = parser.nextToken();
+            }
+            while (token != null && !(array && token == JsonToken.END_ARRAY)) {
+                if (token != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Expected an object at item " + count);
+                }
+                if (count >= properties.getBatchMaxEvaluations()) {
+                    throw new IllegalArgumentException("At most " + properties.getBatchMaxEvaluations()
+                            + " evaluations per request");
+                }
+                chunk.add(toItem(count++, parser.readValueAsTree()));
+                if (chunk.size() == chunkSize) {
+                    evaluateChunk(chunk, generator);
+                }
+                token = parser.nextToken();
+            }
+            evaluateChunk(chunk, generator);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            // Results already written stand; the rest of the input is not evaluated
+            evaluateChunk(chunk, generator);
+            log.warn("Batch rule evaluation stopped after {} items: {}", count, e.getMessage());
+            generator.writeStartObject();
+            generator.writeStringField("error", e.getMessage());
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        generator.flush();
+        log.info("Evaluated rules for {} items in one batch", count);
+        return count;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("parallelism", pool.getParallelism());
+        stats.put("batches", batches.sum());
+        stats.put("evaluations", evaluations.sum());
+        return stats;
+    }
+
+    private Item toItem(long index, JsonNode node) {
+        JsonNode userId = node.get("userId");
+        JsonNode content = node.get("content");
+        JsonNode variables = node.get("variables");
+        return new Item(index,
+                userId != null && !userId.isNull() ? userId.asText() : null,
+                content != null && !content.isNull() ? content.asText() : null,
+                variables != null && variables.isObject() ? objectMapper.convertValue(variables, VARIABLES) : null);
+    }
+
+    private void evaluateChunk(List<Item> chunk, JsonGenerator generator) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> userIds = new LinkedHashSet<>();
+        for (Item item : chunk) {
+            if (item.userId != null) {
+                userIds.add(item.userId);
+            }
+        }
+        ruleSetCache.preload(userIds);
+        List<String> limited = new ArrayList<>();
+        for (String userId : userIds) {
+            if (ruleSetCache.get(userId).hasFrequencyLimits()) {
+                limited.add(userId);
+            }
+        }
+        frequencyCounters.preload(limited);
+        pool.invoke(new EvaluateRange(chunk, 0, chunk.size()));
+        evaluations.add(chunk.size());
+
+        for (Item item : chunk) {
+            write(item, generator);
+        }
+        generator.flush();
+        chunk.clear();
+    }
+
+    private void evaluate(Item item) {
+        if (item.userId == null) {
+            item.error = "userId is required";
+            return;
+        }
+        try {
+            item.result = ruleEngineService.previewRules(item.userId, item.content, item.variables);
+        } catch (Exception e) {
+            log.error("Error evaluating rules for user: {}", item.userId, e);
+            item.error = "Evaluation failed";
+        }
+    }
+
+    private static void write(Item item, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("index", item.index);
+        generator.writeStringField("userId", item.userId);
+        if (item.error != null) {
+            generator.writeStringField("error", item.error);
+        } else {
+            RuleEngineService.RuleEvaluationResult result = item.result;
+            generator.writeBooleanField("blocked", result.isBlocked());
+            if (result.getBlockReason() != null) {
+                generator.writeStringField("blockReason", result.getBlockReason());
+            }
+            if (result.getDeferUntil() != null) {
+                generator.writeStringField("deferUntil", result.getDeferUntil().toString());
+            }
+            generator.writeArrayFieldStart("appliedRules");
+            for (NotificationRuleDto rule : result.getAppliedRules()) {
+                generator.writeStartObject();
+                generator.writeNumberField("id", rule.getId());
+                generator.writeStringField("name", rule.getName());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    /**
+     * One evaluation of a batch and, once evaluated, its result or error
+     */
+    private static final class Item {
+        private final long index;
+        private final String userId;
+        private final String content;
+        private final Map<String, Object> variables;
+        private RuleEngineService.RuleEvaluationResult result;
+        private String error;
+
+        Item(long index, String userId, String content, Map<String, Object> variables) {
+            this.index = index;
+            this.userId = userId;
+            this.content = content;
+            this.variables = variables;
+        }
+    }
+
+    /**
+     * Evaluates a range of a chunk, halving it until it is small enough to run directly
+     */
+    private final class EvaluateRange extends RecursiveAction {
+        private final List<Item> items;
+        private final int from;
+        private final int to;
+
+        EvaluateRange(List<Item> items, int from, int to) {
+            this.items = items;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    evaluate(items.get(i));
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EvaluateRange(items, from, middle), new EvaluateRange(items, middle, to));
+        }
+    }
+}
@@ -1,6 +1,5 @@
 package com.notificationservice.service;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.notificationservice.dto.NotificationRequestDto;
 import com.notificationservice.dto.NotificationRuleDto;
@@ -9,16 +8,11 @@ import com.notificationservice.repository.NotificationRuleRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.DayOfWeek;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
-import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -32,286 +26,82 @@ public class RuleEngineService {
     private final MobileMessageService mobileMessageService;
     private final TemplateService templateService;
     private final ObjectMapper objectMapper;
-
-    // Cache for user notification counts (in-memory for now, could be moved to
-    // Redis)
-    private final Map<String, UserNotificationStats> userStats = new ConcurrentHashMap<>();
+    private final RuleSetCache ruleSetCache;
+    private final FrequencyCounterService frequencyCounters;
 
     /**
-     * Evaluate rules for a user and determine if notification should be sent
+     * Evaluate rules for a user and determine if notification should be sent. The user's rules
+     * come compiled from {@link RuleSetCache}, so only a cache miss reads the database. In
+     * RESERVE mode a frequency limit that admits the send reserves it in the user's budget.
      */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public RuleEvaluationResult evaluateRules(String userId, String content, Map<String, Object> variables) {
-        log.info("Evaluating rules for user: {}", userId);
-
-        List<NotificationRule> activeRules = ruleRepository.findByUserIdAndIsActiveTrueOrderByPriorityDesc(userId);
-        if (activeRules.isEmpty()) {
-            log.info("No active rules found for user: {}", userId);
-            return RuleEvaluationResult.allow();
-        }
-
-        RuleEvaluationResult result = new RuleEvaluationResult();
-
-        for (NotificationRule rule : activeRules) {
-            boolean shouldApply = evaluateRule(rule, content, variables);
-
-            if (shouldApply) {
-                result.addAppliedRule(convertToDto(rule));
-
-                // Check if rule action is to block
-                if ("BLOCK".equals(rule.getActionType())) {
-                    result.setBlocked(true);
-                    result.setBlockReason("Rule '" + rule.getName() + "' blocked the notification");
-                    break;
-                }
-            }
-        }
-
-        return result;
+        return evaluateRules(userId, content, variables, true);
     }
 
     /**
-     * Evaluate a single rule
+     * Evaluate rules without sending; frequency limits are checked but nothing is reserved
      */
-    private boolean evaluateRule(NotificationRule rule, String content, Map<String, Object> variables) {
-        try {
-            switch (rule.getRuleType()) {
-                case TIME_BASED:
-                    return evaluateTimeBasedRule(rule);
-                case FREQUENCY_BASED:
-                    return evaluateFrequencyBasedRule(rule);
-                case CONTENT_BASED:
-                    return evaluateContentBasedRule(rule, content, variables);
-                case COMPOSITE:
-                    return evaluateCompositeRule(rule, content, variables);
-                default:
-                    log.warn("Unknown rule type: {}", rule.getRuleType());
-                    return false;
-            }
-        } catch (Exception e) {
-            log.error("Error evaluating rule: {}", rule.getName(), e);
-            return false;
-        }
-    }
-
-    /**
-     * Evaluate time-based rule
-     */
-    private boolean evaluateTimeBasedRule(NotificationRule rule) {
-        ZoneId zoneId = ZoneId.of(rule.getTimezone());
-        ZonedDateTime now = ZonedDateTime.now(zoneId);
-        DayOfWeek currentDay = now.getDayOfWeek();
-        LocalTime currentTime = now.toLocalTime();
-
-        // Check if current day is in allowed days
-        if (rule.getDaysOfWeek() != null && !rule.getDaysOfWeek().isEmpty()) {
-            if (!rule.getDaysOfWeek().contains(currentDay)) {
-                return false;
-            }
-        }
-
-        // Check if current time is within allowed time range
-        if (rule.getStartTime() != null && rule.getEndTime() != null) {
-            if (currentTime.isBefore(rule.getStartTime()) || currentTime.isAfter(rule.getEndTime())) {
-                return false;
-            }
-        } else if (rule.getStartTime() != null) {
-            if (currentTime.isBefore(rule.getStartTime())) {
-                return false;
-            }
-        } else if (rule.getEndTime() != null) {
-            if (currentTime.isAfter(rule.getEndTime())) {
-                return false;
-            }
-        }
-
-        return true;
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public RuleEvaluationResult previewRules(String userId, String content, Map<String, Object> variables) {
+        return evaluateRules(userId, content, variables, false);
     }
 
-    /**
-     * Evaluate frequency-based rule
-     */
-    private boolean evaluateFrequencyBasedRule(NotificationRule rule) {
-        UserNotificationStats stats = getUserStats(rule.getUserId());
-
-        // Check daily limit
-        if (rule.getMaxNotificationsPerDay() != null) {
-            if (stats.getDailyCount() >= rule.getMaxNotificationsPerDay()) {
-                log.info("Daily notification limit reached for user: {}", rule.getUserId());
-                return false;
-            }
-        }
-
-        // Check minimum interval
-        if (rule.getMinIntervalMinutes() != null) {
-            LocalDateTime lastNotification = stats.getLastNotificationTime();
-            if (lastNotification != null) {
-                LocalDateTime minNextTime = lastNotification.plusMinutes(rule.getMinIntervalMinutes());
-                if (LocalDateTime.now().isBefore(minNextTime)) {
-                    log.info("Minimum interval not met for user: {}", rule.getUserId());
-                    return false;
-                }
-            }
-        }
-
-        return true;
-    }
+    private RuleEvaluationResult evaluateRules(String userId, String content, Map<String, Object> variables,
+            boolean reserve) {
+        log.debug("Evaluating rules for user: {}", userId);
 
-    /**
-     * Evaluate content-based rule
-     */
-    private boolean evaluateContentBasedRule(NotificationRule rule, String content, Map<String, Object> variables) {
-        if (rule.getConditions() == null) {
-            return true;
+        CompiledRuleSet ruleSet = ruleSetCache.get(userId);
+        if (ruleSet.isEmpty()) {
+            log.debug("No active rules found for user: {}", userId);
+            return RuleEvaluationResult.allow();
         }
 
-        try {
-            JsonNode conditions = rule.getConditions();
-
-            // Check content length
-            if (conditions.has("maxContentLength")) {
-                int maxLength = conditions.get("maxContentLength").asInt();
-                if (content.length() > maxLength) {
-                    return false;
+        RuleEvaluationResult result = new RuleEvaluationResult();
+        EvaluationContext context = new EvaluationContext(userId, ruleSet, content, variables, reserve);
+
+        for (CompiledRule rule : ruleSet.getRules()) {
+            if (rule.getAction() == CompiledRule.Action.DEFER) {
+                LocalDateTime deferUntil = rule.deferUntil();
+                if (deferUntil != null) {
+                    result.addAppliedRule(rule.getDto());
+                    result.deferUntil(deferUntil);
                 }
+                continue;
             }
 
-            // Check content keywords
-            if (conditions.has("blockedKeywords")) {
-                JsonNode blockedKeywords = conditions.get("blockedKeywords");
-                if (blockedKeywords.isArray()) {
-                    for (JsonNode keyword : blockedKeywords) {
-                        if (content.toLowerCase().contains(keyword.asText().toLowerCase())) {
-                            return false;
-                        }
-                    }
-                }
-            }
+            if (matches(rule, context)) {
+                result.addAppliedRule(rule.getDto());
 
-            // Check required keywords
-            if (conditions.has("requiredKeywords")) {
-                JsonNode requiredKeywords = conditions.get("requiredKeywords");
-                if (requiredKeywords.isArray()) {
-                    boolean hasRequiredKeyword = false;
-                    for (JsonNode keyword : requiredKeywords) {
-                        if (content.toLowerCase().contains(keyword.asText().toLowerCase())) {
-                            hasRequiredKeyword = true;
-                            break;
-                        }
-                    }
-                    if (!hasRequiredKeyword) {
-                        return false;
-                    }
+                // The highest priority digest rule decides how messages are coalesced
+                if (rule.getAction() == CompiledRule.Action.DIGEST && result.getDigest() == null) {
+                    result.setDigest(rule.getDigest());
                 }
-            }
 
-            // Check variable conditions
-            if (conditions.has("variableConditions") && variables != null) {
-                JsonNode varConditions = conditions.get("variableConditions");
-                if (!evaluateVariableConditions(varConditions, variables)) {
-                    return false;
+                // Check if rule action is to block
+                if (rule.getAction() == CompiledRule.Action.BLOCK) {
+                    result.setBlocked(true);
+                    result.setBlockReason("Rule '" + rule.getName() + "' blocked the notification");
+                    break;
                 }
             }
-
-        } catch (Exception e) {
-            log.error("Error evaluating content-based rule: {}", rule.getName(), e);
-            return false;
         }
 
-        return true;
-    }
-
-    /**
-     * Evaluate composite rule (combination of multiple rule types)
-     */
-    private boolean evaluateCompositeRule(NotificationRule rule, String content, Map<String, Object> variables) {
-        if (rule.getConditions() == null) {
-            return true;
+        if (result.isBlocked()) {
+            context.releaseReservation();
         }
+        return result;
+    }
 
+    private static boolean matches(CompiledRule rule, CompiledRule.Context context) {
         try {
-            JsonNode conditions = rule.getConditions();
-
-            // Check if all conditions must be met (AND) or any condition (OR)
-            boolean requireAll = conditions.has("requireAll") ? conditions.get("requireAll").asBoolean() : true;
-
-            boolean timeBasedResult = true;
-            boolean frequencyBasedResult = true;
-            boolean contentBasedResult = true;
-
-            // Evaluate time-based conditions
-            if (conditions.has("timeBased")) {
-                timeBasedResult = evaluateTimeBasedRule(rule);
-            }
-
-            // Evaluate frequency-based conditions
-            if (conditions.has("frequencyBased")) {
-                frequencyBasedResult = evaluateFrequencyBasedRule(rule);
-            }
-
-            // Evaluate content-based conditions
-            if (conditions.has("contentBased")) {
-                contentBasedResult = evaluateContentBasedRule(rule, content, variables);
-            }
-
-            if (requireAll) {
-                return timeBasedResult && frequencyBasedResult && contentBasedResult;
-            } else {
-                return timeBasedResult || frequencyBasedResult || contentBasedResult;
-            }
-
+            return rule.matches(context);
         } catch (Exception e) {
-            log.error("Error evaluating composite rule: {}", rule.getName(), e);
+            log.error("Error evaluating rule: {}", rule.getName(), e);
             return false;
         }
     }
 
-    /**
-     * Evaluate variable conditions
-     */
-    private boolean evaluateVariableConditions(JsonNode varConditions, Map<String, Object> variables) {
-        for (Iterator<String> it = varConditions.fieldNames(); it.hasNext();) {
-            String varName = it.next();
-            JsonNode condition = varConditions.get(varName);
-
-            Object varValue = variables.get(varName);
-            if (varValue == null) {
-                return false;
-            }
-
-            if (condition.has("equals")) {
-                if (!varValue.toString().equals(condition.get("equals").asText())) {
-                    return false;
-                }
-            }
-
-            if (condition.has("notEquals")) {
-                if (varValue.toString().equals(condition.get("notEquals").asText())) {
-                    return false;
-                }
-            }
-
-            if (condition.has("contains")) {
-                if (!varValue.toString().contains(condition.get("contains").asText())) {
-                    return false;
-                }
-            }
-
-            if (condition.has("minLength")) {
-                if (varValue.toString().length() < condition.get("minLength").asInt()) {
-                    return false;
-                }
-            }
-
-            if (condition.has("maxLength")) {
-                if (varValue.toString().length() > condition.get("maxLength").asInt()) {
-                    return false;
-                }
-            }
-        }
-
-        return true;
-    }
-
     /**
      * Execute rule actions
      */
@@ -432,51 +222,6 @@ public class RuleEngineService {
         return "default"; // default network
     }
 
-    /**
-     * Update user notification statistics
-     */
-    public void updateUserStats(String userId) {
-        UserNotificationStats stats = getUserStats(userId);
-        stats.incrementDailyCount();
-        stats.setLastNotificationTime(LocalDateTime.now());
-    }
-
-    private UserNotificationStats getUserStats(String userId) {
-        return userStats.computeIfAbsent(userId, k -> new UserNotificationStats());
-    }
-
-    private NotificationRuleDto convertToDto(NotificationRule rule) {
-        NotificationRuleDto dto = new NotificationRuleDto();
-        dto.setId(rule.getId());
-        dto.setName(rule.getName());
-        dto.setDescription(rule.getDescription());
-        dto.setUserId(rule.getUserId());
-        dto.setTemplateId(rule.getTemplate() != null ? rule.getTemplate().getId() : null);
-        dto.setTemplateName(rule.getTemplate() != null ? rule.getTemplate().getName() : null);
-        dto.setRuleType(rule.getRuleType());
-        dto.setNotificationType(rule.getNotificationType());
-        dto.setIsActive(rule.getIsActive());
-        dto.setPriority(rule.getPriority());
-        dto.setDaysOfWeek(rule.getDaysOfWeek());
-        dto.setStartTime(rule.getStartTime());
-        dto.setEndTime(rule.getEndTime());
-        dto.setTimezone(rule.getTimezone());
-        dto.setMaxNotificationsPerDay(rule.getMaxNotificationsPerDay());
-        dto.setMinIntervalMinutes(rule.getMinIntervalMinutes());
-        dto.setConditions(rule.getConditions());
-        dto.setVariables(rule.getVariables());
-        dto.setActionType(rule.getActionType());
-        dto.setActionConfig(rule.getActionConfig());
-
-        // Set audit fields
-        dto.setCreatedAt(rule.getCreatedAt());
-        dto.setModifiedAt(rule.getModifiedAt());
-        dto.setCreatedBy(rule.getCreatedBy());
-        dto.setModifiedBy(rule.getModifiedBy());
-
-        return dto;
-    }
-
     /**
      * Result of rule evaluation
      */
@@ -484,6 +229,8 @@ public class RuleEngineService {
         private boolean blocked = false;
         private String blockReason;
         private List<NotificationRuleDto> appliedRules = new ArrayList<>();
+        private LocalDateTime deferUntil;
+        private NotificationDigestService.DigestPolicy digest;
 
         public static RuleEvaluationResult allow() {
             return new RuleEvaluationResult();
@@ -500,6 +247,15 @@ public class RuleEngineService {
             appliedRules.add(rule);
         }
 
+        /**
+         * Hold the notification until at least this time; the latest of all deferring rules wins
+         */
+        public void deferUntil(LocalDateTime time) {
+            if (deferUntil == null || time.isAfter(deferUntil)) {
+                deferUntil = time;
+            }
+        }
+
         // Getters and setters
         public boolean isBlocked() {
             return blocked;
@@ -524,41 +280,82 @@ public class RuleEngineService {
         public void setAppliedRules(List<NotificationRuleDto> appliedRules) {
             this.appliedRules = appliedRules;
         }
+
+        public LocalDateTime getDeferUntil() {
+            return deferUntil;
+        }
+
+        public void setDeferUntil(LocalDateTime deferUntil) {
+            this.deferUntil = deferUntil;
+        }
+
+        public NotificationDigestService.DigestPolicy getDigest() {
+            return digest;
+        }
+
+        public void setDigest(NotificationDigestService.DigestPolicy digest) {
+            this.digest = digest;
+        }
     }
 
     /**
-     * User notification statistics
+     * Inputs of one evaluation; the keywords in the content are looked up once, on first use,
+     * and at most one frequency reservation is taken
      */
-    private static class UserNotificationStats {
-        private int dailyCount = 0;
-        private LocalDateTime lastNotificationTime;
-        private LocalDateTime lastResetDate = LocalDateTime.now().toLocalDate().atStartOfDay();
-
-        public void incrementDailyCount() {
-            // Reset daily count if it's a new day
-            LocalDateTime today = LocalDateTime.now().toLocalDate().atStartOfDay();
-            if (lastResetDate.isBefore(today)) {
-                dailyCount = 0;
-                lastResetDate = today;
+    private final class EvaluationContext implements CompiledRule.Context {
+        private final String userId;
+        private final CompiledRuleSet ruleSet;
+        private final String content;
+        private final Map<String, Object> variables;
+        private final boolean reserve;
+        private BitSet keywords;
+        private Long reservationId;
+
+        EvaluationContext(String userId, CompiledRuleSet ruleSet, String content, Map<String, Object> variables,
+                boolean reserve) {
+            this.userId = userId;
+            this.ruleSet = ruleSet;
+            this.content = content;
+            this.variables = variables;
+            this.reserve = reserve;
+        }
+
+        @Override
+        public String content() {
+            return content;
+        }
+
+        @Override
+        public boolean containsKeyword(int keywordId) {
+            if (keywords == null) {
+                keywords = ruleSet.findKeywords(content);
             }
-            dailyCount++;
+            return keywords.get(keywordId);
         }
 
-        // Getters and setters
-        public int getDailyCount() {
-            return dailyCount;
-        }
-
-        public void setDailyCount(int dailyCount) {
-            this.dailyCount = dailyCount;
+        @Override
+        public Map<String, Object> variables() {
+            return variables;
         }
 
-        public LocalDateTime getLastNotificationTime() {
-            return lastNotificationTime;
+        @Override
+        public boolean withinFrequencyLimits(Integer maxPerDay, Integer minIntervalMinutes) {
+            if (!reserve || !frequencyCounters.isReserving()) {
+                return frequencyCounters.isWithinLimits(userId, maxPerDay, minIntervalMinutes);
+            }
+            Long reserved = frequencyCounters.reserve(userId, maxPerDay, minIntervalMinutes, reservationId);
+            if (reserved == null) {
+                return false;
+            }
+            reservationId = reserved;
+            return true;
         }
 
-        public void setLastNotificationTime(LocalDateTime lastNotificationTime) {
-            this.lastNotificationTime = lastNotificationTime;
+        void releaseReservation() {
+            if (reservationId != null) {
+                frequencyCounters.release(reservationId);
+                reservationId = null;
+            }
         }
     }
 }
\ No newline at end of file
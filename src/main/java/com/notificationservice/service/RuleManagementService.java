@@ -14,6 +14,8 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 import java.util.stream.Collectors;
 
 @Service
@@ -24,6 +26,14 @@ public class RuleManagementService {
 
     private final NotificationRuleRepository ruleRepository;
     private final NotificationTemplateRepository templateRepository;
+    private final RuleSetCache ruleSetCache;
+
+    /**
+     * A group holding an unescaped {@code *} or {@code +}, itself followed by an unbounded
+     * quantifier; groups nested in it are not looked into
+     */
+    private static final Pattern NESTED_QUANTIFIER =
+            Pattern.compile("\\((?:\\\\.|[^()\\\\*+])*[*+](?:\\\\.|[^()\\\\])*\\)(?:[*+]|\\{\\d+,\\d*\\})");
 
     /**
      * Get all rules for a user
@@ -75,6 +85,8 @@ public class RuleManagementService {
      * Create a new rule
      */
     public NotificationRuleDto createRule(NotificationRuleDto ruleDto) {
+        validatePatterns(ruleDto.getConditions());
+
         // Validate template if provided
         if (ruleDto.getTemplateId() != null) {
             NotificationTemplate template = templateRepository.findById(ruleDto.getTemplateId())
@@ -98,6 +110,7 @@ public class RuleManagementService {
             rule.setTemplate(template);
         }
         rule = ruleRepository.save(rule);
+        ruleSetCache.invalidate(rule.getUserId());
 
         log.info("Created rule: {} for user: {}", rule.getName(), rule.getUserId());
         return NotificationRuleMapper.toDto(rule);
@@ -109,6 +122,7 @@ public class RuleManagementService {
     public NotificationRuleDto updateRule(Long id, NotificationRuleDto ruleDto) {
         NotificationRule existingRule = ruleRepository.findById(id)
                 .orElseThrow(() -> new IllegalArgumentException("Rule not found with ID: " + id));
+        validatePatterns(ruleDto.getConditions());
 
         // Validate template if provided
         if (ruleDto.getTemplateId() != null) {
@@ -118,6 +132,8 @@ public class RuleManagementService {
             ruleDto.setTemplateName(template.getName());
         }
 
+        String previousUserId = existingRule.getUserId();
+
         // Check if rule name already exists for this user (excluding current rule)
         if (!existingRule.getName().equals(ruleDto.getName()) &&
                 ruleRepository.existsByNameAndUserId(ruleDto.getName(), ruleDto.getUserId())) {
@@ -139,11 +155,40 @@ public class RuleManagementService {
         }
 
         existingRule = ruleRepository.save(existingRule);
+        ruleSetCache.invalidate(previousUserId, existingRule.getUserId());
 
         log.info("Updated rule: {} for user: {}", existingRule.getName(), existingRule.getUserId());
         return NotificationRuleMapper.toDto(existingRule);
     }
 
+    /**
+     * Reject a rule whose content conditions hold an invalid regular expression, or one that
+     * repeats a group holding a repetition, such as {@code (a+)+} or {@code (\w+\s?)*}: those
+     * can backtrack exponentially on content that almost matches
+     */
+    private void validatePatterns(JsonNode conditions) {
+        if (conditions == null) {
+            return;
+        }
+        for (String field : List.of("blockedPatterns", "requiredPatterns")) {
+            JsonNode patterns = conditions.get(field);
+            if (patterns == null || !patterns.isArray()) {
+                continue;
+            }
+            for (JsonNode pattern : patterns) {
+                try {
+                    ruleSetCache.pattern(pattern.asText());
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Invalid pattern in " + field + ": " + e.getDescription());
+                }
+                if (NESTED_QUANTIFIER.matcher(pattern.asText()).find()) {
+                    throw new IllegalArgumentException("Pattern in " + field + " repeats a repeated group, "
+                            + "which can take exponential time: " + pattern.asText());
+                }
+            }
+        }
+    }
+
     /**
      * Delete a rule (soft delete by setting isActive to false)
      */
@@ -153,6 +198,7 @@ public class RuleManagementService {
 
         rule.setIsActive(false);
         ruleRepository.save(rule);
+        ruleSetCache.invalidate(rule.getUserId());
 
         log.info("Deleted rule: {} for user: {}", rule.getName(), rule.getUserId());
     }
@@ -166,6 +212,7 @@ public class RuleManagementService {
 
         rule.setIsActive(true);
         rule = ruleRepository.save(rule);
+        ruleSetCache.invalidate(rule.getUserId());
 
         log.info("Activated rule: {} for user: {}", rule.getName(), rule.getUserId());
         return NotificationRuleMapper.toDto(rule);
@@ -180,6 +227,7 @@ public class RuleManagementService {
 
         rule.setIsActive(false);
         rule = ruleRepository.save(rule);
+        ruleSetCache.invalidate(rule.getUserId());
 
         log.info("Deactivated rule: {} for user: {}", rule.getName(), rule.getUserId());
         return NotificationRuleMapper.toDto(rule);
@@ -194,6 +242,7 @@ public class RuleManagementService {
 
         rule.setPriority(priority);
         rule = ruleRepository.save(rule);
+        ruleSetCache.invalidate(rule.getUserId());
 
         log.info("Updated priority for rule: {} to {}", rule.getName(), priority);
         return NotificationRuleMapper.toDto(rule);
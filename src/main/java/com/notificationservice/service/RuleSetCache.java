@@ -0,0 +1,226 @@
+package com.notificationservice.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.notificationservice.config.RuleProperties;
+import com.notificationservice.dto.NotificationRuleDto;
+import com.notificationservice.entity.NotificationRule;
+import com.notificationservice.repository.NotificationRuleRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled rule sets per user. A user's active rules are read and compiled on first use and
+ * then served from memory; {@link RuleManagementService} drops the set when one of the user's
+ * rules changes, and the next evaluation compiles it again. Other nodes hear of the change
+ * through {@link CacheInvalidationService} once it commits. Regular expressions in conditions
+ * are compiled once and shared across users through a bounded cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RuleSetCache {
+
+    static final String CACHE_NAME = "rule-sets";
+
+    private final NotificationRuleRepository ruleRepository;
+    private final RuleProperties properties;
+    private final PlatformTransactionManager transactionManager;
+    private final CacheInvalidationService cacheInvalidation;
+
+    /**
+     * Moves on every invalidation; a set read before a change committed is not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    private TransactionTemplate readOnlyTransaction;
+    private Cache<String, CompiledRuleSet> ruleSets;
+    private Cache<String, Pattern> patterns;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        ruleSets = Caffeine.newBuilder()
+                .maximumSize(properties.getCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(properties.getCacheTtlSeconds()))
+                .build();
+        patterns = Caffeine.newBuilder()
+                .maximumSize(properties.getPatternCacheSize())
+                .build();
+        cacheInvalidation.register(CACHE_NAME, this::evict, this::evictAll);
+    }
+
+    /**
+     * Active rules of a user, highest priority first
+     */
+    CompiledRuleSet get(String userId) {
+        CompiledRuleSet cached = ruleSets.getIfPresent(userId);
+        if (cached != null) {
+            return cached;
+        }
+        long readAt = generation.get();
+        CompiledRuleSet loaded = load(userId);
+        ruleSets.asMap().compute(userId, (key, current) -> generation.get() == readAt ? loaded : current);
+        return loaded;
+    }
+
+    /**
+     * Drop the sets of the given users, again after commit when called inside a transaction,
+     * and on every other node once the change commits
+     */
+    public void invalidate(String... userIds) {
+        for (String userId : userIds) {
+            cacheInvalidation.publish(CACHE_NAME, userId);
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(userIds);
+                }
+            });
+        }
+        evict(userIds);
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cachedUsers", ruleSets.estimatedSize());
+        stats.put("loads", loads.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("cachedPatterns", patterns.estimatedSize());
+        stats.put("clusterInvalidation", cacheInvalidation.getStats());
+        return stats;
+    }
+
+    private void evict(String... userIds) {
+        generation.incrementAndGet();
+        for (String userId : userIds) {
+            if (userId != null) {
+                ruleSets.invalidate(userId);
+            }
+        }
+        invalidations.increment();
+    }
+
+    private void evictAll() {
+        generation.incrementAndGet();
+        ruleSets.invalidateAll();
+        invalidations.increment();
+    }
+
+    /**
+     * Load the sets of the given users that are not cached yet with a single query
+     */
+    void preload(Collection<String> userIds) {
+        List<String> missing = new ArrayList<>();
+        for (String userId : userIds) {
+            if (ruleSets.getIfPresent(userId) == null) {
+                missing.add(userId);
+            }
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+        long readAt = generation.get();
+        Map<String, CompiledRuleSet> loaded = loadAll(missing);
+        loaded.forEach((userId, ruleSet) -> ruleSets.asMap().compute(userId,
+                (key, current) -> current != null || generation.get() != readAt ? current : ruleSet));
+    }
+
+    private CompiledRuleSet load(String userId) {
+        loads.increment();
+        return readOnlyTransaction.execute(status ->
+                compile(userId, ruleRepository.findByUserIdAndIsActiveTrueOrderByPriorityDesc(userId)));
+    }
+
+    private Map<String, CompiledRuleSet> loadAll(List<String> userIds) {
+        loads.add(userIds.size());
+        return readOnlyTransaction.execute(status -> {
+            // Ordered by user, then priority; users without active rules are not returned
+            Map<String, List<NotificationRule>> rulesByUser = new LinkedHashMap<>();
+            for (NotificationRule rule : ruleRepository.findActiveByUserIdIn(userIds)) {
+                rulesByUser.computeIfAbsent(rule.getUserId(), key -> new ArrayList<>()).add(rule);
+            }
+            Map<String, CompiledRuleSet> compiled = new HashMap<>(userIds.size() * 2);
+            for (String userId : userIds) {
+                compiled.put(userId, compile(userId, rulesByUser.getOrDefault(userId, List.of())));
+            }
+            return compiled;
+        });
+    }
+
+    private CompiledRuleSet compile(String userId, List<NotificationRule> rules) {
+        if (rules.isEmpty()) {
+            return CompiledRuleSet.EMPTY;
+        }
+        CompiledRuleSet.Compiler compiler = new CompiledRuleSet.Compiler(this::pattern,
+                properties.getPatternTimeoutMs());
+        for (NotificationRule rule : rules) {
+            compiler.add(CompiledRule.compile(rule, toDto(rule), compiler));
+        }
+        CompiledRuleSet ruleSet = compiler.build();
+        log.debug("Compiled {} rules with {} keywords for user: {}", ruleSet.size(), ruleSet.keywordCount(),
+                userId);
+        return ruleSet;
+    }
+
+    /**
+     * Compiled form of a regular expression, shared by all rules using it
+     */
+    Pattern pattern(String regex) {
+        return patterns.get(regex, Pattern::compile);
+    }
+
+    private static NotificationRuleDto toDto(NotificationRule rule) {
+        NotificationRuleDto dto = new NotificationRuleDto();
+        dto.setId(rule.getId());
+        dto.setName(rule.getName());
+        dto.setDescription(rule.getDescription());
+        dto.setUserId(rule.getUserId());
+        dto.setTemplateId(rule.getTemplate() != null ? rule.getTemplate().getId() : null);
+        dto.setTemplateName(rule.getTemplate() != null ? rule.getTemplate().getName() : null);
+        dto.setRuleType(rule.getRuleType());
+        dto.setNotificationType(rule.getNotificationType());
+        dto.setIsActive(rule.getIsActive());
+        dto.setPriority(rule.getPriority());
+        dto.setDaysOfWeek(rule.getDaysOfWeek());
+        dto.setStartTime(rule.getStartTime());
+        dto.setEndTime(rule.getEndTime());
+        dto.setTimezone(rule.getTimezone());
+        dto.setMaxNotificationsPerDay(rule.getMaxNotificationsPerDay());
+        dto.setMinIntervalMinutes(rule.getMinIntervalMinutes());
+        dto.setConditions(rule.getConditions());
+        dto.setVariables(rule.getVariables());
+        dto.setActionType(rule.getActionType());
+        dto.setActionConfig(rule.getActionConfig());
+
+        // Set audit fields
+        dto.setCreatedAt(rule.getCreatedAt());
+        dto.setModifiedAt(rule.getModifiedAt());
+        dto.setCreatedBy(rule.getCreatedBy());
+        dto.setModifiedBy(rule.getModifiedBy());
+
+        return dto;
+    }
+}
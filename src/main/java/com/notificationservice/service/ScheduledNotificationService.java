@@ -0,0 +1,219 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.SchedulingProperties;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.entity.ScheduledNotification;
+import com.notificationservice.repository.NotificationRequestRepository;
+import com.notificationservice.repository.ScheduledNotificationRepository;
+import com.notificationservice.util.HierarchicalTimingWheel;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Delayed sends. A scheduled request is stored as SCHEDULED with a row in
+ * {@code scheduled_notifications}; the rows due within the next time slice are held in a
+ * hierarchical timing wheel, so the table is read once per slice rather than polled every
+ * tick. When a send time comes, the due requests are released to PENDING in batches and the
+ * outbox dispatcher delivers them. Release is a conditional update, so several nodes can run
+ * the same wheel and each request is still released once.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ScheduledNotificationService {
+
+    private final ScheduledNotificationRepository scheduledRepository;
+    private final NotificationRequestRepository requestRepository;
+    private final SchedulingProperties properties;
+    private final PlatformTransactionManager transactionManager;
+
+    private final LongAdder released = new LongAdder();
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Guarded by itself, as is {@link #loadedUntil}
+     */
+    private HierarchicalTimingWheel<Long> wheel;
+    /**
+     * Every schedule row with a send time before this is in the wheel; {@code null} until the
+     * first load
+     */
+    private LocalDateTime loadedUntil;
+    /**
+     * Due requests whose release failed, retried on the next tick
+     */
+    private List<Long> unreleased = new ArrayList<>();
+
+    @PostConstruct
+    void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        wheel = new HierarchicalTimingWheel<>(properties.getTickMs(), properties.getWheelSize(),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * Persist a request to be sent at {@code sendAt}; a request without a future send time is
+     * persisted as PENDING for the outbox. Joins the caller's transaction.
+     */
+    public NotificationRequest hold(NotificationRequest request, LocalDateTime sendAt) {
+        if (sendAt == null || !sendAt.isAfter(LocalDateTime.now())) {
+            return requestRepository.save(request);
+        }
+
+        request.setStatus(NotificationRequest.NotificationStatus.SCHEDULED);
+        NotificationRequest saved = requestRepository.save(request);
+        scheduledRepository.save(new ScheduledNotification(null, saved.getId(), sendAt, LocalDateTime.now()));
+
+        // Sends inside the loaded slice would otherwise be missed until the next restart
+        Long requestId = saved.getId();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(requestId, sendAt);
+                }
+            });
+        } else {
+            enqueue(requestId, sendAt);
+        }
+
+        log.info("Notification request {} scheduled for {}", requestId, sendAt);
+        return saved;
+    }
+
+    /**
+     * Settle scheduled requests whose content was delivered by a digest request: they are
+     * marked DIGESTED with the digest's id and their schedule rows dropped. Returns how many
+     * were still scheduled; the rest were already released. Joins the caller's transaction.
+     */
+    public int settle(List<Long> requestIds, Long digestRequestId) {
+        int settled = requestRepository.settleScheduled(requestIds, digestRequestId);
+        scheduledRepository.deleteByRequestIds(requestIds);
+        return settled;
+    }
+
+    /**
+     * Load every schedule row due within the first slice; rows that fell due while no node
+     * was running are released right away
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadInitialSlice() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<Long> due;
+        synchronized (wheel) {
+            LocalDateTime until = LocalDateTime.now().plusSeconds(properties.getSliceSeconds());
+            due = addToWheel(scheduledRepository.findDueBefore(until));
+            loadedUntil = until;
+            log.info("Loaded {} scheduled notifications due before {}", wheel.size(), until);
+        }
+        release(due);
+    }
+
+    @Scheduled(fixedDelayString = "${notification.scheduling.tick-ms:1000}")
+    public void tick() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        List<Long> due;
+        synchronized (wheel) {
+            if (loadedUntil == null) {
+                return;
+            }
+            due = unreleased;
+            unreleased = new ArrayList<>();
+
+            // Read the next slice while half of the current one is still ahead
+            LocalDateTime now = LocalDateTime.now();
+            if (now.plusSeconds(properties.getSliceSeconds() / 2).isAfter(loadedUntil)) {
+                LocalDateTime until = loadedUntil.plusSeconds(properties.getSliceSeconds());
+                due.addAll(addToWheel(scheduledRepository.findSlice(loadedUntil, until)));
+                loadedUntil = until;
+            }
+            due.addAll(wheel.advance(System.currentTimeMillis()));
+        }
+        release(due);
+    }
+
+    /**
+     * Requests waiting in the wheel and the loaded time range
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (wheel) {
+            stats.put("inWheel", wheel.size());
+            stats.put("loadedUntil", loadedUntil);
+        }
+        stats.put("released", released.sum());
+        return stats;
+    }
+
+    private void enqueue(Long requestId, LocalDateTime sendAt) {
+        synchronized (wheel) {
+            // Later sends are picked up when their slice is loaded
+            if (loadedUntil == null || !sendAt.isBefore(loadedUntil)) {
+                return;
+            }
+            if (!wheel.add(toEpochMillis(sendAt), requestId)) {
+                unreleased.add(requestId);
+            }
+        }
+    }
+
+    private List<Long> addToWheel(List<ScheduledNotificationRepository.Slot> slots) {
+        List<Long> due = new ArrayList<>();
+        for (ScheduledNotificationRepository.Slot slot : slots) {
+            if (!wheel.add(toEpochMillis(slot.getSendAt()), slot.getRequestId())) {
+                due.add(slot.getRequestId());
+            }
+        }
+        return due;
+    }
+
+    private void release(List<Long> requestIds) {
+        int batchSize = properties.getReleaseBatchSize();
+        for (int from = 0; from < requestIds.size(); from += batchSize) {
+            List<Long> batch = requestIds.subList(from, Math.min(from + batchSize, requestIds.size()));
+            try {
+                Integer count = transactionTemplate.execute(status -> {
+                    int updated = requestRepository.releaseScheduled(batch);
+                    scheduledRepository.deleteByRequestIds(batch);
+                    return updated;
+                });
+                if (count != null && count > 0) {
+                    released.add(count);
+                    log.debug("Released {} scheduled notifications to the outbox", count);
+                }
+            } catch (Exception e) {
+                log.error("Failed to release {} scheduled notifications, retrying on the next tick",
+                        batch.size(), e);
+                synchronized (wheel) {
+                    unreleased.addAll(batch);
+                }
+            }
+        }
+    }
+
+    private static long toEpochMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+}
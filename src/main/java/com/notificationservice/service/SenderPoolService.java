@@ -0,0 +1,555 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.SenderPoolProperties;
+import com.notificationservice.dto.EmailSenderPoolDto;
+import com.notificationservice.entity.EmailSender;
+import com.notificationservice.entity.EmailSenderPool;
+import com.notificationservice.mapper.EmailSenderPoolMapper;
+import com.notificationservice.repository.EmailSenderPoolRepository;
+import com.notificationservice.repository.EmailSenderRepository;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import jakarta.annotation.PostConstruct;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.internet.AddressException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Sender pools: a logical sender name backed by several {@link EmailSender} accounts with
+ * weights. Every send leases one member, chosen by smooth weighted round robin or by fewest
+ * in-flight sends per weight, preferring members whose send rate has room right now. Members
+ * that keep failing are ejected for a while, with the ejection doubling each time, so one
+ * broken account does not fail a share of the traffic. A member whose sender was deactivated or
+ * deleted is dropped from its pool as soon as a lease finds it gone, and the next member is
+ * leased instead.
+ *
+ * <p>Sends only read the in-memory pools, so they run outside any transaction. A pool change
+ * or a change to one of their senders drops them on this node and, through
+ * {@link CacheInvalidationService}, on every other one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SenderPoolService {
+
+    static final String CACHE_NAME = "sender-pools";
+
+    private final EmailSenderPoolRepository poolRepository;
+    private final EmailSenderRepository senderRepository;
+    private final MailTransportRegistry mailTransportRegistry;
+    private final SenderThroughputGovernor senderGovernor;
+    private final SenderPoolProperties properties;
+    private final PlatformTransactionManager transactionManager;
+    private final CacheInvalidationService cacheInvalidation;
+
+    /**
+     * Active pools by name with their balancing state; loaded on first use and dropped after
+     * any pool change
+     */
+    private volatile Map<String, PoolState> poolsByName;
+    /**
+     * Moves on every drop; pools read before a change committed are not kept
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+        // Any change may rename or deactivate a pool, so every event drops them all
+        cacheInvalidation.register(CACHE_NAME, name -> evict(), this::evict);
+    }
+
+    @Transactional(readOnly = true)
+    public List<EmailSenderPoolDto> getAllPools() {
+        List<EmailSenderPool> pools = poolRepository.findByIsActiveTrue();
+        Map<Long, String> senderNames = senderNames(pools);
+        return pools.stream()
+                .map(pool -> EmailSenderPoolMapper.toDto(pool, senderNames))
+                .collect(Collectors.toList());
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<EmailSenderPoolDto> getPoolById(Long id) {
+        return poolRepository.findById(id)
+                .map(pool -> EmailSenderPoolMapper.toDto(pool, senderNames(List.of(pool))));
+    }
+
+    @Transactional
+    public EmailSenderPoolDto createPool(EmailSenderPoolDto poolDto) {
+        if (poolRepository.existsByName(poolDto.getName()) || senderRepository.existsByName(poolDto.getName())) {
+            throw new IllegalArgumentException("Email sender or pool with name '" + poolDto.getName()
+                    + "' already exists");
+        }
+
+        EmailSenderPool pool = new EmailSenderPool();
+        applyDto(pool, poolDto);
+        pool = poolRepository.save(pool);
+        invalidate(pool.getName());
+        return EmailSenderPoolMapper.toDto(pool, senderNames(List.of(pool)));
+    }
+
+    @Transactional
+    public EmailSenderPoolDto updatePool(Long id, EmailSenderPoolDto poolDto) {
+        EmailSenderPool pool = poolRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Email sender pool not found with id: " + id));
+
+        if (!pool.getName().equals(poolDto.getName())
+                && (poolRepository.existsByName(poolDto.getName()) || senderRepository.existsByName(poolDto.getName()))) {
+            throw new IllegalArgumentException("Email sender or pool with name '" + poolDto.getName()
+                    + "' already exists");
+        }
+
+        applyDto(pool, poolDto);
+        pool = poolRepository.save(pool);
+        invalidate(pool.getName());
+        return EmailSenderPoolMapper.toDto(pool, senderNames(List.of(pool)));
+    }
+
+    /**
+     * Deactivate a pool; requests sent through it keep their reference
+     */
+    @Transactional
+    public void deletePool(Long id) {
+        EmailSenderPool pool = poolRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("Email sender pool not found with id: " + id));
+        pool.setIsActive(false);
+        invalidate(pool.getName());
+    }
+
+    /**
+     * Drop the pools after a sender changed or was deleted, so its members are reloaded with it
+     */
+    public void senderChanged(Long senderId) {
+        invalidate("sender:" + senderId);
+    }
+
+    /**
+     * Id of the active pool with this name, or {@code null} when the name is a plain sender
+     */
+    public Long findPoolId(String name) {
+        PoolState pool = name != null ? pools().get(name) : null;
+        return pool != null ? pool.id : null;
+    }
+
+    /**
+     * Member a new request is recorded with until it is sent; does not advance the rotation
+     */
+    public EmailSender preview(Long poolId) {
+        PoolState pool = poolById(poolId);
+        if (pool == null) {
+            throw new IllegalArgumentException("Email sender pool not found with id: " + poolId);
+        }
+        return pool.preview();
+    }
+
+    /**
+     * Lease a member of the pool for sending; {@code null} when the pool no longer exists or
+     * none of its senders is left. A member with room gets the permit for the first message
+     * reserved. The lease must be completed with {@link Lease#succeeded()} or
+     * {@link Lease#failed(Exception)}.
+     */
+    public Lease lease(Long poolId) {
+        PoolState pool = poolById(poolId);
+        if (pool == null) {
+            return null;
+        }
+
+        MemberState chosen = null;
+        EmailSender chosenSender = null;
+        MemberState first = null;
+        EmailSender firstSender = null;
+        for (MemberState candidate : pool.order(System.nanoTime())) {
+            EmailSender sender = resolve(pool, candidate);
+            if (sender == null) {
+                continue;
+            }
+            if (first == null) {
+                first = candidate;
+                firstSender = sender;
+            }
+            if (senderGovernor.tryAcquire(sender)) {
+                chosen = candidate;
+                chosenSender = sender;
+                break;
+            }
+        }
+        boolean reserved = chosen != null;
+        if (chosen == null) {
+            if (first == null) {
+                return null;
+            }
+            // Every member is at its rate: the first choice waits, or defers, like a plain sender
+            chosen = first;
+            chosenSender = firstSender;
+        }
+        chosen.outstanding.incrementAndGet();
+        return new Lease(pool, chosen, chosenSender, reserved);
+    }
+
+    /**
+     * Members, weights, health and in-flight sends per pool
+     */
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        long now = System.nanoTime();
+        pools().forEach((name, pool) -> {
+            Map<String, Object> poolStats = new LinkedHashMap<>();
+            poolStats.put("strategy", pool.strategy.name());
+            Map<String, Object> members = new LinkedHashMap<>();
+            for (MemberState member : pool.members) {
+                Map<String, Object> memberStats = new LinkedHashMap<>();
+                memberStats.put("weight", member.weight);
+                memberStats.put("outstanding", member.outstanding.get());
+                memberStats.put("ejected", member.isEjected(now));
+                memberStats.put("ejectedForSeconds", member.isEjected(now)
+                        ? TimeUnit.NANOSECONDS.toSeconds(member.ejectedUntil - now) : 0);
+                memberStats.put("consecutiveFailures", member.consecutiveFailures);
+                memberStats.put("ejections", member.ejections);
+                members.put(member.sender.getName(), memberStats);
+            }
+            poolStats.put("members", members);
+            stats.put(name, poolStats);
+        });
+        return stats;
+    }
+
+    private void applyDto(EmailSenderPool pool, EmailSenderPoolDto poolDto) {
+        Set<Long> seen = new HashSet<>();
+        List<EmailSenderPool.Member> members = new ArrayList<>();
+        for (EmailSenderPoolDto.Member member : poolDto.getMembers()) {
+            EmailSender sender = senderRepository.findByNameAndIsActiveTrue(member.getSenderName())
+                    .orElseThrow(() -> new IllegalArgumentException("Email sender not found: " + member.getSenderName()));
+            if (!seen.add(sender.getId())) {
+                throw new IllegalArgumentException("Email sender listed twice: " + member.getSenderName());
+            }
+            members.add(new EmailSenderPool.Member(sender.getId(),
+                    member.getWeight() != null ? member.getWeight() : 1));
+        }
+
+        pool.setName(poolDto.getName());
+        pool.setStrategy(poolDto.getStrategy() != null
+                ? poolDto.getStrategy()
+                : EmailSenderPool.BalancingStrategy.WEIGHTED_ROUND_ROBIN);
+        pool.getMembers().clear();
+        pool.getMembers().addAll(members);
+        pool.setIsActive(poolDto.getIsActive() == null || poolDto.getIsActive());
+    }
+
+    private Map<Long, String> senderNames(List<EmailSenderPool> pools) {
+        Set<Long> senderIds = pools.stream()
+                .flatMap(pool -> pool.getMembers().stream())
+                .map(EmailSenderPool.Member::getSenderId)
+                .collect(Collectors.toSet());
+        Map<Long, String> names = new HashMap<>();
+        senderRepository.findAllById(senderIds).forEach(sender -> names.put(sender.getId(), sender.getName()));
+        return names;
+    }
+
+    private Map<String, PoolState> pools() {
+        Map<String, PoolState> pools = poolsByName;
+        if (pools == null) {
+            long readAt = generation.get();
+            pools = readOnlyTransaction.execute(status -> loadPools());
+            synchronized (generation) {
+                if (generation.get() == readAt) {
+                    poolsByName = pools;
+                }
+            }
+        }
+        return pools;
+    }
+
+    private Map<String, PoolState> loadPools() {
+        Map<String, PoolState> pools = new HashMap<>();
+        for (EmailSenderPool pool : poolRepository.findByIsActiveTrue()) {
+            List<MemberState> members = new ArrayList<>();
+            for (EmailSenderPool.Member member : pool.getMembers()) {
+                try {
+                    members.add(new MemberState(mailTransportRegistry.getSender(member.getSenderId()),
+                            member.getWeight()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Email sender pool {} skips inactive sender: {}", pool.getName(), member.getSenderId());
+                }
+            }
+            if (!members.isEmpty()) {
+                pools.put(pool.getName(), new PoolState(pool.getId(), pool.getStrategy(), members));
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * The member's sender as currently configured, or {@code null} after dropping the member
+     * when the sender was deactivated or deleted
+     */
+    private EmailSender resolve(PoolState pool, MemberState member) {
+        try {
+            return mailTransportRegistry.getSender(member.sender.getId());
+        } catch (MailTransportRegistry.SenderNotFoundException e) {
+            pool.remove(member);
+            return null;
+        }
+    }
+
+    private PoolState poolById(Long poolId) {
+        for (PoolState pool : pools().values()) {
+            if (pool.id.equals(poolId)) {
+                return pool;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Drop the pools here, again after commit when called inside a transaction, and on every
+     * other node once the change commits
+     */
+    private void invalidate(String poolName) {
+        cacheInvalidation.publish(CACHE_NAME, poolName);
+        evict();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // A send between the change and the commit may have loaded the old pools again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict();
+                }
+            });
+        }
+    }
+
+    private void evict() {
+        synchronized (generation) {
+            generation.incrementAndGet();
+            poolsByName = null;
+        }
+    }
+
+    /**
+     * Failures that say something about the account rather than the recipient or our own pacing
+     */
+    private boolean isSenderFault(Exception e) {
+        if (e instanceof AddressException || e instanceof IllegalArgumentException
+                || e instanceof BulkheadFullException
+                || e instanceof SenderThroughputGovernor.SenderThrottledException
+                || senderGovernor.isThrottled(e)) {
+            return false;
+        }
+        return !(e instanceof SendFailedException sendFailed && sendFailed.getInvalidAddresses() != null
+                && sendFailed.getInvalidAddresses().length > 0);
+    }
+
+    /**
+     * One send (or batch) on a pool member
+     */
+    public class Lease {
+        private final PoolState pool;
+        private final MemberState member;
+        private final EmailSender sender;
+        private final boolean reserved;
+        private boolean completed;
+
+        private Lease(PoolState pool, MemberState member, EmailSender sender, boolean reserved) {
+            this.pool = pool;
+            this.member = member;
+            this.sender = sender;
+            this.reserved = reserved;
+        }
+
+        public EmailSender getSender() {
+            return sender;
+        }
+
+        /**
+         * Whether the member's send rate was already acquired for the first message of this lease
+         */
+        public boolean isReserved() {
+            return reserved;
+        }
+
+        public void succeeded() {
+            if (complete()) {
+                pool.recordSuccess(member);
+            }
+        }
+
+        /**
+         * A {@link MailTransportRegistry.SenderNotFoundException} means the sender went away
+         * after the lease: the member is dropped rather than counted as failing
+         */
+        public void failed(Exception e) {
+            if (!complete()) {
+                return;
+            }
+            if (e instanceof MailTransportRegistry.SenderNotFoundException) {
+                pool.remove(member);
+            } else if (isSenderFault(e)) {
+                pool.recordFailure(member, e);
+            }
+        }
+
+        private boolean complete() {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            member.outstanding.decrementAndGet();
+            return true;
+        }
+    }
+
+    private final class PoolState {
+        private final Long id;
+        private final EmailSenderPool.BalancingStrategy strategy;
+        private final List<MemberState> members;
+
+        PoolState(Long id, EmailSenderPool.BalancingStrategy strategy, List<MemberState> members) {
+            this.id = id;
+            this.strategy = strategy;
+            this.members = members;
+        }
+
+        synchronized EmailSender preview() {
+            long now = System.nanoTime();
+            List<MemberState> present = members.stream()
+                    .filter(member -> !member.removed)
+                    .collect(Collectors.toList());
+            return present.stream()
+                    .filter(member -> !member.isEjected(now))
+                    .max(Comparator.comparingInt(member -> member.weight))
+                    .or(() -> present.stream().findFirst())
+                    .orElse(members.get(0))
+                    .sender;
+        }
+
+        /**
+         * Healthy members in the order they should be tried; the first one is the strategy's pick
+         */
+        synchronized List<MemberState> order(long now) {
+            List<MemberState> healthy = new ArrayList<>();
+            for (MemberState member : members) {
+                if (!member.removed && !member.isEjected(now)) {
+                    healthy.add(member);
+                }
+            }
+            if (healthy.isEmpty()) {
+                // Everything is ejected: use the member that comes back first rather than fail
+                members.stream()
+                        .filter(member -> !member.removed)
+                        .min(Comparator.comparingLong(member -> member.ejectedUntil))
+                        .ifPresent(healthy::add);
+                return healthy;
+            }
+
+            if (strategy == EmailSenderPool.BalancingStrategy.LEAST_OUTSTANDING) {
+                healthy.sort(Comparator.comparingDouble(
+                        (MemberState member) -> (member.outstanding.get() + 1.0) / member.weight));
+                return healthy;
+            }
+
+            // Smooth weighted round robin: spreads a member's share evenly instead of in runs
+            int total = 0;
+            MemberState best = null;
+            for (MemberState member : healthy) {
+                member.currentWeight += member.weight;
+                total += member.weight;
+                if (best == null || member.currentWeight > best.currentWeight) {
+                    best = member;
+                }
+            }
+            best.currentWeight -= total;
+            healthy.sort(Comparator.comparingInt((MemberState member) -> member.currentWeight).reversed());
+            healthy.remove(best);
+            healthy.add(0, best);
+            return healthy;
+        }
+
+        /**
+         * Stop leasing a member whose sender is gone; the pools are reloaded without it
+         */
+        void remove(MemberState member) {
+            synchronized (this) {
+                if (member.removed) {
+                    return;
+                }
+                member.removed = true;
+            }
+            log.warn("Email sender {} dropped from its pool: sender no longer active", member.sender.getName());
+            evict();
+        }
+
+        synchronized void recordSuccess(MemberState member) {
+            member.consecutiveFailures = 0;
+            member.ejections = 0;
+        }
+
+        synchronized void recordFailure(MemberState member, Exception e) {
+            member.consecutiveFailures++;
+            if (member.consecutiveFailures < properties.getEjectAfterFailures()) {
+                return;
+            }
+            long now = System.nanoTime();
+            long healthy = members.stream().filter(other -> !other.removed && !other.isEjected(now)).count();
+            if (healthy <= 1) {
+                // Never eject the last healthy member
+                return;
+            }
+            long seconds = Math.min((long) properties.getBaseEjectionSeconds() << Math.min(member.ejections, 10),
+                    properties.getMaxEjectionSeconds());
+            member.ejectedUntil = now + TimeUnit.SECONDS.toNanos(seconds);
+            member.ejections++;
+            member.consecutiveFailures = 0;
+            log.warn("Email sender {} ejected from its pool for {}s after repeated failures: {}",
+                    member.sender.getName(), seconds, e.getMessage());
+        }
+    }
+
+    private static final class MemberState {
+        private final EmailSender sender;
+        private final int weight;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        /**
+         * Guarded by the owning pool
+         */
+        private int currentWeight;
+        private int consecutiveFailures;
+        private int ejections;
+        private long ejectedUntil = Long.MIN_VALUE;
+        /**
+         * Set once the member's sender was found deactivated or deleted
+         */
+        private volatile boolean removed;
+
+        MemberState(EmailSender sender, int weight) {
+            this.sender = sender;
+            this.weight = Math.max(1, weight);
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil != Long.MIN_VALUE && now - ejectedUntil < 0;
+        }
+    }
+}
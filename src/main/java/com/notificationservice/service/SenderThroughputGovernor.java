@@ -0,0 +1,209 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.SenderThrottleProperties;
+import com.notificationservice.entity.EmailSender;
+import com.notificationservice.repository.NotificationRequestRepository;
+import com.notificationservice.util.AdaptiveRateLimiter;
+import jakarta.mail.MessagingException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.smtp.SMTPAddressFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSendFailedException;
+import org.eclipse.angus.mail.smtp.SMTPSenderFailedException;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Paces sends per email sender with an {@link AdaptiveRateLimiter}. The rate grows while the
+ * account accepts mail and is halved when the server answers with a throttling reply (421,
+ * 450, ...), so each account runs near its real quota without hand-tuned limits. A send that
+ * would wait longer than {@code max-wait-ms} is turned away with
+ * {@link SenderThrottledException} and goes back to the outbox instead of failing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SenderThroughputGovernor {
+
+    static final int MAX_CAUSE_DEPTH = 10;
+
+    /**
+     * Reply code in the text of a failure raised without a typed SMTP exception, such as a
+     * "421 Too many connections" greeting on connect
+     */
+    private static final Pattern REPLY_CODE = Pattern.compile("(?:^|response: )([45]\\d\\d)(?:[ -]|$)");
+
+    private final SenderThrottleProperties properties;
+    private final NotificationRequestRepository requestRepository;
+
+    private final Map<Long, Pace> paces = new ConcurrentHashMap<>();
+
+    /**
+     * Wait for the sender's turn to send one message; throws {@link SenderThrottledException}
+     * when the turn is too far away. Batches call this before each message, so they go out at
+     * the sender's rate rather than as one burst that holds back every other send.
+     */
+    public void acquire(EmailSender sender) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Pace pace = pace(sender);
+        long wait = pace.limiter.reserve(1, TimeUnit.MILLISECONDS.toNanos(properties.getMaxWaitMs()));
+        if (wait < 0) {
+            long retryAfterMs = TimeUnit.NANOSECONDS.toMillis(pace.limiter.waitNanos());
+            throw new SenderThrottledException(sender.getName(), retryAfterMs);
+        }
+        if (wait > 0) {
+            pace.waiting.incrementAndGet();
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SenderThrottledException(sender.getName(), TimeUnit.NANOSECONDS.toMillis(wait));
+            } finally {
+                pace.waiting.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Take the permit for one message only if the sender has room right now, without waiting
+     */
+    public boolean tryAcquire(EmailSender sender) {
+        return !properties.isEnabled() || pace(sender).limiter.reserve(1, 0) == 0;
+    }
+
+    public void onSuccess(EmailSender sender, int messages) {
+        if (properties.isEnabled() && messages > 0) {
+            pace(sender).limiter.onSuccess(messages);
+        }
+    }
+
+    public void onThrottled(EmailSender sender, Exception e) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        AdaptiveRateLimiter limiter = pace(sender).limiter;
+        limiter.onThrottled();
+        log.warn("Email sender {} throttled by the provider, rate now {}/s: {}", sender.getName(),
+                String.format("%.2f", limiter.getRate()), e.getMessage());
+    }
+
+    /**
+     * Whether a send failure is the provider asking us to slow down rather than a real failure
+     */
+    public boolean isThrottled(Throwable e) {
+        List<Integer> codes = properties.getThrottleReplyCodes();
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < MAX_CAUSE_DEPTH; depth++, cause = next(cause)) {
+            int code = replyCode(cause);
+            if (code > 0 && codes.contains(code)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Learned rate, sends waiting in memory and PENDING outbox rows per sender
+     */
+    public Map<String, Object> getStats() {
+        Map<Long, Long> backlog = new HashMap<>();
+        requestRepository.countPendingEmailsBySender()
+                .forEach(row -> backlog.put(row.getSenderId(), row.getCount()));
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        paces.forEach((senderId, pace) -> {
+            Map<String, Object> senderStats = new LinkedHashMap<>();
+            senderStats.put("allowedRatePerSecond", pace.limiter.getRate());
+            senderStats.put("maxRatePerSecond", pace.maxRate);
+            senderStats.put("waiting", pace.waiting.get());
+            senderStats.put("backlog", backlog.getOrDefault(senderId, 0L));
+            senderStats.put("throttled", pace.limiter.getThrottleCount());
+            stats.put(pace.senderName, senderStats);
+        });
+        return stats;
+    }
+
+    private Pace pace(EmailSender sender) {
+        return paces.computeIfAbsent(sender.getId(), id -> {
+            double maxRate = properties.getSenderMaxRates().getOrDefault(sender.getName(), properties.getMaxRate());
+            return new Pace(sender.getName(), maxRate, new AdaptiveRateLimiter(
+                    Math.min(properties.getInitialRate(), maxRate), Math.min(properties.getMinRate(), maxRate),
+                    maxRate, properties.getBurstSeconds(), properties.getAdditiveIncrease(),
+                    properties.getDecreaseFactor(), properties.getDecreaseCooldownMs()));
+        });
+    }
+
+    /**
+     * SMTP reply code carried by the exception itself, or -1. Failures on connect (e.g. a 421
+     * greeting) come as a plain {@link MessagingException} with the code only in the message.
+     */
+    static int replyCode(Throwable e) {
+        if (e instanceof SMTPSendFailedException smtp) {
+            return smtp.getReturnCode();
+        }
+        if (e instanceof SMTPAddressFailedException smtp) {
+            return smtp.getReturnCode();
+        }
+        if (e instanceof SMTPSenderFailedException smtp) {
+            return smtp.getReturnCode();
+        }
+        if (e.getClass() == MessagingException.class && e.getMessage() != null) {
+            Matcher matcher = REPLY_CODE.matcher(e.getMessage());
+            if (matcher.find()) {
+                return Integer.parseInt(matcher.group(1));
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The next exception to inspect when walking a mail failure
+     */
+    static Throwable next(Throwable e) {
+        // Per-recipient failures are chained as next exceptions rather than causes
+        if (e instanceof MessagingException messaging && messaging.getNextException() != null) {
+            return messaging.getNextException();
+        }
+        return e.getCause();
+    }
+
+    private static final class Pace {
+        private final String senderName;
+        private final double maxRate;
+        private final AdaptiveRateLimiter limiter;
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        Pace(String senderName, double maxRate, AdaptiveRateLimiter limiter) {
+            this.senderName = senderName;
+            this.maxRate = maxRate;
+            this.limiter = limiter;
+        }
+    }
+
+    /**
+     * The sender is over its current rate; the send was not attempted
+     */
+    public static class SenderThrottledException extends RuntimeException {
+        private final long retryAfterMs;
+
+        public SenderThrottledException(String senderName, long retryAfterMs) {
+            super("Email sender " + senderName + " is at its send rate, retry in " + retryAfterMs + " ms");
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        public long getRetryAfterMs() {
+            return retryAfterMs;
+        }
+    }
+}
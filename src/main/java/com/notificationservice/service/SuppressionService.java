@@ -0,0 +1,327 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.SuppressionProperties;
+import com.notificationservice.config.UserContextService;
+import com.notificationservice.dto.SuppressionDto;
+import com.notificationservice.entity.NotificationRequest;
+import com.notificationservice.repository.SuppressionRepository;
+import com.notificationservice.util.BloomFilter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Suppression list checked before every email and WhatsApp send. Each node keeps the entries
+ * in force in memory: a Bloom filter answers most lookups (recipients that are not suppressed)
+ * without touching the exact set, and neither touches the database. Changes made here are
+ * applied on commit; changes of other nodes are read every {@code sync-interval-ms} by the
+ * transaction that wrote them, so a change is picked up once it commits however long its
+ * transaction ran. The filter is rebuilt when removals leave too many stale keys in it.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SuppressionService {
+
+    private final SuppressionRepository suppressionRepository;
+    private final SuppressionProperties properties;
+    private final UserContextService userContextService;
+
+    /**
+     * Entries in force by {@link #key}; written only under the lock of this service
+     */
+    private final Map<String, SuppressionDto> entries = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    /**
+     * Keys still set in the filter whose entry was removed or expired
+     */
+    private long staleKeys;
+    private volatile boolean loaded;
+    /**
+     * Database snapshot taken before the last load or sync; changes it did not see are read next
+     */
+    private volatile String syncedSnapshot;
+    private volatile LocalDateTime syncedAt;
+
+    private final LongAdder checks = new LongAdder();
+    private final LongAdder filterNegatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder suppressedSends = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        if (properties.isEnabled()) {
+            load();
+        }
+    }
+
+    /**
+     * Fail a request to a suppressed recipient without sending it or scheduling a retry;
+     * returns whether it was suppressed
+     */
+    public boolean applyTo(NotificationRequest request) {
+        Optional<SuppressionDto> suppression = find(request.getChannel(), request.getRecipient());
+        if (suppression.isEmpty()) {
+            return false;
+        }
+        suppressedSends.increment();
+        request.setStatus(NotificationRequest.NotificationStatus.FAILED);
+        request.setNextAttemptAt(null);
+        request.setErrorMessage("Recipient is suppressed: " + suppression.get().getReason());
+        log.info("{} to: {} not sent, recipient is suppressed ({})", request.getChannel(), request.getRecipient(),
+                suppression.get().getReason());
+        return true;
+    }
+
+    public Optional<SuppressionDto> getSuppression(NotificationRequest.NotificationChannel channel,
+            String recipient) {
+        return suppressionRepository.findActive(channel, normalize(channel, recipient));
+    }
+
+    @Transactional
+    public SuppressionDto addSuppression(SuppressionDto suppression) {
+        SuppressionDto normalized = normalized(suppression);
+        suppressionRepository.upsert(normalized, userContextService.getCurrentUser());
+        afterCommit(() -> apply(List.of(normalized), List.of()));
+        return normalized;
+    }
+
+    /**
+     * Add or replace many entries at once; returns how many were written
+     */
+    @Transactional
+    public int importSuppressions(List<SuppressionDto> suppressions) {
+        List<SuppressionDto> normalized = new ArrayList<>(suppressions.size());
+        for (SuppressionDto suppression : suppressions) {
+            normalized.add(normalized(suppression));
+        }
+        suppressionRepository.upsertAll(normalized, userContextService.getCurrentUser(),
+                Math.max(1, properties.getImportBatchSize()));
+        afterCommit(() -> apply(normalized, List.of()));
+        log.info("Imported {} suppressions", normalized.size());
+        return normalized.size();
+    }
+
+    @Transactional
+    public void removeSuppression(NotificationRequest.NotificationChannel channel, String recipient) {
+        String normalized = normalize(channel, recipient);
+        if (!suppressionRepository.remove(channel, normalized, userContextService.getCurrentUser())) {
+            throw new IllegalArgumentException("Recipient is not suppressed: " + recipient);
+        }
+        afterCommit(() -> apply(List.of(), List.of(key(channel, normalized))));
+    }
+
+    /**
+     * Read entries changed on any node since the last sync
+     */
+    @Scheduled(fixedDelayString = "${notification.suppressions.sync-interval-ms:5000}")
+    public void sync() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (!loaded) {
+            load();
+            return;
+        }
+        try {
+            LocalDateTime watermark = suppressionRepository.now();
+            String snapshot = suppressionRepository.currentSnapshot();
+            List<SuppressionDto> added = new ArrayList<>();
+            List<String> removed = new ArrayList<>();
+            suppressionRepository.forEachChangedSince(syncedSnapshot,
+                    (suppression, deleted) -> {
+                        if (deleted || isExpired(suppression, watermark)) {
+                            removed.add(key(suppression.getChannel(), suppression.getRecipient()));
+                        } else {
+                            added.add(suppression);
+                        }
+                    });
+            apply(added, removed);
+            syncedSnapshot = snapshot;
+            syncedAt = watermark;
+        } catch (Exception e) {
+            log.warn("Suppression sync failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Drop entries whose expiry has passed
+     */
+    @Scheduled(fixedDelay = 60000)
+    public void purgeExpired() {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> expired = new ArrayList<>();
+        entries.forEach((key, suppression) -> {
+            if (isExpired(suppression, now)) {
+                expired.add(key);
+            }
+        });
+        if (!expired.isEmpty()) {
+            apply(List.of(), expired);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        BloomFilter current = filter;
+        stats.put("loaded", loaded);
+        stats.put("entries", entries.size());
+        stats.put("filterBits", current != null ? current.getBitCount() : 0);
+        stats.put("filterHashes", current != null ? current.getHashCount() : 0);
+        synchronized (this) {
+            stats.put("staleKeys", staleKeys);
+        }
+        stats.put("checks", checks.sum());
+        stats.put("filterNegatives", filterNegatives.sum());
+        stats.put("falsePositives", falsePositives.sum());
+        stats.put("suppressedSends", suppressedSends.sum());
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("syncedAt", syncedAt);
+        return stats;
+    }
+
+    private Optional<SuppressionDto> find(NotificationRequest.NotificationChannel channel, String recipient) {
+        if (!properties.isEnabled() || channel == null || recipient == null) {
+            return Optional.empty();
+        }
+        String normalized = normalize(channel, recipient);
+        if (!loaded) {
+            // Until the first load completes the database is the only complete source
+            return suppressionRepository.findActive(channel, normalized);
+        }
+        checks.increment();
+        String key = key(channel, normalized);
+        if (!filter.mightContain(key)) {
+            filterNegatives.increment();
+            return Optional.empty();
+        }
+        SuppressionDto suppression = entries.get(key);
+        if (suppression == null || isExpired(suppression, LocalDateTime.now())) {
+            falsePositives.increment();
+            return Optional.empty();
+        }
+        return Optional.of(suppression);
+    }
+
+    private synchronized void load() {
+        if (loaded) {
+            return;
+        }
+        try {
+            LocalDateTime watermark = suppressionRepository.now();
+            String snapshot = suppressionRepository.currentSnapshot();
+            Map<String, SuppressionDto> active = new LinkedHashMap<>();
+            suppressionRepository.forEachActive(suppression ->
+                    active.put(key(suppression.getChannel(), suppression.getRecipient()), suppression));
+            BloomFilter loadedFilter = newFilter(active.size());
+            active.keySet().forEach(loadedFilter::add);
+            entries.clear();
+            entries.putAll(active);
+            filter = loadedFilter;
+            staleKeys = 0;
+            syncedSnapshot = snapshot;
+            syncedAt = watermark;
+            loaded = true;
+            log.info("Loaded {} suppressions", active.size());
+        } catch (Exception e) {
+            log.warn("Failed to load suppressions, checking the database until loaded: {}", e.getMessage());
+        }
+    }
+
+    private synchronized void apply(List<SuppressionDto> added, List<String> removed) {
+        if (!loaded) {
+            return;
+        }
+        for (SuppressionDto suppression : added) {
+            String key = key(suppression.getChannel(), suppression.getRecipient());
+            // Set in the filter before the entry is visible, so a lookup never misses it
+            filter.add(key);
+            entries.put(key, suppression);
+        }
+        for (String key : removed) {
+            if (entries.remove(key) != null) {
+                staleKeys++;
+            }
+        }
+        long capacity = filter.getExpectedInsertions();
+        if (entries.size() > capacity || staleKeys > capacity * properties.getRebuildStaleRatio()) {
+            BloomFilter rebuilt = newFilter(entries.size());
+            entries.keySet().forEach(rebuilt::add);
+            filter = rebuilt;
+            staleKeys = 0;
+            rebuilds.increment();
+            log.info("Rebuilt suppression filter for {} entries", entries.size());
+        }
+    }
+
+    private BloomFilter newFilter(int size) {
+        // Room to grow to twice the current size before the next rebuild
+        return new BloomFilter(Math.max(properties.getExpectedEntries(), 2L * size),
+                properties.getFalsePositiveRate());
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static SuppressionDto normalized(SuppressionDto suppression) {
+        if (suppression.getChannel() == null || suppression.getRecipient() == null
+                || suppression.getRecipient().isBlank()) {
+            throw new IllegalArgumentException("Channel and recipient are required");
+        }
+        if (suppression.getReason() == null) {
+            throw new IllegalArgumentException("Reason is required for " + suppression.getRecipient());
+        }
+        return new SuppressionDto(suppression.getChannel(),
+                normalize(suppression.getChannel(), suppression.getRecipient()), suppression.getReason(),
+                suppression.getExpiresAt(), null, null);
+    }
+
+    /**
+     * Emails compare case-insensitively; phone numbers without separators or a channel prefix
+     */
+    static String normalize(NotificationRequest.NotificationChannel channel, String recipient) {
+        String trimmed = recipient.trim();
+        if (channel == NotificationRequest.NotificationChannel.EMAIL) {
+            return trimmed.toLowerCase(Locale.ROOT);
+        }
+        if (trimmed.startsWith("whatsapp:")) {
+            trimmed = trimmed.substring("whatsapp:".length());
+        }
+        return trimmed.replaceAll("[\\s()\\-.]", "");
+    }
+
+    private static String key(NotificationRequest.NotificationChannel channel, String normalizedRecipient) {
+        return channel.name() + ':' + normalizedRecipient;
+    }
+
+    private static boolean isExpired(SuppressionDto suppression, LocalDateTime now) {
+        return suppression.getExpiresAt() != null && !suppression.getExpiresAt().isAfter(now);
+    }
+}
@@ -1,18 +1,29 @@
 package com.notificationservice.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.notificationservice.dto.NotificationTemplateDto;
 import com.notificationservice.entity.NotificationTemplate;
 import com.notificationservice.repository.NotificationTemplateRepository;
 import com.notificationservice.mapper.NotificationTemplateMapper;
+import com.notificationservice.util.CompiledTemplate;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 @RequiredArgsConstructor
@@ -20,7 +31,38 @@ import java.util.stream.Collectors;
 @Transactional
 public class TemplateService {
 
+    private static final String CACHE_NAME = "templates";
+
+    /**
+     * Characters of raw content kept compiled, e.g. a few hundred large HTML bodies
+     */
+    private static final long CONTENT_CACHE_MAX_CHARS = 16_000_000L;
+
     private final NotificationTemplateRepository templateRepository;
+    private final CacheInvalidationService cacheInvalidation;
+
+    /**
+     * Active templates by name with their compiled content, evicted when a template changes
+     */
+    private final Map<String, ResolvedTemplate> templateCache = new ConcurrentHashMap<>();
+    /**
+     * Moves on every eviction; a template read before a change committed is not cached
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * Raw content (inline bodies, digest and template subjects) compiled by the content itself,
+     * so the same text is parsed once however many sends render it
+     */
+    private final Cache<String, CompiledTemplate> compiledContent = Caffeine.newBuilder()
+            .maximumWeight(CONTENT_CACHE_MAX_CHARS)
+            .weigher((String content, CompiledTemplate compiled) -> content.length())
+            .build();
+
+    @PostConstruct
+    void registerCacheInvalidation() {
+        cacheInvalidation.register(CACHE_NAME, this::dropCached, this::dropAllCached);
+    }
 
     public List<NotificationTemplateDto> getAllTemplates() {
         return NotificationTemplateMapper.toDtoList(templateRepository.findByIsActiveTrue());
@@ -36,8 +78,30 @@ public class TemplateService {
     }
 
     public Optional<NotificationTemplateDto> getTemplateByName(String name) {
-        return templateRepository.findByNameAndIsActiveTrue(name)
-                .map(NotificationTemplateMapper::toDto);
+        return getCompiledTemplate(name).map(ResolvedTemplate::getTemplate);
+    }
+
+    /**
+     * Active template by name with its compiled content; only the first lookup after a
+     * change reads the database
+     */
+    public Optional<ResolvedTemplate> getCompiledTemplate(String name) {
+        ResolvedTemplate cached = templateCache.get(name);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+
+        long readAt = generation.get();
+        return templateRepository.findByNameAndIsActiveTrue(name).map(template -> {
+            ResolvedTemplate resolved = new ResolvedTemplate(NotificationTemplateMapper.toDto(template),
+                    template.getModifiedAt(), CompiledTemplate.compile(template.getContent()));
+            // Not cached when evicted meanwhile, as the read may predate the change; otherwise
+            // keep whichever version is newer if another thread got there first
+            ResolvedTemplate current = templateCache.compute(name, (key, existing) -> generation.get() != readAt
+                    ? existing
+                    : existing == null || resolved.isNewerThan(existing) ? resolved : existing);
+            return current != null ? current : resolved;
+        });
     }
 
     public NotificationTemplateDto createTemplate(NotificationTemplateDto templateDto) {
@@ -47,6 +111,7 @@ public class TemplateService {
 
         NotificationTemplate template = NotificationTemplateMapper.toEntity(templateDto);
         template = templateRepository.save(template);
+        evict(template.getName());
         return NotificationTemplateMapper.toDto(template);
     }
 
@@ -60,6 +125,9 @@ public class TemplateService {
             throw new IllegalArgumentException("Template with name '" + templateDto.getName() + "' already exists");
         }
 
+        evict(existingTemplate.getName());
+        evict(templateDto.getName());
+
         // Update fields
         NotificationTemplateMapper.updateEntityFromDto(existingTemplate, templateDto);
 
@@ -72,24 +140,80 @@ public class TemplateService {
                 .orElseThrow(() -> new IllegalArgumentException("Template not found with id: " + id));
         template.setIsActive(false);
         templateRepository.save(template);
+        evict(template.getName());
     }
 
     public String processTemplate(String templateName, Map<String, Object> variables) {
-        NotificationTemplate template = templateRepository.findByNameAndIsActiveTrue(templateName)
+        ResolvedTemplate template = getCompiledTemplate(templateName)
+                .orElseThrow(() -> new IllegalArgumentException("Template not found: " + templateName));
+
+        return template.render(variables);
+    }
+
+    /**
+     * Placeholders of the template that the given variables do not provide
+     */
+    public Set<String> findMissingVariables(String templateName, Map<String, Object> variables) {
+        ResolvedTemplate template = getCompiledTemplate(templateName)
                 .orElseThrow(() -> new IllegalArgumentException("Template not found: " + templateName));
 
-        return processTemplateContent(template.getContent(), variables);
+        return template.getCompiled().findMissingVariables(variables);
     }
 
+    /**
+     * Render raw content; pure, so no transaction is started for it
+     */
+    @Transactional(propagation = Propagation.SUPPORTS)
     public String processTemplateContent(String content, Map<String, Object> variables) {
-        String processedContent = content;
+        if (content == null) {
+            return "";
+        }
+        return compiledContent.get(content, CompiledTemplate::compile).render(variables);
+    }
+
+    /**
+     * Drop a cached template now and again after commit, so a concurrent lookup cannot
+     * re-cache the version being replaced; other nodes drop it when the change commits
+     */
+    private void evict(String name) {
+        if (name == null) {
+            return;
+        }
+        dropCached(name);
+        cacheInvalidation.publish(CACHE_NAME, name);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    dropCached(name);
+                }
+            });
+        }
+    }
 
-        for (Map.Entry<String, Object> entry : variables.entrySet()) {
-            String placeholder = "{{" + entry.getKey() + "}}";
-            String value = entry.getValue() != null ? entry.getValue().toString() : "";
-            processedContent = processedContent.replace(placeholder, value);
+    private void dropCached(String name) {
+        generation.incrementAndGet();
+        templateCache.remove(name);
+    }
+
+    private void dropAllCached() {
+        generation.incrementAndGet();
+        templateCache.clear();
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class ResolvedTemplate {
+        private final NotificationTemplateDto template;
+        private final LocalDateTime version;
+        private final CompiledTemplate compiled;
+
+        public String render(Map<String, Object> variables) {
+            return compiled.render(variables);
         }
 
-        return processedContent;
+        boolean isNewerThan(ResolvedTemplate other) {
+            return version != null && (other.version == null || version.isAfter(other.version));
+        }
     }
 }
\ No newline at end of file
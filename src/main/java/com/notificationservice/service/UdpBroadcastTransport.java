@@ -0,0 +1,218 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.UdpBroadcastProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sends mobile broadcasts as UDP datagrams from one non-blocking {@link DatagramChannel}.
+ * Each chunk of a message is framed once into a reused direct buffer and then sent to every
+ * target, so fan-out costs one syscall per client and chunk without a thread per client.
+ *
+ * <p>Frame layout (big endian): magic (2) | version (1) | flags (1) | sequence (8) |
+ * chunk index (2) | chunk count (2) | payload length (4) | UTF-8 payload. Sequences increase
+ * per network so clients can detect gaps; chunks of one message share its sequence.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UdpBroadcastTransport {
+
+    static final short MAGIC = 0x4E53; // "NS"
+    static final byte VERSION = 1;
+    static final byte FLAG_CHUNKED = 0x01;
+    static final int HEADER_SIZE = 20;
+
+    private final UdpBroadcastProperties properties;
+
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final Map<String, InetSocketAddress> multicastGroups = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the channel and the frame buffer. A lock rather than a monitor, since a send may
+     * wait on the selector and must not pin the carrier of a virtual thread while it does.
+     */
+    private final ReentrantLock sendLock = new ReentrantLock();
+
+    private DatagramChannel channel;
+    private Selector selector;
+    private ByteBuffer frame;
+
+    @PostConstruct
+    void init() throws IOException {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (properties.getMaxDatagramSize() <= HEADER_SIZE) {
+            throw new IllegalStateException("notification.mobile.udp.max-datagram-size must exceed " + HEADER_SIZE);
+        }
+
+        channel = DatagramChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, properties.getMulticastTtl());
+        channel.bind(new InetSocketAddress(properties.getBindPort()));
+        selector = Selector.open();
+        channel.register(selector, SelectionKey.OP_WRITE);
+        frame = ByteBuffer.allocateDirect(properties.getMaxDatagramSize());
+
+        properties.getMulticastGroups().forEach((networkId, group) -> multicastGroups.put(networkId, parseAddress(group)));
+        log.info("UDP broadcast transport bound to {}", channel.getLocalAddress());
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        if (selector != null) {
+            selector.close();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * Multicast group configured for a network, if any
+     */
+    public Optional<InetSocketAddress> getMulticastGroup(String networkId) {
+        return Optional.ofNullable(multicastGroups.get(networkId));
+    }
+
+    /**
+     * Next broadcast sequence number of a network
+     */
+    public long nextSequence(String networkId) {
+        return sequences.computeIfAbsent(networkId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Frame a message and send every chunk of it to each target
+     */
+    public BroadcastResult send(String networkId, String content, Collection<InetSocketAddress> targets)
+            throws IOException {
+        return send(networkId, nextSequence(networkId), content, targets);
+    }
+
+    /**
+     * Frame a message under a sequence taken from {@link #nextSequence} and send every chunk
+     * of it to each target
+     */
+    public BroadcastResult send(String networkId, long sequence, String content,
+            Collection<InetSocketAddress> targets) throws IOException {
+        if (channel == null) {
+            throw new IllegalStateException("UDP broadcast transport is disabled");
+        }
+
+        byte[] payload = content.getBytes(StandardCharsets.UTF_8);
+        int maxPayload = properties.getMaxDatagramSize() - HEADER_SIZE;
+        int chunkCount = Math.max(1, (payload.length + maxPayload - 1) / maxPayload);
+        if (chunkCount > properties.getMaxChunks()) {
+            throw new IllegalArgumentException("Message too large: " + payload.length + " bytes needs "
+                    + chunkCount + " chunks (max " + properties.getMaxChunks() + ")");
+        }
+
+        Set<InetSocketAddress> unreachable = new LinkedHashSet<>();
+        long datagrams = 0;
+
+        // One buffer and one channel: fan-outs are serialized, each one is a tight send loop
+        sendLock.lock();
+        try {
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                int offset = chunk * maxPayload;
+                int length = Math.min(maxPayload, payload.length - offset);
+
+                frame.clear();
+                frame.putShort(MAGIC)
+                        .put(VERSION)
+                        .put(chunkCount > 1 ? FLAG_CHUNKED : 0)
+                        .putLong(sequence)
+                        .putShort((short) chunk)
+                        .putShort((short) chunkCount)
+                        .putInt(length)
+                        .put(payload, offset, length);
+                frame.flip();
+
+                for (InetSocketAddress target : targets) {
+                    frame.rewind();
+                    if (sendDatagram(target)) {
+                        datagrams++;
+                    } else {
+                        unreachable.add(target);
+                    }
+                }
+            }
+        } finally {
+            sendLock.unlock();
+        }
+
+        return new BroadcastResult(sequence, chunkCount, datagrams, targets.size() - unreachable.size(),
+                new ArrayList<>(unreachable));
+    }
+
+    /**
+     * Send the current frame; waits for socket buffer space up to the configured timeout
+     */
+    private boolean sendDatagram(InetSocketAddress target) throws IOException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getSendTimeoutMs());
+        try {
+            while (channel.send(frame, target) == 0) {
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (remainingMs <= 0) {
+                    log.warn("Dropped datagram to {}: socket buffer stayed full", target);
+                    return false;
+                }
+                selector.select(remainingMs);
+                selector.selectedKeys().clear();
+            }
+            return true;
+        } catch (IOException e) {
+            if (!channel.isOpen()) {
+                throw e;
+            }
+            // e.g. unreachable host or no route: only this target is affected
+            log.debug("Failed to send datagram to {}: {}", target, e.getMessage());
+            return false;
+        }
+    }
+
+    private static InetSocketAddress parseAddress(String hostAndPort) {
+        int separator = hostAndPort.lastIndexOf(':');
+        if (separator <= 0) {
+            throw new IllegalArgumentException("Expected address:port but got: " + hostAndPort);
+        }
+        return new InetSocketAddress(hostAndPort.substring(0, separator),
+                Integer.parseInt(hostAndPort.substring(separator + 1)));
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class BroadcastResult {
+        private final long sequence;
+        private final int chunks;
+        private final long datagramsSent;
+        private final int reached;
+        private final List<InetSocketAddress> unreachable;
+    }
+}
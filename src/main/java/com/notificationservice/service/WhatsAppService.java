@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.notificationservice.dto.NotificationRequestDto;
 import com.notificationservice.entity.NotificationRequest;
 import com.notificationservice.entity.NotificationResponse;
+import com.notificationservice.mapper.NotificationRequestMapper;
 import com.notificationservice.repository.NotificationRequestRepository;
 import com.notificationservice.repository.NotificationResponseRepository;
 import com.twilio.Twilio;
@@ -16,6 +17,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 
 @Service
@@ -27,6 +29,12 @@ public class WhatsAppService {
     private final NotificationRequestRepository requestRepository;
     private final NotificationResponseRepository responseRepository;
     private final TemplateService templateService;
+    private final ProviderResilienceService providerResilience;
+    private final NotificationRetryService retryService;
+    private final DispatchLaneScheduler laneScheduler;
+    private final ScheduledNotificationService scheduledNotificationService;
+    private final SuppressionService suppressionService;
+    private final FrequencyCounterService frequencyCounters;
 
     @Value("${notification.whatsapp.twilio.account-sid}")
     private String accountSid;
@@ -42,83 +50,154 @@ public class WhatsAppService {
     }
 
     public NotificationRequestDto sendWhatsAppMessage(String toNumber, String content, Map<String, Object> variables) {
+        // Request and response rows are written together once the outcome is known
+        NotificationRequest request = createRequest(toNumber, processContent(content, variables), null, variables);
+
+        deliver(request);
+
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    /**
+     * Persist the message as PENDING in the outbox, or SCHEDULED until {@code sendAt} when given;
+     * a dispatch worker sends it later
+     */
+    public NotificationRequestDto queueWhatsAppMessage(String toNumber, String content,
+            Map<String, Object> variables, LocalDateTime sendAt) {
+        NotificationRequest request = scheduledNotificationService.hold(
+                createRequest(toNumber, processContent(content, variables), null, variables), sendAt);
+
+        log.info("WhatsApp message to: {} queued with request id: {}", toNumber, request.getId());
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    public NotificationRequestDto sendWhatsAppWithTemplate(String templateName, String toNumber,
+            Map<String, Object> variables) {
+        // The template is rendered once here; createRequest does not process it again
+        NotificationRequest request = createRequest(toNumber, renderTemplate(templateName, variables), templateName,
+                variables);
+
+        deliver(request);
+
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    public NotificationRequestDto queueWhatsAppWithTemplate(String templateName, String toNumber,
+            Map<String, Object> variables, LocalDateTime sendAt) {
+        NotificationRequest request = scheduledNotificationService.hold(
+                createRequest(toNumber, renderTemplate(templateName, variables), templateName, variables), sendAt);
+
+        log.info("WhatsApp message to: {} queued with request id: {}", toNumber, request.getId());
+        return NotificationRequestMapper.toDto(request);
+    }
+
+    /**
+     * Send a WhatsApp request through Twilio and record the outcome on it; a new request
+     * is persisted together with its response
+     */
+    public void deliver(NotificationRequest request) {
+        // Opted-out numbers fail without a provider call or a retry
+        if (suppressionService.applyTo(request)) {
+            requestRepository.save(request);
+            return;
+        }
+
         // Initialize Twilio if not already done
         if (Twilio.getRestClient() == null) {
             Twilio.init(accountSid, authToken);
         }
 
-        // Process template if variables are provided
-        String processedContent = content;
-        if (variables != null && !variables.isEmpty()) {
-            processedContent = templateService.processTemplateContent(content, variables);
-        }
-
-        // Create notification request
-        NotificationRequest request = new NotificationRequest();
-        request.setRecipient(toNumber);
-        request.setContent(processedContent);
-        request.setVariables(convertToJsonNode(variables));
-        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
-
-        request = requestRepository.save(request);
+        String toNumber = request.getRecipient();
+        String content = request.getContent();
+        request.setAttemptCount(request.getAttemptCount() + 1);
 
         try {
-            // Send WhatsApp message via Twilio
-            Message message = Message.creator(
+            // Send WhatsApp message via Twilio, guarded per Twilio account
+            Message message = providerResilience.execute("whatsapp-" + accountSid, () -> Message.creator(
                     new PhoneNumber("whatsapp:" + toNumber),
                     new PhoneNumber("whatsapp:" + fromNumber),
-                    processedContent).create();
+                    content).create());
 
             // Update request status
             request.setStatus(NotificationRequest.NotificationStatus.SENT);
             request.setSentAt(LocalDateTime.now());
+            request.setErrorMessage(null);
             request = requestRepository.save(request);
+            frequencyCounters.recordSent(request);
 
             // Create response record
+            Map<String, Object> responseData = new HashMap<>();
+            responseData.put("sid", message.getSid());
+            responseData.put("status", message.getStatus().toString());
+            responseData.put("errorCode", message.getErrorCode() != null ? message.getErrorCode().toString() : null);
+            responseData.put("errorMessage", message.getErrorMessage());
+
             NotificationResponse response = new NotificationResponse();
             response.setRequest(request);
             response.setStatus("SENT");
             response.setProviderResponseId(message.getSid());
-            response.setResponseData(convertToJsonNode(Map.of(
-                    "sid", message.getSid(),
-                    "status", message.getStatus().toString(),
-                    "errorCode", message.getErrorCode() != null ? message.getErrorCode().toString() : null,
-                    "errorMessage", message.getErrorMessage())));
+            response.setResponseData(convertToJsonNode(responseData));
             responseRepository.save(response);
 
             log.info("WhatsApp message sent successfully to: {}", toNumber);
 
         } catch (Exception e) {
+            if (ProviderResilienceService.isRejected(e)) {
+                // Provider is cut off or saturated: not attempted, back to the outbox for later
+                log.warn("WhatsApp message to: {} deferred: {}", toNumber, e.getMessage());
+                retryService.recordRejected(request, e);
+                requestRepository.save(request);
+                return;
+            }
+
             log.error("Failed to send WhatsApp message to: {}", toNumber, e);
 
-            // Update request status
-            request.setStatus(NotificationRequest.NotificationStatus.FAILED);
-            request.setErrorMessage(e.getMessage());
+            // Update request status and schedule the next attempt
+            boolean willRetry = retryService.recordFailure(request, e);
             request = requestRepository.save(request);
+            if (!willRetry) {
+                retryService.deadLetter(request);
+            }
 
             // Create response record
             NotificationResponse response = new NotificationResponse();
             response.setRequest(request);
             response.setStatus("FAILED");
-            response.setResponseData(convertToJsonNode(Map.of("error", e.getMessage())));
+            response.setResponseData(convertToJsonNode(Map.of("error", String.valueOf(e.getMessage()))));
             responseRepository.save(response);
         }
-
-        return convertToDto(request);
     }
 
-    public NotificationRequestDto sendWhatsAppWithTemplate(String templateName, String toNumber,
-            Map<String, Object> variables) {
-        var template = templateService.getTemplateByName(templateName)
+    private String renderTemplate(String templateName, Map<String, Object> variables) {
+        var template = templateService.getCompiledTemplate(templateName)
                 .orElseThrow(() -> new IllegalArgumentException("Template not found: " + templateName));
 
-        if (template.getType() != com.notificationservice.entity.NotificationTemplate.NotificationType.WHATSAPP) {
+        if (template.getTemplate().getType() != com.notificationservice.entity.NotificationTemplate.NotificationType.WHATSAPP) {
             throw new IllegalArgumentException("Template is not a WhatsApp template: " + templateName);
         }
 
-        String processedContent = templateService.processTemplate(templateName, variables);
+        return template.render(variables);
+    }
+
+    private String processContent(String content, Map<String, Object> variables) {
+        // Process template if variables are provided
+        if (variables != null && !variables.isEmpty()) {
+            return templateService.processTemplateContent(content, variables);
+        }
+        return content;
+    }
 
-        return sendWhatsAppMessage(toNumber, processedContent, variables);
+    private NotificationRequest createRequest(String toNumber, String processedContent, String templateName,
+            Map<String, Object> variables) {
+        // Create notification request
+        NotificationRequest request = new NotificationRequest();
+        request.setRecipient(toNumber);
+        request.setContent(processedContent);
+        request.setVariables(convertToJsonNode(variables));
+        request.setChannel(NotificationRequest.NotificationChannel.WHATSAPP);
+        request.setStatus(NotificationRequest.NotificationStatus.PENDING);
+        laneScheduler.assignLane(request, templateName, variables);
+        return request;
     }
 
     private JsonNode convertToJsonNode(Map<String, Object> map) {
@@ -131,27 +210,4 @@ public class WhatsAppService {
             return null;
         }
     }
-
-    private NotificationRequestDto convertToDto(NotificationRequest request) {
-        NotificationRequestDto dto = new NotificationRequestDto();
-        dto.setId(request.getId());
-        dto.setTemplateId(request.getTemplate() != null ? request.getTemplate().getId() : null);
-        dto.setTemplateName(request.getTemplate() != null ? request.getTemplate().getName() : null);
-        dto.setSenderId(request.getSender() != null ? request.getSender().getId() : null);
-        dto.setSenderName(request.getSender() != null ? request.getSender().getName() : null);
-        dto.setRecipient(request.getRecipient());
-        dto.setSubject(request.getSubject());
-        dto.setContent(request.getContent());
-        dto.setVariables(request.getVariables());
-        dto.setStatus(request.getStatus().name());
-        dto.setErrorMessage(request.getErrorMessage());
-
-        // Set audit fields
-        dto.setCreatedAt(request.getCreatedAt());
-        dto.setModifiedAt(request.getModifiedAt());
-        dto.setCreatedBy(request.getCreatedBy());
-        dto.setModifiedBy(request.getModifiedBy());
-
-        return dto;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package com.notificationservice.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket whose rate adapts by additive increase / multiplicative decrease: every
+ * success raises the rate a little, every throttling signal cuts it by a factor, so the
+ * limiter settles just below the rate the downstream tolerates. Permits are reserved
+ * ahead of time, at most a bucket's worth at once so a batch cannot push later callers back
+ * by more than one burst; a caller that would wait too long gets nothing instead of blocking.
+ */
+public final class AdaptiveRateLimiter {
+
+    private final double minRate;
+    private final double maxRate;
+    private final double burstSeconds;
+    private final double additiveIncrease;
+    private final double decreaseFactor;
+    private final long decreaseCooldownNanos;
+
+    private double rate;
+    private double storedPermits;
+    /**
+     * Time at which the next permit not covered by stored permits becomes free
+     */
+    private long nextFreeNanos;
+    private long lastDecreaseNanos;
+    private long throttleCount;
+
+    public AdaptiveRateLimiter(double initialRate, double minRate, double maxRate, double burstSeconds,
+            double additiveIncrease, double decreaseFactor, long decreaseCooldownMs) {
+        if (minRate <= 0 || maxRate < minRate || decreaseFactor <= 0 || decreaseFactor >= 1) {
+            throw new IllegalArgumentException("Rates must be positive with minRate <= maxRate and 0 < decreaseFactor < 1");
+        }
+        this.minRate = minRate;
+        this.maxRate = maxRate;
+        this.burstSeconds = burstSeconds;
+        this.additiveIncrease = additiveIncrease;
+        this.decreaseFactor = decreaseFactor;
+        this.decreaseCooldownNanos = TimeUnit.MILLISECONDS.toNanos(decreaseCooldownMs);
+        this.rate = Math.max(minRate, Math.min(maxRate, initialRate));
+        this.nextFreeNanos = System.nanoTime();
+        this.lastDecreaseNanos = nextFreeNanos - decreaseCooldownNanos;
+    }
+
+    /**
+     * Reserve permits if they are free within {@code maxWaitNanos}; returns how long the caller
+     * must wait before using them, or -1 when nothing was reserved. Larger batches reserve one
+     * permit per item as they go.
+     */
+    public synchronized long reserve(int permits, long maxWaitNanos) {
+        if (permits > Math.max(1, rate * burstSeconds)) {
+            throw new IllegalArgumentException("Cannot reserve " + permits + " permits, more than one burst of "
+                    + String.format("%.1f", rate * burstSeconds));
+        }
+        long now = System.nanoTime();
+        resync(now);
+        long wait = Math.max(0, nextFreeNanos - now);
+        if (wait > maxWaitNanos) {
+            return -1;
+        }
+        double fromStored = Math.min(permits, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((permits - fromStored) * intervalNanos());
+        return wait;
+    }
+
+    /**
+     * How long until a reservation of {@code permits} could start
+     */
+    public synchronized long waitNanos() {
+        long now = System.nanoTime();
+        resync(now);
+        return Math.max(0, nextFreeNanos - now);
+    }
+
+    /**
+     * Additive increase: {@code sends} successes add {@code sends / rate} seconds' worth of increase
+     */
+    public synchronized void onSuccess(int sends) {
+        long now = System.nanoTime();
+        resync(now);
+        rate = Math.min(maxRate, rate + additiveIncrease * sends / rate);
+    }
+
+    /**
+     * Multiplicative decrease, at most once per cooldown since sends already in flight report
+     * the same overload
+     */
+    public synchronized void onThrottled() {
+        throttleCount++;
+        long now = System.nanoTime();
+        if (now - lastDecreaseNanos < decreaseCooldownNanos) {
+            return;
+        }
+        resync(now);
+        rate = Math.max(minRate, rate * decreaseFactor);
+        storedPermits = 0;
+        lastDecreaseNanos = now;
+    }
+
+    public synchronized double getRate() {
+        return rate;
+    }
+
+    public synchronized long getThrottleCount() {
+        return throttleCount;
+    }
+
+    private void resync(long now) {
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(rate * burstSeconds, storedPermits + (now - nextFreeNanos) / intervalNanos());
+            nextFreeNanos = now;
+        }
+    }
+
+    private double intervalNanos() {
+        return TimeUnit.SECONDS.toNanos(1) / rate;
+    }
+}
@@ -0,0 +1,186 @@
+package com.notificationservice.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Case-insensitive multi-keyword matcher: an Aho-Corasick automaton finds every keyword in one
+ * pass over the text, however many keywords there are, without lower-casing or copying the text.
+ * A keyword can be limited to whole words, i.e. not preceded or followed by a letter, digit or
+ * underscore. Characters are folded one by one with {@link Character#toLowerCase(char)}.
+ * Immutable and thread-safe once built.
+ */
+public final class AhoCorasickMatcher {
+
+    private static final int ROOT = 0;
+
+    /**
+     * Outgoing edges of each state, sorted by character
+     */
+    private final char[][] edgeChars;
+    private final int[][] edgeTargets;
+    private final int[] fail;
+    /**
+     * Nearest state on the failure chain that ends a keyword, or {@code ROOT}
+     */
+    private final int[] outputLink;
+    private final int[][] outputs;
+    private final int[] keywordLengths;
+    private final boolean[] wholeWord;
+    /**
+     * Empty keywords, found in any text
+     */
+    private final int[] emptyKeywords;
+
+    private AhoCorasickMatcher(Builder builder) {
+        int states = builder.transitions.size();
+        edgeChars = new char[states][];
+        edgeTargets = new int[states][];
+        for (int state = 0; state < states; state++) {
+            TreeMap<Character, Integer> edges = builder.transitions.get(state);
+            edgeChars[state] = new char[edges.size()];
+            edgeTargets[state] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                edgeChars[state][i] = edge.getKey();
+                edgeTargets[state][i] = edge.getValue();
+                i++;
+            }
+        }
+        outputs = new int[states][];
+        for (int state = 0; state < states; state++) {
+            List<Integer> ids = builder.outputs.get(state);
+            outputs[state] = ids == null ? null : ids.stream().mapToInt(Integer::intValue).toArray();
+        }
+        keywordLengths = builder.lengths.stream().mapToInt(Integer::intValue).toArray();
+        wholeWord = new boolean[builder.wholeWord.size()];
+        for (int i = 0; i < wholeWord.length; i++) {
+            wholeWord[i] = builder.wholeWord.get(i);
+        }
+        emptyKeywords = builder.emptyKeywords.stream().mapToInt(Integer::intValue).toArray();
+
+        // Breadth first, so the failure target of a state is always resolved before the state
+        fail = new int[states];
+        outputLink = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : edgeTargets[ROOT]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < edgeChars[state].length; i++) {
+                char c = edgeChars[state][i];
+                int child = edgeTargets[state][i];
+                int fallback = fail[state];
+                int next = step(fallback, c);
+                while (next < 0 && fallback != ROOT) {
+                    fallback = fail[fallback];
+                    next = step(fallback, c);
+                }
+                fail[child] = next < 0 ? ROOT : next;
+                outputLink[child] = outputs[fail[child]] != null ? fail[child] : outputLink[fail[child]];
+                queue.add(child);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int size() {
+        return keywordLengths.length;
+    }
+
+    /**
+     * Ids of the keywords that occur in {@code text}
+     */
+    public BitSet findAll(CharSequence text) {
+        BitSet found = new BitSet(keywordLengths.length);
+        for (int id : emptyKeywords) {
+            found.set(id);
+        }
+        int state = ROOT;
+        for (int i = 0; i < text.length(); i++) {
+            char c = Character.toLowerCase(text.charAt(i));
+            int next = step(state, c);
+            while (next < 0 && state != ROOT) {
+                state = fail[state];
+                next = step(state, c);
+            }
+            state = next < 0 ? ROOT : next;
+
+            for (int match = outputs[state] != null ? state : outputLink[state]; match != ROOT;
+                    match = outputLink[match]) {
+                for (int id : outputs[match]) {
+                    if (!wholeWord[id] || isWordBoundary(text, i - keywordLengths[id] + 1, i)) {
+                        found.set(id);
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int step(int state, char c) {
+        int index = Arrays.binarySearch(edgeChars[state], c);
+        return index >= 0 ? edgeTargets[state][index] : -1;
+    }
+
+    private static boolean isWordBoundary(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() - 1 || !isWordChar(text.charAt(end + 1)));
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    public static final class Builder {
+        private final List<TreeMap<Character, Integer>> transitions = new ArrayList<>();
+        private final Map<Integer, List<Integer>> outputs = new HashMap<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<Boolean> wholeWord = new ArrayList<>();
+        private final List<Integer> emptyKeywords = new ArrayList<>();
+
+        private Builder() {
+            transitions.add(new TreeMap<>());
+        }
+
+        /**
+         * Add a keyword; returns its id, the index reported by {@link #findAll}
+         */
+        public int add(String keyword, boolean wholeWordOnly) {
+            int id = lengths.size();
+            lengths.add(keyword.length());
+            wholeWord.add(wholeWordOnly);
+            if (keyword.isEmpty()) {
+                emptyKeywords.add(id);
+                return id;
+            }
+            int state = ROOT;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = Character.toLowerCase(keyword.charAt(i));
+                Integer next = transitions.get(state).get(c);
+                if (next == null) {
+                    next = transitions.size();
+                    transitions.add(new TreeMap<>());
+                    transitions.get(state).put(c, next);
+                }
+                state = next;
+            }
+            outputs.computeIfAbsent(state, key -> new ArrayList<>()).add(id);
+            return id;
+        }
+
+        public AhoCorasickMatcher build() {
+            return new AhoCorasickMatcher(this);
+        }
+    }
+}
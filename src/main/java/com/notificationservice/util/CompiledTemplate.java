@@ -0,0 +1,106 @@
+package com.notificationservice.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Template content parsed once into literal chunks and {@code {{name}}} placeholder slots.
+ * Rendering is a single pass into a pre-sized builder instead of one {@code String.replace}
+ * per variable. Placeholders without a value are kept verbatim, as before.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    /**
+     * {@code literals.length == placeholders.length + 1}; slot i sits between literal i and i + 1
+     */
+    private final String[] literals;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] placeholders, int literalLength) {
+        this.literals = literals;
+        this.placeholders = placeholders;
+        this.literalLength = literalLength;
+    }
+
+    public static CompiledTemplate compile(String content) {
+        if (content == null) {
+            content = "";
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> placeholders = new ArrayList<>();
+
+        int literalStart = 0;
+        while (true) {
+            int open = content.indexOf(OPEN, literalStart);
+            if (open < 0) {
+                break;
+            }
+            int close = content.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                break;
+            }
+            // For runs like "{{{{name}}" the placeholder starts at the last "{{" before the close
+            open = content.lastIndexOf(OPEN, close - OPEN.length());
+
+            literals.add(content.substring(literalStart, open));
+            placeholders.add(content.substring(open + OPEN.length(), close));
+            literalStart = close + CLOSE.length();
+        }
+        literals.add(content.substring(literalStart));
+
+        int literalLength = 0;
+        for (String literal : literals) {
+            literalLength += literal.length();
+        }
+        return new CompiledTemplate(literals.toArray(new String[0]), placeholders.toArray(new String[0]),
+                literalLength);
+    }
+
+    public String render(Map<String, Object> variables) {
+        if (placeholders.length == 0) {
+            return literals[0];
+        }
+        StringBuilder out = new StringBuilder(literalLength + placeholders.length * 16);
+        for (int i = 0; i < placeholders.length; i++) {
+            out.append(literals[i]);
+            String name = placeholders[i];
+            if (variables != null && variables.containsKey(name)) {
+                Object value = variables.get(name);
+                if (value != null) {
+                    out.append(value);
+                }
+            } else {
+                out.append(OPEN).append(name).append(CLOSE);
+            }
+        }
+        out.append(literals[placeholders.length]);
+        return out.toString();
+    }
+
+    /**
+     * Distinct placeholder names in order of first appearance
+     */
+    public Set<String> getVariableNames() {
+        return new LinkedHashSet<>(List.of(placeholders));
+    }
+
+    /**
+     * Placeholders that have no entry in the given variables
+     */
+    public Set<String> findMissingVariables(Map<String, Object> variables) {
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : placeholders) {
+            if (variables == null || !variables.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        return missing;
+    }
+}
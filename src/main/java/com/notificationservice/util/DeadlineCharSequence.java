@@ -0,0 +1,60 @@
+package com.notificationservice.util;
+
+/**
+ * Read-only view of a text that stops a regular expression match once a deadline has passed.
+ * {@link java.util.regex.Matcher} reads its input only through {@link #charAt}, so a pattern
+ * that backtracks catastrophically throws {@link DeadlineExceededException} instead of holding
+ * the thread. The clock is read every {@value #CHECK_INTERVAL} characters to keep the check
+ * off the common path.
+ */
+public final class DeadlineCharSequence implements CharSequence {
+
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence text;
+    private final long deadlineNanos;
+    private int untilCheck = CHECK_INTERVAL;
+
+    /**
+     * @param deadlineNanos {@link System#nanoTime()} after which reading the text fails
+     */
+    public DeadlineCharSequence(CharSequence text, long deadlineNanos) {
+        this.text = text;
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (--untilCheck <= 0) {
+            untilCheck = CHECK_INTERVAL;
+            if (System.nanoTime() - deadlineNanos > 0) {
+                throw new DeadlineExceededException();
+            }
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new DeadlineCharSequence(text.subSequence(start, end), deadlineNanos);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+
+    /**
+     * Thrown when the text is read past the deadline
+     */
+    public static class DeadlineExceededException extends RuntimeException {
+        public DeadlineExceededException() {
+            super("Deadline exceeded while reading text", null, false, false);
+        }
+    }
+}
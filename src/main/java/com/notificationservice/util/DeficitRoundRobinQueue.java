@@ -0,0 +1,153 @@
+package com.notificationservice.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Bounded blocking queue that serves its flows (e.g. users) by deficit round robin: each
+ * flow with queued items gets up to {@code weight} items per round, so one flow with a
+ * large backlog cannot delay the others by more than a round. Items are taken in FIFO
+ * order within a flow.
+ */
+public final class DeficitRoundRobinQueue<T> {
+
+    private final int capacity;
+    private final ToIntFunction<String> weights;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+
+    private final Map<String, Flow<T>> flows = new HashMap<>();
+    /**
+     * Flows with queued items in service order; the head is the flow currently being served
+     */
+    private final ArrayDeque<Flow<T>> active = new ArrayDeque<>();
+    private int size;
+
+    public DeficitRoundRobinQueue(int capacity, ToIntFunction<String> weights) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.weights = weights;
+    }
+
+    /**
+     * Add an item unless the queue is full
+     */
+    public boolean offer(String flowId, T item) {
+        return add(flowId, item, false);
+    }
+
+    /**
+     * Add an item even when the queue is full, for work that already holds a slot
+     * (e.g. the next step of an accepted job)
+     */
+    public void force(String flowId, T item) {
+        add(flowId, item, true);
+    }
+
+    /**
+     * Take the next item, waiting up to the timeout; {@code null} when none arrived
+     */
+    public T poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+
+            Flow<T> flow = active.peekFirst();
+            if (flow.deficit <= 0) {
+                // Start of this flow's turn
+                flow.deficit += Math.max(1, weights.applyAsInt(flow.id));
+            }
+            T item = flow.items.pollFirst();
+            flow.deficit--;
+            size--;
+
+            if (flow.items.isEmpty()) {
+                active.pollFirst();
+                flows.remove(flow.id);
+            } else if (flow.deficit <= 0) {
+                active.addLast(active.pollFirst());
+            }
+            return item;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Free slots left before {@link #offer} starts rejecting
+     */
+    public int remainingCapacity() {
+        lock.lock();
+        try {
+            return Math.max(0, capacity - size);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Number of flows with queued items
+     */
+    public int activeFlows() {
+        lock.lock();
+        try {
+            return active.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean add(String flowId, T item, boolean force) {
+        lock.lock();
+        try {
+            if (!force && size >= capacity) {
+                return false;
+            }
+            Flow<T> flow = flows.get(flowId);
+            if (flow == null) {
+                flow = new Flow<>(flowId);
+                flows.put(flowId, flow);
+                active.addLast(flow);
+            }
+            flow.items.addLast(item);
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Flow<T> {
+        private final String id;
+        private final ArrayDeque<T> items = new ArrayDeque<>();
+        private int deficit;
+
+        Flow(String id) {
+            this.id = id;
+        }
+    }
+}
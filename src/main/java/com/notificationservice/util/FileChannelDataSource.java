@@ -0,0 +1,53 @@
+package com.notificationservice.util;
+
+import jakarta.activation.DataSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only mail {@link DataSource} over a file. Every read opens a fresh {@link FileChannel}
+ * and streams from it, so a message holds only the path until it is written to the wire, and
+ * the same file can back any number of messages at once.
+ */
+public final class FileChannelDataSource implements DataSource {
+
+    private final Path path;
+    private final String name;
+    private final String contentType;
+
+    public FileChannelDataSource(Path path, String name, String contentType) {
+        this.path = path;
+        this.name = name;
+        this.contentType = contentType != null ? contentType : "application/octet-stream";
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return Channels.newInputStream(FileChannel.open(path, StandardOpenOption.READ));
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        throw new IOException("Attachment data source is read-only");
+    }
+
+    @Override
+    public String getContentType() {
+        return contentType;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+}
@@ -0,0 +1,138 @@
+package com.notificationservice.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Hierarchical timing wheel: items are hashed into fixed-size rings of time buckets, and items
+ * too far out for a ring go to a coarser overflow ring that is created on demand. Adding an
+ * item is O(1) and advancing the clock only touches buckets, never individual pending items,
+ * so millions of timers cost one list entry each. Items fire at tick granularity.
+ *
+ * <p>Not thread-safe; callers serialize {@link #add} and {@link #advance}.
+ */
+public final class HierarchicalTimingWheel<T> {
+
+    private final Level<T> root;
+    private int size;
+
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2) {
+            throw new IllegalArgumentException("tickMs must be positive and wheelSize at least 2");
+        }
+        this.root = new Level<>(tickMs, wheelSize, startMs);
+    }
+
+    /**
+     * Schedule an item; returns {@code false} without keeping it when it is already due
+     */
+    public boolean add(long expirationMs, T item) {
+        if (!root.add(new Entry<>(expirationMs, item))) {
+            return false;
+        }
+        size++;
+        return true;
+    }
+
+    /**
+     * Move the clock to {@code nowMs} and return the items that became due, earliest bucket first
+     */
+    public List<T> advance(long nowMs) {
+        root.advanceClock(nowMs);
+
+        // Detach every expired bucket before re-adding, so a re-added entry cannot reuse a
+        // bucket that still holds entries of an earlier round
+        List<Entry<T>> expired = new ArrayList<>();
+        for (Level<T> level = root; level != null; level = level.overflow) {
+            level.drainExpired(nowMs, expired);
+        }
+        expired.sort((a, b) -> Long.compare(a.expirationMs, b.expirationMs));
+
+        List<T> due = new ArrayList<>();
+        for (Entry<T> entry : expired) {
+            // Entries from coarse buckets usually move down a level instead of firing
+            if (!root.add(entry)) {
+                due.add(entry.item);
+                size--;
+            }
+        }
+        return due;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private static final class Entry<T> {
+        private final long expirationMs;
+        private final T item;
+
+        Entry(long expirationMs, T item) {
+            this.expirationMs = expirationMs;
+            this.item = item;
+        }
+    }
+
+    private static final class Bucket<T> {
+        private long expirationMs = -1;
+        private List<Entry<T>> entries = new ArrayList<>();
+    }
+
+    private static final class Level<T> {
+        private final long tickMs;
+        private final int wheelSize;
+        private final long intervalMs;
+        private final Bucket<T>[] buckets;
+        private long currentTime;
+        private Level<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMs, int wheelSize, long startMs) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.intervalMs = tickMs * wheelSize;
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+            this.currentTime = startMs - (startMs % tickMs);
+        }
+
+        boolean add(Entry<T> entry) {
+            long expiration = entry.expirationMs;
+            if (expiration < currentTime + tickMs) {
+                return false;
+            }
+            if (expiration < currentTime + intervalMs) {
+                long virtualId = expiration / tickMs;
+                Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.entries.add(entry);
+                bucket.expirationMs = virtualId * tickMs;
+                return true;
+            }
+            if (overflow == null) {
+                overflow = new Level<>(intervalMs, wheelSize, currentTime);
+            }
+            return overflow.add(entry);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        void drainExpired(long nowMs, List<Entry<T>> into) {
+            for (Bucket<T> bucket : buckets) {
+                if (bucket.expirationMs >= 0 && bucket.expirationMs <= nowMs) {
+                    into.addAll(bucket.entries);
+                    bucket.entries = new ArrayList<>();
+                    bucket.expirationMs = -1;
+                }
+            }
+        }
+    }
+}
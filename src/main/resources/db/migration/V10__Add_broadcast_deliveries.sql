@@ -0,0 +1,14 @@
+-- Per-client outcome of mobile broadcasts. Only exceptions are stored: clients that could not be
+-- reached and clients that acknowledged, so a broadcast costs rows in proportion to its failures.
+CREATE TABLE IF NOT EXISTS broadcast_deliveries (
+    id BIGSERIAL PRIMARY KEY,
+    request_id BIGINT NOT NULL REFERENCES notification_requests(id),
+    client_id VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    error VARCHAR(500),
+    recorded_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT uk_broadcast_deliveries_request_client UNIQUE (request_id, client_id)
+);
+
+COMMENT ON TABLE broadcast_deliveries IS 'Failed and acknowledged deliveries of mobile messages; other recipients count as delivered';
+COMMENT ON COLUMN broadcast_deliveries.status IS 'FAILED or ACKED';
@@ -0,0 +1,11 @@
+-- Priority lane and owning user of a request; outbox workers claim and schedule per lane
+ALTER TABLE notification_requests ADD COLUMN IF NOT EXISTS priority_lane VARCHAR(20) NOT NULL DEFAULT 'TRANSACTIONAL';
+ALTER TABLE notification_requests ADD COLUMN IF NOT EXISTS user_id VARCHAR(100);
+
+-- Backs the per-lane outbox claim; replaces a scan over all open rows ordered by id
+CREATE INDEX IF NOT EXISTS idx_notification_requests_outbox_lane
+    ON notification_requests(priority_lane, id)
+    WHERE channel IS NOT NULL AND status IN ('PENDING', 'PROCESSING');
+
+COMMENT ON COLUMN notification_requests.priority_lane IS 'OTP, TRANSACTIONAL or BULK';
+COMMENT ON COLUMN notification_requests.user_id IS 'userId variable of the request, used for fair scheduling within a lane';
@@ -0,0 +1,17 @@
+-- Requests held back until a send time (sendAt or a DEFER rule). The request row itself stays
+-- SCHEDULED; rows here are loaded into the in-memory timing wheel one time slice ahead.
+CREATE TABLE IF NOT EXISTS scheduled_notifications (
+    id BIGSERIAL PRIMARY KEY,
+    request_id BIGINT NOT NULL UNIQUE REFERENCES notification_requests(id),
+    send_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- Slice loads are range scans on send_at
+CREATE INDEX IF NOT EXISTS idx_scheduled_notifications_send_at ON scheduled_notifications(send_at);
+
+ALTER TABLE notification_requests DROP CONSTRAINT IF EXISTS notification_requests_status_check;
+ALTER TABLE notification_requests ADD CONSTRAINT notification_requests_status_check
+    CHECK (status IN ('SCHEDULED', 'PENDING', 'PROCESSING', 'SENT', 'FAILED'));
+
+COMMENT ON TABLE scheduled_notifications IS 'Pending delayed sends; a row is deleted when its request is released to the outbox';
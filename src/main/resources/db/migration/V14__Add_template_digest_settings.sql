@@ -0,0 +1,9 @@
+-- Digest mode per template: sends of the template to the same recipient within the window are
+-- merged into one message, optionally rendered through another template
+ALTER TABLE notification_templates ADD COLUMN IF NOT EXISTS digest_window_seconds INTEGER;
+ALTER TABLE notification_templates ADD COLUMN IF NOT EXISTS digest_template VARCHAR(255);
+ALTER TABLE notification_templates ADD COLUMN IF NOT EXISTS digest_key VARCHAR(100);
+
+COMMENT ON COLUMN notification_templates.digest_window_seconds IS 'Coalescing window in seconds; NULL sends every message on its own';
+COMMENT ON COLUMN notification_templates.digest_template IS 'Template the merged messages are rendered through';
+COMMENT ON COLUMN notification_templates.digest_key IS 'Variable whose value separates digests of the same recipient';
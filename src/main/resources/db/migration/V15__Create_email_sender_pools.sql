@@ -0,0 +1,22 @@
+-- A sender pool is a logical sender name that spreads sends over several email_senders rows
+CREATE TABLE email_sender_pools (
+    id BIGSERIAL PRIMARY KEY,
+    name VARCHAR(255) NOT NULL UNIQUE,
+    strategy VARCHAR(30) NOT NULL DEFAULT 'WEIGHTED_ROUND_ROBIN'
+        CHECK (strategy IN ('WEIGHTED_ROUND_ROBIN', 'LEAST_OUTSTANDING')),
+    is_active BOOLEAN DEFAULT TRUE,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    modified_at TIMESTAMP,
+    created_by VARCHAR(100),
+    modified_by VARCHAR(100)
+);
+
+CREATE TABLE email_sender_pool_members (
+    pool_id BIGINT NOT NULL REFERENCES email_sender_pools(id) ON DELETE CASCADE,
+    sender_id BIGINT NOT NULL REFERENCES email_senders(id),
+    weight INTEGER NOT NULL DEFAULT 1 CHECK (weight > 0),
+    PRIMARY KEY (pool_id, sender_id)
+);
+
+-- Requests sent through a pool pick their member again on every attempt
+ALTER TABLE notification_requests ADD COLUMN IF NOT EXISTS sender_pool_id BIGINT REFERENCES email_sender_pools(id);
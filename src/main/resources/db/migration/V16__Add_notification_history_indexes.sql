@@ -0,0 +1,9 @@
+-- Keyset pagination of request history, newest first, per recipient and per status
+CREATE INDEX IF NOT EXISTS idx_notification_requests_recipient_history
+    ON notification_requests(recipient, created_at DESC, id DESC);
+
+CREATE INDEX IF NOT EXISTS idx_notification_requests_status_history
+    ON notification_requests(status, created_at DESC, id DESC);
+
+-- Covered by the leading column of the status history index
+DROP INDEX IF EXISTS idx_notification_requests_status;
@@ -0,0 +1,150 @@
+-- Range-partition notification_requests and notification_responses by created_at, one partition
+-- per month, so old months can be archived and dropped instead of deleted row by row and every
+-- index on the send path stays the size of a month. Partitions are named <table>_pYYYY_MM; rows
+-- outside every partition land in <table>_default until their month is created.
+--
+-- A primary key on a partitioned table must include the partition key, so the primary keys
+-- become (id, created_at) and other tables can no longer reference requests by id alone:
+-- their request_id columns keep the value without a foreign key.
+
+ALTER TABLE notification_responses DROP CONSTRAINT IF EXISTS notification_responses_request_id_fkey;
+ALTER TABLE notification_dead_letters DROP CONSTRAINT IF EXISTS notification_dead_letters_request_id_fkey;
+ALTER TABLE broadcast_deliveries DROP CONSTRAINT IF EXISTS broadcast_deliveries_request_id_fkey;
+ALTER TABLE idempotency_keys DROP CONSTRAINT IF EXISTS idempotency_keys_request_id_fkey;
+ALTER TABLE scheduled_notifications DROP CONSTRAINT IF EXISTS scheduled_notifications_request_id_fkey;
+
+ALTER TABLE notification_requests RENAME TO notification_requests_unpartitioned;
+ALTER INDEX notification_requests_pkey RENAME TO notification_requests_unpartitioned_pkey;
+ALTER SEQUENCE notification_requests_id_seq OWNED BY NONE;
+
+ALTER TABLE notification_responses RENAME TO notification_responses_unpartitioned;
+ALTER INDEX notification_responses_pkey RENAME TO notification_responses_unpartitioned_pkey;
+ALTER SEQUENCE notification_responses_id_seq OWNED BY NONE;
+
+CREATE TABLE notification_requests (
+    id BIGINT NOT NULL DEFAULT nextval('notification_requests_id_seq'),
+    template_id BIGINT REFERENCES notification_templates(id),
+    sender_id BIGINT REFERENCES email_senders(id),
+    recipient VARCHAR(255) NOT NULL,
+    subject VARCHAR(500),
+    content TEXT NOT NULL,
+    variables text,
+    status VARCHAR(50) DEFAULT 'PENDING'
+        CONSTRAINT notification_requests_status_check
+        CHECK (status IN ('SCHEDULED', 'PENDING', 'PROCESSING', 'SENT', 'FAILED')),
+    error_message TEXT,
+    sent_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    modified_at TIMESTAMP,
+    created_by VARCHAR(100),
+    modified_by VARCHAR(100),
+    channel VARCHAR(20),
+    attempt_count INTEGER NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP,
+    locked_by VARCHAR(100),
+    locked_until TIMESTAMP,
+    priority_lane VARCHAR(20) NOT NULL DEFAULT 'TRANSACTIONAL',
+    user_id VARCHAR(100),
+    sender_pool_id BIGINT REFERENCES email_sender_pools(id),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE notification_responses (
+    id BIGINT NOT NULL DEFAULT nextval('notification_responses_id_seq'),
+    request_id BIGINT,
+    provider_response_id VARCHAR(255),
+    status VARCHAR(50) NOT NULL,
+    response_data text,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    modified_at TIMESTAMP,
+    created_by VARCHAR(100),
+    modified_by VARCHAR(100),
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE notification_requests_id_seq OWNED BY notification_requests.id;
+ALTER SEQUENCE notification_responses_id_seq OWNED BY notification_responses.id;
+
+CREATE TABLE notification_requests_default PARTITION OF notification_requests DEFAULT;
+CREATE TABLE notification_responses_default PARTITION OF notification_responses DEFAULT;
+
+-- Create the partition of the month containing in_month unless it exists. Rows of that month
+-- already in the default partition are moved into it first, since attaching would otherwise fail.
+-- Called by the partition maintenance job ahead of time; returns whether a partition was created.
+CREATE OR REPLACE FUNCTION ensure_monthly_partition(parent TEXT, in_month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    start_at DATE := date_trunc('month', in_month)::DATE;
+    end_at DATE := (date_trunc('month', in_month) + INTERVAL '1 month')::DATE;
+    partition_name TEXT := parent || '_p' || to_char(start_at, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name, parent);
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE created_at >= %L AND created_at < %L RETURNING *) '
+            'INSERT INTO %I SELECT * FROM moved', parent || '_default', start_at, end_at, partition_name);
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+            parent, partition_name, start_at, end_at);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Months of the existing rows, up to three months ahead
+DO $$
+DECLARE
+    first_month DATE;
+    partition_month DATE;
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(COALESCE(created_at, sent_at)), CURRENT_TIMESTAMP))::DATE
+        INTO first_month FROM notification_requests_unpartitioned;
+    partition_month := first_month;
+    WHILE partition_month <= (date_trunc('month', CURRENT_TIMESTAMP) + INTERVAL '3 months')::DATE LOOP
+        PERFORM ensure_monthly_partition('notification_requests', partition_month);
+        PERFORM ensure_monthly_partition('notification_responses', partition_month);
+        partition_month := (partition_month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END $$;
+
+-- Rows from before the audit columns have no created_at; they are filed under their send time
+INSERT INTO notification_requests (id, template_id, sender_id, recipient, subject, content, variables, status,
+        error_message, sent_at, created_at, modified_at, created_by, modified_by, channel, attempt_count,
+        next_attempt_at, locked_by, locked_until, priority_lane, user_id, sender_pool_id)
+SELECT id, template_id, sender_id, recipient, subject, content, variables, status,
+        error_message, sent_at, COALESCE(created_at, sent_at, CURRENT_TIMESTAMP), modified_at, created_by,
+        modified_by, channel, attempt_count, next_attempt_at, locked_by, locked_until, priority_lane, user_id,
+        sender_pool_id
+FROM notification_requests_unpartitioned;
+
+INSERT INTO notification_responses (id, request_id, provider_response_id, status, response_data, created_at,
+        modified_at, created_by, modified_by)
+SELECT id, request_id, provider_response_id, status, response_data, COALESCE(created_at, CURRENT_TIMESTAMP),
+        modified_at, created_by, modified_by
+FROM notification_responses_unpartitioned;
+
+DROP TABLE notification_responses_unpartitioned;
+DROP TABLE notification_requests_unpartitioned;
+
+-- Indexes are created on every partition, present and future. Updates by id probe the primary
+-- key of each partition, which retention keeps to a bounded number.
+CREATE INDEX idx_notification_requests_created_at ON notification_requests(created_at);
+CREATE INDEX idx_notification_requests_outbox
+    ON notification_requests(status, next_attempt_at, id)
+    WHERE channel IS NOT NULL AND status IN ('PENDING', 'PROCESSING');
+CREATE INDEX idx_notification_requests_outbox_lane
+    ON notification_requests(priority_lane, id)
+    WHERE channel IS NOT NULL AND status IN ('PENDING', 'PROCESSING');
+CREATE INDEX idx_notification_requests_retry
+    ON notification_requests(next_attempt_at)
+    WHERE status = 'FAILED' AND next_attempt_at IS NOT NULL;
+CREATE INDEX idx_notification_requests_recipient_history
+    ON notification_requests(recipient, created_at DESC, id DESC);
+CREATE INDEX idx_notification_requests_status_history
+    ON notification_requests(status, created_at DESC, id DESC);
+CREATE INDEX idx_notification_responses_request_id ON notification_responses(request_id);
+
+COMMENT ON COLUMN notification_requests.channel IS 'Delivery channel: EMAIL, WHATSAPP';
+COMMENT ON COLUMN notification_requests.locked_by IS 'Dispatch worker currently holding the row';
+COMMENT ON COLUMN notification_requests.locked_until IS 'Lease expiry after which another worker may reclaim the row';
+COMMENT ON COLUMN notification_requests.priority_lane IS 'OTP, TRANSACTIONAL or BULK';
+COMMENT ON COLUMN notification_requests.user_id IS 'userId variable of the request, used for fair scheduling within a lane';
+COMMENT ON TABLE notification_requests IS 'Partitioned by month of created_at; old months are archived and dropped';
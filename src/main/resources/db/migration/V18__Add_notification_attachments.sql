@@ -0,0 +1,4 @@
+-- Stored files attached to an email; kept on the request so queued sends and retries attach them too
+ALTER TABLE notification_requests ADD COLUMN IF NOT EXISTS attachment_file_ids VARCHAR(1000);
+
+COMMENT ON COLUMN notification_requests.attachment_file_ids IS 'Comma-separated file_storage ids, access checked when the request was made';
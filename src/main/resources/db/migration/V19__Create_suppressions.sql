@@ -0,0 +1,25 @@
+-- Recipients that must not be sent to (bounced, complained, unsubscribed), per channel. Removing
+-- an entry marks it deleted so every node's in-memory copy sees the change through changed_at.
+CREATE TABLE IF NOT EXISTS suppressions (
+    id BIGSERIAL PRIMARY KEY,
+    channel VARCHAR(20) NOT NULL,
+    recipient VARCHAR(255) NOT NULL,
+    reason VARCHAR(30) NOT NULL
+        CONSTRAINT suppressions_reason_check
+        CHECK (reason IN ('BOUNCED', 'COMPLAINED', 'UNSUBSCRIBED', 'MANUAL')),
+    expires_at TIMESTAMP,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    changed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_by VARCHAR(100),
+    modified_by VARCHAR(100),
+    CONSTRAINT uk_suppressions_channel_recipient UNIQUE (channel, recipient)
+);
+
+-- Backs the delta sync of the in-memory suppression set
+CREATE INDEX IF NOT EXISTS idx_suppressions_changed_at ON suppressions(changed_at);
+
+COMMENT ON TABLE suppressions IS 'Recipients excluded from sends, per channel';
+COMMENT ON COLUMN suppressions.recipient IS 'Normalized address: lower-case email, or phone number without separators';
+COMMENT ON COLUMN suppressions.expires_at IS 'Entry stops applying after this time; NULL never expires';
+COMMENT ON COLUMN suppressions.changed_at IS 'Last insert, update or removal, read by the delta sync of every node';
@@ -0,0 +1,28 @@
+-- Sends per user in fixed time buckets, the shared state behind FREQUENCY_BASED rules. Every
+-- node adds its own counts with an upsert; a rule sums the buckets of its sliding window.
+CREATE TABLE IF NOT EXISTS user_frequency_counters (
+    user_id VARCHAR(255) NOT NULL,
+    bucket_start TIMESTAMP NOT NULL,
+    sent_count BIGINT NOT NULL DEFAULT 0,
+    last_sent_at TIMESTAMP NOT NULL,
+    PRIMARY KEY (user_id, bucket_start)
+);
+
+-- Backs the purge of buckets that left every window
+CREATE INDEX IF NOT EXISTS idx_user_frequency_counters_bucket_start ON user_frequency_counters(bucket_start);
+
+-- Budget taken by sends admitted but not yet counted, used in RESERVE mode
+CREATE TABLE IF NOT EXISTS user_frequency_reservations (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    reserved_at TIMESTAMP NOT NULL,
+    expires_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_frequency_reservations_user ON user_frequency_reservations(user_id, reserved_at);
+CREATE INDEX IF NOT EXISTS idx_user_frequency_reservations_expires_at ON user_frequency_reservations(expires_at);
+
+COMMENT ON TABLE user_frequency_counters IS 'Notifications sent per user and time bucket, summed over a sliding window';
+COMMENT ON COLUMN user_frequency_counters.bucket_start IS 'Start of the bucket, truncated to notification.frequency-counters.bucket-minutes';
+COMMENT ON COLUMN user_frequency_counters.last_sent_at IS 'Latest send counted in the bucket, for minimum intervals';
+COMMENT ON TABLE user_frequency_reservations IS 'Sends admitted against a frequency limit and not yet counted';
@@ -0,0 +1,30 @@
+-- Progress of bulk email jobs, updated as each chunk finishes, so it survives restarts and any
+-- node can report it. The recipients themselves are only kept in memory by the node running
+-- the job; their notification_requests rows are written before each chunk is sent.
+CREATE TABLE IF NOT EXISTS bulk_email_jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    sender_name VARCHAR(255),
+    template_name VARCHAR(255),
+    worker_id VARCHAR(100) NOT NULL,
+    status VARCHAR(20) NOT NULL DEFAULT 'QUEUED'
+        CONSTRAINT bulk_email_jobs_status_check
+        CHECK (status IN ('QUEUED', 'IN_PROGRESS', 'COMPLETED', 'INTERRUPTED')),
+    total INTEGER NOT NULL,
+    processed INTEGER NOT NULL DEFAULT 0,
+    sent INTEGER NOT NULL DEFAULT 0,
+    failed INTEGER NOT NULL DEFAULT 0,
+    deferred INTEGER NOT NULL DEFAULT 0,
+    error_message TEXT,
+    submitted_at TIMESTAMP NOT NULL,
+    completed_at TIMESTAMP,
+    created_by VARCHAR(100)
+);
+
+-- Backs marking a restarted worker's unfinished jobs and the purge of finished ones
+CREATE INDEX IF NOT EXISTS idx_bulk_email_jobs_worker_status ON bulk_email_jobs(worker_id, status);
+CREATE INDEX IF NOT EXISTS idx_bulk_email_jobs_completed_at ON bulk_email_jobs(completed_at);
+
+COMMENT ON TABLE bulk_email_jobs IS 'Bulk email jobs and their progress, per chunk processed';
+COMMENT ON COLUMN bulk_email_jobs.worker_id IS 'Outbox worker id of the node running the job';
+COMMENT ON COLUMN bulk_email_jobs.processed IS 'Recipients whose chunk has finished, whatever the outcome';
+COMMENT ON COLUMN bulk_email_jobs.deferred IS 'Recipients handed to the outbox to be sent later';
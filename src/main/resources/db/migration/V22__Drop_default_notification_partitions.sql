@@ -0,0 +1,40 @@
+-- Retention detaches old months with DETACH PARTITION ... CONCURRENTLY, so that archiving never
+-- holds an exclusive lock on notification_requests or notification_responses. Postgres does not
+-- allow that while a table has a default partition. Rows that landed in a default partition get
+-- a partition of their own month first; maintenance keeps months-ahead partitions created, so new
+-- rows always have one.
+
+DO $$
+DECLARE
+    row_month DATE;
+BEGIN
+    FOR row_month IN
+        SELECT date_trunc('month', created_at)::DATE FROM notification_requests_default
+        UNION
+        SELECT date_trunc('month', created_at)::DATE FROM notification_responses_default
+    LOOP
+        PERFORM ensure_monthly_partition('notification_requests', row_month);
+        PERFORM ensure_monthly_partition('notification_responses', row_month);
+    END LOOP;
+END $$;
+
+DROP TABLE notification_requests_default;
+DROP TABLE notification_responses_default;
+
+-- Same as in V17, without the move out of the default partition
+CREATE OR REPLACE FUNCTION ensure_monthly_partition(parent TEXT, in_month DATE) RETURNS BOOLEAN AS $$
+DECLARE
+    start_at DATE := date_trunc('month', in_month)::DATE;
+    end_at DATE := (date_trunc('month', in_month) + INTERVAL '1 month')::DATE;
+    partition_name TEXT := parent || '_p' || to_char(start_at, 'YYYY_MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+            partition_name, parent, start_at, end_at);
+    RETURN TRUE;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMENT ON TABLE notification_requests IS 'Partitioned by month of created_at, without a default partition; old months are archived and dropped';
@@ -0,0 +1,12 @@
+-- The delta sync read rows by changed_at, the start time of the writing transaction, so a
+-- transaction running longer than the sync overlap committed rows behind the watermark and other
+-- nodes never saw them. Each change now records the id of its transaction; a sync reads the rows
+-- whose transaction was not yet visible in the snapshot the previous sync took, which covers
+-- every commit in between however long the transaction ran.
+ALTER TABLE suppressions ADD COLUMN change_xid XID8 NOT NULL DEFAULT pg_current_xact_id();
+
+CREATE INDEX IF NOT EXISTS idx_suppressions_change_xid ON suppressions(change_xid);
+DROP INDEX IF EXISTS idx_suppressions_changed_at;
+
+COMMENT ON COLUMN suppressions.changed_at IS 'Last insert, update or removal';
+COMMENT ON COLUMN suppressions.change_xid IS 'Transaction of the last insert, update or removal, read by the delta sync of every node';
@@ -0,0 +1,5 @@
+-- Bulk email submissions are idempotent too; their key records the job they started
+ALTER TABLE idempotency_keys ADD COLUMN IF NOT EXISTS job_id VARCHAR(36);
+
+COMMENT ON TABLE idempotency_keys IS 'Claimed idempotency keys; request_id and job_id stay NULL while the first call is in flight';
+COMMENT ON COLUMN idempotency_keys.job_id IS 'Bulk email job started by the first call, for bulk submissions';
@@ -0,0 +1,9 @@
+-- A message held for a digest ends as DIGESTED, pointing at the request that delivered it,
+-- instead of SENT: it was never sent on its own
+ALTER TABLE notification_requests ADD COLUMN IF NOT EXISTS digest_request_id BIGINT;
+
+ALTER TABLE notification_requests DROP CONSTRAINT IF EXISTS notification_requests_status_check;
+ALTER TABLE notification_requests ADD CONSTRAINT notification_requests_status_check
+    CHECK (status IN ('SCHEDULED', 'PENDING', 'PROCESSING', 'SENT', 'FAILED', 'DIGESTED'));
+
+COMMENT ON COLUMN notification_requests.digest_request_id IS 'Digest request that delivered this held message';
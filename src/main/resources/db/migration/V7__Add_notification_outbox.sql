@@ -0,0 +1,21 @@
+-- Outbox columns used by the asynchronous dispatch workers
+ALTER TABLE notification_requests
+ADD COLUMN IF NOT EXISTS channel VARCHAR(20),
+ADD COLUMN IF NOT EXISTS attempt_count INTEGER NOT NULL DEFAULT 0,
+ADD COLUMN IF NOT EXISTS next_attempt_at TIMESTAMP,
+ADD COLUMN IF NOT EXISTS locked_by VARCHAR(100),
+ADD COLUMN IF NOT EXISTS locked_until TIMESTAMP;
+
+-- Allow the PROCESSING state held while a worker owns a row
+ALTER TABLE notification_requests DROP CONSTRAINT IF EXISTS notification_requests_status_check;
+ALTER TABLE notification_requests ADD CONSTRAINT notification_requests_status_check
+    CHECK (status IN ('PENDING', 'PROCESSING', 'SENT', 'FAILED'));
+
+-- Partial index backing the SKIP LOCKED claim query
+CREATE INDEX IF NOT EXISTS idx_notification_requests_outbox
+    ON notification_requests(status, next_attempt_at, id)
+    WHERE channel IS NOT NULL AND status IN ('PENDING', 'PROCESSING');
+
+COMMENT ON COLUMN notification_requests.channel IS 'Delivery channel: EMAIL, WHATSAPP';
+COMMENT ON COLUMN notification_requests.locked_by IS 'Dispatch worker currently holding the row';
+COMMENT ON COLUMN notification_requests.locked_until IS 'Lease expiry after which another worker may reclaim the row';
@@ -0,0 +1,6 @@
+-- Hand out notification ids in blocks of 50 so Hibernate can assign ids without a
+-- round trip per row and keep JDBC insert batching enabled (pooled-lo optimizer).
+-- Plain inserts relying on the column DEFAULT still get unique ids: every nextval
+-- call reserves a whole block for its caller.
+ALTER SEQUENCE notification_requests_id_seq INCREMENT BY 50;
+ALTER SEQUENCE notification_responses_id_seq INCREMENT BY 50;
@@ -0,0 +1,25 @@
+-- Requests that exhausted their delivery attempts (or failed permanently)
+CREATE TABLE IF NOT EXISTS notification_dead_letters (
+    id BIGSERIAL PRIMARY KEY,
+    request_id BIGINT NOT NULL REFERENCES notification_requests(id),
+    channel VARCHAR(20),
+    recipient VARCHAR(255) NOT NULL,
+    attempt_count INTEGER NOT NULL,
+    last_error TEXT,
+    requeued_at TIMESTAMP,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    modified_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    created_by VARCHAR(100),
+    modified_by VARCHAR(100)
+);
+
+CREATE INDEX IF NOT EXISTS idx_notification_dead_letters_request_id ON notification_dead_letters(request_id);
+CREATE INDEX IF NOT EXISTS idx_notification_dead_letters_created_at ON notification_dead_letters(created_at);
+
+-- Backs the retry scheduler that moves due FAILED rows back to PENDING
+CREATE INDEX IF NOT EXISTS idx_notification_requests_retry
+    ON notification_requests(next_attempt_at)
+    WHERE status = 'FAILED' AND next_attempt_at IS NOT NULL;
+
+COMMENT ON TABLE notification_dead_letters IS 'Notification requests that will not be retried automatically';
+COMMENT ON COLUMN notification_dead_letters.requeued_at IS 'Set when the request was manually put back into the outbox';
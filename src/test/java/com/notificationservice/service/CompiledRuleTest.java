@@ -0,0 +1,287 @@
+package com.notificationservice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.notificationservice.dto.NotificationRuleDto;
+import com.notificationservice.entity.NotificationRule;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiled rules must decide exactly as the JSON-walking evaluator they replaced did
+ */
+class CompiledRuleTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void blockedKeywordsMatchCaseInsensitiveSubstrings() throws Exception {
+        NotificationRule rule = contentRule("{\"blockedKeywords\": [\"Lottery\", \"WIN\"]}");
+
+        assertFalse(matches(rule, "You won the LOTTERY", null));
+        assertFalse(matches(rule, "winner", null));
+        assertTrue(matches(rule, "Your order has shipped", null));
+    }
+
+    @Test
+    void requiredKeywordsNeedAnyOne() throws Exception {
+        NotificationRule rule = contentRule("{\"requiredKeywords\": [\"order\", \"invoice\"]}");
+
+        assertTrue(matches(rule, "Your INVOICE is ready", null));
+        assertFalse(matches(rule, "Hello there", null));
+    }
+
+    @Test
+    void wholeWordKeywordsIgnoreLongerWords() throws Exception {
+        NotificationRule rule = contentRule("{\"blockedKeywords\": [\"win\"], \"wholeWords\": true}");
+
+        assertTrue(matches(rule, "the winner is", null));
+        assertFalse(matches(rule, "you win!", null));
+    }
+
+    @Test
+    void maxContentLengthIsInclusive() throws Exception {
+        NotificationRule rule = contentRule("{\"maxContentLength\": 5}");
+
+        assertTrue(matches(rule, "12345", null));
+        assertFalse(matches(rule, "123456", null));
+    }
+
+    @Test
+    void contentChecksFailWithoutContent() throws Exception {
+        assertFalse(matches(contentRule("{\"blockedKeywords\": [\"x\"]}"), null, null));
+        assertTrue(matches(contentRule("{\"variableConditions\": {}}"), null, null));
+    }
+
+    @Test
+    void missingConditionsAlwaysApply() {
+        NotificationRule rule = rule(NotificationRule.RuleType.CONTENT_BASED);
+
+        assertTrue(matches(rule, "anything", null));
+        rule.setRuleType(NotificationRule.RuleType.COMPOSITE);
+        assertTrue(matches(rule, "anything", null));
+    }
+
+    @Test
+    void patternsMustMatchNoneBlockedAndOneRequired() throws Exception {
+        NotificationRule rule = contentRule(
+                "{\"blockedPatterns\": [\"\\\\d{16}\"], \"requiredPatterns\": [\"^Dear \", \"^Hi \"]}");
+
+        assertTrue(matches(rule, "Hi Ann, your code is 1234", null));
+        assertFalse(matches(rule, "Hi Ann, card 1234567812345678", null));
+        assertFalse(matches(rule, "Hello Ann", null));
+    }
+
+    @Test
+    void invalidPatternNeverApplies() throws Exception {
+        assertFalse(matches(contentRule("{\"requiredPatterns\": [\"(unclosed\"]}"), "(unclosed", null));
+    }
+
+    @Test
+    void variableConditionsCheckEveryField() throws Exception {
+        NotificationRule rule = contentRule("{\"variableConditions\": {"
+                + "\"tier\": {\"equals\": \"gold\"},"
+                + "\"country\": {\"notEquals\": \"XX\"},"
+                + "\"email\": {\"contains\": \"@\", \"minLength\": 5, \"maxLength\": 20}}}");
+        Map<String, Object> variables = new HashMap<>(Map.of("tier", "gold", "country", "DE", "email", "a@b.de"));
+
+        assertTrue(matches(rule, "text", variables));
+        variables.put("country", "XX");
+        assertFalse(matches(rule, "text", variables));
+        variables.put("country", "DE");
+        variables.put("email", "a@b");
+        assertFalse(matches(rule, "text", variables));
+        variables.remove("tier");
+        variables.put("email", "a@b.de");
+        assertFalse(matches(rule, "text", variables));
+    }
+
+    @Test
+    void variableConditionsAreSkippedWithoutVariables() throws Exception {
+        NotificationRule rule = contentRule("{\"variableConditions\": {\"tier\": {\"equals\": \"gold\"}}}");
+
+        assertTrue(matches(rule, "text", null));
+    }
+
+    @Test
+    void timeWindowChecksDaysAndTimeInRuleZone() {
+        NotificationRule rule = rule(NotificationRule.RuleType.TIME_BASED);
+        rule.setTimezone("UTC");
+        rule.setStartTime(LocalTime.MIN);
+        rule.setEndTime(LocalTime.MAX);
+        rule.setDaysOfWeek(EnumSet.allOf(DayOfWeek.class));
+        assertTrue(matches(rule, null, null));
+
+        DayOfWeek today = ZonedDateTime.now(ZoneOffset.UTC).getDayOfWeek();
+        rule.setDaysOfWeek(EnumSet.complementOf(EnumSet.of(today)));
+        assertFalse(matches(rule, null, null));
+    }
+
+    @Test
+    void invalidTimeZoneNeverApplies() {
+        NotificationRule rule = rule(NotificationRule.RuleType.TIME_BASED);
+        rule.setTimezone("Not/AZone");
+
+        assertFalse(matches(rule, null, null));
+    }
+
+    @Test
+    void frequencyLimitsComeFromContext() {
+        NotificationRule rule = rule(NotificationRule.RuleType.FREQUENCY_BASED);
+        assertTrue(matches(rule, null, null, false));
+
+        rule.setMaxNotificationsPerDay(3);
+        assertTrue(matches(rule, null, null, true));
+        assertFalse(matches(rule, null, null, false));
+    }
+
+    @Test
+    void ruleSetKnowsWhetherItChecksFrequencyLimits() {
+        NotificationRule rule = rule(NotificationRule.RuleType.FREQUENCY_BASED);
+        assertFalse(ruleSet(rule).hasFrequencyLimits());
+
+        rule.setMinIntervalMinutes(10);
+        assertTrue(ruleSet(rule).hasFrequencyLimits());
+
+        rule.setRuleType(NotificationRule.RuleType.CONTENT_BASED);
+        assertFalse(ruleSet(rule).hasFrequencyLimits());
+    }
+
+    @Test
+    void compositeRequiresAllPartsByDefault() throws Exception {
+        NotificationRule rule = contentRule("{\"frequencyBased\": {}, \"contentBased\": {},"
+                + " \"blockedKeywords\": [\"spam\"]}");
+        rule.setRuleType(NotificationRule.RuleType.COMPOSITE);
+        rule.setMaxNotificationsPerDay(1);
+
+        assertTrue(matches(rule, "hello", null, true));
+        assertFalse(matches(rule, "hello", null, false));
+        assertFalse(matches(rule, "spam", null, true));
+    }
+
+    @Test
+    void compositeAnyTreatsAbsentPartsAsMet() throws Exception {
+        NotificationRule rule = contentRule("{\"requireAll\": false, \"contentBased\": {},"
+                + " \"blockedKeywords\": [\"spam\"]}");
+        rule.setRuleType(NotificationRule.RuleType.COMPOSITE);
+
+        // The time and frequency parts are absent and count as met, so the rule applies
+        assertTrue(matches(rule, "spam", null));
+    }
+
+    @Test
+    void compositeAnyNeedsOnePartWhenAllArePresent() throws Exception {
+        NotificationRule rule = contentRule("{\"requireAll\": false, \"timeBased\": {}, \"frequencyBased\": {},"
+                + " \"contentBased\": {}, \"blockedKeywords\": [\"spam\"]}");
+        rule.setRuleType(NotificationRule.RuleType.COMPOSITE);
+        rule.setTimezone("UTC");
+        rule.setDaysOfWeek(EnumSet.complementOf(EnumSet.of(ZonedDateTime.now(ZoneOffset.UTC).getDayOfWeek())));
+        rule.setMaxNotificationsPerDay(1);
+
+        assertFalse(matches(rule, "spam", null, false));
+        assertTrue(matches(rule, "hello", null, false));
+        assertTrue(matches(rule, "spam", null, true));
+    }
+
+    @Test
+    void actionTypesMapToActions() {
+        NotificationRule rule = rule(NotificationRule.RuleType.CONTENT_BASED);
+        assertEquals(CompiledRule.Action.SEND, compile(rule).getAction());
+        rule.setActionType("BLOCK");
+        assertEquals(CompiledRule.Action.BLOCK, compile(rule).getAction());
+        rule.setActionType("DIGEST");
+        rule.setActionConfig(objectMapper.createObjectNode().put("windowSeconds", 60));
+        assertEquals(CompiledRule.Action.DIGEST, compile(rule).getAction());
+        assertNotNull(compile(rule).getDigest());
+        rule.setActionType(null);
+        assertEquals(CompiledRule.Action.SEND, compile(rule).getAction());
+    }
+
+    @Test
+    void deferWaitsForNextWindowOfTimeBasedRules() {
+        NotificationRule rule = rule(NotificationRule.RuleType.TIME_BASED);
+        rule.setActionType("DEFER");
+        rule.setTimezone("UTC");
+        rule.setDaysOfWeek(EnumSet.allOf(DayOfWeek.class));
+        assertNull(compile(rule).deferUntil());
+
+        rule.setDaysOfWeek(EnumSet.complementOf(EnumSet.of(ZonedDateTime.now(ZoneOffset.UTC).getDayOfWeek())));
+        assertNotNull(compile(rule).deferUntil());
+
+        rule.setRuleType(NotificationRule.RuleType.CONTENT_BASED);
+        assertNull(compile(rule).deferUntil());
+    }
+
+    private NotificationRule contentRule(String conditions) throws Exception {
+        NotificationRule rule = rule(NotificationRule.RuleType.CONTENT_BASED);
+        rule.setConditions(objectMapper.readTree(conditions));
+        return rule;
+    }
+
+    private static NotificationRule rule(NotificationRule.RuleType type) {
+        NotificationRule rule = new NotificationRule();
+        rule.setId(1L);
+        rule.setName("test-rule");
+        rule.setUserId("user-1");
+        rule.setRuleType(type);
+        rule.setNotificationType(NotificationRule.NotificationType.EMAIL);
+        return rule;
+    }
+
+    private static CompiledRule compile(NotificationRule rule) {
+        CompiledRuleSet.Compiler compiler = new CompiledRuleSet.Compiler(Pattern::compile, 1000);
+        return CompiledRule.compile(rule, new NotificationRuleDto(), compiler);
+    }
+
+    private static CompiledRuleSet ruleSet(NotificationRule rule) {
+        CompiledRuleSet.Compiler compiler = new CompiledRuleSet.Compiler(Pattern::compile, 1000);
+        return compiler.add(CompiledRule.compile(rule, new NotificationRuleDto(), compiler)).build();
+    }
+
+    private static boolean matches(NotificationRule rule, String content, Map<String, Object> variables) {
+        return matches(rule, content, variables, true);
+    }
+
+    private static boolean matches(NotificationRule rule, String content, Map<String, Object> variables,
+            boolean withinLimits) {
+        CompiledRuleSet.Compiler compiler = new CompiledRuleSet.Compiler(Pattern::compile, 1000);
+        CompiledRule compiled = CompiledRule.compile(rule, new NotificationRuleDto(), compiler);
+        CompiledRuleSet ruleSet = compiler.add(compiled).build();
+        BitSet keywords = ruleSet.findKeywords(content);
+        return compiled.matches(new CompiledRule.Context() {
+            @Override
+            public String content() {
+                return content;
+            }
+
+            @Override
+            public boolean containsKeyword(int keywordId) {
+                return keywords.get(keywordId);
+            }
+
+            @Override
+            public Map<String, Object> variables() {
+                return variables;
+            }
+
+            @Override
+            public boolean withinFrequencyLimits(Integer maxPerDay, Integer minIntervalMinutes) {
+                return withinLimits;
+            }
+        });
+    }
+}
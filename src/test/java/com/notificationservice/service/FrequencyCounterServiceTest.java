@@ -0,0 +1,225 @@
+package com.notificationservice.service;
+
+import com.notificationservice.config.FrequencyCounterProperties;
+import com.notificationservice.dto.FrequencyUsageDto;
+import com.notificationservice.repository.UserFrequencyCounterRepository;
+import com.notificationservice.repository.UserFrequencyCounterRepository.BucketDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Sends must land in the bucket of their minute, be flushed exactly once, and count towards
+ * the limits until the shared counts include them
+ */
+class FrequencyCounterServiceTest {
+
+    private static final LocalDateTime TEN = LocalDateTime.of(2026, 3, 2, 10, 0);
+
+    private final UserFrequencyCounterRepository repository = mock(UserFrequencyCounterRepository.class);
+    private final FrequencyCounterProperties properties = new FrequencyCounterProperties();
+    private FrequencyCounterService service;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBucketMinutes(15);
+        properties.setWindowMinutes(60);
+        service = new FrequencyCounterService(repository, properties, mock(PlatformTransactionManager.class));
+        service.init();
+        when(repository.findUsage(any(), any(), any(), anyLong()))
+                .thenAnswer(invocation -> new FrequencyUsageDto(invocation.getArgument(0), 0, null));
+    }
+
+    @Test
+    void sendsOfOneBucketFlushAsOneDelta() {
+        service.record("user-1", TEN.plusMinutes(1));
+        service.record("user-1", TEN.plusMinutes(14).plusSeconds(59));
+
+        List<BucketDelta> deltas = flushed();
+        assertEquals(1, deltas.size());
+        assertDelta(deltas.get(0), "user-1", TEN, 2);
+        assertEquals(TEN.plusMinutes(14).plusSeconds(59), deltas.get(0).getLastSentAt());
+    }
+
+    @Test
+    void bucketStartsOnItsBoundary() {
+        service.record("user-1", TEN.minusSeconds(1));
+        service.record("user-1", TEN);
+        service.record("user-1", TEN.plusMinutes(15));
+
+        List<BucketDelta> deltas = flushed();
+        assertEquals(3, deltas.size());
+        assertDelta(deltas.get(0), "user-1", TEN.minusMinutes(15), 1);
+        assertDelta(deltas.get(1), "user-1", TEN, 1);
+        assertDelta(deltas.get(2), "user-1", TEN.plusMinutes(15), 1);
+    }
+
+    @Test
+    void bucketsAlignToTheClockNotToTheFirstSend() {
+        properties.setBucketMinutes(60);
+        service.record("user-1", TEN.plusMinutes(59));
+        service.record("user-1", TEN.plusMinutes(61));
+
+        List<BucketDelta> deltas = flushed();
+        assertDelta(deltas.get(0), "user-1", TEN, 1);
+        assertDelta(deltas.get(1), "user-1", TEN.plusHours(1), 1);
+    }
+
+    @Test
+    void nonPositiveBucketSizeCountsPerMinute() {
+        properties.setBucketMinutes(0);
+        service.record("user-1", TEN.plusSeconds(30));
+        service.record("user-1", TEN.plusMinutes(1));
+
+        List<BucketDelta> deltas = flushed();
+        assertDelta(deltas.get(0), "user-1", TEN, 1);
+        assertDelta(deltas.get(1), "user-1", TEN.plusMinutes(1), 1);
+    }
+
+    @Test
+    void deltasAreOrderedByUserThenBucket() {
+        service.record("user-b", TEN.plusMinutes(20));
+        service.record("user-a", TEN.plusMinutes(20));
+        service.record("user-b", TEN);
+
+        List<BucketDelta> deltas = flushed();
+        assertDelta(deltas.get(0), "user-a", TEN.plusMinutes(15), 1);
+        assertDelta(deltas.get(1), "user-b", TEN, 1);
+        assertDelta(deltas.get(2), "user-b", TEN.plusMinutes(15), 1);
+    }
+
+    @Test
+    void flushedSendsAreNotFlushedAgain() {
+        service.record("user-1", TEN);
+        service.flush();
+        service.flush();
+
+        verify(repository, times(1)).addAll(any(), anyInt());
+    }
+
+    @Test
+    void failedFlushKeepsTheSendsForTheNextOne() {
+        doThrow(new IllegalStateException("connection lost")).doNothing()
+                .when(repository).addAll(any(), anyInt());
+        service.record("user-1", TEN);
+        service.flush();
+
+        service.record("user-1", TEN.plusMinutes(1));
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BucketDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository, times(2)).addAll(captor.capture(), anyInt());
+        List<BucketDelta> retried = captor.getAllValues().get(1);
+        assertEquals(1, retried.size());
+        assertDelta(retried.get(0), "user-1", TEN, 2);
+    }
+
+    @Test
+    void reserveModeReleasesOneReservationPerSend() {
+        properties.setMode(FrequencyCounterProperties.Mode.RESERVE);
+        service.record("user-1", TEN);
+        service.record("user-1", TEN.plusMinutes(20));
+        service.flush();
+
+        verify(repository).releaseAll(eq(Map.of("user-1", 2L)), anyInt());
+    }
+
+    @Test
+    void localModeReleasesNothing() {
+        service.record("user-1", TEN);
+        service.flush();
+
+        verify(repository, never()).releaseAll(anyMap(), anyInt());
+    }
+
+    @Test
+    void unflushedSendsCountTowardsUsage() {
+        LocalDateTime sentAt = LocalDateTime.now().withNano(0);
+        service.record("user-1", sentAt);
+        service.record("user-1", sentAt);
+
+        FrequencyUsageDto usage = service.getUsage("user-1");
+        assertEquals(2, usage.getCount());
+        assertEquals(sentAt, usage.getLastSentAt());
+    }
+
+    @Test
+    void sendsBeforeTheWindowDoNotCount() {
+        service.record("user-1", LocalDateTime.now().minusHours(2));
+
+        assertEquals(0, service.getUsage("user-1").getCount());
+    }
+
+    @Test
+    void limitsIncludeUnflushedSends() {
+        when(repository.findUsage(eq("user-1"), any(), any(), anyLong()))
+                .thenReturn(new FrequencyUsageDto("user-1", 1, null));
+        assertTrue(service.isWithinLimits("user-1", 2, null));
+
+        service.record("user-1", LocalDateTime.now());
+        assertFalse(service.isWithinLimits("user-1", 2, null));
+        assertFalse(service.isWithinLimits("user-1", null, 5));
+        assertTrue(service.isWithinLimits("other-user", 2, 5));
+    }
+
+    @Test
+    void flushMovesSendsIntoCachedCountsWithoutAReload() {
+        assertEquals(0, service.getUsage("user-1").getCount());
+
+        service.record("user-1", LocalDateTime.now());
+        service.flush();
+
+        assertEquals(1, service.getUsage("user-1").getCount());
+        verify(repository, times(1)).findUsage(eq("user-1"), any(), any(), anyLong());
+    }
+
+    @Test
+    void preloadReadsAllUsersInOneQuery() {
+        when(repository.findUsageAll(any(), any(), any()))
+                .thenReturn(Map.of("user-1", new FrequencyUsageDto("user-1", 2, null)));
+        service.preload(List.of("user-1", "user-2"));
+
+        assertFalse(service.isWithinLimits("user-1", 2, null));
+        assertTrue(service.isWithinLimits("user-2", 1, null));
+        verify(repository, never()).findUsage(any(), any(), any(), anyLong());
+
+        // Counts read within the refresh interval are not read again
+        service.preload(List.of("user-1", "user-2"));
+        verify(repository, times(1)).findUsageAll(any(), any(), any());
+    }
+
+    private List<BucketDelta> flushed() {
+        service.flush();
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<BucketDelta>> captor = ArgumentCaptor.forClass(List.class);
+        verify(repository).addAll(captor.capture(), anyInt());
+        return captor.getValue();
+    }
+
+    private static void assertDelta(BucketDelta delta, String userId, LocalDateTime bucketStart, long count) {
+        assertEquals(userId, delta.getUserId());
+        assertEquals(bucketStart, delta.getBucketStart());
+        assertEquals(count, delta.getCount());
+    }
+}
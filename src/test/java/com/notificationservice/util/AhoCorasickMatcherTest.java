@@ -0,0 +1,135 @@
+package com.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.BitSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * One pass must report every keyword a per-keyword substring search would find
+ */
+class AhoCorasickMatcherTest {
+
+    @Test
+    void idsFollowTheOrderKeywordsWereAdded() {
+        AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+        assertEquals(0, builder.add("spam", false));
+        assertEquals(1, builder.add("offer", false));
+        assertEquals(2, builder.add("spam", true));
+
+        assertEquals(3, builder.build().size());
+    }
+
+    @Test
+    void findsEveryKeywordInOnePass() {
+        AhoCorasickMatcher matcher = matcher(false, "lottery", "win", "prize");
+
+        assertEquals(found(0, 2), matcher.findAll("Claim the lottery prize today"));
+        assertEquals(found(), matcher.findAll("Your order has shipped"));
+    }
+
+    @Test
+    void matchesCaseInsensitively() {
+        AhoCorasickMatcher matcher = matcher(false, "Lottery", "WIN");
+
+        assertEquals(found(0, 1), matcher.findAll("you WON the lOTTERY, a real Winner"));
+    }
+
+    @Test
+    void findsOverlappingAndNestedKeywords() {
+        // "she" ends inside "hers", and "he" inside both: found only through failure links
+        AhoCorasickMatcher matcher = matcher(false, "he", "she", "his", "hers");
+
+        assertEquals(found(0, 1, 3), matcher.findAll("ushers"));
+        assertEquals(found(2), matcher.findAll("this"));
+    }
+
+    @Test
+    void keywordAtTheEndOfALongerPrefixIsFound() {
+        // The scan follows "abcd" and must fall back to find "bcx"
+        AhoCorasickMatcher matcher = matcher(false, "abcd", "bcx");
+
+        assertEquals(found(1), matcher.findAll("abcx"));
+    }
+
+    @Test
+    void wholeWordKeywordsNeedBoundariesOnBothSides() {
+        AhoCorasickMatcher matcher = matcher(true, "win");
+
+        assertEquals(found(0), matcher.findAll("win"));
+        assertEquals(found(0), matcher.findAll("You win!"));
+        assertEquals(found(0), matcher.findAll("(win)"));
+        assertEquals(found(), matcher.findAll("winner"));
+        assertEquals(found(), matcher.findAll("twin"));
+        assertEquals(found(), matcher.findAll("win_win"));
+    }
+
+    @Test
+    void wholeWordFindsALaterOccurrence() {
+        AhoCorasickMatcher matcher = matcher(true, "win");
+
+        assertEquals(found(0), matcher.findAll("winner, you win"));
+    }
+
+    @Test
+    void sameKeywordCanBeSubstringAndWholeWord() {
+        AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+        int substring = builder.add("win", false);
+        int wholeWord = builder.add("win", true);
+        AhoCorasickMatcher matcher = builder.build();
+
+        BitSet found = matcher.findAll("winner");
+        assertTrue(found.get(substring));
+        assertEquals(1, found.cardinality());
+        assertEquals(found(substring, wholeWord), matcher.findAll("a win"));
+    }
+
+    @Test
+    void emptyKeywordIsFoundInAnyText() {
+        AhoCorasickMatcher matcher = matcher(false, "", "x");
+
+        assertEquals(found(0), matcher.findAll(""));
+        assertEquals(found(0, 1), matcher.findAll("x"));
+    }
+
+    @Test
+    void agreesWithSubstringSearch() {
+        String[] keywords = {"ab", "abab", "ba", "bab", "aab", "b", "abba"};
+        AhoCorasickMatcher matcher = matcher(false, keywords);
+
+        // Every text over {a, b} up to length 8
+        for (int length = 0; length <= 8; length++) {
+            for (int bits = 0; bits < (1 << length); bits++) {
+                StringBuilder text = new StringBuilder(length);
+                for (int i = 0; i < length; i++) {
+                    text.append((bits >> i & 1) == 0 ? 'a' : 'b');
+                }
+                BitSet expected = new BitSet();
+                for (int id = 0; id < keywords.length; id++) {
+                    if (text.indexOf(keywords[id]) >= 0) {
+                        expected.set(id);
+                    }
+                }
+                assertEquals(expected, matcher.findAll(text), "text " + text);
+            }
+        }
+    }
+
+    private static AhoCorasickMatcher matcher(boolean wholeWords, String... keywords) {
+        AhoCorasickMatcher.Builder builder = AhoCorasickMatcher.builder();
+        for (String keyword : keywords) {
+            builder.add(keyword, wholeWords);
+        }
+        return builder.build();
+    }
+
+    private static BitSet found(int... ids) {
+        BitSet found = new BitSet();
+        for (int id : ids) {
+            found.set(id);
+        }
+        return found;
+    }
+}
@@ -0,0 +1,105 @@
+package com.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * An added key must never be reported missing, and other keys only rarely reported present
+ */
+class BloomFilterTest {
+
+    @Test
+    void addedKeysAreAlwaysFound() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("EMAIL:user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10000; i++) {
+            assertTrue(filter.mightContain("EMAIL:user" + i + "@example.com"), "missed key " + i);
+        }
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(100, 0.01);
+
+        assertFalse(filter.mightContain("EMAIL:user@example.com"));
+        assertFalse(filter.mightContain(""));
+    }
+
+    @Test
+    void falsePositiveRateStaysNearTheConfiguredOne() {
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++) {
+            filter.add("EMAIL:user" + i + "@example.com");
+        }
+
+        int positives = 0;
+        int probes = 100000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("WHATSAPP:+1555" + i)) {
+                positives++;
+            }
+        }
+        // Expected about 1%; twice that would mean the sizing or the hashing is off
+        assertTrue(positives < probes * 0.02, positives + " false positives in " + probes);
+    }
+
+    @Test
+    void sizingFollowsTheOptimum() {
+        BloomFilter filter = new BloomFilter(1000, 0.01);
+
+        // About 9.6 bits per key at 1%, rounded up to whole words, and 7 hashes
+        assertEquals(9600, filter.getBitCount());
+        assertEquals(7, filter.getHashCount());
+        assertEquals(1000, filter.getExpectedInsertions());
+    }
+
+    @Test
+    void concurrentAddsAreNotLost() throws Exception {
+        BloomFilter filter = new BloomFilter(40000, 0.01);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int offset = t * 10000;
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = offset; i < offset + 10000; i++) {
+                    filter.add("key" + i);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join(10000);
+        }
+
+        for (int i = 0; i < 40000; i++) {
+            assertTrue(filter.mightContain("key" + i), "missed key " + i);
+        }
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 0));
+        assertThrows(IllegalArgumentException.class, () -> new BloomFilter(100, 1));
+    }
+}
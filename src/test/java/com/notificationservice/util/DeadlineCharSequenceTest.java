@@ -0,0 +1,30 @@
+package com.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A backtracking pattern must give up at the deadline instead of running to completion
+ */
+class DeadlineCharSequenceTest {
+
+    @Test
+    void matchWithinTheDeadlineIsUnaffected() {
+        CharSequence text = new DeadlineCharSequence("order 12345 shipped", System.nanoTime() + 1_000_000_000L);
+
+        assertTrue(Pattern.compile("\\d{5}").matcher(text).find());
+    }
+
+    @Test
+    void catastrophicBacktrackingStopsAtTheDeadline() {
+        // Without the deadline this runs for over a minute
+        CharSequence text = new DeadlineCharSequence("a".repeat(30) + "!", System.nanoTime() + 10_000_000L);
+
+        assertThrows(DeadlineCharSequence.DeadlineExceededException.class,
+                () -> Pattern.compile("(.*a){20}b").matcher(text).find());
+    }
+}
@@ -0,0 +1,145 @@
+package com.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A flow with a backlog must not hold back the others by more than one round
+ */
+class DeficitRoundRobinQueueTest {
+
+    @Test
+    void itemsOfOneFlowAreTakenInOrder() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(10, flow -> 1);
+        queue.offer("a", "a1");
+        queue.offer("a", "a2");
+        queue.offer("a", "a3");
+
+        assertEquals(List.of("a1", "a2", "a3"), drain(queue));
+    }
+
+    @Test
+    void backloggedFlowDoesNotStarveOthers() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(100, flow -> 1);
+        for (int i = 1; i <= 5; i++) {
+            queue.offer("bulk", "bulk" + i);
+        }
+        queue.offer("otp", "otp1");
+        queue.offer("otp", "otp2");
+
+        assertEquals(List.of("bulk1", "otp1", "bulk2", "otp2", "bulk3", "bulk4", "bulk5"), drain(queue));
+    }
+
+    @Test
+    void weightIsItemsPerTurn() throws Exception {
+        Map<String, Integer> weights = Map.of("heavy", 3, "light", 1);
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(100, weights::get);
+        for (int i = 1; i <= 6; i++) {
+            queue.offer("heavy", "h" + i);
+        }
+        for (int i = 1; i <= 3; i++) {
+            queue.offer("light", "l" + i);
+        }
+
+        assertEquals(List.of("h1", "h2", "h3", "l1", "h4", "h5", "h6", "l2", "l3"), drain(queue));
+    }
+
+    @Test
+    void nonPositiveWeightStillServesOneItem() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(10, flow -> 0);
+        queue.offer("a", "a1");
+        queue.offer("a", "a2");
+        queue.offer("b", "b1");
+
+        assertEquals(List.of("a1", "b1", "a2"), drain(queue));
+    }
+
+    @Test
+    void flowThatEmptiesLeavesTheRotation() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(10, flow -> 2);
+        queue.offer("a", "a1");
+        queue.offer("b", "b1");
+        queue.offer("b", "b2");
+        assertEquals(2, queue.activeFlows());
+
+        assertEquals("a1", queue.poll(0, TimeUnit.MILLISECONDS));
+        assertEquals(1, queue.activeFlows());
+
+        // A flow that comes back joins at the end of the rotation with a fresh turn
+        queue.offer("a", "a2");
+        assertEquals(List.of("b1", "b2", "a2"), drain(queue));
+        assertEquals(0, queue.activeFlows());
+    }
+
+    @Test
+    void offerRejectsWhenFullButForceDoesNot() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(2, flow -> 1);
+        assertTrue(queue.offer("a", "a1"));
+        assertTrue(queue.offer("b", "b1"));
+        assertEquals(0, queue.remainingCapacity());
+
+        assertFalse(queue.offer("c", "c1"));
+        queue.force("c", "c1");
+        assertEquals(3, queue.size());
+        assertEquals(0, queue.remainingCapacity());
+
+        queue.poll(0, TimeUnit.MILLISECONDS);
+        queue.poll(0, TimeUnit.MILLISECONDS);
+        assertEquals(1, queue.remainingCapacity());
+    }
+
+    @Test
+    void pollTimesOutWhenEmpty() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(1, flow -> 1);
+
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void pollWakesUpOnOffer() throws Exception {
+        DeficitRoundRobinQueue<String> queue = new DeficitRoundRobinQueue<>(1, flow -> 1);
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicReference<String> taken = new AtomicReference<>();
+        Thread consumer = new Thread(() -> {
+            try {
+                waiting.countDown();
+                taken.set(queue.poll(5, TimeUnit.SECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        waiting.await();
+        queue.offer("a", "a1");
+        consumer.join(5000);
+
+        assertEquals("a1", taken.get());
+    }
+
+    @Test
+    void capacityMustBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new DeficitRoundRobinQueue<String>(0, flow -> 1));
+    }
+
+    private static List<String> drain(DeficitRoundRobinQueue<String> queue) throws InterruptedException {
+        List<String> items = new ArrayList<>();
+        String item;
+        while ((item = queue.poll(0, TimeUnit.MILLISECONDS)) != null) {
+            items.add(item);
+        }
+        return items;
+    }
+}
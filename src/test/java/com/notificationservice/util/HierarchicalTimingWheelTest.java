@@ -0,0 +1,112 @@
+package com.notificationservice.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Items must fire in the tick they fall into, whichever level of the wheel holds them
+ */
+class HierarchicalTimingWheelTest {
+
+    @Test
+    void itemFiresInItsTick() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        assertTrue(wheel.add(15, "a"));
+
+        assertEquals(List.of(), wheel.advance(9));
+        assertEquals(List.of("a"), wheel.advance(10));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void dueItemIsNotKept() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 1005);
+
+        // The clock starts at the tick holding 1005, so anything before 1010 is already due
+        assertFalse(wheel.add(1009, "late"));
+        assertTrue(wheel.add(1010, "next"));
+        assertEquals(1, wheel.size());
+    }
+
+    @Test
+    void overflowItemsMoveDownAndFireOnTime() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        assertTrue(wheel.add(100, "far"));
+
+        // At 80 the coarse bucket expires and the item moves down to the finest ring
+        assertEquals(List.of(), wheel.advance(80));
+        assertEquals(List.of(), wheel.advance(99));
+        assertEquals(1, wheel.size());
+        assertEquals(List.of("far"), wheel.advance(100));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void largeJumpFiresEverythingEarliestFirst() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        wheel.add(1000, "c");
+        wheel.add(100, "b");
+        wheel.add(15, "a");
+        assertEquals(3, wheel.size());
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(2000));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void itemsOfOneAdvanceComeOutInExpirationOrder() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        wheel.add(35, "c");
+        wheel.add(25, "b");
+        wheel.add(15, "a");
+
+        assertEquals(List.of("a", "b", "c"), wheel.advance(35));
+    }
+
+    @Test
+    void bucketIsReusedOnTheNextRound() {
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(10, 4, 0);
+        wheel.add(15, "first");
+        assertEquals(List.of("first"), wheel.advance(10));
+
+        // 55 goes through the overflow ring and ends up in the slot 15 used
+        wheel.add(55, "second");
+        assertEquals(List.of(), wheel.advance(49));
+        assertEquals(List.of("second"), wheel.advance(50));
+    }
+
+    @Test
+    void everyItemFiresExactlyOnceWhenTicking() {
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(10, 8, 0);
+        List<Long> expected = new ArrayList<>();
+        for (long at = 10; at < 5000; at += 37) {
+            wheel.add(at, at);
+            expected.add(at);
+        }
+
+        List<Long> fired = new ArrayList<>();
+        for (long now = 0; now <= 5000; now += 10) {
+            for (Long at : wheel.advance(now)) {
+                // Never early, and never later than the tick it falls into
+                assertTrue(at >= now && at < now + 10, at + " fired at " + now);
+                fired.add(at);
+            }
+        }
+
+        assertEquals(expected, fired);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void rejectsInvalidGeometry() {
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>(0, 4, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HierarchicalTimingWheel<String>(10, 1, 0));
+    }
+}